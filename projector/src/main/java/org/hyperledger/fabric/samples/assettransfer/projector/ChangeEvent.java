@@ -0,0 +1,39 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer.projector;
+
+/**
+ * One IdentityChanges chaincode event: the payload emitted by a transaction,
+ * with the block and transaction it came from.
+ */
+public final class ChangeEvent {
+
+    /** Name the chaincode emits its identity changes under. */
+    public static final String EVENT_NAME = "IdentityChanges";
+
+    private final long blockNumber;
+
+    private final String transactionId;
+
+    private final byte[] payload;
+
+    public ChangeEvent(final long blockNumber, final String transactionId, final byte[] payload) {
+        this.blockNumber = blockNumber;
+        this.transactionId = transactionId;
+        this.payload = payload;
+    }
+
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer.projector;
+
+import java.io.IOException;
+
+/**
+ * Where the projector gets IdentityChanges events from, in ledger order.
+ *
+ * {@link FileEventSource} reads them from a local file, for tests and for
+ * replaying a capture. Against a network, wrap the Fabric Gateway client's
+ * chaincode event stream: keep the events named {@link ChangeEvent#EVENT_NAME}
+ * and start it at {@link ReadModel#getCheckpointBlock()}. The read model skips
+ * events of that block it has already applied.
+ */
+public interface EventSource extends AutoCloseable {
+
+    /**
+     * @return the next event, or null when none is available yet
+     */
+    ChangeEvent next() throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,102 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer.projector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Local stand-in for a peer's event stream: events read from a file that
+ * {@link #append} writes, one record per event. A record is the block number
+ * (long), the transaction ID length (short) and UTF-8 bytes, and the payload
+ * length (int) and bytes.
+ *
+ * The file may still be growing. A record that is not completely written yet
+ * is read again on the next call, so {@link #next} can be polled to follow it.
+ */
+public final class FileEventSource implements EventSource {
+
+    private static final int BLOCK_AND_ID_LENGTH = Long.BYTES + Short.BYTES;
+
+    private final FileChannel channel;
+
+    private long position;
+
+    public FileEventSource(final Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /**
+     * Appends one event to a file, creating it if needed.
+     */
+    public static void append(final Path file, final ChangeEvent event) throws IOException {
+        byte[] transactionId = event.getTransactionId().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(
+                BLOCK_AND_ID_LENGTH + transactionId.length + Integer.BYTES + event.getPayload().length);
+        record.putLong(event.getBlockNumber())
+                .putShort((short) transactionId.length)
+                .put(transactionId)
+                .putInt(event.getPayload().length)
+                .put(event.getPayload());
+        record.flip();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            while (record.hasRemaining()) {
+                out.write(record);
+            }
+        }
+    }
+
+    @Override
+    public ChangeEvent next() throws IOException {
+        long at = position;
+        ByteBuffer header = read(at, BLOCK_AND_ID_LENGTH);
+        if (header == null) {
+            return null;
+        }
+        long blockNumber = header.getLong();
+        int transactionIdLength = header.getShort() & 0xFFFF;
+        at += BLOCK_AND_ID_LENGTH;
+
+        ByteBuffer transactionId = read(at, transactionIdLength + Integer.BYTES);
+        if (transactionId == null) {
+            return null;
+        }
+        byte[] id = new byte[transactionIdLength];
+        transactionId.get(id);
+        int payloadLength = transactionId.getInt();
+        at += transactionIdLength + Integer.BYTES;
+
+        ByteBuffer payload = read(at, payloadLength);
+        if (payload == null) {
+            return null;
+        }
+        position = at + payloadLength;
+        return new ChangeEvent(blockNumber, new String(id, StandardCharsets.UTF_8), payload.array());
+    }
+
+    /**
+     * @return the bytes, or null when the file does not have them all yet
+     */
+    private ByteBuffer read(final long at, final int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, at + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer.projector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local stand-in for reading identities from the peers: identity snapshots
+ * that {@link #append} writes to a file, the last snapshot of an identity
+ * being its current state. A record is the snapshot length (int) and the
+ * snapshot as {@link IdentityViewCodec} writes it.
+ *
+ * The file may still be growing; each {@link #read} first picks up the
+ * snapshots appended since the last one.
+ */
+public final class FileIdentitySource implements IdentitySource {
+
+    private final FileChannel channel;
+
+    private final Map<String, IdentityView> identities = new HashMap<>();
+
+    private long position;
+
+    public FileIdentitySource(final Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /**
+     * Appends the current state of one identity to a file, creating it if needed.
+     */
+    public static void append(final Path file, final IdentityView identity) throws IOException {
+        byte[] snapshot = IdentityViewCodec.encode(identity);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + snapshot.length);
+        record.putInt(snapshot.length).put(snapshot);
+        record.flip();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            while (record.hasRemaining()) {
+                out.write(record);
+            }
+        }
+    }
+
+    @Override
+    public IdentityView read(final String id) throws IOException {
+        for (ByteBuffer length = read(position, Integer.BYTES); length != null;
+                length = read(position, Integer.BYTES)) {
+            ByteBuffer snapshot = read(position + Integer.BYTES, length.getInt());
+            if (snapshot == null) {
+                break;
+            }
+            IdentityView identity = IdentityViewCodec.decode(snapshot.array());
+            identities.put(identity.getIdentifier(), identity);
+            position += Integer.BYTES + snapshot.capacity();
+        }
+        return identities.get(id);
+    }
+
+    /**
+     * @return the bytes, or null when the file does not have them all yet
+     */
+    private ByteBuffer read(final long at, final int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, at + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
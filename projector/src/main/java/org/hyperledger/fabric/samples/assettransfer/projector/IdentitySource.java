@@ -0,0 +1,28 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer.projector;
+
+import java.io.IOException;
+
+/**
+ * Where the projector reads the identities an event names. IdentityChanges
+ * events only say which identities changed, so the read model reads each one
+ * once per event instead of gateway services reading it on every request.
+ *
+ * {@link FileIdentitySource} reads them from a local file, for tests and for
+ * replaying a capture. Against a network, evaluate ReadIdentity through the
+ * Fabric Gateway client on a peer that has committed the event's block; the
+ * read then returns the identity as of that block or later.
+ */
+public interface IdentitySource extends AutoCloseable {
+
+    /**
+     * @return the identity as the ledger has it now, or null when it does not exist
+     */
+    IdentityView read(String id) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
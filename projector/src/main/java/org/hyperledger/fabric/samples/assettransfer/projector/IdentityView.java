@@ -0,0 +1,92 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer.projector;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An identity as the read model knows it: the core record JSON as the
+ * chaincode stores it, the fields the read model indexes, and the subjectInfo
+ * attributes stored under their own keys.
+ */
+public final class IdentityView {
+
+    private final String identifier;
+
+    private final boolean archived;
+
+    private final String status;
+
+    private final String validTo;
+
+    private final List<String> controllers;
+
+    private final String json;
+
+    private final Map<String, String> subjectInfo;
+
+    public IdentityView(final String identifier, final boolean archived, final String status, final String validTo,
+                        final List<String> controllers, final String json, final Map<String, String> subjectInfo) {
+        this.identifier = identifier;
+        this.archived = archived;
+        this.status = status;
+        this.validTo = validTo;
+        this.controllers = Collections.unmodifiableList(controllers);
+        this.json = json;
+        this.subjectInfo = Collections.unmodifiableMap(subjectInfo);
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return true when the identity was moved to the archive; it is then only found by ID
+     */
+    public boolean isArchived() {
+        return archived;
+    }
+
+    /**
+     * @return the current status, including revocation and suspension from the
+     *         status list, which the core record JSON does not show
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the validTo ledger date, "" when the identity has none
+     */
+    public String getValidTo() {
+        return validTo;
+    }
+
+    /**
+     * @return controlledBy followed by the other members of the controller set
+     */
+    public List<String> getControllers() {
+        return controllers;
+    }
+
+    /**
+     * @return the core record JSON, "" when the identity source had none
+     */
+    public String getJson() {
+        return json;
+    }
+
+    public Map<String, String> getSubjectInfo() {
+        return subjectInfo;
+    }
+
+    @Override
+    public String toString() {
+        return "IdentityView{identifier=" + identifier + ", archived=" + archived + ", status=" + status
+                + ", validTo=" + validTo + ", controllers=" + controllers + ", subjectInfo=" + subjectInfo + "}";
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer.projector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Binary form of an {@link IdentityView}, as the read model and
+ * {@link FileIdentitySource} store it: the ID, archived flag, status and
+ * validTo, controller count (int) and IDs, core record JSON, attribute count
+ * (int) and name/value pairs. Strings are an int length and UTF-8 bytes, the
+ * same as in IdentityChanges events, so no value is too long to store.
+ */
+final class IdentityViewCodec {
+
+    private IdentityViewCodec() {
+    }
+
+    static byte[] encode(final IdentityView view) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, view.getIdentifier());
+        out.writeByte(view.isArchived() ? 1 : 0);
+        writeString(out, view.getStatus());
+        writeString(out, view.getValidTo());
+        out.writeInt(view.getControllers().size());
+        for (String controllerId : view.getControllers()) {
+            writeString(out, controllerId);
+        }
+        writeString(out, view.getJson());
+        out.writeInt(view.getSubjectInfo().size());
+        for (Map.Entry<String, String> attribute : view.getSubjectInfo().entrySet()) {
+            writeString(out, attribute.getKey());
+            writeString(out, attribute.getValue());
+        }
+        return bytes.toByteArray();
+    }
+
+    static IdentityView decode(final byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        String id = readString(in);
+        boolean archived = in.readByte() != 0;
+        String status = readString(in);
+        String validTo = readString(in);
+        int controllerCount = in.readInt();
+        List<String> controllers = new ArrayList<>(controllerCount);
+        for (int i = 0; i < controllerCount; i++) {
+            controllers.add(readString(in));
+        }
+        String json = readString(in);
+        int attributes = in.readInt();
+        Map<String, String> subjectInfo = new TreeMap<>();
+        for (int i = 0; i < attributes; i++) {
+            subjectInfo.put(readString(in), readString(in));
+        }
+        return new IdentityView(id, archived, status, validTo, controllers, json, subjectInfo);
+    }
+
+    static void writeString(final DataOutputStream out, final String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    static String readString(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("String length " + length + " is past the end of the record");
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
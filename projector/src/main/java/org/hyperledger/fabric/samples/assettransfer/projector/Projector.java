@@ -0,0 +1,63 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer.projector;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Keeps a {@link ReadModel} up to date from an {@link EventSource}, reading the
+ * identities each event names from an {@link IdentitySource}.
+ *
+ * Run as {@code Projector <events file> <identities file> <read model file> [--follow]}
+ * to project the events of a {@link FileEventSource} with the identities of a
+ * {@link FileIdentitySource}; with --follow it keeps polling the files.
+ */
+public final class Projector {
+
+    private static final long POLL_MILLIS = 200;
+
+    private Projector() {
+    }
+
+    /**
+     * Applies every event the source has available.
+     *
+     * @return the number of events applied, not counting the ones already in the read model
+     */
+    public static int drain(final EventSource source, final IdentitySource identities, final ReadModel model)
+            throws IOException {
+        int applied = 0;
+        for (ChangeEvent event = source.next(); event != null; event = source.next()) {
+            if (model.apply(event, identities)) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.err.println("Usage: Projector <events file> <identities file> <read model file> [--follow]");
+            System.exit(2);
+        }
+        boolean follow = args.length > 3 && "--follow".equals(args[3]);
+
+        try (ReadModel model = ReadModel.open(Paths.get(args[2]));
+             EventSource source = new FileEventSource(Paths.get(args[0]));
+             IdentitySource identities = new FileIdentitySource(Paths.get(args[1]))) {
+            do {
+                int applied = drain(source, identities, model);
+                if (applied > 0) {
+                    System.out.println(String.format("Applied %d events, %d identities up to block %d",
+                            applied, model.size(), model.getCheckpointBlock()));
+                }
+                if (follow) {
+                    Thread.sleep(POLL_MILLIS);
+                }
+            } while (follow);
+        }
+    }
+}
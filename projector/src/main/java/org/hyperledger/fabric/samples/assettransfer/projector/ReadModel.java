@@ -0,0 +1,336 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer.projector;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Identities projected from IdentityChanges events into a memory-mapped file,
+ * indexed by ID, controller, status and expiry, so gateway services can answer
+ * reads locally instead of sending EVALUATE proposals to the peers.
+ *
+ * The file is a header followed by a log of identity snapshots: each change
+ * appends the new snapshot of the identity it touches. The indexes are kept on
+ * the heap and rebuilt from the log on open; they point into the mapped file,
+ * which holds the snapshots themselves. The header records the end of the log
+ * and the checkpoint, the block of the last applied event and how many events
+ * of that block were applied. It is written after the snapshots of each event,
+ * so after a crash the log ends at the last complete event and replay resumes
+ * from the checkpoint block.
+ *
+ * Events only name the identities that changed; each one is read once from an
+ * {@link IdentitySource} and its snapshot appended.
+ *
+ * Header: magic (int), end of log (int), checkpoint block (long), events
+ * applied in that block (int). Snapshot: length (int), then the snapshot as
+ * {@link IdentityViewCodec} writes it.
+ *
+ * All methods are synchronized: one projector thread applies events while any
+ * number of threads read.
+ */
+public final class ReadModel implements AutoCloseable {
+
+    private static final int MAGIC = 0x49444d32;
+
+    private static final int HEADER_LENGTH = 64;
+
+    private static final int END_OFFSET = 4;
+
+    private static final int CHECKPOINT_BLOCK_OFFSET = 8;
+
+    private static final int APPLIED_IN_BLOCK_OFFSET = 16;
+
+    private static final int INITIAL_CAPACITY = 1 << 20;
+
+    private static final String STATUS_ACTIVE = "active";
+
+    private static final byte PUT = 'P';
+
+    private static final byte ARCHIVE = 'R';
+
+    private static final byte STATUS = 'S';
+
+    private static final byte ATTRIBUTE = 'A';
+
+    private static final int EVENT_VERSION = 2;
+
+    private final FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    private int end;
+
+    private long checkpointBlock;
+
+    private int appliedInBlock;
+
+    /** Events of the checkpoint block seen since open, applied or skipped. */
+    private int seenInBlock;
+
+    private final Map<String, Integer> offsets = new HashMap<>();
+
+    private final Map<String, Set<String>> byController = new HashMap<>();
+
+    private final Map<String, Set<String>> byStatus = new HashMap<>();
+
+    private final TreeMap<String, Set<String>> byExpiry = new TreeMap<>();
+
+    private ReadModel(final FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Read model file is larger than 2 GB");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+
+        if (size < HEADER_LENGTH || buffer.getInt(0) == 0) {
+            buffer.putInt(0, MAGIC);
+            end = HEADER_LENGTH;
+            checkpointBlock = -1;
+            appliedInBlock = 0;
+            writeHeader();
+            return;
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a read model file");
+        }
+        end = buffer.getInt(END_OFFSET);
+        checkpointBlock = buffer.getLong(CHECKPOINT_BLOCK_OFFSET);
+        appliedInBlock = buffer.getInt(APPLIED_IN_BLOCK_OFFSET);
+        for (int offset = HEADER_LENGTH; offset < end; offset += Integer.BYTES + buffer.getInt(offset)) {
+            IdentityView view = readView(offset);
+            Integer previous = offsets.put(view.getIdentifier(), offset);
+            if (previous != null) {
+                unindex(readView(previous));
+            }
+            index(view);
+        }
+    }
+
+    /**
+     * Opens a read model file, creating it if it does not exist.
+     */
+    public static ReadModel open(final Path file) throws IOException {
+        return new ReadModel(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+    }
+
+    /**
+     * @return the block of the last applied event, -1 when none was; a source
+     *         should start there, as events of that block may not all be applied
+     */
+    public synchronized long getCheckpointBlock() {
+        return checkpointBlock;
+    }
+
+    /**
+     * Applies the changes of one event, reading the identities it names from a
+     * source. Events must come in ledger order; events up to the checkpoint are
+     * skipped, so a source may replay from the checkpoint block.
+     *
+     * @return false when the event was skipped as already applied
+     */
+    public synchronized boolean apply(final ChangeEvent event, final IdentitySource identities) throws IOException {
+        long block = event.getBlockNumber();
+        int position = block == checkpointBlock ? seenInBlock + 1 : 1;
+        if (block < checkpointBlock) {
+            return false;
+        }
+        if (block == checkpointBlock && position <= appliedInBlock) {
+            seenInBlock = position;
+            return false;
+        }
+
+        for (String id : changedIds(event)) {
+            IdentityView next = identities.read(id);
+            if (next != null) {
+                store(get(id), next);
+            }
+        }
+
+        checkpointBlock = block;
+        appliedInBlock = position;
+        seenInBlock = position;
+        writeHeader();
+        return true;
+    }
+
+    /**
+     * @return the identity, or null when no event mentioned it
+     */
+    public synchronized IdentityView get(final String id) throws IOException {
+        Integer offset = offsets.get(id);
+        return offset == null ? null : readView(offset);
+    }
+
+    /**
+     * @return the identities a controller controls, by ID; archived ones are left out
+     */
+    public synchronized List<IdentityView> getByController(final String controllerId) throws IOException {
+        return views(byController.get(controllerId));
+    }
+
+    /**
+     * @return the identities with a status, by ID; archived ones are left out
+     */
+    public synchronized List<IdentityView> getByStatus(final String status) throws IOException {
+        return views(byStatus.get(status));
+    }
+
+    /**
+     * @param validTo a ledger date
+     * @return the active identities whose validTo is before it, soonest first
+     */
+    public synchronized List<IdentityView> getExpiringBefore(final String validTo) throws IOException {
+        List<IdentityView> views = new ArrayList<>();
+        for (Set<String> ids : byExpiry.headMap(validTo, false).values()) {
+            views.addAll(views(ids));
+        }
+        return views;
+    }
+
+    /**
+     * @return the number of identities, archived ones included
+     */
+    public synchronized int size() {
+        return offsets.size();
+    }
+
+    private List<IdentityView> views(final Collection<String> ids) throws IOException {
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        List<IdentityView> views = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            views.add(get(id));
+        }
+        return views;
+    }
+
+    /**
+     * @return the IDs of the identities an event changed, in the order first changed
+     */
+    private static Set<String> changedIds(final ChangeEvent event) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(event.getPayload()));
+        int version = in.readUnsignedByte();
+        if (version != EVENT_VERSION) {
+            throw new IOException("Unsupported IdentityChanges version " + version + " in " + event.getTransactionId());
+        }
+        Set<String> ids = new LinkedHashSet<>();
+        while (in.available() > 0) {
+            byte kind = in.readByte();
+            ids.add(IdentityViewCodec.readString(in));
+            if (kind == ATTRIBUTE) {
+                IdentityViewCodec.readString(in);
+            } else if (kind != PUT && kind != ARCHIVE && kind != STATUS) {
+                throw new IOException("Unknown change type " + kind + " in " + event.getTransactionId());
+            }
+        }
+        return ids;
+    }
+
+    private void store(final IdentityView current, final IdentityView next) throws IOException {
+        byte[] record = IdentityViewCodec.encode(next);
+
+        ensureCapacity(Integer.BYTES + record.length);
+        buffer.putInt(end, record.length);
+        ByteBuffer target = buffer.duplicate();
+        target.position(end + Integer.BYTES);
+        target.put(record);
+        offsets.put(next.getIdentifier(), end);
+        end += Integer.BYTES + record.length;
+
+        if (current != null) {
+            unindex(current);
+        }
+        index(next);
+    }
+
+    private IdentityView readView(final int offset) throws IOException {
+        byte[] record = new byte[buffer.getInt(offset)];
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset + Integer.BYTES);
+        source.get(record);
+        return IdentityViewCodec.decode(record);
+    }
+
+    private void index(final IdentityView view) {
+        if (view.isArchived()) {
+            return;
+        }
+        for (String controllerId : view.getControllers()) {
+            byController.computeIfAbsent(controllerId, k -> new TreeSet<>()).add(view.getIdentifier());
+        }
+        if (!view.getStatus().isEmpty()) {
+            byStatus.computeIfAbsent(view.getStatus(), k -> new TreeSet<>()).add(view.getIdentifier());
+        }
+        if (STATUS_ACTIVE.equals(view.getStatus()) && !view.getValidTo().isEmpty()) {
+            byExpiry.computeIfAbsent(view.getValidTo(), k -> new TreeSet<>()).add(view.getIdentifier());
+        }
+    }
+
+    private void unindex(final IdentityView view) {
+        for (String controllerId : view.getControllers()) {
+            remove(byController, controllerId, view.getIdentifier());
+        }
+        remove(byStatus, view.getStatus(), view.getIdentifier());
+        remove(byExpiry, view.getValidTo(), view.getIdentifier());
+    }
+
+    private static void remove(final Map<String, Set<String>> index, final String key, final String id) {
+        Set<String> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private void ensureCapacity(final int length) throws IOException {
+        long required = (long) end + length;
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long capacity = Math.max(2L * buffer.capacity(), required);
+        if (capacity > Integer.MAX_VALUE) {
+            if (required > Integer.MAX_VALUE) {
+                throw new IOException("Read model file is full");
+            }
+            capacity = Integer.MAX_VALUE;
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void writeHeader() {
+        buffer.putInt(END_OFFSET, end);
+        buffer.putLong(CHECKPOINT_BLOCK_OFFSET, checkpointBlock);
+        buffer.putInt(APPLIED_IN_BLOCK_OFFSET, appliedInBlock);
+    }
+
+    /**
+     * Writes the mapped file back to disk and closes it.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
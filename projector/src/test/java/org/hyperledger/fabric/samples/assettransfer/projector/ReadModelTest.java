@@ -0,0 +1,425 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer.projector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public final class ReadModelTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private static final String DEVICE_1 = "lsdi:ufma:br/device/1";
+
+    private static final String DEVICE_2 = "lsdi:ufma:br/device/2";
+
+    private static final String DEVICE_3 = "lsdi:ufma:br/device/3";
+
+    private static final String VALID_TO = "2022-06-01T12:00:00.000Z";
+
+    private Path directory;
+
+    private Path file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("read-model");
+        file = directory.resolve("identities.model");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path created : (Iterable<Path>) files::iterator) {
+                Files.delete(created);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /** Identities as the ledger has them now, counting the reads of each. */
+    private static final class Ledger implements IdentitySource {
+
+        private final Map<String, IdentityView> identities = new HashMap<>();
+
+        private final Map<String, Integer> reads = new HashMap<>();
+
+        @Override
+        public IdentityView read(final String id) {
+            reads.merge(id, 1, Integer::sum);
+            return identities.get(id);
+        }
+
+        int reads(final String id) {
+            return reads.getOrDefault(id, 0);
+        }
+
+        void update(final String id, final UnaryOperator<IdentityView> change) {
+            IdentityView current = identities.getOrDefault(id, new IdentityView(id, false, "", "",
+                    Collections.emptyList(), "", Collections.emptyMap()));
+            identities.put(id, change.apply(current));
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+
+    private final Ledger ledger = new Ledger();
+
+    /**
+     * Builds the payload of an IdentityChanges event, one change at a time, and
+     * makes each change on the ledger as the transaction would.
+     */
+    private final class Changes {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Changes() throws IOException {
+            out.writeByte(2);
+        }
+
+        private void record(final char kind, final String id) throws IOException {
+            out.writeByte(kind);
+            writeString(out, id);
+        }
+
+        Changes put(final String id, final String status, final String... controllers) throws IOException {
+            record('P', id);
+            ledger.update(id, current -> new IdentityView(id, false, status, VALID_TO, Arrays.asList(controllers),
+                    "{\"identifier\":\"" + id + "\"}", current.getSubjectInfo()));
+            return this;
+        }
+
+        Changes archive(final String id) throws IOException {
+            record('R', id);
+            ledger.update(id, current -> new IdentityView(id, true, current.getStatus(), current.getValidTo(),
+                    current.getControllers(), current.getJson(), current.getSubjectInfo()));
+            return this;
+        }
+
+        Changes status(final String id, final String status) throws IOException {
+            record('S', id);
+            ledger.update(id, current -> new IdentityView(id, current.isArchived(), status, current.getValidTo(),
+                    current.getControllers(), current.getJson(), current.getSubjectInfo()));
+            return this;
+        }
+
+        Changes attribute(final String id, final String name, final String value) throws IOException {
+            record('A', id);
+            writeString(out, name);
+            ledger.update(id, current -> {
+                Map<String, String> subjectInfo = new TreeMap<>(current.getSubjectInfo());
+                subjectInfo.put(name, value);
+                return new IdentityView(id, current.isArchived(), current.getStatus(), current.getValidTo(),
+                        current.getControllers(), current.getJson(), subjectInfo);
+            });
+            return this;
+        }
+
+        ChangeEvent in(final long block, final String transactionId) {
+            return new ChangeEvent(block, transactionId, bytes.toByteArray());
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private Changes changes() throws IOException {
+        return new Changes();
+    }
+
+    /** The first block: the controller and a device it controls, then an attribute of the device. */
+    private ChangeEvent[] firstBlock() throws IOException {
+        return new ChangeEvent[] {
+            changes().put(ORG, "active", ORG).in(5, "tx1"),
+            changes().put(DEVICE_1, "active", ORG).in(5, "tx2"),
+            changes().attribute(DEVICE_1, "sala", "101").in(5, "tx3"),
+        };
+    }
+
+    private static int endOfLog(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer end = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(end, 4);
+            end.flip();
+            return end.getInt();
+        }
+    }
+
+    @Nested
+    class Reopen {
+
+        @Test
+        public void keepsTheIdentitiesAndTheCheckpoint() throws IOException {
+            try (ReadModel model = ReadModel.open(file)) {
+                for (ChangeEvent event : firstBlock()) {
+                    model.apply(event, ledger);
+                }
+                model.apply(changes().status(DEVICE_1, "suspended").in(6, "tx4"), ledger);
+            }
+
+            try (ReadModel model = ReadModel.open(file)) {
+                assertThat(model.getCheckpointBlock()).isEqualTo(6);
+                assertThat(model.size()).isEqualTo(2);
+                IdentityView device = model.get(DEVICE_1);
+                assertThat(device.getStatus()).isEqualTo("suspended");
+                assertThat(device.getSubjectInfo()).containsEntry("sala", "101");
+                assertThat(model.getByController(ORG)).extracting(IdentityView::getIdentifier)
+                        .containsExactly(ORG, DEVICE_1);
+                assertThat(model.getByStatus("active")).extracting(IdentityView::getIdentifier)
+                        .containsExactly(ORG);
+                assertThat(model.getByStatus("suspended")).extracting(IdentityView::getIdentifier)
+                        .containsExactly(DEVICE_1);
+            }
+        }
+
+        @Test
+        public void whenNothingWasApplied() throws IOException {
+            try (ReadModel model = ReadModel.open(file)) {
+                assertThat(model.getCheckpointBlock()).isEqualTo(-1);
+            }
+
+            try (ReadModel model = ReadModel.open(file)) {
+                assertThat(model.getCheckpointBlock()).isEqualTo(-1);
+                assertThat(model.size()).isZero();
+            }
+        }
+
+        @Test
+        public void whenFileIsNotAReadModel() throws IOException {
+            byte[] notAReadModel = new byte[128];
+            Arrays.fill(notAReadModel, (byte) 7);
+            Files.write(file, notAReadModel);
+
+            Throwable thrown = catchThrowable(() -> ReadModel.open(file).close());
+
+            assertThat(thrown).isInstanceOf(IOException.class).hasMessage("Not a read model file");
+        }
+    }
+
+    @Nested
+    class Apply {
+
+        @Test
+        public void readsEachChangedIdentityOnce() throws IOException {
+            try (ReadModel model = ReadModel.open(file)) {
+                model.apply(changes().put(DEVICE_1, "active", ORG).attribute(DEVICE_1, "sala", "101")
+                        .status(DEVICE_1, "suspended").put(DEVICE_2, "active", ORG).in(5, "tx1"), ledger);
+
+                assertThat(ledger.reads(DEVICE_1)).isEqualTo(1);
+                assertThat(ledger.reads(DEVICE_2)).isEqualTo(1);
+                IdentityView device = model.get(DEVICE_1);
+                assertThat(device.getStatus()).isEqualTo("suspended");
+                assertThat(device.getSubjectInfo()).containsEntry("sala", "101");
+                assertThat(device.getJson()).isEqualTo("{\"identifier\":\"" + DEVICE_1 + "\"}");
+            }
+        }
+
+        @Test
+        public void whenTheIdentityIsArchived() throws IOException {
+            try (ReadModel model = ReadModel.open(file)) {
+                model.apply(changes().put(DEVICE_1, "active", ORG).put(DEVICE_2, "active", ORG).in(5, "tx1"),
+                        ledger);
+                model.apply(changes().archive(DEVICE_1).in(6, "tx2"), ledger);
+
+                assertThat(model.get(DEVICE_1).isArchived()).isTrue();
+                assertThat(model.getByController(ORG)).extracting(IdentityView::getIdentifier)
+                        .containsExactly(DEVICE_2);
+                assertThat(model.getByStatus("active")).extracting(IdentityView::getIdentifier)
+                        .containsExactly(DEVICE_2);
+            }
+        }
+
+        @Test
+        public void whenTheSourceDoesNotHaveTheIdentity() throws IOException {
+            ChangeEvent event = changes().status(DEVICE_1, "revoked").in(5, "tx1");
+            ledger.identities.remove(DEVICE_1);
+
+            try (ReadModel model = ReadModel.open(file)) {
+                assertThat(model.apply(event, ledger)).isTrue();
+
+                assertThat(model.get(DEVICE_1)).isNull();
+                assertThat(model.getCheckpointBlock()).isEqualTo(5);
+            }
+        }
+
+        @Test
+        public void keepsValuesLongerThanAModifiedUtf8String() throws IOException {
+            char[] chars = new char[70_000];
+            Arrays.fill(chars, '\u00e9');
+            String photo = new String(chars);
+            try (ReadModel model = ReadModel.open(file)) {
+                model.apply(changes().put(DEVICE_1, "active", ORG).attribute(DEVICE_1, "foto", photo)
+                        .in(5, "tx1"), ledger);
+            }
+
+            try (ReadModel model = ReadModel.open(file)) {
+                assertThat(model.get(DEVICE_1).getSubjectInfo()).containsEntry("foto", photo);
+            }
+        }
+
+        @Test
+        public void whenEventIsOfAnotherVersion() throws IOException {
+            ChangeEvent event = new ChangeEvent(5, "tx1", new byte[] {1, 'S', 0, 0, 0, 1, 'x'});
+
+            try (ReadModel model = ReadModel.open(file)) {
+                Throwable thrown = catchThrowable(() -> model.apply(event, ledger));
+
+                assertThat(thrown).isInstanceOf(IOException.class)
+                        .hasMessage("Unsupported IdentityChanges version 1 in tx1");
+            }
+        }
+    }
+
+    @Nested
+    class ReplayFromTheCheckpoint {
+
+        @Test
+        public void skipsTheEventsOfTheCheckpointBlockAlreadyApplied() throws IOException {
+            ChangeEvent[] block = firstBlock();
+            try (ReadModel model = ReadModel.open(file)) {
+                model.apply(block[0], ledger);
+                model.apply(block[1], ledger);
+            }
+
+            try (ReadModel model = ReadModel.open(file)) {
+                assertThat(model.getCheckpointBlock()).isEqualTo(5);
+                assertThat(model.apply(block[0], ledger)).isFalse();
+                assertThat(model.apply(block[1], ledger)).isFalse();
+                assertThat(model.apply(block[2], ledger)).isTrue();
+                assertThat(model.get(DEVICE_1).getSubjectInfo()).containsEntry("sala", "101");
+            }
+        }
+
+        @Test
+        public void skipsEventsOfEarlierBlocks() throws IOException {
+            try (ReadModel model = ReadModel.open(file)) {
+                for (ChangeEvent event : firstBlock()) {
+                    model.apply(event, ledger);
+                }
+                model.apply(changes().put(DEVICE_2, "active", ORG).in(6, "tx4"), ledger);
+            }
+
+            try (ReadModel model = ReadModel.open(file)) {
+                assertThat(model.apply(changes().status(DEVICE_1, "revoked").in(5, "tx3"), ledger)).isFalse();
+                assertThat(model.get(DEVICE_1).getStatus()).isEqualTo("active");
+            }
+        }
+
+        @Test
+        public void appliesEachEventOnceAcrossRepeatedReplays() throws IOException {
+            Path events = directory.resolve("events");
+            for (ChangeEvent event : firstBlock()) {
+                FileEventSource.append(events, event);
+            }
+            FileEventSource.append(events, changes().put(DEVICE_2, "active", ORG).in(6, "tx4"));
+            Path identities = directory.resolve("identities");
+            for (String id : Arrays.asList(ORG, DEVICE_1, DEVICE_2)) {
+                FileIdentitySource.append(identities, ledger.read(id));
+            }
+
+            int first;
+            try (ReadModel model = ReadModel.open(file); EventSource source = new FileEventSource(events);
+                 IdentitySource identitySource = new FileIdentitySource(identities)) {
+                first = Projector.drain(source, identitySource, model);
+            }
+            int second;
+            try (ReadModel model = ReadModel.open(file); EventSource source = new FileEventSource(events);
+                 IdentitySource identitySource = new FileIdentitySource(identities)) {
+                second = Projector.drain(source, identitySource, model);
+                assertThat(model.size()).isEqualTo(3);
+                assertThat(model.get(DEVICE_1).getSubjectInfo()).containsEntry("sala", "101");
+            }
+
+            assertThat(first).isEqualTo(4);
+            assertThat(second).isZero();
+        }
+    }
+
+    @Nested
+    class CrashBeforeTheHeaderWrite {
+
+        /**
+         * Leaves the file as a crash after the snapshots of an event were appended
+         * but before the header recorded them: bytes past the end of the log.
+         */
+        private void appendTornSnapshot() throws IOException {
+            int end = endOfLog(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ByteBuffer torn = ByteBuffer.allocate(12);
+                torn.putInt(1000).putInt(0xCAFEBABE).putInt(0xDEADBEEF);
+                torn.flip();
+                channel.write(torn, end);
+            }
+        }
+
+        @Test
+        public void ignoresSnapshotsPastTheEndOfTheLog() throws IOException {
+            try (ReadModel model = ReadModel.open(file)) {
+                for (ChangeEvent event : firstBlock()) {
+                    model.apply(event, ledger);
+                }
+            }
+            appendTornSnapshot();
+
+            try (ReadModel model = ReadModel.open(file)) {
+                assertThat(model.size()).isEqualTo(2);
+                assertThat(model.getCheckpointBlock()).isEqualTo(5);
+                assertThat(model.get(DEVICE_1).getSubjectInfo()).containsEntry("sala", "101");
+            }
+        }
+
+        @Test
+        public void reappliesTheTornEventOnReplay() throws IOException {
+            ChangeEvent torn = changes().put(DEVICE_2, "active", ORG).put(DEVICE_3, "active", ORG).in(6, "tx4");
+            try (ReadModel model = ReadModel.open(file)) {
+                for (ChangeEvent event : firstBlock()) {
+                    model.apply(event, ledger);
+                }
+            }
+            appendTornSnapshot();
+
+            try (ReadModel model = ReadModel.open(file)) {
+                assertThat(model.apply(torn, ledger)).isTrue();
+            }
+
+            try (ReadModel model = ReadModel.open(file)) {
+                assertThat(model.getCheckpointBlock()).isEqualTo(6);
+                assertThat(model.getByController(ORG)).extracting(IdentityView::getIdentifier)
+                        .containsExactly(ORG, DEVICE_1, DEVICE_2, DEVICE_3);
+                assertThat(model.apply(torn, ledger)).isFalse();
+            }
+        }
+    }
+}
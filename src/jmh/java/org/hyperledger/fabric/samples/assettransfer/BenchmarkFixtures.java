@@ -0,0 +1,160 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.ECDSASigner;
+
+/**
+ * Shared benchmark data: the self-signed LSDi entity manager 1, with a P-256
+ * key generated once per run, and JWSs made with that key.
+ */
+final class BenchmarkFixtures {
+
+    static final String CONTEXT = "http://lsdi.ufma.br";
+
+    static final String ENTITY_MANAGER = "lsdi:ufma:br/entity-manager/1";
+
+    static final String KID = "entity-manager-1";
+
+    private static final KeyPair KEY_PAIR = generateKeyPair();
+
+    static final String X = unsigned(((ECPublicKey) KEY_PAIR.getPublic()).getW().getAffineX(), 32);
+
+    static final String Y = unsigned(((ECPublicKey) KEY_PAIR.getPublic()).getW().getAffineY(), 32);
+
+    /** The entity manager's JWS over its own ID. */
+    static final String SIGNATURE = sign(ENTITY_MANAGER);
+
+    private BenchmarkFixtures() {
+    }
+
+    private static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the compact ES256 JWS of the payload, made with the entity manager key
+     */
+    static String sign(final String payload) {
+        try {
+            JWSObject jwsObject = new JWSObject(new JWSHeader.Builder(JWSAlgorithm.ES256).keyID(KID).build(),
+                    new Payload(payload));
+            jwsObject.sign(new ECDSASigner((ECPrivateKey) KEY_PAIR.getPrivate()));
+            return jwsObject.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param operation the creating transaction
+     * @return the entity manager's JWS over the {@link Approval} to create an identity with its key
+     */
+    static String approveCreation(final String operation, final String id, final String controller) {
+        ECWrapper publicKey = new ECWrapper(ECWrapper.KTY, PublicKeyWrapper.USE_SIGNATURE, "P-256", KID, "ES256",
+                X, Y);
+        return sign(Approval.of(operation, id).with("controlledBy", controller)
+                .with("keyThumbprint", publicKey.thumbprint()).nonce("benchmark").payload());
+    }
+
+    /**
+     * @return CreateECIdentity parameters for an identity signed by the entity manager key
+     */
+    static List<String> createECIdentityArgs(final String id, final String controller) {
+        return Arrays.asList(CONTEXT, id, controller, "EC", KID, "ES256", "P-256", X, Y,
+                approveCreation("CreateECIdentity", id, controller),
+                "nome:LSDi- Entity Manager 1",
+                "descricao:Gerenciador de identidades de dispositivos do LSDi",
+                "coordenador:fssilva",
+                "mantenedor:andrecardoso");
+    }
+
+    /**
+     * @return the createECIdentityArgs request as a single CreateIdentityFromPayload payload
+     */
+    static IdentityPayload createPayload(final String id, final String controller) {
+        Map<String, String> publicKeyJwk = new HashMap<>();
+        publicKeyJwk.put("kty", "EC");
+        publicKeyJwk.put("kid", KID);
+        publicKeyJwk.put("alg", "ES256");
+        publicKeyJwk.put("crv", "P-256");
+        publicKeyJwk.put("x", X);
+        publicKeyJwk.put("y", Y);
+
+        Map<String, String> subjectInfo = new HashMap<>();
+        subjectInfo.put("nome", "LSDi- Entity Manager 1");
+        subjectInfo.put("descricao", "Gerenciador de identidades de dispositivos do LSDi");
+        subjectInfo.put("coordenador", "fssilva");
+        subjectInfo.put("mantenedor", "andrecardoso");
+
+        return new IdentityPayload(IdentityPayload.SCHEMA_VERSION, CONTEXT, id, controller, publicKeyJwk,
+                approveCreation("CreateIdentityFromPayload", id, controller), subjectInfo);
+    }
+
+    static Identity entityManager() {
+        return sampleIdentity(ENTITY_MANAGER);
+    }
+
+    static Identity sampleIdentity(final String id) {
+        Map<String, String> publicKeyJwk = new HashMap<>();
+        publicKeyJwk.put("kty", "EC");
+        publicKeyJwk.put("kid", KID);
+        publicKeyJwk.put("alg", "ES256");
+        publicKeyJwk.put("crv", "P-256");
+        publicKeyJwk.put("use", "sig");
+        publicKeyJwk.put("x", X);
+        publicKeyJwk.put("y", Y);
+
+        Map<String, String> subjectInfo = new HashMap<>();
+        subjectInfo.put("nome", "LSDi- Entity Manager 1");
+        subjectInfo.put("descricao", "Gerenciador de identidades de dispositivos do LSDi");
+        subjectInfo.put("coordenador", "fssilva");
+        subjectInfo.put("mantenedor", "andrecardoso");
+
+        return new Identity(CONTEXT, id, ENTITY_MANAGER,
+                publicKeyJwk, subjectInfo, "active",
+                "2021-06-01T12:00:00.000Z", "2022-06-01T12:00:00.000Z");
+    }
+
+    /**
+     * base64url of the unsigned big-endian value, left-padded to length bytes when length is positive.
+     */
+    static String unsigned(final BigInteger value, final int length) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (bytes.length < length) {
+            byte[] padded = new byte[length];
+            System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+            bytes = padded;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.owlike.genson.Genson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One chunk of a registry migration, created with a single ES256 signature over
+ * the Merkle root of the whole import (ImportIdentityChunk), against the same
+ * records each carrying their own signature (CreateECIdentitiesBatch). The import
+ * has {@value #IMPORT_SIZE} records, so each proof is about 17 hashes; the other
+ * leaves are random, only the chunk's records are real.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BulkImportBenchmark {
+
+    private static final String IMPORTER = "lsdi:ufma:br/importer";
+
+    private static final int IMPORT_SIZE = 100_000;
+
+    @Param({"100", "500"})
+    public int chunkSize;
+
+    private final IdentityContract contract = new IdentityContract();
+
+    private final FakeStub ledger = new FakeStub();
+
+    private byte[] importerState;
+
+    private String importChunkJson;
+
+    private String batchJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+        Identity importer = Identity.withPublicKey(BenchmarkFixtures.CONTEXT, IMPORTER, IMPORTER,
+                new ECWrapper(ECWrapper.KTY, PublicKeyWrapper.USE_SIGNATURE, "P-256", "importer", "ES256",
+                        BenchmarkFixtures.unsigned(publicKey.getW().getAffineX(), 32),
+                        BenchmarkFixtures.unsigned(publicKey.getW().getAffineY(), 32)),
+                Collections.emptyMap(), "active", "2021-06-01T12:00:00.000Z", "2022-06-01T12:00:00.000Z");
+        importerState = new IdentityCodec(IdentityCodec.Format.JSON).encode(importer);
+        ECDSASigner signer = new ECDSASigner((ECPrivateKey) keyPair.getPrivate());
+
+        List<ECIdentityRequest> records = new ArrayList<>(chunkSize);
+        List<byte[]> leaves = new ArrayList<>(IMPORT_SIZE);
+        for (int i = 0; i < chunkSize; i++) {
+            records.add(new ECIdentityRequest(BenchmarkFixtures.CONTEXT, "lsdi:ufma:br/device/" + i, IMPORTER,
+                    "EC", "device-" + i, "ES256", "P-256", BenchmarkFixtures.X, BenchmarkFixtures.Y, null,
+                    Collections.singletonMap("nome", "Device " + i)));
+            leaves.add(MerkleImport.leafHash(records.get(i)));
+        }
+        Random random = new Random(42);
+        while (leaves.size() < IMPORT_SIZE) {
+            byte[] leaf = new byte[32];
+            random.nextBytes(leaf);
+            leaves.add(leaf);
+        }
+        MerkleImport.Tree tree = new MerkleImport.Tree(leaves);
+        String root = MerkleImport.encode(tree.root());
+
+        List<ImportRecord> importRecords = new ArrayList<>(chunkSize);
+        for (int i = 0; i < chunkSize; i++) {
+            List<String> proof = new ArrayList<>();
+            for (byte[] sibling : tree.proof(i)) {
+                proof.add(MerkleImport.encode(sibling));
+            }
+            importRecords.add(new ImportRecord(i, records.get(i), proof));
+        }
+        Genson genson = new Genson();
+        importChunkJson = genson.serialize(new ImportChunkRequest(IMPORTER, root, IMPORT_SIZE,
+                sign(signer, Approval.of("ImportIdentityChunk", IMPORTER).with("root", root)
+                        .with("recordCount", IMPORT_SIZE).nonce("benchmark").payload()), importRecords));
+
+        ECWrapper recordKey = new ECWrapper(ECWrapper.KTY, PublicKeyWrapper.USE_SIGNATURE, "P-256", null, "ES256",
+                BenchmarkFixtures.X, BenchmarkFixtures.Y);
+        List<ECIdentityRequest> signedRecords = new ArrayList<>(chunkSize);
+        for (ECIdentityRequest record : records) {
+            signedRecords.add(new ECIdentityRequest(record.getContext(), record.getIdentifier(),
+                    record.getControlledBy(), record.getKty(), record.getKid(), record.getAlg(), record.getCrv(),
+                    record.getX(), record.getY(), sign(signer, Approval.of("CreateECIdentitiesBatch",
+                            record.getIdentifier()).with("controlledBy", IMPORTER)
+                            .with("keyThumbprint", recordKey.thumbprint()).nonce("benchmark").payload()),
+                    record.getSubjectInfo()));
+        }
+        batchJson = genson.serialize(signedRecords);
+    }
+
+    private static String sign(final ECDSASigner signer, final String payload) throws Exception {
+        JWSObject jwsObject = new JWSObject(new JWSHeader.Builder(JWSAlgorithm.ES256).keyID("importer").build(),
+                new Payload(payload));
+        jwsObject.sign(signer);
+        return jwsObject.serialize();
+    }
+
+    @Benchmark
+    public String importChunk() {
+        ledger.reset();
+        ledger.state.put(IMPORTER, importerState);
+        return contract.ImportIdentityChunk(ledger.ctx, importChunkJson);
+    }
+
+    @Benchmark
+    public String signedBatch() {
+        ledger.reset();
+        ledger.state.put(IMPORTER, importerState);
+        return contract.CreateECIdentitiesBatch(ledger.ctx, batchJson);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.owlike.genson.Genson;
+
+/**
+ * GetAllIdentities over 1k and 100k records, compared with the previous
+ * deserialize-then-serialize path. Divide gc.alloc.rate.norm by {@code records}
+ * to get the bytes allocated per record. {@link FakeStub} only wraps each
+ * stored entry of a scan, so the figure is the contract's own work.
+ *
+ * The {@code layout} is how subjectInfo is stored: {@code embedded} in a core
+ * record written before attributes had their own keys, {@code none} for an
+ * identity created without attributes, and {@code attributeKeys} for one whose
+ * attributes are under their own keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BulkReadBenchmark {
+
+    @Param({"1000", "100000"})
+    private int records;
+
+    @Param({"embedded", "none", "attributeKeys"})
+    private String layout;
+
+    private final Genson genson = new Genson();
+
+    private final IdentityContract contract = new IdentityContract();
+
+    private final FakeStub ledger = new FakeStub();
+
+    @Setup
+    public void setUp() {
+        IdentityCodec codec = new IdentityCodec(IdentityCodec.Format.JSON);
+        for (int i = 0; i < records; i++) {
+            Identity identity = BenchmarkFixtures.sampleIdentity(String.format("lsdi:ufma:br/device/%06d", i));
+            if ("none".equals(layout)) {
+                identity = identity.withSubjectInfo(null).withAttributeKeys(false);
+            } else if ("attributeKeys".equals(layout)) {
+                String id = identity.getIdentifier();
+                for (Map.Entry<String, String> attribute : identity.getSubjectInfo().entrySet()) {
+                    ledger.state.put(ledger.createCompositeKey(IdentityContract.SUBJECT_INFO, id,
+                            attribute.getKey()).toString(), SubjectAttribute.encode(id, attribute.getKey(),
+                            attribute.getValue()));
+                }
+                identity = identity.withSubjectInfo(null).withAttributeKeys(true);
+            }
+            ledger.state.put(identity.getIdentifier(), codec.encode(identity));
+        }
+    }
+
+    @Benchmark
+    public String getAllIdentities() {
+        return contract.GetAllIdentities(ledger.ctx);
+    }
+
+    @Benchmark
+    public String deserializeAndSerialize() {
+        List<Identity> queryResults = new ArrayList<Identity>();
+        for (KeyValue result : ledger.getStateByRange("", "")) {
+            queryResults.add(genson.deserialize(result.getStringValue(), Identity.class));
+        }
+        return genson.serialize(queryResults);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.nimbusds.jose.JOSEException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * CreateECIdentity end to end against a fake stub: argument parsing, existence
+ * check, controller read, signature check, encoding and index writes. The payload
+ * benchmarks create the same identity through CreateIdentityFromPayload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CreateIdentityBenchmark {
+
+    private static final String DEVICE = "lsdi:ufma:br/device/1";
+
+    private final IdentityContract contract = new IdentityContract();
+
+    private final FakeStub selfSigned = new FakeStub();
+
+    private final FakeStub childOfController = new FakeStub();
+
+    private final FakeStub binaryPayload = new FakeStub();
+
+    private final FakeStub jsonPayload = new FakeStub();
+
+    private byte[] entityManagerState;
+
+    @Setup
+    public void setUp() {
+        List<String> selfSignedArgs = BenchmarkFixtures.createECIdentityArgs(
+                BenchmarkFixtures.ENTITY_MANAGER, BenchmarkFixtures.ENTITY_MANAGER);
+        selfSigned.setParameters(selfSignedArgs);
+
+        entityManagerState = new IdentityCodec(IdentityCodec.Format.JSON).encode(BenchmarkFixtures.entityManager());
+        childOfController.setParameters(
+                BenchmarkFixtures.createECIdentityArgs(DEVICE, BenchmarkFixtures.ENTITY_MANAGER));
+
+        byte[] function = "CreateIdentityFromPayload".getBytes(StandardCharsets.UTF_8);
+        IdentityPayload payload = BenchmarkFixtures.createPayload(DEVICE, BenchmarkFixtures.ENTITY_MANAGER);
+        binaryPayload.setArgs(Arrays.asList(function, payload.encodeBinary()));
+        jsonPayload.setArgs(Arrays.asList(function, toJson(payload)));
+    }
+
+    private static byte[] toJson(final IdentityPayload payload) {
+        StringBuilder json = new StringBuilder("{\"version\":").append(payload.getVersion());
+        appendMember(json, "context", payload.getContext());
+        appendMember(json, "identifier", payload.getIdentifier());
+        appendMember(json, "controlledBy", payload.getControlledBy());
+        appendMember(json, "signature", payload.getSignature());
+        appendMap(json, "publicKeyJwk", payload.getPublicKeyJwk());
+        appendMap(json, "subjectInfo", payload.getSubjectInfo());
+        return json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendMember(final StringBuilder json, final String name, final String value) {
+        json.append(',');
+        IdentityJsonCodec.appendQuoted(json, name);
+        json.append(':');
+        IdentityJsonCodec.appendQuoted(json, value);
+    }
+
+    private static void appendMap(final StringBuilder json, final String name, final Map<String, String> map) {
+        json.append(',');
+        IdentityJsonCodec.appendQuoted(json, name);
+        json.append(":{");
+        boolean first = true;
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            IdentityJsonCodec.appendQuoted(json, entry.getKey());
+            json.append(':');
+            IdentityJsonCodec.appendQuoted(json, entry.getValue());
+        }
+        json.append('}');
+    }
+
+    @Benchmark
+    public Identity createSelfSigned() throws ParseException, JOSEException {
+        selfSigned.state.clear();
+        return contract.CreateECIdentity(selfSigned.ctx);
+    }
+
+    @Benchmark
+    public Identity createChildOfController() throws ParseException, JOSEException {
+        childOfController.state.clear();
+        childOfController.state.put(BenchmarkFixtures.ENTITY_MANAGER, entityManagerState);
+        return contract.CreateECIdentity(childOfController.ctx);
+    }
+
+    @Benchmark
+    public Identity createFromBinaryPayload() {
+        binaryPayload.state.clear();
+        binaryPayload.state.put(BenchmarkFixtures.ENTITY_MANAGER, entityManagerState);
+        return contract.CreateIdentityFromPayload(binaryPayload.ctx);
+    }
+
+    @Benchmark
+    public Identity createFromJsonPayload() {
+        jsonPayload.state.clear();
+        jsonPayload.state.put(BenchmarkFixtures.ENTITY_MANAGER, entityManagerState);
+        return contract.CreateIdentityFromPayload(jsonPayload.ctx);
+    }
+}
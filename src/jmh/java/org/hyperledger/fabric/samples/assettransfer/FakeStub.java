@@ -0,0 +1,422 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.protos.msp.SerializedIdentity;
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.shim.Chaincode;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+/**
+ * Hand-written {@link ChaincodeStub} backed by a sorted map, enough to drive
+ * the contract's transactions from benchmarks without a peer. Each call is a
+ * plain method, so what a benchmark allocates is the contract's own work.
+ * Writes are visible immediately and there is no MVCC. Private data is kept
+ * per collection, and the bytes written to world state and to private data
+ * are counted. Calls the contract never makes throw
+ * {@link UnsupportedOperationException}.
+ */
+final class FakeStub implements ChaincodeStub {
+
+    static final Instant TX_TIMESTAMP = Instant.parse("2021-06-01T12:00:00Z");
+
+    private static final String MSP_ID = "Org1MSP";
+
+    private static final String COMPOSITE_KEY_NAMESPACE = "\u0000";
+
+    private static final String MAX_UNICODE_RUNE = new String(Character.toChars(Character.MAX_CODE_POINT));
+
+    private static final byte[] CREATOR = creator();
+
+    final TreeMap<String, byte[]> state = new TreeMap<>();
+
+    /** Private data, keyed by collection name and key separated by a null character. */
+    final TreeMap<String, byte[]> privateState = new TreeMap<>();
+
+    /** Key and value bytes of every putState since the last reset. */
+    long stateBytesWritten;
+
+    /** Key and value bytes of every putPrivateData since the last reset. */
+    long privateBytesWritten;
+
+    /** Number of putPrivateData calls since the last reset. */
+    long privateWrites;
+
+    final Context ctx;
+
+    private List<String> parameters = Collections.emptyList();
+
+    private List<byte[]> args = Collections.emptyList();
+
+    private Map<String, byte[]> transientMap = Collections.emptyMap();
+
+    FakeStub() {
+        ctx = new Context(this);
+    }
+
+    private static byte[] creator() {
+        try (InputStream pem = FakeStub.class.getResourceAsStream("/creator.pem")) {
+            return SerializedIdentity.newBuilder().setMspid(MSP_ID).setIdBytes(ByteString.readFrom(pem))
+                    .build().toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void setParameters(final List<String> parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * @param args the raw arguments, function name first
+     */
+    void setArgs(final List<byte[]> args) {
+        this.args = args;
+    }
+
+    void setTransient(final Map<String, byte[]> transientMap) {
+        this.transientMap = transientMap;
+    }
+
+    /**
+     * Clears world state, private data and the write counters.
+     */
+    void reset() {
+        state.clear();
+        privateState.clear();
+        stateBytesWritten = 0;
+        privateBytesWritten = 0;
+        privateWrites = 0;
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        return args;
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        List<String> strings = new ArrayList<>(args.size());
+        for (byte[] arg : args) {
+            strings.add(new String(arg, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    @Override
+    public String getFunction() {
+        return args.isEmpty() ? null : new String(args.get(0), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public String getTxId() {
+        return "benchmark-tx";
+    }
+
+    @Override
+    public String getChannelId() {
+        return "benchmark";
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return TX_TIMESTAMP;
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return CREATOR;
+    }
+
+    @Override
+    public String getMspId() {
+        return MSP_ID;
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return transientMap;
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        return state.getOrDefault(key, new byte[0]);
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        state.put(key, value);
+        stateBytesWritten += utf8Length(key) + value.length;
+    }
+
+    @Override
+    public void delState(final String key) {
+        state.remove(key);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        return range(emptyToNull(startKey), emptyToNull(endKey), true);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        return getStateByPartialCompositeKey(CompositeKey.parseCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType,
+                                                                        final String... attributes) {
+        return getStateByPartialCompositeKey(new CompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        String prefix = compositeKey.toString();
+        return range(prefix, prefix + MAX_UNICODE_RUNE, false);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(final String objectType, final String... attributes) {
+        return new CompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(final String compositeKey) {
+        return CompositeKey.parseCompositeKey(compositeKey);
+    }
+
+    @Override
+    public byte[] getPrivateData(final String collection, final String key) {
+        return privateState.getOrDefault(collection + "\u0000" + key, new byte[0]);
+    }
+
+    @Override
+    public void putPrivateData(final String collection, final String key, final byte[] value) {
+        privateState.put(collection + "\u0000" + key, value);
+        privateBytesWritten += utf8Length(key) + value.length;
+        privateWrites++;
+    }
+
+    @Override
+    public void delPrivateData(final String collection, final String key) {
+        privateState.remove(collection + "\u0000" + key);
+    }
+
+    @Override
+    public void setEvent(final String name, final byte[] payload) {
+        // events are not delivered anywhere
+    }
+
+    @Override
+    public Chaincode.Response invokeChaincode(final String chaincodeName, final List<byte[]> args,
+                                              final String channel) {
+        throw new UnsupportedOperationException("invokeChaincode");
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(final String key) {
+        throw new UnsupportedOperationException("getStateValidationParameter");
+    }
+
+    @Override
+    public void setStateValidationParameter(final String key, final byte[] value) {
+        throw new UnsupportedOperationException("setStateValidationParameter");
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey,
+                                                                                    final String endKey,
+                                                                                    final int pageSize,
+                                                                                    final String bookmark) {
+        throw new UnsupportedOperationException("getStateByRangeWithPagination");
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(
+            final CompositeKey compositeKey, final int pageSize, final String bookmark) {
+        throw new UnsupportedOperationException("getStateByPartialCompositeKeyWithPagination");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        throw new UnsupportedOperationException("getQueryResult");
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query,
+                                                                                   final int pageSize,
+                                                                                   final String bookmark) {
+        throw new UnsupportedOperationException("getQueryResultWithPagination");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        throw new UnsupportedOperationException("getHistoryForKey");
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(final String collection, final String key) {
+        throw new UnsupportedOperationException("getPrivateDataHash");
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(final String collection, final String key) {
+        throw new UnsupportedOperationException("getPrivateDataValidationParameter");
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(final String collection, final String key, final byte[] value) {
+        throw new UnsupportedOperationException("setPrivateDataValidationParameter");
+    }
+
+    @Override
+    public void purgePrivateData(final String collection, final String key) {
+        throw new UnsupportedOperationException("purgePrivateData");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(final String collection, final String startKey,
+                                                                final String endKey) {
+        throw new UnsupportedOperationException("getPrivateDataByRange");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+                                                                              final String compositeKey) {
+        throw new UnsupportedOperationException("getPrivateDataByPartialCompositeKey");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+                                                                              final CompositeKey compositeKey) {
+        throw new UnsupportedOperationException("getPrivateDataByPartialCompositeKey");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection,
+                                                                              final String objectType,
+                                                                              final String... attributes) {
+        throw new UnsupportedOperationException("getPrivateDataByPartialCompositeKey");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(final String collection, final String query) {
+        throw new UnsupportedOperationException("getPrivateDataQueryResult");
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        throw new UnsupportedOperationException("getEvent");
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        throw new UnsupportedOperationException("getSignedProposal");
+    }
+
+    @Override
+    public byte[] getBinding() {
+        throw new UnsupportedOperationException("getBinding");
+    }
+
+    private static int utf8Length(final String key) {
+        return key.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static String emptyToNull(final String key) {
+        return key == null || key.isEmpty() ? null : key;
+    }
+
+    private QueryResultsIterator<KeyValue> range(final String startKey, final String endKey, final boolean simpleKeys) {
+        Map<String, byte[]> view = state;
+        if (startKey != null && endKey != null) {
+            view = state.subMap(startKey, endKey);
+        } else if (startKey != null) {
+            view = state.tailMap(startKey);
+        } else if (endKey != null) {
+            view = state.headMap(endKey);
+        }
+        List<KeyValue> results = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry : view.entrySet()) {
+            // simple-key range scans never return composite keys, as on a peer
+            if (simpleKeys && entry.getKey().startsWith(COMPOSITE_KEY_NAMESPACE)) {
+                continue;
+            }
+            results.add(new StoredKeyValue(entry.getKey(), entry.getValue()));
+        }
+        return new ListResultsIterator(results);
+    }
+
+    static final class StoredKeyValue implements KeyValue {
+
+        private final String key;
+        private final byte[] value;
+
+        StoredKeyValue(final String key, final byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    static final class ListResultsIterator implements QueryResultsIterator<KeyValue> {
+
+        private final List<KeyValue> values;
+
+        ListResultsIterator(final List<KeyValue> values) {
+            this.values = values;
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return values.iterator();
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+}
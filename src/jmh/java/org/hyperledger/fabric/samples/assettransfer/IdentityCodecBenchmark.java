@@ -0,0 +1,77 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.owlike.genson.Genson;
+
+/**
+ * Encode/decode cost of each state format, with the reflective Genson binding the
+ * contract used before as a baseline. The state size of the sample identity in
+ * each format is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IdentityCodecBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    private IdentityCodec.Format format;
+
+    private IdentityCodec codec;
+
+    private Identity identity;
+
+    private byte[] state;
+
+    private String json;
+
+    private final Genson genson = new Genson();
+
+    @Setup
+    public void setUp() {
+        codec = new IdentityCodec(format);
+        identity = BenchmarkFixtures.sampleIdentity("lsdi:ufma:br/device/42");
+        state = codec.encode(identity);
+        json = genson.serialize(identity);
+        System.out.println(String.format("%n%s state size: %d bytes", format, state.length));
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(identity);
+    }
+
+    @Benchmark
+    public Identity decode() {
+        return codec.decode(state);
+    }
+
+    @Benchmark
+    public byte[] toJson() {
+        return codec.toJson(state);
+    }
+
+    @Benchmark
+    public byte[] gensonSerialize() {
+        return genson.serialize(identity).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Identity gensonDeserialize() {
+        return genson.deserialize(json, Identity.class);
+    }
+}
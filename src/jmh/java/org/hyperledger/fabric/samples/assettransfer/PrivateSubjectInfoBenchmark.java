@@ -0,0 +1,122 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * CreateIdentityFromPayload with subjectInfo in the public payload, against the
+ * same identity with subjectInfo sent in the transient map and kept in the
+ * private data collection.
+ *
+ * Besides throughput, the {@link WriteSet} counters report what each create
+ * adds to a block. blockBytes is the public write set: world state keys and
+ * values, plus the key hash and value hash that a private write puts in the
+ * block. privateBytes is what only member peers store. Divide by creates to get
+ * bytes per identity. The proposal arguments are left out; in private mode the
+ * payload carries no subjectInfo either, so the real saving per block is larger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PrivateSubjectInfoBenchmark {
+
+    private static final String DEVICE = "lsdi:ufma:br/device/1";
+
+    /** SHA-256 of the key and SHA-256 of the value of one private write, as they appear in the block. */
+    private static final int PRIVATE_WRITE_HASH_BYTES = 64;
+
+    @Param({"public", "private"})
+    public String mode;
+
+    private final IdentityContract contract = new IdentityContract();
+
+    private final FakeStub ledger = new FakeStub();
+
+    private byte[] entityManagerState;
+
+    @Setup
+    public void setUp() {
+        entityManagerState = new IdentityCodec(IdentityCodec.Format.JSON).encode(BenchmarkFixtures.entityManager());
+        IdentityPayload payload = BenchmarkFixtures.createPayload(DEVICE, BenchmarkFixtures.ENTITY_MANAGER);
+        byte[] function = "CreateIdentityFromPayload".getBytes(StandardCharsets.UTF_8);
+
+        if ("private".equals(mode)) {
+            IdentityPayload withoutSubjectInfo = new IdentityPayload(payload.getVersion(), payload.getContext(),
+                    payload.getIdentifier(), payload.getControlledBy(), payload.getPublicKeyJwk(),
+                    payload.getSignature(), Collections.emptyMap());
+            ledger.setArgs(Arrays.asList(function, withoutSubjectInfo.encodeBinary()));
+
+            Map<String, byte[]> transientMap = new HashMap<>();
+            transientMap.put(PrivateSubjectInfo.TRANSIENT_SUBJECT_INFO, subjectInfoJson(payload.getSubjectInfo()));
+            transientMap.put(PrivateSubjectInfo.TRANSIENT_SALT, "0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+            ledger.setTransient(transientMap);
+        } else {
+            ledger.setArgs(Arrays.asList(function, payload.encodeBinary()));
+        }
+    }
+
+    private static byte[] subjectInfoJson(final Map<String, String> subjectInfo) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, String> attribute : subjectInfo.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            IdentityJsonCodec.appendQuoted(json, attribute.getKey());
+            json.append(':');
+            IdentityJsonCodec.appendQuoted(json, attribute.getValue());
+        }
+        return json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Bytes written per create, summed over the iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WriteSet {
+
+        public long creates;
+
+        public long blockBytes;
+
+        public long privateBytes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            creates = 0;
+            blockBytes = 0;
+            privateBytes = 0;
+        }
+    }
+
+    @Benchmark
+    public Identity create(final WriteSet writeSet) {
+        ledger.reset();
+        ledger.state.put(BenchmarkFixtures.ENTITY_MANAGER, entityManagerState);
+        Identity identity = contract.CreateIdentityFromPayload(ledger.ctx);
+
+        writeSet.creates++;
+        writeSet.blockBytes += ledger.stateBytesWritten + ledger.privateWrites * PRIVATE_WRITE_HASH_BYTES;
+        writeSet.privateBytes += ledger.privateBytesWritten;
+        return identity;
+    }
+}
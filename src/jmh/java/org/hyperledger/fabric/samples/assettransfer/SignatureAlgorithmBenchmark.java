@@ -0,0 +1,119 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.Ed25519Signer;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * validateSignature for each supported JWS algorithm, with a fresh key pair and
+ * a signature over a device id made at setup. {@code verify} is the steady state
+ * with a cached verifier; {@code newVerifier} is the one-off cost on a cache miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SignatureAlgorithmBenchmark {
+
+    @Param({"ES256", "ES384", "RS256", "PS256", "EdDSA"})
+    private String alg;
+
+    private final IdentityContract contract = new IdentityContract();
+
+    private Identity controller;
+
+    private String signature;
+
+    @Setup
+    public void setUp() throws Exception {
+        PublicKeyWrapper publicKey;
+        JWSSigner signer;
+        switch (alg) {
+            case "ES256":
+            case "ES384":
+                String crv = "ES256".equals(alg) ? "P-256" : "P-384";
+                KeyPairGenerator ecGenerator = KeyPairGenerator.getInstance("EC");
+                ecGenerator.initialize(new ECGenParameterSpec("ES256".equals(alg) ? "secp256r1" : "secp384r1"));
+                KeyPair ecKeyPair = ecGenerator.generateKeyPair();
+                ECPublicKey ecPublicKey = (ECPublicKey) ecKeyPair.getPublic();
+                int length = (ecPublicKey.getParams().getCurve().getField().getFieldSize() + 7) / 8;
+                publicKey = new ECWrapper(ECWrapper.KTY, PublicKeyWrapper.USE_SIGNATURE, crv, alg, alg,
+                        BenchmarkFixtures.unsigned(ecPublicKey.getW().getAffineX(), length),
+                        BenchmarkFixtures.unsigned(ecPublicKey.getW().getAffineY(), length));
+                signer = new ECDSASigner((ECPrivateKey) ecKeyPair.getPrivate());
+                break;
+            case "RS256":
+            case "PS256":
+                KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+                rsaGenerator.initialize(RSAWrapper.MIN_MODULUS_BITS);
+                KeyPair rsaKeyPair = rsaGenerator.generateKeyPair();
+                RSAPublicKey rsaPublicKey = (RSAPublicKey) rsaKeyPair.getPublic();
+                publicKey = new RSAWrapper(RSAWrapper.KTY, PublicKeyWrapper.USE_SIGNATURE, alg, alg,
+                        BenchmarkFixtures.unsigned(rsaPublicKey.getModulus(), 0),
+                        BenchmarkFixtures.unsigned(rsaPublicKey.getPublicExponent(), 0));
+                signer = new RSASSASigner(rsaKeyPair.getPrivate());
+                break;
+            case "EdDSA":
+                OctetKeyPair octetKeyPair = new OctetKeyPairGenerator(Curve.Ed25519).keyID(alg).generate();
+                publicKey = new OKPWrapper(OKPWrapper.KTY, PublicKeyWrapper.USE_SIGNATURE, OKPWrapper.CRV, alg, alg,
+                        octetKeyPair.getX().toString());
+                signer = new Ed25519Signer(octetKeyPair);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + alg);
+        }
+
+        controller = Identity.withPublicKey(BenchmarkFixtures.CONTEXT, "lsdi:ufma:br/device/" + alg,
+                BenchmarkFixtures.ENTITY_MANAGER, publicKey, new HashMap<>(), "active",
+                "2021-06-01T12:00:00.000Z", "2022-06-01T12:00:00.000Z");
+        JWSObject jwsObject = new JWSObject(new JWSHeader.Builder(JWSAlgorithm.parse(alg)).keyID(alg).build(),
+                new Payload(controller.getIdentifier()));
+        jwsObject.sign(signer);
+        signature = jwsObject.serialize();
+
+        if (!contract.validateSignature(controller, signature)) {
+            throw new IllegalStateException(alg + " signature made at setup does not verify");
+        }
+    }
+
+    @Benchmark
+    public boolean verify() throws ParseException, JOSEException {
+        return contract.validateSignature(controller, signature);
+    }
+
+    @Benchmark
+    public JWSVerifier newVerifier() throws JOSEException {
+        return controller.publicKey().newVerifier();
+    }
+}
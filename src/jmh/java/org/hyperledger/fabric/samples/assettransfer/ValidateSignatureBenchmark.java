@@ -0,0 +1,47 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import com.nimbusds.jose.JOSEException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * validateSignature in isolation with an ES256 signature, with a warm
+ * verifier cache and with the verifier rebuilt on every call, plus the
+ * one-off cost of decoding and validating the stored key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ValidateSignatureBenchmark {
+
+    private final IdentityContract contract = new IdentityContract();
+
+    private final Identity controller = BenchmarkFixtures.entityManager();
+
+    @Benchmark
+    public boolean cachedVerifier() throws ParseException, JOSEException {
+        return contract.validateSignature(controller, BenchmarkFixtures.SIGNATURE);
+    }
+
+    @Benchmark
+    public boolean rebuiltVerifier() throws ParseException, JOSEException {
+        contract.getVerifierCache().invalidate(controller.getIdentifier());
+        return contract.validateSignature(controller, BenchmarkFixtures.SIGNATURE);
+    }
+
+    @Benchmark
+    public PublicKeyWrapper decodeKey() {
+        return PublicKeyWrapper.fromJwk(controller.getPublicKeyJwk());
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.nimbusds.jose.JWSObject;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+import com.owlike.genson.Genson;
+
+/**
+ * What a controller signs to approve a change of an identity. The JWS payload
+ * must be exactly the canonical JSON of the approval, so a signature is only
+ * good for one operation, on one identity, with the arguments it was made for:
+ *
+ * <pre>
+ * {"controllers":["lsdi:org/a","lsdi:org/b"],"id":"lsdi:org/device/1","nonce":"7f3a","operation":"UpdateControllerSet","threshold":2}
+ * </pre>
+ *
+ * Members are operation, id, nonce and the members of the operation, sorted by
+ * name, without whitespace; strings are escaped as in the stored identity JSON,
+ * lists keep their order. An argument too large to repeat in the payload, such
+ * as a set of attribute changes, is bound by its {@link #hash}.
+ *
+ * The nonce is any non-empty string the signer picks. Once a change is approved,
+ * the hash of each accepted payload is recorded under {@value #USED}, and a
+ * payload found there is never accepted again, so a signature cannot be replayed.
+ * Each approval only reads and writes its own key, so approved changes of the
+ * same identity do not conflict with each other. The keys survive archiving,
+ * so used signatures made for an earlier identity with the same ID stay used.
+ */
+final class Approval {
+
+    /** Composite key object type of used approvals; the attribute is the {@link #hash} of the payload. */
+    static final String USED = "approval~used";
+
+    private static final Genson GENSON = new Genson();
+
+    private final ChaincodeStub stub;
+
+    private final Map<String, Object> members = new TreeMap<>();
+
+    private final Set<String> accepted = new LinkedHashSet<>();
+
+    private Approval(final ChaincodeStub stub, final String operation, final String id) {
+        this.stub = stub;
+        members.put("operation", operation);
+        members.put("id", id);
+    }
+
+    /**
+     * Starts the approval of an operation on an identity.
+     *
+     * @param operation the name of the transaction
+     */
+    static Approval of(final ChaincodeStub stub, final String operation, final String id) {
+        return new Approval(stub, operation, id);
+    }
+
+    /**
+     * Starts an approval to sign, as a client does. It builds the {@link #payload}
+     * but has no stub to check signatures against.
+     */
+    static Approval of(final String operation, final String id) {
+        return new Approval(null, operation, id);
+    }
+
+    /**
+     * Sets the nonce, as a signer does before taking the {@link #payload}. The
+     * contract leaves it unset and takes the nonce of each signature instead.
+     */
+    Approval nonce(final String nonce) {
+        members.put("nonce", nonce);
+        return this;
+    }
+
+    Approval with(final String name, final String value) {
+        members.put(name, value);
+        return this;
+    }
+
+    Approval with(final String name, final long value) {
+        members.put(name, value);
+        return this;
+    }
+
+    Approval with(final String name, final List<String> values) {
+        members.put(name, values);
+        return this;
+    }
+
+    /**
+     * Hashes a JSON object of strings the way approvals bind it: its canonical
+     * JSON, members sorted by name and written as in the payload, a null value
+     * as null, then SHA-256, base64url encoded.
+     */
+    static String hash(final Map<String, String> values) {
+        return sha256(canonical(new TreeMap<String, Object>(values)));
+    }
+
+    private static String sha256(final String json) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the canonical JSON that approving signatures must have as payload
+     */
+    String payload() {
+        return canonical(members);
+    }
+
+    private static String canonical(final Map<String, Object> members) {
+        StringBuilder json = new StringBuilder(256).append('{');
+        boolean first = true;
+        for (Map.Entry<String, Object> member : members.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            IdentityJsonCodec.appendQuoted(json, member.getKey());
+            json.append(':');
+            appendValue(json, member.getValue());
+        }
+        return json.append('}').toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void appendValue(final StringBuilder json, final Object value) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof Long) {
+            json.append(value);
+        } else if (value instanceof List) {
+            json.append('[');
+            boolean first = true;
+            for (String element : (List<String>) value) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendValue(json, element);
+            }
+            json.append(']');
+        } else {
+            IdentityJsonCodec.appendQuoted(json, (String) value);
+        }
+    }
+
+    /**
+     * Checks the payload only; the signature itself is checked with the key of its
+     * signer. A payload that matches is remembered, to be recorded by {@link #consume}.
+     *
+     * @return whether the compact JWS has this approval, with its own nonce, as
+     *         payload, and that payload was not used before
+     */
+    boolean isPayloadOf(final String serializedSignature) {
+        String signed;
+        Object nonce;
+        try {
+            signed = JWSObject.parse(serializedSignature).getPayload().toString();
+            nonce = GENSON.deserialize(signed, Map.class).get("nonce");
+        } catch (ParseException | RuntimeException e) {
+            return false;
+        }
+        if (!(nonce instanceof String) || ((String) nonce).isEmpty()) {
+            return false;
+        }
+        Map<String, Object> expected = new TreeMap<>(members);
+        expected.put("nonce", nonce);
+        if (!canonical(expected).equals(signed)) {
+            return false;
+        }
+        if (accepted.contains(signed)) {
+            return true;
+        }
+        if (isUsed(stub, signed)) {
+            return false;
+        }
+        accepted.add(signed);
+        return true;
+    }
+
+    /**
+     * @return whether a change was approved with this payload
+     */
+    static boolean isUsed(final ChaincodeStub stub, final String payload) {
+        byte[] used = stub.getState(usedKey(stub, payload));
+        return used != null && used.length > 0;
+    }
+
+    private static String usedKey(final ChaincodeStub stub, final String payload) {
+        return stub.createCompositeKey(USED, sha256(payload)).toString();
+    }
+
+    /**
+     * Records the accepted payloads as used. Called once the change is approved.
+     */
+    void consume() {
+        byte[] txId = stub.getTxId().getBytes(StandardCharsets.UTF_8);
+        for (String payload : accepted) {
+            stub.putState(usedKey(stub, payload), txId);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * Outcome of a single entry of a batch transaction.
+ */
+@DataType()
+public final class BatchEntryResult {
+
+    public static final String CREATED = "created";
+
+    public static final String REJECTED = "rejected";
+
+    @Property()
+    private final String identifier;
+
+    @Property()
+    private final String status;
+
+    @Property()
+    private final String error;
+
+    public BatchEntryResult(@JsonProperty("identifier") final String identifier,
+                            @JsonProperty("status") final String status,
+                            @JsonProperty("error") final String error) {
+        this.identifier = identifier;
+        this.status = status;
+        this.error = error;
+    }
+
+    public static BatchEntryResult created(final String identifier) {
+        return new BatchEntryResult(identifier, CREATED, null);
+    }
+
+    public static BatchEntryResult rejected(final String identifier, final String error) {
+        return new BatchEntryResult(identifier, REJECTED, error);
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
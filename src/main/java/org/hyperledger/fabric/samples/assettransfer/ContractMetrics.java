@@ -0,0 +1,239 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lightweight per-transaction metrics registry of the contract: counters and a
+ * latency histogram per transaction name, plus values read from other
+ * components such as {@link VerifierCache}. Recording is a handful of
+ * {@link LongAdder} increments and allocates nothing once a transaction name
+ * has been seen.
+ *
+ * Fabric skips afterTransaction when a transaction throws, so only completed
+ * transactions are timed; started minus completed gives the failed ones.
+ * Everything is published in the Prometheus text format by {@link #toPrometheus()}
+ * and as a map by {@link #snapshot()}.
+ */
+public final class ContractMetrics {
+
+    private static final String PREFIX = "identity_";
+
+    /** Upper bounds of the latency histogram buckets, in seconds; the last bucket is unbounded. */
+    private static final double[] LATENCY_BUCKETS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5};
+
+    private static final long[] LATENCY_BUCKET_NANOS = new long[LATENCY_BUCKETS.length];
+
+    static {
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            LATENCY_BUCKET_NANOS[i] = (long) (LATENCY_BUCKETS[i] * 1e9);
+        }
+    }
+
+    private static final class TransactionMetrics {
+        private final LongAdder started = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder queries = new LongAdder();
+        private final LongAdder writes = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder verifyNanos = new LongAdder();
+        private final LongAdder codecNanos = new LongAdder();
+        private final LongAdder latencyNanos = new LongAdder();
+        private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS.length + 1];
+
+        TransactionMetrics() {
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                latencyBuckets[i] = new LongAdder();
+            }
+        }
+
+        void record(final TransactionStats stats, final long nanos) {
+            completed.increment();
+            reads.add(stats.getReads());
+            queries.add(stats.getQueries());
+            writes.add(stats.getWrites());
+            bytesRead.add(stats.getBytesRead());
+            bytesWritten.add(stats.getBytesWritten());
+            verifyNanos.add(stats.getVerifyNanos());
+            codecNanos.add(stats.getCodecNanos());
+            latencyNanos.add(nanos);
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKET_NANOS.length && nanos > LATENCY_BUCKET_NANOS[bucket]) {
+                bucket++;
+            }
+            latencyBuckets[bucket].increment();
+        }
+    }
+
+    private static final class Gauge {
+        private final String help;
+        private final String type;
+        private final LongSupplier value;
+
+        Gauge(final String help, final String type, final LongSupplier value) {
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private final ConcurrentMap<String, TransactionMetrics> transactions = new ConcurrentHashMap<>();
+
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private final LongAdder unknownTransactions = new LongAdder();
+
+    /**
+     * Publishes a value owned by another component, read when the metrics are scraped.
+     *
+     * @param name metric name without the identity_ prefix
+     * @param help one-line description
+     * @param counter whether the value only ever grows
+     * @param value reads the current value
+     */
+    public void register(final String name, final String help, final boolean counter, final LongSupplier value) {
+        gauges.put(name, new Gauge(help, counter ? "counter" : "gauge", value));
+    }
+
+    void started(final String transaction) {
+        metrics(transaction).started.increment();
+    }
+
+    void completed(final TransactionStats stats) {
+        metrics(stats.getTransaction()).record(stats, stats.elapsedNanos());
+    }
+
+    void unknownTransaction() {
+        unknownTransactions.increment();
+    }
+
+    private TransactionMetrics metrics(final String transaction) {
+        TransactionMetrics metrics = transactions.get(transaction);
+        if (metrics == null) {
+            metrics = transactions.computeIfAbsent(transaction, name -> new TransactionMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * @return all metrics, per transaction name and then per component value
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> perTransaction = new TreeMap<>();
+        for (Map.Entry<String, TransactionMetrics> entry : new TreeMap<>(transactions).entrySet()) {
+            TransactionMetrics metrics = entry.getValue();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("started", metrics.started.sum());
+            values.put("completed", metrics.completed.sum());
+            values.put("ledgerReads", metrics.reads.sum());
+            values.put("ledgerQueries", metrics.queries.sum());
+            values.put("ledgerWrites", metrics.writes.sum());
+            values.put("bytesRead", metrics.bytesRead.sum());
+            values.put("bytesWritten", metrics.bytesWritten.sum());
+            values.put("latencyNanos", metrics.latencyNanos.sum());
+            values.put("signatureVerifyNanos", metrics.verifyNanos.sum());
+            values.put("codecNanos", metrics.codecNanos.sum());
+            Map<String, Long> buckets = new LinkedHashMap<>();
+            long cumulative = 0;
+            for (int i = 0; i < metrics.latencyBuckets.length; i++) {
+                cumulative += metrics.latencyBuckets[i].sum();
+                buckets.put(bucketLabel(i), cumulative);
+            }
+            values.put("latencyBuckets", buckets);
+            perTransaction.put(entry.getKey(), values);
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("transactions", perTransaction);
+        snapshot.put("unknownTransactions", unknownTransactions.sum());
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().value.getAsLong());
+        }
+        snapshot.put("components", values);
+        return snapshot;
+    }
+
+    /**
+     * @return the metrics in the Prometheus text exposition format
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        Map<String, TransactionMetrics> sorted = new TreeMap<>(transactions);
+
+        header(out, "transactions_started_total", "Transactions started, per transaction name", "counter");
+        sorted.forEach((name, metrics) -> sample(out, "transactions_started_total", name, metrics.started.sum()));
+        header(out, "transactions_completed_total", "Transactions completed without error", "counter");
+        sorted.forEach((name, metrics) -> sample(out, "transactions_completed_total", name, metrics.completed.sum()));
+        header(out, "ledger_reads_total", "getState calls answered by the peer", "counter");
+        sorted.forEach((name, metrics) -> sample(out, "ledger_reads_total", name, metrics.reads.sum()));
+        header(out, "ledger_queries_total", "Range, composite key and rich queries", "counter");
+        sorted.forEach((name, metrics) -> sample(out, "ledger_queries_total", name, metrics.queries.sum()));
+        header(out, "ledger_writes_total", "putState and delState calls", "counter");
+        sorted.forEach((name, metrics) -> sample(out, "ledger_writes_total", name, metrics.writes.sum()));
+        header(out, "ledger_read_bytes_total", "Bytes returned by getState", "counter");
+        sorted.forEach((name, metrics) -> sample(out, "ledger_read_bytes_total", name, metrics.bytesRead.sum()));
+        header(out, "ledger_written_bytes_total", "Bytes passed to putState", "counter");
+        sorted.forEach((name, metrics) -> sample(out, "ledger_written_bytes_total", name, metrics.bytesWritten.sum()));
+        header(out, "signature_verify_seconds_total", "Time spent verifying signatures", "counter");
+        sorted.forEach((name, metrics) -> sample(out, "signature_verify_seconds_total", name,
+                seconds(metrics.verifyNanos.sum())));
+        header(out, "codec_seconds_total", "Time spent encoding and decoding identities", "counter");
+        sorted.forEach((name, metrics) -> sample(out, "codec_seconds_total", name, seconds(metrics.codecNanos.sum())));
+
+        header(out, "transaction_duration_seconds", "Latency of completed transactions", "histogram");
+        sorted.forEach((name, metrics) -> {
+            long cumulative = 0;
+            for (int i = 0; i < metrics.latencyBuckets.length; i++) {
+                cumulative += metrics.latencyBuckets[i].sum();
+                out.append(PREFIX).append("transaction_duration_seconds_bucket{transaction=\"").append(name)
+                        .append("\",le=\"").append(bucketLabel(i)).append("\"} ").append(cumulative).append('\n');
+            }
+            sample(out, "transaction_duration_seconds_sum", name, seconds(metrics.latencyNanos.sum()));
+            sample(out, "transaction_duration_seconds_count", name, metrics.completed.sum());
+        });
+
+        header(out, "unknown_transactions_total", "Calls to transactions this contract does not have", "counter");
+        out.append(PREFIX).append("unknown_transactions_total ").append(unknownTransactions.sum()).append('\n');
+
+        for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+            Gauge gauge = entry.getValue();
+            header(out, entry.getKey(), gauge.help, gauge.type);
+            out.append(PREFIX).append(entry.getKey()).append(' ').append(gauge.value.getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String bucketLabel(final int bucket) {
+        return bucket < LATENCY_BUCKETS.length ? BigDecimal.valueOf(LATENCY_BUCKETS[bucket]).toPlainString() : "+Inf";
+    }
+
+    private static String seconds(final long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static void header(final StringBuilder out, final String name, final String help, final String type) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(final StringBuilder out, final String name, final String transaction,
+                               final Object value) {
+        out.append(PREFIX).append(name).append("{transaction=\"").append(transaction).append("\"} ")
+                .append(value).append('\n');
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * k-of-n controllers of an identity: changes to the identity need valid
+ * signatures from at least {@code threshold} distinct identities of
+ * {@code controllers}.
+ */
+@DataType()
+public final class ControllerSet {
+
+    /** Upper bound on n, which bounds the reads and signature checks of one approval. */
+    public static final int MAX_CONTROLLERS = 16;
+
+    @Property()
+    private final List<String> controllers;
+
+    @Property()
+    private final int threshold;
+
+    public ControllerSet(@JsonProperty("controllers") final List<String> controllers,
+                         @JsonProperty("threshold") final int threshold) {
+        this.controllers = controllers;
+        this.threshold = threshold;
+    }
+
+    /**
+     * The controller of a single-controller identity, as a 1-of-1 set.
+     */
+    static ControllerSet single(final String controller) {
+        List<String> controllers = new ArrayList<>(1);
+        controllers.add(controller);
+        return new ControllerSet(controllers, 1);
+    }
+
+    public List<String> getControllers() {
+        return controllers;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns the set with its controllers sorted, so that every peer stores,
+     * reads and indexes them in the same order.
+     *
+     * @return the canonical form of this set
+     * @throws IllegalArgumentException if the set is empty, too large, has duplicate
+     *         or empty controllers, or a threshold outside 1..n
+     */
+    public ControllerSet canonical() {
+        if (controllers == null || controllers.isEmpty()) {
+            throw new IllegalArgumentException("A controller set needs at least one controller");
+        }
+        if (controllers.size() > MAX_CONTROLLERS) {
+            throw new IllegalArgumentException(String.format("At most %d controllers are allowed, got %d",
+                    MAX_CONTROLLERS, controllers.size()));
+        }
+        TreeSet<String> sorted = new TreeSet<>();
+        for (String controller : controllers) {
+            if (controller == null || controller.isEmpty()) {
+                throw new IllegalArgumentException("Controller IDs must not be empty");
+            }
+            if (!sorted.add(controller)) {
+                throw new IllegalArgumentException("Duplicate controller " + controller);
+            }
+        }
+        if (threshold < 1 || threshold > sorted.size()) {
+            throw new IllegalArgumentException(String.format("Threshold must be between 1 and %d, got %d",
+                    sorted.size(), threshold));
+        }
+        return new ControllerSet(new ArrayList<>(sorted), threshold);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ControllerSet other = (ControllerSet) o;
+        return threshold == other.threshold && Objects.equals(controllers, other.controllers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(controllers, threshold);
+    }
+
+    @Override
+    public String toString() {
+        return "ControllerSet{" +
+                "controllers=" + controllers +
+                ", threshold=" + threshold +
+                '}';
+    }
+}
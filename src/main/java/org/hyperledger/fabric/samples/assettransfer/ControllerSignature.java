@@ -0,0 +1,44 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * A compact JWS made with the key of one controller.
+ */
+@DataType()
+public final class ControllerSignature {
+
+    @Property()
+    private final String controller;
+
+    @Property()
+    private final String signature;
+
+    public ControllerSignature(@JsonProperty("controller") final String controller,
+                               @JsonProperty("signature") final String signature) {
+        this.controller = controller;
+        this.signature = signature;
+    }
+
+    public String getController() {
+        return controller;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    @Override
+    public String toString() {
+        return "ControllerSignature{" +
+                "controller='" + controller + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Map;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * One entry of a {@code CreateECIdentitiesBatch} payload. Carries the same
+ * values as the positional arguments of {@code CreateECIdentity}.
+ */
+@DataType()
+public final class ECIdentityRequest {
+
+    @Property()
+    private final String context;
+
+    @Property()
+    private final String identifier;
+
+    @Property()
+    private final String controlledBy;
+
+    @Property()
+    private final String kty;
+
+    @Property()
+    private final String kid;
+
+    @Property()
+    private final String alg;
+
+    @Property()
+    private final String crv;
+
+    @Property()
+    private final String x;
+
+    @Property()
+    private final String y;
+
+    @Property()
+    private final String signature;
+
+    @Property()
+    private final Map<String, String> subjectInfo;
+
+    public ECIdentityRequest(@JsonProperty("context") final String context,
+                             @JsonProperty("identifier") final String identifier,
+                             @JsonProperty("controlledBy") final String controlledBy,
+                             @JsonProperty("kty") final String kty,
+                             @JsonProperty("kid") final String kid,
+                             @JsonProperty("alg") final String alg,
+                             @JsonProperty("crv") final String crv,
+                             @JsonProperty("x") final String x,
+                             @JsonProperty("y") final String y,
+                             @JsonProperty("signature") final String signature,
+                             @JsonProperty("subjectInfo") final Map<String, String> subjectInfo) {
+        this.context = context;
+        this.identifier = identifier;
+        this.controlledBy = controlledBy;
+        this.kty = kty;
+        this.kid = kid;
+        this.alg = alg;
+        this.crv = crv;
+        this.x = x;
+        this.y = y;
+        this.signature = signature;
+        this.subjectInfo = subjectInfo;
+    }
+
+    public String getContext() {
+        return context;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public String getControlledBy() {
+        return controlledBy;
+    }
+
+    public String getKty() {
+        return kty;
+    }
+
+    public String getKid() {
+        return kid;
+    }
+
+    public String getAlg() {
+        return alg;
+    }
+
+    public String getCrv() {
+        return crv;
+    }
+
+    public String getX() {
+        return x;
+    }
+
+    public String getY() {
+        return y;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public Map<String, String> getSubjectInfo() {
+        return subjectInfo;
+    }
+}
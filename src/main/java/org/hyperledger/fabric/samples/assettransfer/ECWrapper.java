@@ -1,95 +1,170 @@
-package org.hyperledger.fabric.samples.assettransfer;
-
-import java.util.Objects;
-
-public class ECWrapper {
-
-    private String kty;
-    private String use;
-    private String crv;
-    private String kid;
-    private String x;
-    private String y;
-
-    public ECWrapper(String kty, String use, String crv, String kid, String x, String y) {
-        this.kty = kty;
-        this.use = use;
-        this.crv = crv;
-        this.kid = kid;
-        this.x = x;
-        this.y = y;
-    }
-
-    public String getKty() {
-        return kty;
-    }
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
 
-    public void setKty(String kty) {
-        this.kty = kty;
-    }
-
-    public String getUse() {
-        return use;
-    }
+package org.hyperledger.fabric.samples.assettransfer;
 
-    public void setUse(String use) {
-        this.use = use;
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.EllipticCurve;
+import java.util.Map;
+
+/**
+ * Elliptic curve public key (JWK "kty" EC) of an identity.
+ *
+ * Building one checks that the curve is supported and matches "alg", that x and
+ * y are exactly as long as the curve's field elements, and that the point lies
+ * on the curve, so an invalid key is refused when the identity is created
+ * rather than when someone first signs against it.
+ */
+public final class ECWrapper extends PublicKeyWrapper {
+
+    public static final String KTY = "EC";
+
+    /** Supported curves by JWK "crv", with their JWS algorithm. */
+    private enum NamedCurve {
+        P_256("P-256", "secp256r1", "ES256"),
+        P_384("P-384", "secp384r1", "ES384"),
+        P_521("P-521", "secp521r1", "ES512");
+
+        private final String crv;
+        private final String alg;
+        private final ECParameterSpec parameters;
+        private final int coordinateLength;
+
+        NamedCurve(final String crv, final String stdName, final String alg) {
+            this.crv = crv;
+            this.alg = alg;
+            try {
+                AlgorithmParameters algorithmParameters = AlgorithmParameters.getInstance("EC");
+                algorithmParameters.init(new ECGenParameterSpec(stdName));
+                this.parameters = algorithmParameters.getParameterSpec(ECParameterSpec.class);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Curve " + stdName + " not available", e);
+            }
+            this.coordinateLength = (parameters.getCurve().getField().getFieldSize() + 7) / 8;
+        }
+
+        static NamedCurve of(final String crv) {
+            for (NamedCurve curve : values()) {
+                if (curve.crv.equals(crv)) {
+                    return curve;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported curve " + crv);
+        }
+    }
+
+    private final NamedCurve curve;
+    private final String x;
+    private final String y;
+    private final ECPublicKey publicKey;
+
+    public ECWrapper(final String kty, final String use, final String crv, final String kid,
+                     final String x, final String y) {
+        this(kty, use, crv, kid, null, x, y);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key is not a valid public key on a supported curve
+     */
+    public ECWrapper(final String kty, final String use, final String crv, final String kid, final String alg,
+                     final String x, final String y) {
+        super(kty, use, kid, alg);
+        checkKty(KTY, kty);
+        this.curve = NamedCurve.of(crv);
+        if (alg != null && !curve.alg.equals(alg)) {
+            throw new IllegalArgumentException("Algorithm " + alg + " does not match curve " + crv);
+        }
+
+        byte[] rawX = coordinate("x", x);
+        byte[] rawY = coordinate("y", y);
+        ECPoint point = new ECPoint(new BigInteger(1, rawX), new BigInteger(1, rawY));
+        checkOnCurve(point, curve.parameters.getCurve());
+
+        this.x = encodeBase64Url(rawX);
+        this.y = encodeBase64Url(rawY);
+        try {
+            this.publicKey = (ECPublicKey) KeyFactory.getInstance("EC")
+                    .generatePublic(new ECPublicKeySpec(point, curve.parameters));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid EC public key", e);
+        }
+    }
+
+    static ECWrapper parse(final Map<String, String> publicKeyJwk) {
+        return new ECWrapper(publicKeyJwk.get("kty"), publicKeyJwk.get("use"), publicKeyJwk.get("crv"),
+                publicKeyJwk.get("kid"), publicKeyJwk.get("alg"), publicKeyJwk.get("x"), publicKeyJwk.get("y"));
+    }
+
+    private byte[] coordinate(final String member, final String value) {
+        byte[] raw = decodeBase64Url(member, value);
+        if (raw.length != curve.coordinateLength) {
+            throw new IllegalArgumentException(String.format("Coordinate %s must be %d bytes on %s, got %d",
+                    member, curve.coordinateLength, curve.crv, raw.length));
+        }
+        return raw;
+    }
+
+    /**
+     * Checks 0 <= x, y < p and y^2 = x^3 + ax + b (mod p).
+     */
+    private static void checkOnCurve(final ECPoint point, final EllipticCurve ellipticCurve) {
+        BigInteger p = ((ECFieldFp) ellipticCurve.getField()).getP();
+        BigInteger px = point.getAffineX();
+        BigInteger py = point.getAffineY();
+        if (px.compareTo(p) >= 0 || py.compareTo(p) >= 0) {
+            throw new IllegalArgumentException("EC point coordinates out of range");
+        }
+        BigInteger left = py.multiply(py).mod(p);
+        BigInteger right = px.pow(3).add(ellipticCurve.getA().multiply(px)).add(ellipticCurve.getB()).mod(p);
+        if (!left.equals(right)) {
+            throw new IllegalArgumentException("EC point is not on the curve");
+        }
     }
 
     public String getCrv() {
-        return crv;
-    }
-
-    public void setCrv(String crv) {
-        this.crv = crv;
-    }
-
-    public String getKid() {
-        return kid;
-    }
-
-    public void setKid(String kid) {
-        this.kid = kid;
+        return curve.crv;
     }
 
     public String getX() {
         return x;
     }
 
-    public void setX(String x) {
-        this.x = x;
-    }
-
     public String getY() {
         return y;
     }
 
-    public void setY(String y) {
-        this.y = y;
+    @Override
+    public ECPublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    @Override
+    protected void putKeyMembers(final Map<String, String> publicKeyJwk) {
+        publicKeyJwk.put("crv", curve.crv);
+        publicKeyJwk.put("x", x);
+        publicKeyJwk.put("y", y);
     }
 
     @Override
     public String toString() {
         return "ECWrapper{" +
-                "kty='" + kty + '\'' +
-                ", use='" + use + '\'' +
-                ", crv='" + crv + '\'' +
-                ", kid='" + kid + '\'' +
+                "kty='" + getKty() + '\'' +
+                ", use='" + getUse() + '\'' +
+                ", crv='" + curve.crv + '\'' +
+                ", kid='" + getKid() + '\'' +
+                ", alg='" + getAlg() + '\'' +
                 ", x='" + x + '\'' +
                 ", y='" + y + '\'' +
                 '}';
     }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        ECWrapper ecWrapper = (ECWrapper) o;
-        return Objects.equals(kty, ecWrapper.kty) && Objects.equals(use, ecWrapper.use) && Objects.equals(crv, ecWrapper.crv) && Objects.equals(kid, ecWrapper.kid) && Objects.equals(x, ecWrapper.x) && Objects.equals(y, ecWrapper.y);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(kty, use, crv, kid, x, y);
-    }
 }
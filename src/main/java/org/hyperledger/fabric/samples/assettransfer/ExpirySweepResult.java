@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.List;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * Outcome of one {@code ExpireIdentities} call. A non-empty {@code cursor} is the
+ * yyyyMMdd expiry day where the sweep stopped; pass it to the next call to continue
+ * from there. An empty cursor means no due identity is left.
+ */
+@DataType()
+public final class ExpirySweepResult {
+
+    @Property()
+    private final List<String> expired;
+
+    @Property()
+    private final String cursor;
+
+    public ExpirySweepResult(@JsonProperty("expired") final List<String> expired,
+                             @JsonProperty("cursor") final String cursor) {
+        this.expired = expired;
+        this.cursor = cursor;
+    }
+
+    public List<String> getExpired() {
+        return expired;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+}
@@ -40,6 +40,28 @@ public final class Identity {
     @Property()
     private final String status;
 
+    /** k-of-n controllers, or null when controlledBy alone controls this identity. */
+    @Property()
+    private final ControllerSet controllerSet;
+
+    /**
+     * Base64url SHA-256 of the subjectInfo kept in a private data collection, or
+     * null when all of subjectInfo is public. See {@link PrivateSubjectInfo}.
+     */
+    @Property()
+    private final String subjectInfoHash;
+
+    /**
+     * Whether subjectInfo attributes may be stored under their own keys: false when
+     * none are, so readers can skip looking for them, and null for records written
+     * before this was tracked, which may have some.
+     */
+    @Property()
+    private final Boolean attributeKeys;
+
+    /** Typed form of publicKeyJwk, decoded on first use; not part of the stored or returned JSON. */
+    private transient volatile PublicKeyWrapper publicKey;
+
     public String getIdentifier() {
         return identifier;
     }
@@ -74,6 +96,70 @@ public final class Identity {
         return subjectInfo;
     }
 
+    public ControllerSet getControllerSet() {
+        return controllerSet;
+    }
+
+    public String getSubjectInfoHash() {
+        return subjectInfoHash;
+    }
+
+    public Boolean getAttributeKeys() {
+        return attributeKeys;
+    }
+
+    /**
+     * @return whether readers have to look for subjectInfo attributes under their own keys
+     */
+    boolean mayHaveAttributeKeys() {
+        return !Boolean.FALSE.equals(attributeKeys);
+    }
+
+    /**
+     * @return who must approve changes to this identity: its controller set, or controlledBy as a 1-of-1 set
+     */
+    ControllerSet approvers() {
+        return controllerSet != null ? controllerSet : ControllerSet.single(controlledBy);
+    }
+
+    public Identity(final String context,
+                    final String identifier,
+                    final String controlledBy,
+                    final Map<String, String> publicKeyJwk,
+                    final Map<String, String> subjectInfo,
+                    final String status,
+                    final String issuedAt,
+                    final String validTo) {
+        this(context, identifier, controlledBy, publicKeyJwk, subjectInfo, status, issuedAt, validTo, null);
+    }
+
+    public Identity(final String context,
+                    final String identifier,
+                    final String controlledBy,
+                    final Map<String, String> publicKeyJwk,
+                    final Map<String, String> subjectInfo,
+                    final String status,
+                    final String issuedAt,
+                    final String validTo,
+                    final ControllerSet controllerSet) {
+        this(context, identifier, controlledBy, publicKeyJwk, subjectInfo, status, issuedAt, validTo, controllerSet,
+                null);
+    }
+
+    public Identity(final String context,
+                    final String identifier,
+                    final String controlledBy,
+                    final Map<String, String> publicKeyJwk,
+                    final Map<String, String> subjectInfo,
+                    final String status,
+                    final String issuedAt,
+                    final String validTo,
+                    final ControllerSet controllerSet,
+                    final String subjectInfoHash) {
+        this(context, identifier, controlledBy, publicKeyJwk, subjectInfo, status, issuedAt, validTo, controllerSet,
+                subjectInfoHash, null);
+    }
+
     public Identity(@JsonProperty("context") final String context,
                     @JsonProperty("identifier") final String identifier,
                     @JsonProperty("controlledBy") final String controlledBy,
@@ -81,7 +167,10 @@ public final class Identity {
                     @JsonProperty("subjectInfo") final Map<String, String> subjectInfo,
                     @JsonProperty("status") final String status,
                     @JsonProperty("issuedAt") final String issuedAt,
-                    @JsonProperty("validTo") final String validTo) {
+                    @JsonProperty("validTo") final String validTo,
+                    @JsonProperty("controllerSet") final ControllerSet controllerSet,
+                    @JsonProperty("subjectInfoHash") final String subjectInfoHash,
+                    @JsonProperty("attributeKeys") final Boolean attributeKeys) {
         this.context = context;
         this.identifier = identifier;
         this.controlledBy = controlledBy;
@@ -90,6 +179,104 @@ public final class Identity {
         this.status = status;
         this.issuedAt = issuedAt;
         this.validTo = validTo;
+        this.controllerSet = controllerSet;
+        this.subjectInfoHash = subjectInfoHash;
+        this.attributeKeys = attributeKeys;
+    }
+
+    /**
+     * Creates an identity from an already validated key, which is kept so it
+     * does not have to be decoded again from the JWK map.
+     */
+    static Identity withPublicKey(final String context, final String identifier, final String controlledBy,
+                                  final PublicKeyWrapper publicKey, final Map<String, String> subjectInfo,
+                                  final String status, final String issuedAt, final String validTo) {
+        return withPublicKey(context, identifier, controlledBy, publicKey, subjectInfo, status, issuedAt, validTo, null);
+    }
+
+    static Identity withPublicKey(final String context, final String identifier, final String controlledBy,
+                                  final PublicKeyWrapper publicKey, final Map<String, String> subjectInfo,
+                                  final String status, final String issuedAt, final String validTo,
+                                  final ControllerSet controllerSet) {
+        Identity identity = new Identity(context, identifier, controlledBy, publicKey.toJwk(), subjectInfo,
+                status, issuedAt, validTo, controllerSet);
+        identity.publicKey = publicKey;
+        return identity;
+    }
+
+    /**
+     * Returns the typed public key, decoding and validating publicKeyJwk on first call.
+     *
+     * @return the public key
+     * @throws IllegalArgumentException if the stored JWK is not a valid key
+     */
+    public PublicKeyWrapper publicKey() {
+        PublicKeyWrapper key = publicKey;
+        if (key == null) {
+            key = PublicKeyWrapper.fromJwk(publicKeyJwk);
+            publicKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * @return a copy of this identity with another status
+     */
+    public Identity withStatus(final String newStatus) {
+        Identity copy = new Identity(context, identifier, controlledBy, publicKeyJwk, subjectInfo, newStatus, issuedAt, validTo,
+                controllerSet, subjectInfoHash, attributeKeys);
+        copy.publicKey = publicKey;
+        return copy;
+    }
+
+    /**
+     * @return a copy of this identity with other subject attributes
+     */
+    public Identity withSubjectInfo(final Map<String, String> newSubjectInfo) {
+        Identity copy = new Identity(context, identifier, controlledBy, publicKeyJwk, newSubjectInfo, status,
+                issuedAt, validTo, controllerSet, subjectInfoHash, attributeKeys);
+        copy.publicKey = publicKey;
+        return copy;
+    }
+
+    /**
+     * @return a copy of this identity with another hash of its private subjectInfo
+     */
+    public Identity withSubjectInfoHash(final String newSubjectInfoHash) {
+        Identity copy = new Identity(context, identifier, controlledBy, publicKeyJwk, subjectInfo, status,
+                issuedAt, validTo, controllerSet, newSubjectInfoHash, attributeKeys);
+        copy.publicKey = publicKey;
+        return copy;
+    }
+
+    /**
+     * @return a copy of this identity telling whether it may have subjectInfo attributes under their own keys
+     */
+    public Identity withAttributeKeys(final Boolean newAttributeKeys) {
+        Identity copy = new Identity(context, identifier, controlledBy, publicKeyJwk, subjectInfo, status,
+                issuedAt, validTo, controllerSet, subjectInfoHash, newAttributeKeys);
+        copy.publicKey = publicKey;
+        return copy;
+    }
+
+    /**
+     * @return a copy of this identity with another, already validated public key
+     */
+    public Identity withKey(final PublicKeyWrapper newPublicKey) {
+        Identity copy = new Identity(context, identifier, controlledBy, newPublicKey.toJwk(), subjectInfo, status,
+                issuedAt, validTo, controllerSet, subjectInfoHash, attributeKeys);
+        copy.publicKey = newPublicKey;
+        return copy;
+    }
+
+    /**
+     * @return a copy of this identity with other controllers; controlledBy becomes the first of them
+     */
+    public Identity withControllerSet(final ControllerSet newControllerSet) {
+        Identity copy = new Identity(context, identifier, newControllerSet.getControllers().get(0), publicKeyJwk,
+                subjectInfo, status, issuedAt, validTo, newControllerSet, subjectInfoHash, attributeKeys);
+        copy.publicKey = publicKey;
+        return copy;
     }
 
 
@@ -112,7 +299,7 @@ public final class Identity {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Identity identity = (Identity) o;
-        return context.equals(identity.context) && identifier.equals(identity.identifier) && controlledBy.equals(identity.controlledBy) && publicKeyJwk.equals(identity.publicKeyJwk) && subjectInfo.equals(identity.subjectInfo) && issuedAt.equals(identity.issuedAt) && validTo.equals(identity.validTo) && status.equals(identity.status);
+        return context.equals(identity.context) && identifier.equals(identity.identifier) && controlledBy.equals(identity.controlledBy) && publicKeyJwk.equals(identity.publicKeyJwk) && subjectInfo.equals(identity.subjectInfo) && issuedAt.equals(identity.issuedAt) && validTo.equals(identity.validTo) && status.equals(identity.status) && Objects.equals(controllerSet, identity.controllerSet) && Objects.equals(subjectInfoHash, identity.subjectInfoHash) && Objects.equals(attributeKeys, identity.attributeKeys);
     }
 
     @Override
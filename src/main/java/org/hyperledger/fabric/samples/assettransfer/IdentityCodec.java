@@ -0,0 +1,378 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Encodes {@link Identity} records for world state.
+ *
+ * Two formats are understood on read, told apart by the first byte:
+ * <ul>
+ *     <li>JSON, as written by Genson since the first version of the contract ('{'),
+ *     handled by {@link IdentityJsonCodec} with identical output;</li>
+ *     <li>compact binary, {@link #FORMAT_BINARY_V1} followed by length-prefixed fields.</li>
+ * </ul>
+ * Which one is written is chosen by {@link #FORMAT_PROPERTY}. It must be set to the
+ * same value on every endorsing peer, otherwise their write sets differ. JSON stays
+ * the default because CouchDB can only index and query JSON values.
+ *
+ * Binary layout (v1): header byte, then context, identifier, controlledBy,
+ * publicKeyJwk, subjectInfo, status, issuedAt, validTo and, when present, the
+ * controller set as a varint of (threshold + 1) followed by the list of
+ * controllers, then the subjectInfo hash when there is one, then the attributeKeys
+ * flag as one byte, 0 or 1, when it is set. Records ending after validTo have no
+ * controller set; a controller set of a single 0 byte is absent too, written when
+ * more fields follow, and so is a null subjectInfo hash before the flag. Strings are a varint of
+ * (UTF-8 length + 1) followed by the bytes, 0 meaning null. Maps are a varint of
+ * (entry count + 1), 0 meaning null, followed by the entries; lists likewise. Well-known JWK members
+ * are written as a one-byte tag instead of their name, and base64url members
+ * (x, y, n, e) are stored as their raw bytes, e.g. 32 bytes per P-256 coordinate.
+ */
+public final class IdentityCodec {
+
+    /** Environment variable (or system property) selecting the written format: {@code json} or {@code binary}. */
+    public static final String FORMAT_PROPERTY = "IDENTITY_STATE_FORMAT";
+
+    public static final byte FORMAT_BINARY_V1 = 0x01;
+
+    private static final byte JSON_OBJECT_START = '{';
+
+    public enum Format {
+        JSON,
+        BINARY
+    }
+
+    private static final int TAG_GENERIC = 0x00;
+
+    private static final int TAG_BINARY = 0x80;
+
+    /** Well-known JWK members, indexed by tag. Tags with {@link #TAG_BINARY} set hold base64url values. */
+    private static final String[] JWK_MEMBERS = {null, "kty", "kid", "alg", "crv", "use"};
+
+    private static final String[] JWK_BINARY_MEMBERS = {null, "x", "y", "n", "e"};
+
+    private static final Base64.Encoder BASE64URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder BASE64URL_DECODER = Base64.getUrlDecoder();
+
+    private final Format format;
+
+    public IdentityCodec(final Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Reads the written format from the environment or system properties; JSON when unset.
+     *
+     * @return the configured format
+     */
+    public static Format configuredFormat() {
+        String value = System.getProperty(FORMAT_PROPERTY, System.getenv(FORMAT_PROPERTY));
+        if (value == null || value.isEmpty()) {
+            return Format.JSON;
+        }
+        return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the identity in the configured format
+     */
+    public byte[] encode(final Identity identity) {
+        if (format == Format.BINARY) {
+            return encodeBinary(identity);
+        }
+        return IdentityJsonCodec.encode(identity);
+    }
+
+    /**
+     * Decodes a stored identity, whatever format it was written in.
+     *
+     * @param state the value read from the ledger
+     * @return the identity
+     */
+    public Identity decode(final byte[] state) {
+        if (state[0] == FORMAT_BINARY_V1) {
+            return decodeBinary(state);
+        }
+        if (state[0] == JSON_OBJECT_START) {
+            return IdentityJsonCodec.decode(state);
+        }
+        throw new IllegalArgumentException("Unknown identity state format " + state[0]);
+    }
+
+    /**
+     * Returns a stored identity as JSON. JSON values are returned as they are,
+     * so bulk readers can splice them without a decode/encode round trip.
+     *
+     * @param state the value read from the ledger
+     * @return UTF-8 JSON of the identity
+     */
+    public byte[] toJson(final byte[] state) {
+        if (state[0] == JSON_OBJECT_START) {
+            return state;
+        }
+        return IdentityJsonCodec.encode(decode(state));
+    }
+
+    static byte[] encodeBinary(final Identity identity) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        out.write(FORMAT_BINARY_V1);
+        writeString(out, identity.getContext());
+        writeString(out, identity.getIdentifier());
+        writeString(out, identity.getControlledBy());
+        writeJwk(out, identity.getPublicKeyJwk());
+        writeMap(out, identity.getSubjectInfo());
+        writeString(out, identity.getStatus());
+        writeString(out, identity.getIssuedAt());
+        writeString(out, identity.getValidTo());
+        if (identity.getSubjectInfoHash() != null || identity.getAttributeKeys() != null) {
+            if (identity.getControllerSet() == null) {
+                writeVarint(out, 0);
+            } else {
+                writeControllerSet(out, identity.getControllerSet());
+            }
+            writeString(out, identity.getSubjectInfoHash());
+            if (identity.getAttributeKeys() != null) {
+                out.write(identity.getAttributeKeys() ? 1 : 0);
+            }
+        } else {
+            writeControllerSet(out, identity.getControllerSet());
+        }
+        return out.toByteArray();
+    }
+
+    static Identity decodeBinary(final byte[] state) {
+        Reader in = new Reader(state, 1);
+        String context = in.readString();
+        String identifier = in.readString();
+        String controlledBy = in.readString();
+        Map<String, String> publicKeyJwk = in.readJwk();
+        Map<String, String> subjectInfo = in.readMap();
+        String status = in.readString();
+        String issuedAt = in.readString();
+        String validTo = in.readString();
+        ControllerSet controllerSet = in.hasMore() ? in.readControllerSet() : null;
+        String subjectInfoHash = in.hasMore() ? in.readString() : null;
+        Boolean attributeKeys = in.hasMore() ? in.readVarint() != 0 : null;
+        return new Identity(context, identifier, controlledBy, publicKeyJwk, subjectInfo, status, issuedAt, validTo,
+                controllerSet, subjectInfoHash, attributeKeys);
+    }
+
+    static void writeVarint(final ByteArrayOutputStream out, final int value) {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    private static void writeBytes(final ByteArrayOutputStream out, final byte[] bytes) {
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static void writeString(final ByteArrayOutputStream out, final String value) {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static void writeMap(final ByteArrayOutputStream out, final Map<String, String> map) {
+        if (map == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, map.size() + 1);
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    private static void writeControllerSet(final ByteArrayOutputStream out, final ControllerSet controllerSet) {
+        if (controllerSet == null) {
+            return;
+        }
+        writeVarint(out, controllerSet.getThreshold() + 1);
+        List<String> controllers = controllerSet.getControllers();
+        if (controllers == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, controllers.size() + 1);
+        for (String controller : controllers) {
+            writeString(out, controller);
+        }
+    }
+
+    static void writeJwk(final ByteArrayOutputStream out, final Map<String, String> jwk) {
+        if (jwk == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, jwk.size() + 1);
+        for (Map.Entry<String, String> entry : jwk.entrySet()) {
+            String name = entry.getKey();
+            String value = entry.getValue();
+
+            int binaryTag = indexOf(JWK_BINARY_MEMBERS, name);
+            byte[] raw = binaryTag > 0 ? canonicalBase64Url(value) : null;
+            if (raw != null) {
+                out.write(TAG_BINARY | binaryTag);
+                writeBytes(out, raw);
+                continue;
+            }
+
+            int tag = indexOf(JWK_MEMBERS, name);
+            if (tag > 0) {
+                out.write(tag);
+            } else {
+                out.write(TAG_GENERIC);
+                writeString(out, name);
+            }
+            writeString(out, value);
+        }
+    }
+
+    /**
+     * @return the decoded bytes if re-encoding them gives back exactly the same text, null otherwise
+     */
+    private static byte[] canonicalBase64Url(final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            byte[] raw = BASE64URL_DECODER.decode(value);
+            return BASE64URL_ENCODER.encodeToString(raw).equals(value) ? raw : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int indexOf(final String[] names, final String name) {
+        for (int i = 1; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the binary encoding; also used for the binary creation payload of {@link IdentityPayload}.
+     */
+    static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        Reader(final byte[] data, final int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        int readVarint() {
+            int value = 0;
+            int shift = 0;
+            while (true) {
+                byte b = data[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+                if (shift > 28) {
+                    throw new IllegalArgumentException("Malformed varint in identity state");
+                }
+            }
+        }
+
+        String readString() {
+            int length = readVarint();
+            if (length == 0) {
+                return null;
+            }
+            String value = new String(data, position, length - 1, StandardCharsets.UTF_8);
+            position += length - 1;
+            return value;
+        }
+
+        boolean hasMore() {
+            return position < data.length;
+        }
+
+        ControllerSet readControllerSet() {
+            int threshold = readVarint() - 1;
+            if (threshold < 0) {
+                return null;
+            }
+            int size = readVarint();
+            List<String> controllers = null;
+            if (size > 0) {
+                controllers = new ArrayList<>(size - 1);
+                for (int i = 1; i < size; i++) {
+                    controllers.add(readString());
+                }
+            }
+            return new ControllerSet(controllers, threshold);
+        }
+
+        byte[] readBytes() {
+            int length = readVarint();
+            byte[] value = new byte[length];
+            System.arraycopy(data, position, value, 0, length);
+            position += length;
+            return value;
+        }
+
+        Map<String, String> readMap() {
+            int size = readVarint();
+            if (size == 0) {
+                return null;
+            }
+            Map<String, String> map = new HashMap<>();
+            for (int i = 1; i < size; i++) {
+                map.put(readString(), readString());
+            }
+            return map;
+        }
+
+        Map<String, String> readJwk() {
+            int size = readVarint();
+            if (size == 0) {
+                return null;
+            }
+            Map<String, String> jwk = new HashMap<>();
+            for (int i = 1; i < size; i++) {
+                int tag = data[position++] & 0xFF;
+                if ((tag & TAG_BINARY) != 0) {
+                    jwk.put(JWK_BINARY_MEMBERS[tag & ~TAG_BINARY], BASE64URL_ENCODER.encodeToString(readBytes()));
+                } else if (tag == TAG_GENERIC) {
+                    jwk.put(readString(), readString());
+                } else {
+                    jwk.put(JWK_MEMBERS[tag], readString());
+                }
+            }
+            return jwk;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Transaction context of {@link IdentityContract}.
+ *
+ * Its stub memoizes world state reads for the life of the transaction (see
+ * {@link ReadCachingStub}), and identities decoded from those reads are kept
+ * too, so transactions calling one another, like CreateECIdentity calling
+ * IdentityExists and ReadIdentity, neither read nor decode a key twice.
+ * It also collects the {@link TransactionStats} of the transaction and holds
+ * its {@link StatusList} and {@link ShardedCounters}, which remember the
+ * writes made so far, and the {@link IdentityEvents} to emit when it completes.
+ */
+public final class IdentityContext extends Context {
+
+    /** Keyed by the state array itself: the caching stub returns the same array for every read of a key. */
+    private final Map<byte[], Identity> decoded = new IdentityHashMap<>();
+
+    private final TransactionStats stats;
+
+    private StatusList statusList;
+
+    private ShardedCounters counters;
+
+    private IdentityEvents events;
+
+    public IdentityContext(final ChaincodeStub stub) {
+        this(stub, new TransactionStats());
+    }
+
+    private IdentityContext(final ChaincodeStub stub, final TransactionStats stats) {
+        super(ReadCachingStub.wrap(stub, stats));
+        this.stats = stats;
+    }
+
+    TransactionStats getStats() {
+        return stats;
+    }
+
+    StatusList getStatusList() {
+        if (statusList == null) {
+            statusList = new StatusList(getStub());
+        }
+        return statusList;
+    }
+
+    ShardedCounters getCounters() {
+        if (counters == null) {
+            counters = new ShardedCounters(getStub());
+        }
+        return counters;
+    }
+
+    IdentityEvents getEvents() {
+        if (events == null) {
+            events = new IdentityEvents();
+        }
+        return events;
+    }
+
+    /**
+     * Decodes an identity read through this context's stub, at most once per transaction.
+     *
+     * @param state the value returned by getState
+     * @param codec the codec to decode it with on first use
+     * @return the identity
+     */
+    Identity decode(final byte[] state, final IdentityCodec codec) {
+        Identity identity = decoded.get(state);
+        if (identity == null) {
+            long start = System.nanoTime();
+            identity = codec.decode(state);
+            stats.codec(System.nanoTime() - start);
+            decoded.put(state, identity);
+        }
+        return identity;
+    }
+}
@@ -5,22 +5,29 @@
 package org.hyperledger.fabric.samples.assettransfer;
 
 
+import java.lang.reflect.Method;
 import java.security.interfaces.ECPublicKey;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
-import com.nimbusds.jose.Algorithm;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSObject;
 import com.nimbusds.jose.JWSVerifier;
-import com.nimbusds.jose.crypto.ECDSAVerifier;
-import com.nimbusds.jose.jwk.Curve;
-import com.nimbusds.jose.jwk.ECKey;
-import com.nimbusds.jose.jwk.KeyUse;
-import com.nimbusds.jose.util.Base64URL;
 import netscape.javascript.JSObject;
 import org.hyperledger.fabric.contract.Context;
 import org.hyperledger.fabric.contract.ContractInterface;
@@ -32,9 +39,12 @@ import org.hyperledger.fabric.contract.annotation.License;
 import org.hyperledger.fabric.contract.annotation.Transaction;
 import org.hyperledger.fabric.shim.ChaincodeException;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
 import org.hyperledger.fabric.shim.ledger.KeyValue;
 import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
 
+import com.owlike.genson.GenericType;
 import com.owlike.genson.Genson;
 
 @Contract(
@@ -53,63 +63,196 @@ import com.owlike.genson.Genson;
 @Default
 public final class IdentityContract implements ContractInterface {
 
+    /** Upper bound for the page size of paginated queries, keeping each response bounded. */
+    static final int MAX_PAGE_SIZE = 1000;
+
+    /** Composite key object type of the controller to identity index. */
+    static final String CONTROLLER_INDEX = "controller~identity";
+
+    /**
+     * Composite key object type of the expiry index; attributes are the yyyyMMdd UTC
+     * day, validTo as a ledger date and the identity ID, so that a day scans in expiry order.
+     */
+    static final String EXPIRY_INDEX = "expiry~identity";
+
+    /** Upper bound for the days of the expiry index that one ExpireIdentities call scans. */
+    static final int MAX_SWEEP_DAYS = 366;
+
+    /** Composite key object type under which expired identities are archived, out of simple-key range scans. */
+    static final String ARCHIVE = "archive";
+
+    /** Composite key object type of subjectInfo attributes; attributes are the identity ID and the attribute name. */
+    static final String SUBJECT_INFO = "subject~attr";
+
+    /**
+     * Composite key object type of the keys an identity has had; attributes are the
+     * identity ID and the key's position as 16 hex digits, counting down from
+     * Long.MAX_VALUE so that the newest key comes first.
+     */
+    static final String KEY_HISTORY = "key~history";
+
+    /**
+     * Composite key object type marking imported chunks; attributes are the import's
+     * Merkle root and the chunk's first and last leaf index.
+     */
+    static final String IMPORT_CHUNK = "import~chunk";
+
+    static final String STATUS_ACTIVE = "active";
+
+    static final String STATUS_EXPIRED = "expired";
+
+    /**
+     * Value stored under index keys. Fabric treats an empty value as a delete,
+     * so index entries carry a single null byte.
+     */
+    private static final byte[] INDEX_VALUE = new byte[] {0x00};
+
     private final Genson genson = new Genson();
 
+    private final IdentityCodec codec = new IdentityCodec(IdentityCodec.configuredFormat());
+
+    private final VerifierCache verifierCache = new VerifierCache(VerifierCache.configuredSize());
+
+    private final ThresholdVerifier thresholdVerifier = new ThresholdVerifier(ThresholdVerifier.configuredThreads());
+
+    private final ContractMetrics metrics = new ContractMetrics();
+
+    /** Names of this contract's transactions; other names are not tracked individually. */
+    private static final Set<String> TRANSACTIONS = new HashSet<>();
+
+    static {
+        for (Method method : IdentityContract.class.getMethods()) {
+            if (method.isAnnotationPresent(Transaction.class)) {
+                TRANSACTIONS.add(method.getName());
+            }
+        }
+    }
+
     private enum IdentityErrors {
         IDENTITY_NOT_FOUND,
         IDENTITY_ALREADY_EXISTS,
-        INVALID_SIGNATURE
+        INVALID_SIGNATURE,
+        INVALID_REQUEST,
+        INVALID_KEY
 
     }
 
+    public IdentityContract() {
+        metrics.register("verifier_cache_hits_total", "Signature verifiers found in the cache", true,
+                verifierCache::getHits);
+        metrics.register("verifier_cache_misses_total", "Signature verifiers built on a cache miss", true,
+                verifierCache::getMisses);
+        metrics.register("verifier_cache_size", "Signature verifiers currently cached", false,
+                verifierCache::size);
+        MetricsEndpoint.startIfConfigured(metrics);
+    }
+
     /**
-     * Create one initial identity on the ledger.
+     * Gives every transaction a context that reads each key from the peer at most once.
      *
-     * @param ctx the transaction context
+     * @param stub the stub of the transaction
+     * @return the transaction context
      */
-    @Transaction(intent = Transaction.TYPE.SUBMIT)
-    public void InitLedger(final Context ctx) {
-        ChaincodeStub stub = ctx.getStub();
-
-        Identity identity = new Identity(
-                "http://www.lsdi.ufma.br/" ,
-                "lsdi:identity:first",
-                "lsdi:identity:first",
-                null, null, null, null, null);
+    @Override
+    public Context createContext(final ChaincodeStub stub) {
+        return new IdentityContext(stub);
+    }
 
-        CreateIdentity(ctx, identity);
+    /**
+     * Starts timing the transaction and counting its ledger access.
+     *
+     * @param ctx the transaction context
+     */
+    @Override
+    public void beforeTransaction(final Context ctx) {
+        if (!(ctx instanceof IdentityContext)) {
+            return;
+        }
+        String function = ctx.getStub().getFunction();
+        // the function may be qualified with the contract name, as in identity:ReadIdentity
+        String name = function == null ? null : function.substring(function.lastIndexOf(':') + 1);
+        if (TRANSACTIONS.contains(name)) {
+            ((IdentityContext) ctx).getStats().start(name);
+            metrics.started(name);
+        }
+    }
 
+    /**
+     * Emits the identity changes of a transaction that completed without error as
+     * one chaincode event, and records its metrics.
+     *
+     * @param ctx the transaction context
+     * @param result the value returned by the transaction
+     */
+    @Override
+    public void afterTransaction(final Context ctx, final Object result) {
+        if (!(ctx instanceof IdentityContext)) {
+            return;
+        }
+        ((IdentityContext) ctx).getEvents().emit(ctx.getStub());
+        if (((IdentityContext) ctx).getStats().getTransaction() != null) {
+            metrics.completed(((IdentityContext) ctx).getStats());
+        }
+    }
 
+    /**
+     * Counts calls to transactions this contract does not have, then fails them.
+     *
+     * @param ctx the transaction context
+     */
+    @Override
+    public void unknownTransaction(final Context ctx) {
+        metrics.unknownTransaction();
+        String errorMessage = String.format("Undefined contract method called: %s", ctx.getStub().getFunction());
+        System.out.println(errorMessage);
+        throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
     }
 
+    /**
+     * Returns the metrics collected by this chaincode instance since it started: per
+     * transaction name the started and completed counts, ledger reads, queries and
+     * writes, bytes read and written, latency histogram, and time spent verifying
+     * signatures and encoding or decoding identities; plus verifier cache counters.
+     * Each peer answers with its own instance's numbers.
+     *
+     * @param ctx the transaction context
+     * @return the metrics as JSON
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetContractMetrics(final Context ctx) {
+        return genson.serialize(metrics.snapshot());
+    }
 
+    public ContractMetrics getMetrics() {
+        return metrics;
+    }
 
     /**
-     * Creates a new identity on the ledger.
+     * Create one initial identity on the ledger. It has no key, so it cannot
+     * approve anything; clients create identities through the transactions that
+     * validate the key and the controllers' approval.
      *
      * @param ctx the transaction context
-     * @return the created asset
      */
     @Transaction(intent = Transaction.TYPE.SUBMIT)
-    public Identity CreateIdentity(final Context ctx,
-                                   final Identity identity) {
-        ChaincodeStub stub = ctx.getStub();
+    public void InitLedger(final Context ctx) {
+        Identity identity = new Identity(
+                "http://www.lsdi.ufma.br/" ,
+                "lsdi:identity:first",
+                "lsdi:identity:first",
+                null, null, null, null, null);
 
         if (IdentityExists(ctx, identity.getIdentifier())) {
             String errorMessage = String.format("Identity %s already exists", identity.getIdentifier());
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, IdentityErrors.IDENTITY_ALREADY_EXISTS.toString());
         }
-
-
-
-        String assetJSON = genson.serialize(identity);
-        stub.putStringState(identity.getIdentifier(), assetJSON);
-        return identity;
+        putNewIdentity(ctx, identity);
     }
 
     /**
      * Creates a new identity on the ledger. This method expects only ECKeys as key;
+     * the JWS of the controller is over the {@link #creationApproval} of CreateECIdentity.
      *
      * @param ctx the transaction context
      * @return the created asset
@@ -136,9 +279,8 @@ public final class IdentityContract implements ContractInterface {
         String x                    = args[7];
         String y                    = args[8];
         String serializedSignature  = args[9];
-        Map<String, String> publicKeyJwk = new HashMap<>();
         Map<String, String> subjectInfo  = new HashMap<>();
-        String[] dates = Utils.getIssueAndExpiracyDate(1);
+        String[] dates = Utils.getIssueAndExpiracyDate(stub.getTxTimestamp(), 1);
 
         if (IdentityExists(ctx, identityIdentifier)) {
             String errorMessage = String.format("Identity %s already exists", identityIdentifier);
@@ -146,216 +288,2149 @@ public final class IdentityContract implements ContractInterface {
             throw new ChaincodeException(errorMessage, IdentityErrors.IDENTITY_ALREADY_EXISTS.toString());
         }
 
-        publicKeyJwk.put("kty", kty);
-        publicKeyJwk.put("kid", kid);
-        publicKeyJwk.put("alg", alg);
-        publicKeyJwk.put("crv", crv);
-        publicKeyJwk.put("use", "sig");
-        publicKeyJwk.put("x", x);
-        publicKeyJwk.put("y", y);
+        ECWrapper publicKey;
+        try {
+            publicKey = new ECWrapper(kty, PublicKeyWrapper.USE_SIGNATURE, crv, kid, alg, x, y);
+        } catch (IllegalArgumentException e) {
+            String errorMessage = String.format("Invalid public key for %s: %s", identityIdentifier, e.getMessage());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_KEY.toString());
+        }
 
         for (int i = 10; i < args.length; i++) { // incremento é antes
             String[] split = args[i].split(":");
             subjectInfo.put(split[0], split[1]);
         }
 
-        boolean isRequestValid = false;
-
-        Identity identity = new Identity(
+        Identity identity = Identity.withPublicKey(
                 applicationContext,
                 identityIdentifier,
-                controllerIdentifier, publicKeyJwk, subjectInfo, "active", dates[0], dates[1]);
+                controllerIdentifier, publicKey, subjectInfo, STATUS_ACTIVE, dates[0], dates[1]);
 
+        checkControllerSignature(ctx, "CreateECIdentity", identity, publicKey, serializedSignature);
 
-        if(identityIdentifier.equals(controllerIdentifier)){
-            isRequestValid = true;
-            validateSignature(identity, serializedSignature);
+        return putNewIdentity(ctx, identity);
+    }
 
-        }else{
-            Identity controller = ReadIdentity(ctx, controllerIdentifier);
-            try {
-                isRequestValid = validateSignature(controller, serializedSignature);
-            } catch (ParseException | JOSEException e) {
-                e.printStackTrace();
-                String errorMessage = String.format("Error parsing signature from %s", controllerIdentifier);
-                throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
-            }
+    /**
+     * Creates a new identity with an Ed25519 key (JWK "kty" OKP). Parameters are
+     * context, identifier, controlledBy, kty, kid, alg, crv, x, the JWS of the
+     * controller over the {@link #creationApproval} of CreateOKPIdentity, then any
+     * number of subjectInfo entries as "name:value".
+     *
+     * @param ctx the transaction context
+     * @return the created asset
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Identity CreateOKPIdentity(final Context ctx) {
+        ChaincodeStub stub = ctx.getStub();
+        String[] args = stub.getParameters().toArray(new String[0]);
+        if (args.length < 9) {
+            String errorMessage = String.format("Expected at least 9 parameters, got %d", args.length);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
         }
 
-        if (isRequestValid){
-            // accept new identity proposition
+        String identityIdentifier = args[1];
+        String controllerIdentifier = args[2];
+        String serializedSignature = args[8];
+        Map<String, String> subjectInfo = new HashMap<>();
+        String[] dates = Utils.getIssueAndExpiracyDate(stub.getTxTimestamp(), 1);
 
-            // converter pra jsonarray
-            String assetJSON = genson.serialize(identity);
-            System.out.println("debug: "+assetJSON);
-            stub.putStringState(identityIdentifier, assetJSON);
+        if (IdentityExists(ctx, identityIdentifier)) {
+            String errorMessage = String.format("Identity %s already exists", identityIdentifier);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.IDENTITY_ALREADY_EXISTS.toString());
+        }
 
-            return identity;
-        }else{
-            String errorMessage = String.format("Signature from %s not valid!", controllerIdentifier);
+        OKPWrapper publicKey;
+        try {
+            publicKey = new OKPWrapper(args[3], PublicKeyWrapper.USE_SIGNATURE, args[6], args[4], args[5], args[7]);
+        } catch (IllegalArgumentException e) {
+            String errorMessage = String.format("Invalid public key for %s: %s", identityIdentifier, e.getMessage());
             System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_KEY.toString());
         }
 
-    }
+        for (int i = 9; i < args.length; i++) {
+            String[] split = args[i].split(":");
+            subjectInfo.put(split[0], split[1]);
+        }
 
-    public boolean validateSignature(Identity controller, String serializedSignature) throws ParseException, JOSEException {
-        Map<String, String> controllerPublicKeyJwt = controller.getPublicKeyJwk();
-        Base64URL x = Base64URL.from(controllerPublicKeyJwt.get("x"));
-        Base64URL y = Base64URL.from(controllerPublicKeyJwt.get("y"));
-        ECKey controllerECKey = new ECKey(
-                Curve.parse(controllerPublicKeyJwt.get("crv")),
-                x,
-                y,
-                KeyUse.SIGNATURE,
-                null,
-                Algorithm.parse(controllerPublicKeyJwt.get("alg")),
-                controllerPublicKeyJwt.get("kid"),
-                null,null,null,null,null);
-        JWSObject jwsObject = JWSObject.parse(serializedSignature);
-        JWSVerifier verifier = new ECDSAVerifier(controllerECKey.toECPublicKey());
-        return verifier.verify(jwsObject.getHeader(), jwsObject.getSigningInput(), jwsObject.getSignature());
-    }
+        Identity identity = Identity.withPublicKey(args[0], identityIdentifier, controllerIdentifier, publicKey,
+                subjectInfo, STATUS_ACTIVE, dates[0], dates[1]);
 
+        checkControllerSignature(ctx, "CreateOKPIdentity", identity, publicKey, serializedSignature);
 
+        return putNewIdentity(ctx, identity);
+    }
 
     /**
-     * Creates a new identity on the ledger. This method expects only RSAKeys as key;
+     * Creates a new identity from a single {@link IdentityPayload} argument, JSON or
+     * binary, read from the raw argument bytes. Accepts any supported key type. The
+     * signature is over the {@link #creationApproval} of CreateIdentityFromPayload.
      *
      * @param ctx the transaction context
      * @return the created asset
      */
     @Transaction(intent = Transaction.TYPE.SUBMIT)
-    public Identity CreateRSAIdentity(
-            final Context ctx,
-            final String... args
-    ) {
-
+    public Identity CreateIdentityFromPayload(final Context ctx) {
         ChaincodeStub stub = ctx.getStub();
-
-        if (IdentityExists(ctx, args[1])) {
-            String errorMessage = String.format("Identity %s already exists", args[1]);
+        List<byte[]> args = stub.getArgs();
+        if (args.size() != 2) {
+            String errorMessage = String.format("Expected one payload argument, got %d", args.size() - 1);
             System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, IdentityErrors.IDENTITY_ALREADY_EXISTS.toString());
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
         }
 
-        HashMap<String, String> publicKeyJwk = new HashMap<>();
-        HashMap<String, String> subjectInfo = new HashMap<>();
-        String[] dates = Utils.getIssueAndExpiracyDate(1);
-
-        publicKeyJwk.put("kty", args[3]);
-        publicKeyJwk.put("kid", args[4]);
-        publicKeyJwk.put("e", args[5]);
-        publicKeyJwk.put("use", "sig");
-        publicKeyJwk.put("alg", args[6]);
-        publicKeyJwk.put("n", args[7]);
-
-        for (int i = 8; i < args.length; i++) {
-            String[] split = args[i].split(":");
-            subjectInfo.put(split[0], split[1]);
+        IdentityPayload payload;
+        try {
+            payload = IdentityPayload.decode(args.get(1));
+        } catch (IllegalArgumentException e) {
+            String errorMessage = "Invalid identity payload: " + e.getMessage();
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
         }
+        String identityIdentifier = payload.getIdentifier();
 
-        //todo(): fazer um verificação da assinatura
+        if (IdentityExists(ctx, identityIdentifier)) {
+            String errorMessage = String.format("Identity %s already exists", identityIdentifier);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.IDENTITY_ALREADY_EXISTS.toString());
+        }
 
+        PublicKeyWrapper publicKey;
+        try {
+            publicKey = PublicKeyWrapper.fromJwk(payload.getPublicKeyJwk());
+        } catch (IllegalArgumentException e) {
+            String errorMessage = String.format("Invalid public key for %s: %s", identityIdentifier, e.getMessage());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_KEY.toString());
+        }
 
-        Identity identity = new Identity(args[0], args[1], args[2], publicKeyJwk, subjectInfo, "active", dates[0], dates[1]);
+        String[] dates = Utils.getIssueAndExpiracyDate(stub.getTxTimestamp(), 1);
+        Map<String, String> subjectInfo = payload.getSubjectInfo() == null
+                ? new HashMap<>() : payload.getSubjectInfo();
+        Identity identity = Identity.withPublicKey(payload.getContext(), identityIdentifier,
+                payload.getControlledBy(), publicKey, subjectInfo, STATUS_ACTIVE, dates[0], dates[1]);
 
-        String assetJSON = genson.serialize(identity);
+        checkControllerSignature(ctx, "CreateIdentityFromPayload", identity, publicKey, payload.getSignature());
 
-        stub.putStringState(args[1], assetJSON);
-        return identity;
+        return putNewIdentity(ctx, identity);
     }
 
+    /**
+     * Checks the JWS approving a new identity: made with the identity's own key
+     * when it controls itself, otherwise with the key of its controller, over the
+     * {@link #creationApproval} of the transaction. The approval is then used up.
+     */
+    private void checkControllerSignature(final Context ctx, final String operation, final Identity identity,
+                                          final PublicKeyWrapper publicKey, final String serializedSignature) {
+        String controllerIdentifier = identity.getControlledBy();
+        Identity controller = identity;
+        if (!identity.getIdentifier().equals(controllerIdentifier)) {
+            controller = readCore(ctx, controllerIdentifier);
+            checkUsableController(ctx, controller);
+        }
+
+        Approval approval = creationApproval(ctx.getStub(), operation, identity.getIdentifier(),
+                controllerIdentifier, publicKey);
+        if (serializedSignature == null || !approval.isPayloadOf(serializedSignature)) {
+            String errorMessage = String.format("Signature from %s does not approve %s", controllerIdentifier,
+                    approval.payload());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+        }
 
+        boolean isRequestValid;
+        try {
+            isRequestValid = validateSignature(ctx, controller, serializedSignature);
+        } catch (ParseException | JOSEException e) {
+            String errorMessage = String.format("Error parsing signature from %s", controllerIdentifier);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+        }
+        if (!isRequestValid) {
+            String errorMessage = String.format("Signature from %s not valid!", controllerIdentifier);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+        }
+        approval.consume();
+    }
 
+    /**
+     * The {@link Approval} a controller signs to create an identity, with members
+     * controlledBy and keyThumbprint, the RFC 7638 thumbprint of the new key: a
+     * signature only creates that identity, under that controller, with that key, once.
+     *
+     * @param operation the name of the creating transaction
+     */
+    static Approval creationApproval(final ChaincodeStub stub, final String operation, final String id,
+                                     final String controlledBy, final PublicKeyWrapper publicKey) {
+        return Approval.of(stub, operation, id).with("controlledBy", controlledBy)
+                .with("keyThumbprint", publicKey.thumbprint());
+    }
 
     /**
-     * Retrieves an asset with the specified ID from the ledger.
+     * Creates many EC identities in one transaction. The payload is a JSON array of
+     * {@link ECIdentityRequest}s; each entry is checked as in CreateECIdentity, its
+     * signature being over the {@link #creationApproval} of CreateECIdentitiesBatch
+     * for that entry's ID and key, so it cannot be reused for another entry.
+     * Entries that fail are reported and skipped, the others are written together.
+     *
+     * Fabric does not return a transaction's own writes from getState, so controllers
+     * created earlier in the same batch are resolved from the pending writes. Every
+     * other identity is read from the ledger at most once per batch, and a controller
+     * read from the ledger must be usable as in CreateECIdentity: entries naming a
+     * revoked, suspended, expired or archived controller are rejected with INVALID_SIGNATURE.
      *
      * @param ctx the transaction context
-     * @param id the ID of the identity
-     * @return the asset found on the ledger if there was one
+     * @param requestsJSON JSON array of identity requests
+     * @return JSON array with one {@link BatchEntryResult} per request, in request order
      */
-    @Transaction(intent = Transaction.TYPE.EVALUATE)
-    public Identity ReadIdentity(final Context ctx, final String id) {
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String CreateECIdentitiesBatch(final Context ctx, final String requestsJSON) {
         ChaincodeStub stub = ctx.getStub();
-        String identityJSON = stub.getStringState(id);
 
-        if (identityJSON == null || identityJSON.isEmpty()) {
-            String errorMessage = String.format("Identity %s does not exist", id);
+        ECIdentityRequest[] requests;
+        try {
+            requests = genson.deserialize(requestsJSON, ECIdentityRequest[].class);
+        } catch (RuntimeException e) {
+            String errorMessage = "Batch payload is not a JSON array of identity requests";
             System.out.println(errorMessage);
-            throw new ChaincodeException(errorMessage, IdentityErrors.IDENTITY_NOT_FOUND.toString());
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+        if (requests == null || requests.length == 0) {
+            String errorMessage = "Batch payload is empty";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
         }
 
-        Identity identity = genson.deserialize(identityJSON, Identity.class);
+        String[] dates = Utils.getIssueAndExpiracyDate(stub.getTxTimestamp(), 1);
+        Map<String, Identity> pending = new LinkedHashMap<>();
+        // ledger reads done so far in this batch; a null value records a missing key
+        Map<String, Identity> ledgerReads = new HashMap<>();
+        List<BatchEntryResult> results = new ArrayList<>(requests.length);
+
+        for (ECIdentityRequest request : requests) {
+            String identityIdentifier = request.getIdentifier();
+            String controllerIdentifier = request.getControlledBy();
+
+            if (identityIdentifier == null || identityIdentifier.isEmpty()
+                    || controllerIdentifier == null || controllerIdentifier.isEmpty()
+                    || request.getSignature() == null) {
+                results.add(BatchEntryResult.rejected(identityIdentifier, IdentityErrors.INVALID_REQUEST.toString()));
+                continue;
+            }
 
-        return identity;
+            if (pending.containsKey(identityIdentifier)
+                    || readForBatch(ctx, identityIdentifier, ledgerReads) != null) {
+                results.add(BatchEntryResult.rejected(identityIdentifier, IdentityErrors.IDENTITY_ALREADY_EXISTS.toString()));
+                continue;
+            }
+
+            ECWrapper publicKey;
+            try {
+                publicKey = new ECWrapper(request.getKty(), PublicKeyWrapper.USE_SIGNATURE, request.getCrv(),
+                        request.getKid(), request.getAlg(), request.getX(), request.getY());
+            } catch (IllegalArgumentException e) {
+                results.add(BatchEntryResult.rejected(identityIdentifier, IdentityErrors.INVALID_KEY.toString()));
+                continue;
+            }
+            Map<String, String> subjectInfo = request.getSubjectInfo() == null
+                    ? new HashMap<>() : new HashMap<>(request.getSubjectInfo());
+
+            Identity identity = Identity.withPublicKey(
+                    request.getContext(),
+                    identityIdentifier,
+                    controllerIdentifier, publicKey, subjectInfo, STATUS_ACTIVE, dates[0], dates[1]);
+
+            Identity controller;
+            if (identityIdentifier.equals(controllerIdentifier)) {
+                controller = identity;
+            } else if (pending.containsKey(controllerIdentifier)) {
+                controller = pending.get(controllerIdentifier);
+            } else {
+                controller = readForBatch(ctx, controllerIdentifier, ledgerReads);
+                if (controller != null && unusableReason(ctx, controller) != null) {
+                    results.add(BatchEntryResult.rejected(identityIdentifier,
+                            IdentityErrors.INVALID_SIGNATURE.toString()));
+                    continue;
+                }
+            }
+            if (controller == null) {
+                results.add(BatchEntryResult.rejected(identityIdentifier, IdentityErrors.IDENTITY_NOT_FOUND.toString()));
+                continue;
+            }
+
+            Approval approval = creationApproval(stub, "CreateECIdentitiesBatch", identityIdentifier,
+                    controllerIdentifier, publicKey);
+            boolean isRequestValid;
+            try {
+                isRequestValid = approval.isPayloadOf(request.getSignature())
+                        && validateSignature(ctx, controller, request.getSignature());
+            } catch (ChaincodeException e) {
+                // the controller's stored key is not usable
+                results.add(BatchEntryResult.rejected(identityIdentifier,
+                        new String(e.getPayload(), StandardCharsets.UTF_8)));
+                continue;
+            } catch (ParseException | JOSEException | RuntimeException e) {
+                isRequestValid = false;
+            }
+            if (!isRequestValid) {
+                results.add(BatchEntryResult.rejected(identityIdentifier, IdentityErrors.INVALID_SIGNATURE.toString()));
+                continue;
+            }
+
+            approval.consume();
+            pending.put(identityIdentifier, identity);
+            results.add(BatchEntryResult.created(identityIdentifier));
+        }
+
+        ShardedCounters counters = counters(ctx);
+        for (Identity identity : pending.values()) {
+            putNewIdentity(ctx, counters, identity);
+        }
+
+        return genson.serialize(results);
     }
 
     /**
-     * Checks the existence of the identity on the ledger
+     * Imports one chunk of a bulk import, such as the migration of a device
+     * registry. The client builds a {@link MerkleImport} tree over all the records
+     * of the import and its controller signs the root once; each chunk carries
+     * that root and signature plus its records with their inclusion proofs. A
+     * chunk costs one signature check, served from the verifier cache after the
+     * first chunk, and a few hashes per record instead of one ECDSA check each.
+     *
+     * The signature is a JWS over the {@link #importApproval}, which binds the root
+     * to the number of records of the import. It approves every chunk of the
+     * import, so unlike other approvals it is not used up.
+     *
+     * Records are checked as in CreateECIdentitiesBatch, except that the proof
+     * replaces the per-record signature: a record whose proof does not lead to the
+     * root is rejected with INVALID_SIGNATURE. Every record must name the signing
+     * controller as controlledBy, and the records of a chunk must have consecutive
+     * indexes. A chunk is identified by that leaf range, not by anything the client
+     * names, and is marked on the ledger once each of its records was created or
+     * already existed. An interrupted import is resumed by sending again the ranges
+     * that GetImportProgress does not list; a chunk with rejected records can be
+     * sent again once they are fixed, and a marked chunk is reported as already
+     * imported.
      *
      * @param ctx the transaction context
-     * @param id the ID of the identity
-     * @return boolean indicating the existence of the asset
+     * @param requestJSON an {@link ImportChunkRequest}
+     * @return an {@link ImportChunkResult}
      */
-    @Transaction(intent = Transaction.TYPE.EVALUATE)
-    public boolean IdentityExists(final Context ctx, final String id) {
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String ImportIdentityChunk(final Context ctx, final String requestJSON) {
         ChaincodeStub stub = ctx.getStub();
-        String identityJSON = stub.getStringState(id);
 
-        return (identityJSON != null && !identityJSON.isEmpty());
-    }
+        ImportChunkRequest request;
+        try {
+            request = genson.deserialize(requestJSON, ImportChunkRequest.class);
+        } catch (RuntimeException e) {
+            request = null;
+        }
+        if (request == null || request.getControlledBy() == null || request.getRoot() == null
+                || request.getSignature() == null || request.getRecordCount() < 1
+                || request.getRecords() == null || request.getRecords().isEmpty()) {
+            String errorMessage = "Payload is not an import chunk with controller, root, signature and records";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
 
+        byte[] root;
+        try {
+            root = MerkleImport.decode(request.getRoot());
+        } catch (IllegalArgumentException e) {
+            String errorMessage = "Import root is not base64url";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
 
+        Identity controller = readCore(ctx, request.getControlledBy());
+        checkUsableController(ctx, controller);
+        Approval approval = importApproval(stub, request.getControlledBy(), request.getRoot(),
+                request.getRecordCount());
+        boolean isRootSigned;
+        try {
+            isRootSigned = approval.isPayloadOf(request.getSignature())
+                    && validateSignature(ctx, controller, request.getSignature());
+        } catch (ParseException | JOSEException e) {
+            isRootSigned = false;
+        }
+        if (!isRootSigned) {
+            String errorMessage = String.format("Import root is not signed by %s", controller.getIdentifier());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+        }
 
-    /**
-     * Retrieves all assets from the ledger.
-     *
-     * @param ctx the transaction context
-     * @return array of assets found on the ledger
-     */
-    @Transaction(intent = Transaction.TYPE.EVALUATE)
-    public String GetAllIdentities(final Context ctx) {
-        ChaincodeStub stub = ctx.getStub();
+        List<ImportRecord> records = request.getRecords();
+        ImportRecord firstRecord = records.get(0);
+        long first = firstRecord == null ? -1 : firstRecord.getIndex();
+        long last = first + records.size() - 1;
+        for (int i = 0; i < records.size(); i++) {
+            if (first < 0 || last >= request.getRecordCount() || records.get(i) == null
+                    || records.get(i).getIndex() != first + i) {
+                String errorMessage = "Records of an import chunk must have consecutive indexes within the import";
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+            }
+        }
 
-        List<Identity> queryResults = new ArrayList<Identity>();
+        String markerKey = importChunkKey(stub, request.getRoot(), first, last);
+        byte[] marker = stub.getState(markerKey);
+        if (marker != null && marker.length > 0) {
+            return genson.serialize(new ImportChunkResult(first, last, true, new ArrayList<>()));
+        }
 
-        // To retrieve all assets from the ledger use getStateByRange with empty startKey & endKey.
-        // Giving empty startKey & endKey is interpreted as all the keys from beginning to end.
-        // As another example, if you use startKey = 'asset0', endKey = 'asset9' ,
-        // then getStateByRange will retrieve asset with keys between asset0 (inclusive) and asset9 (exclusive) in lexical order.
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("", "");
+        String[] dates = Utils.getIssueAndExpiracyDate(stub.getTxTimestamp(), 1);
+        Map<String, Identity> pending = new LinkedHashMap<>();
+        Map<String, Identity> ledgerReads = new HashMap<>();
+        List<BatchEntryResult> results = new ArrayList<>(records.size());
+        boolean complete = true;
+
+        for (ImportRecord record : records) {
+            ECIdentityRequest entry = record.getIdentity();
+            String identityIdentifier = entry == null ? null : entry.getIdentifier();
+            if (identityIdentifier == null || identityIdentifier.isEmpty() || record.getProof() == null
+                    || !request.getControlledBy().equals(entry.getControlledBy())) {
+                results.add(BatchEntryResult.rejected(identityIdentifier, IdentityErrors.INVALID_REQUEST.toString()));
+                complete = false;
+                continue;
+            }
 
-        for (KeyValue result: results) {
-            Identity identity = genson.deserialize(result.getStringValue(), Identity.class);
-            queryResults.add(identity);
+            boolean isIncluded;
+            try {
+                List<byte[]> proof = new ArrayList<>(record.getProof().size());
+                for (String sibling : record.getProof()) {
+                    proof.add(MerkleImport.decode(sibling));
+                }
+                isIncluded = MerkleImport.verify(MerkleImport.leafHash(entry), record.getIndex(),
+                        request.getRecordCount(), proof, root);
+            } catch (IllegalArgumentException | NullPointerException e) {
+                isIncluded = false;
+            }
+            if (!isIncluded) {
+                results.add(BatchEntryResult.rejected(identityIdentifier, IdentityErrors.INVALID_SIGNATURE.toString()));
+                complete = false;
+                continue;
+            }
+
+            if (pending.containsKey(identityIdentifier)
+                    || readForBatch(ctx, identityIdentifier, ledgerReads) != null) {
+                // already present: a retried chunk reports what an earlier attempt created
+                results.add(BatchEntryResult.rejected(identityIdentifier, IdentityErrors.IDENTITY_ALREADY_EXISTS.toString()));
+                continue;
+            }
+
+            ECWrapper publicKey;
+            try {
+                publicKey = new ECWrapper(entry.getKty(), PublicKeyWrapper.USE_SIGNATURE, entry.getCrv(),
+                        entry.getKid(), entry.getAlg(), entry.getX(), entry.getY());
+            } catch (IllegalArgumentException e) {
+                results.add(BatchEntryResult.rejected(identityIdentifier, IdentityErrors.INVALID_KEY.toString()));
+                complete = false;
+                continue;
+            }
+            Map<String, String> subjectInfo = entry.getSubjectInfo() == null
+                    ? new HashMap<>() : new HashMap<>(entry.getSubjectInfo());
+
+            pending.put(identityIdentifier, Identity.withPublicKey(entry.getContext(), identityIdentifier,
+                    request.getControlledBy(), publicKey, subjectInfo, STATUS_ACTIVE, dates[0], dates[1]));
+            results.add(BatchEntryResult.created(identityIdentifier));
+        }
+
+        ShardedCounters counters = counters(ctx);
+        for (Identity identity : pending.values()) {
+            putNewIdentity(ctx, counters, identity);
+        }
+        if (complete) {
+            stub.putState(markerKey, INDEX_VALUE);
         }
 
-        final String response = genson.serialize(queryResults);
+        return genson.serialize(new ImportChunkResult(first, last, false, results));
+    }
 
-        return response;
+    /**
+     * The {@link Approval} a controller signs once for a whole import, with members
+     * root, the base64url Merkle root, and recordCount, the number of its leaves.
+     */
+    static Approval importApproval(final ChaincodeStub stub, final String controlledBy, final String root,
+                                   final long recordCount) {
+        return Approval.of(stub, "ImportIdentityChunk", controlledBy).with("root", root)
+                .with("recordCount", recordCount);
+    }
+
+    private static String importChunkKey(final ChaincodeStub stub, final String root, final long first,
+                                         final long last) {
+        return stub.createCompositeKey(IMPORT_CHUNK, root, String.format("%016x", first),
+                String.format("%016x", last)).toString();
     }
 
+    /**
+     * Lists the chunks of a bulk import that ImportIdentityChunk has marked as imported.
+     *
+     * @param ctx the transaction context
+     * @param root the base64url Merkle root of the import
+     * @return JSON array of the leaf ranges of the chunks, each an array of its first
+     *         and last index, in ascending order
+     */
     @Transaction(intent = Transaction.TYPE.EVALUATE)
-    public String GetIdentitiesByController(final Context ctx, String controllerId) {
+    public String GetImportProgress(final Context ctx, final String root) {
         ChaincodeStub stub = ctx.getStub();
 
-        List<Identity> queryResults = new ArrayList<Identity>();
+        List<long[]> ranges = new ArrayList<>();
+        try (QueryResultsIterator<KeyValue> markers = stub.getStateByPartialCompositeKey(
+                stub.createCompositeKey(IMPORT_CHUNK, root))) {
+            for (KeyValue marker : markers) {
+                List<String> attributes = stub.splitCompositeKey(marker.getKey()).getAttributes();
+                ranges.add(new long[] {Long.parseLong(attributes.get(1), 16), Long.parseLong(attributes.get(2), 16)});
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not read the progress of import " + root, e);
+        }
 
+        return genson.serialize(ranges);
+    }
 
-        QueryResultsIterator<KeyValue> results = stub.getQueryResult("" +
-                "" +
-                "  SELECT org.hyperledger.fabric.samples.assettransfer.Identity" +
-                "  WHERE (controlledBy = "+ controllerId + " )  " +
-                "  ORDER BY [issuedAt] ");
+    /**
+     * Creates an identity controlled by k of n existing identities, e.g. 2 of 3
+     * organisation keys. The request carries the new identity, its controller set
+     * and one signature per approving controller; at least k must be valid.
+     * controlledBy is set to the first controller in sorted order.
+     *
+     * Each signature is a JWS over the {@link Approval} of CreateThresholdIdentity
+     * for the new ID, with members controllers (sorted), threshold and keyThumbprint,
+     * the RFC 7638 thumbprint of the new key.
+     *
+     * @param ctx the transaction context
+     * @param requestJSON a {@link ThresholdIdentityRequest}
+     * @return the created identity
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Identity CreateThresholdIdentity(final Context ctx, final String requestJSON) {
+        ChaincodeStub stub = ctx.getStub();
 
-        for (KeyValue result: results) {
-            Identity identity = genson.deserialize(result.getStringValue(), Identity.class);
-            queryResults.add(identity);
+        ThresholdIdentityRequest request;
+        try {
+            request = genson.deserialize(requestJSON, ThresholdIdentityRequest.class);
+        } catch (RuntimeException e) {
+            request = null;
+        }
+        if (request == null || request.getIdentifier() == null || request.getIdentifier().isEmpty()
+                || request.getControllerSet() == null) {
+            String errorMessage = "Payload is not a threshold identity request";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
         }
+        String identityIdentifier = request.getIdentifier();
 
-        return genson.serialize(queryResults);
+        if (IdentityExists(ctx, identityIdentifier)) {
+            String errorMessage = String.format("Identity %s already exists", identityIdentifier);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.IDENTITY_ALREADY_EXISTS.toString());
+        }
+
+        ControllerSet controllerSet = canonicalControllerSet(request.getControllerSet());
+        if (controllerSet.getControllers().contains(identityIdentifier)) {
+            String errorMessage = String.format("Identity %s cannot approve its own creation", identityIdentifier);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        PublicKeyWrapper publicKey;
+        try {
+            publicKey = PublicKeyWrapper.fromJwk(request.getPublicKeyJwk());
+        } catch (IllegalArgumentException e) {
+            String errorMessage = String.format("Invalid public key for %s: %s", identityIdentifier, e.getMessage());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_KEY.toString());
+        }
+
+        Approval approval = Approval.of(stub, "CreateThresholdIdentity", identityIdentifier)
+                .with("controllers", controllerSet.getControllers())
+                .with("threshold", controllerSet.getThreshold())
+                .with("keyThumbprint", publicKey.thumbprint());
+        if (!isApproved(ctx, controllerSet, approval, request.getSignatures())) {
+            String errorMessage = String.format("Fewer than %d of %s signed %s",
+                    controllerSet.getThreshold(), controllerSet.getControllers(), approval.payload());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+        }
+        approval.consume();
+
+        String[] dates = Utils.getIssueAndExpiracyDate(stub.getTxTimestamp(), 1);
+        Map<String, String> subjectInfo = request.getSubjectInfo() == null
+                ? new HashMap<>() : new HashMap<>(request.getSubjectInfo());
+        Identity identity = Identity.withPublicKey(request.getContext(), identityIdentifier,
+                controllerSet.getControllers().get(0), publicKey, subjectInfo, STATUS_ACTIVE, dates[0], dates[1],
+                controllerSet);
+
+        return putNewIdentity(ctx, identity);
+    }
+
+    /**
+     * Replaces the controllers of an identity with a k-of-n controller set. The change
+     * must be signed by the current controllers: k of the current set, or the single
+     * controlledBy identity when there is no set yet.
+     *
+     * Each signature is a JWS over the {@link Approval} of UpdateControllerSet for
+     * the ID, with members controllers (sorted) and threshold of the new set.
+     *
+     * @param ctx the transaction context
+     * @param id the ID of the identity
+     * @param controllerSetJSON the new {@link ControllerSet}
+     * @param signaturesJSON JSON array of {@link ControllerSignature}s of the current controllers
+     * @return the updated identity, without the subjectInfo stored under separate keys
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Identity UpdateControllerSet(final Context ctx, final String id, final String controllerSetJSON,
+                                        final String signaturesJSON) {
+        ChaincodeStub stub = ctx.getStub();
+
+        ControllerSet requested;
+        ControllerSignature[] signatures;
+        try {
+            requested = genson.deserialize(controllerSetJSON, ControllerSet.class);
+            signatures = genson.deserialize(signaturesJSON, ControllerSignature[].class);
+        } catch (RuntimeException e) {
+            requested = null;
+            signatures = null;
+        }
+        if (requested == null || signatures == null) {
+            String errorMessage = "Payload is not a controller set and a list of signatures";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        Identity identity = readCore(ctx, id);
+        if (!STATUS_ACTIVE.equals(identity.getStatus())) {
+            String errorMessage = String.format("Identity %s is %s", id, identity.getStatus());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        ControllerSet controllerSet = canonicalControllerSet(requested);
+        for (String controllerId : controllerSet.getControllers()) {
+            // every new controller must exist
+            readCore(ctx, controllerId);
+        }
+
+        Approval approval = Approval.of(stub, "UpdateControllerSet", id)
+                .with("controllers", controllerSet.getControllers())
+                .with("threshold", controllerSet.getThreshold());
+        if (!isApproved(ctx, identity.approvers(), approval, Arrays.asList(signatures))) {
+            String errorMessage = String.format("Controllers of %s did not approve %s", id, approval.payload());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+        }
+        approval.consume();
+
+        Identity updated = identity.withControllerSet(controllerSet);
+        ShardedCounters counters = counters(ctx);
+        for (String controllerId : controllerIds(identity)) {
+            if (!controllerIds(updated).contains(controllerId)) {
+                stub.delState(stub.createCompositeKey(CONTROLLER_INDEX, controllerId, id).toString());
+                counters.add(ShardedCounters.CONTROLLER, controllerId, -1);
+            }
+        }
+        for (String controllerId : controllerIds(updated)) {
+            if (!controllerIds(identity).contains(controllerId)) {
+                counters.add(ShardedCounters.CONTROLLER, controllerId, 1);
+            }
+        }
+        putIdentity(ctx, updated);
+        return updated;
+    }
+
+    /**
+     * Replaces the public key of an identity, keeping its ID, controllers and
+     * children. The change must be signed with the current key of the identity,
+     * or approved by its controllers as in UpdateControllerSet, which also covers
+     * a lost or compromised key. Signatures are over the {@link Approval} of RotateKey.
+     *
+     * @param ctx the transaction context
+     * @param id the ID of the identity
+     * @param publicKeyJwkJSON the new public key as a JWK JSON object
+     * @param signaturesJSON JSON array of {@link ControllerSignature}s, by the identity itself or its controllers
+     * @return the updated identity, without the subjectInfo stored under separate keys
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Identity RotateKey(final Context ctx, final String id, final String publicKeyJwkJSON,
+                              final String signaturesJSON) {
+        Map<String, String> publicKeyJwk;
+        ControllerSignature[] signatures;
+        try {
+            publicKeyJwk = genson.deserialize(publicKeyJwkJSON, new GenericType<Map<String, String>>() { });
+            signatures = genson.deserialize(signaturesJSON, ControllerSignature[].class);
+        } catch (RuntimeException e) {
+            publicKeyJwk = null;
+            signatures = null;
+        }
+        if (publicKeyJwk == null || signatures == null) {
+            String errorMessage = "Payload is not a JWK and a list of signatures";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        Identity identity = readCore(ctx, id);
+        if (!STATUS_ACTIVE.equals(identity.getStatus())) {
+            String errorMessage = String.format("Identity %s is %s", id, identity.getStatus());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        PublicKeyWrapper publicKey;
+        try {
+            publicKey = PublicKeyWrapper.fromJwk(publicKeyJwk);
+        } catch (IllegalArgumentException e) {
+            String errorMessage = String.format("Invalid public key for %s: %s", id, e.getMessage());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_KEY.toString());
+        }
+        if (publicKey.toJwk().equals(identity.getPublicKeyJwk())) {
+            String errorMessage = String.format("Identity %s already has this key", id);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_KEY.toString());
+        }
+
+        ChaincodeStub stub = ctx.getStub();
+        Approval approval = Approval.of(stub, "RotateKey", id)
+                .with("keyThumbprint", publicKey.thumbprint());
+        if (!isApprovedBySelfOrControllers(ctx, identity, approval, Arrays.asList(signatures))) {
+            String errorMessage = String.format("Neither %s nor its controllers signed %s", id, approval.payload());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+        }
+        approval.consume();
+
+        Identity updated = identity.withKey(publicKey);
+        putIdentity(ctx, updated);
+        long latest = latestKeyHistoryPosition(stub, id);
+        if (latest < 0) {
+            // created before key history was kept: only the date of its first key is known
+            stub.putState(keyHistoryKey(stub, id, 0), genson.serialize(new KeyHistoryEntry(
+                    identity.getPublicKeyJwk(), null, identity.getIssuedAt())).getBytes(StandardCharsets.UTF_8));
+            latest = 0;
+        }
+        putKeyHistory(ctx, updated, latest + 1);
+        // the cache would notice the new key anyway; this drops the old verifier right away
+        verifierCache.invalidate(id);
+        return updated;
+    }
+
+    /**
+     * Lists the public keys an identity has had, newest first. Each key has an
+     * entry under {@value #KEY_HISTORY}, written when the identity is created and
+     * on every rotation, so a page is one range read and the cursor resumes right
+     * where the previous page stopped. An identity created before key history was
+     * kept, and never rotated since, lists its current key without a txId.
+     *
+     * @param ctx the transaction context
+     * @param id the ID of the identity
+     * @param pageSize maximum number of keys to return, at most {@value #MAX_PAGE_SIZE}
+     * @param cursor the cursor returned with the previous page, or an empty string for the first page
+     * @return a {@link KeyHistoryPage} as JSON
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetKeyHistory(final Context ctx, final String id, final int pageSize, final String cursor) {
+        ChaincodeStub stub = ctx.getStub();
+
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            String errorMessage = String.format("Page size must be between 1 and %d", MAX_PAGE_SIZE);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+        Identity identity = readCore(ctx, id);
+
+        CompositeKey prefix = stub.createCompositeKey(KEY_HISTORY, id);
+        boolean firstPage = cursor == null || cursor.isEmpty();
+        if (!firstPage && !isKeyHistoryCursor(stub, cursor, id)) {
+            String errorMessage = "Cursor does not belong to the key history of " + id;
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        QueryResultsIteratorWithMetadata<KeyValue> entries = stub.getStateByPartialCompositeKeyWithPagination(
+                prefix, pageSize, firstPage ? "" : cursor);
+        List<KeyHistoryEntry> keys = new ArrayList<>();
+        for (KeyValue entry : entries) {
+            keys.add(genson.deserialize(entry.getStringValue(), KeyHistoryEntry.class));
+        }
+        if (firstPage && keys.isEmpty()) {
+            keys.add(new KeyHistoryEntry(identity.getPublicKeyJwk(), null, identity.getIssuedAt()));
+        }
+
+        return genson.serialize(new KeyHistoryPage(keys, entries.getMetadata().getBookmark()));
+    }
+
+    /**
+     * @return whether the cursor is the key of a key history entry of the identity
+     */
+    private static boolean isKeyHistoryCursor(final ChaincodeStub stub, final String cursor, final String id) {
+        try {
+            CompositeKey key = stub.splitCompositeKey(cursor);
+            return KEY_HISTORY.equals(key.getObjectType()) && key.getAttributes().size() == 2
+                    && id.equals(key.getAttributes().get(0));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Entries are sorted newest first, so this reads only the first entry of the
+     * identity's key history. Rotations of the same identity conflict anyway, as
+     * each one writes the core record.
+     *
+     * @return the position of the newest key history entry, or -1 if there is none
+     */
+    private static long latestKeyHistoryPosition(final ChaincodeStub stub, final String id) {
+        try (QueryResultsIterator<KeyValue> entries = stub.getStateByPartialCompositeKey(
+                stub.createCompositeKey(KEY_HISTORY, id))) {
+            for (KeyValue entry : entries) {
+                String reversed = stub.splitCompositeKey(entry.getKey()).getAttributes().get(1);
+                return Long.MAX_VALUE - Long.parseLong(reversed, 16);
+            }
+            return -1;
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not read the key history of " + id, e);
+        }
+    }
+
+    private static String keyHistoryKey(final ChaincodeStub stub, final String id, final long position) {
+        return stub.createCompositeKey(KEY_HISTORY, id, String.format("%016x", Long.MAX_VALUE - position))
+                .toString();
+    }
+
+    /**
+     * Records the current key of an identity as the one set by this transaction.
+     *
+     * @param position 0 for the key an identity is created with, then higher for each rotation
+     */
+    private void putKeyHistory(final Context ctx, final Identity identity, final long position) {
+        ChaincodeStub stub = ctx.getStub();
+        KeyHistoryEntry entry = new KeyHistoryEntry(identity.getPublicKeyJwk(), stub.getTxId(),
+                Utils.formatLedgerDate(stub.getTxTimestamp()));
+        stub.putState(keyHistoryKey(stub, identity.getIdentifier(), position),
+                genson.serialize(entry).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Updates subjectInfo attributes of an identity. Each attribute has its own key,
+     * so only the changed attributes are written, and the approval only writes its
+     * own {@link Approval#USED} key: concurrent updates of different attributes do
+     * not conflict with each other. The exception is the first update of an identity
+     * that has no attribute keys yet, which marks its core record so that readers
+     * look for them. An update still conflicts with a concurrent key
+     * rotation, controller set change or status change of the identity, as it reads
+     * the core record and the status list chunk those write.
+     * Signed like RotateKey, by the identity itself or by its controllers, over the
+     * {@link Approval} of UpdateSubjectInfo with member changesHash, the
+     * {@link Approval#hash} of the changes as sent: a signature only approves
+     * those exact changes, once.
+     *
+     * An identity stored before attributes had their own keys has its attributes
+     * moved out of the core record on its first update.
+     *
+     * @param ctx the transaction context
+     * @param id the ID of the identity
+     * @param changesJSON JSON object of attribute names to new values; null or empty removes the attribute
+     * @param signaturesJSON JSON array of {@link ControllerSignature}s, by the identity itself or its controllers
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public void UpdateSubjectInfo(final Context ctx, final String id, final String changesJSON,
+                                  final String signaturesJSON) {
+        Map<String, String> changes;
+        ControllerSignature[] signatures;
+        try {
+            changes = genson.deserialize(changesJSON, new GenericType<Map<String, String>>() { });
+            signatures = genson.deserialize(signaturesJSON, ControllerSignature[].class);
+        } catch (RuntimeException e) {
+            changes = null;
+            signatures = null;
+        }
+        if (changes == null || changes.isEmpty() || signatures == null) {
+            String errorMessage = "Payload is not a set of attribute changes and a list of signatures";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        Identity identity = readCore(ctx, id);
+        if (!STATUS_ACTIVE.equals(identity.getStatus())) {
+            String errorMessage = String.format("Identity %s is %s", id, identity.getStatus());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        Approval approval = Approval.of(ctx.getStub(), "UpdateSubjectInfo", id)
+                .with("changesHash", Approval.hash(changes));
+        if (!isApprovedBySelfOrControllers(ctx, identity, approval, Arrays.asList(signatures))) {
+            String errorMessage = String.format("Neither %s nor its controllers signed %s", id, approval.payload());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+        }
+        approval.consume();
+
+        Map<String, String> embedded = identity.getSubjectInfo();
+        boolean isEmbedded = embedded != null && !embedded.isEmpty();
+        if (isEmbedded) {
+            for (Map.Entry<String, String> attribute : embedded.entrySet()) {
+                if (!changes.containsKey(attribute.getKey())) {
+                    putSubjectAttribute(ctx, id, attribute.getKey(), attribute.getValue());
+                }
+            }
+        }
+        if (isEmbedded || !Boolean.TRUE.equals(identity.getAttributeKeys())) {
+            putIdentity(ctx, identity.withSubjectInfo(null).withAttributeKeys(true));
+        }
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            putSubjectAttribute(ctx, id, change.getKey(), change.getValue());
+        }
+    }
+
+    /**
+     * Checks that a change was signed with the identity's own key, or approved by its controllers.
+     */
+    private boolean isApprovedBySelfOrControllers(final Context ctx, final Identity identity,
+                                                  final Approval approval,
+                                                  final List<ControllerSignature> signatures) {
+        return isApproved(ctx, ControllerSet.single(identity.getIdentifier()), approval, signatures)
+                || isApproved(ctx, identity.approvers(), approval, signatures);
+    }
+
+    /**
+     * Revokes an identity for good. Only its status list entry is written; the
+     * identity document stays as it is and ReadIdentity reports it as revoked.
+     * The controllers sign the {@link Approval} of RevokeIdentity with the target
+     * status as member, for example {@code "status":"revoked"}, and likewise for
+     * SuspendIdentity ("suspended") and ReinstateIdentity ("active").
+     *
+     * @param ctx the transaction context
+     * @param id the ID of the identity
+     * @param signaturesJSON JSON array of {@link ControllerSignature}s of its controllers
+     * @return the identity with its new status, without the subjectInfo stored under separate keys
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Identity RevokeIdentity(final Context ctx, final String id, final String signaturesJSON) {
+        return changeStatus(ctx, "RevokeIdentity", id, signaturesJSON, StatusList.Status.REVOKED);
+    }
+
+    /**
+     * Suspends an identity until it is reinstated, by writing its status list entry.
+     *
+     * @param ctx the transaction context
+     * @param id the ID of the identity
+     * @param signaturesJSON JSON array of {@link ControllerSignature}s of its controllers
+     * @return the identity with its new status, without the subjectInfo stored under separate keys
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Identity SuspendIdentity(final Context ctx, final String id, final String signaturesJSON) {
+        return changeStatus(ctx, "SuspendIdentity", id, signaturesJSON, StatusList.Status.SUSPENDED);
+    }
+
+    /**
+     * Makes a suspended identity active again. Revoked identities cannot be reinstated.
+     *
+     * @param ctx the transaction context
+     * @param id the ID of the identity
+     * @param signaturesJSON JSON array of {@link ControllerSignature}s of its controllers
+     * @return the identity with its new status, without the subjectInfo stored under separate keys
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Identity ReinstateIdentity(final Context ctx, final String id, final String signaturesJSON) {
+        return changeStatus(ctx, "ReinstateIdentity", id, signaturesJSON, StatusList.Status.ACTIVE);
+    }
+
+    private Identity changeStatus(final Context ctx, final String operation, final String id,
+                                  final String signaturesJSON, final StatusList.Status status) {
+        ControllerSignature[] signatures;
+        try {
+            signatures = genson.deserialize(signaturesJSON, ControllerSignature[].class);
+        } catch (RuntimeException e) {
+            signatures = null;
+        }
+        if (signatures == null) {
+            String errorMessage = "Payload is not a list of signatures";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        Identity identity = readCore(ctx, id);
+        String current = identity.getStatus();
+        boolean allowed = status == StatusList.Status.ACTIVE
+                ? StatusList.Status.SUSPENDED.label().equals(current)
+                : STATUS_ACTIVE.equals(current) || StatusList.Status.SUSPENDED.label().equals(current);
+        if (!allowed || status.label().equals(current)) {
+            String errorMessage = String.format("Identity %s is %s", id, current);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        Approval approval = Approval.of(ctx.getStub(), operation, id).with("status", status.label());
+        if (!isApproved(ctx, identity.approvers(), approval, Arrays.asList(signatures))) {
+            String errorMessage = String.format("Controllers of %s did not approve %s", id, approval.payload());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+        }
+        approval.consume();
+
+        StatusList statusList = statusList(ctx);
+        int index = statusList.indexOf(id);
+        if (index < 0) {
+            // first status change: identities get their entry here, not when created
+            index = statusList.allocate(id);
+        }
+        statusList.set(index, status);
+        events(ctx).status(id);
+        ShardedCounters counters = counters(ctx);
+        counters.add(ShardedCounters.STATUS, current, -1);
+        counters.add(ShardedCounters.STATUS, status.label(), 1);
+        return identity.withStatus(status.label());
+    }
+
+    /**
+     * Tells whether an {@link Approval} payload was already used to approve a
+     * change, so that signatures over it are no longer accepted.
+     *
+     * @param ctx the transaction context
+     * @param payload the canonical JSON of the approval, as signed
+     * @return whether the payload was used
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public boolean IsApprovalUsed(final Context ctx, final String payload) {
+        return Approval.isUsed(ctx.getStub(), payload);
+    }
+
+    /**
+     * Reports the revocation status of many identities without reading their
+     * documents: one small index read per identity, plus one read per distinct
+     * status list chunk. An identity that was never revoked or suspended has no
+     * index; it is reported active with index -1 after checking that it exists.
+     * Expiry is not reported here; see ReadIdentity.
+     *
+     * @param ctx the transaction context
+     * @param ids the IDs of the identities
+     * @return JSON array with one {@link IdentityStatus} per ID, in request order
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetStatus(final Context ctx, final String... ids) {
+        StatusList statusList = statusList(ctx);
+        List<IdentityStatus> statuses = new ArrayList<>(ids.length);
+        for (String id : ids) {
+            int index = statusList.indexOf(id);
+            String status;
+            if (index >= 0) {
+                status = statusList.get(index).label();
+            } else if (getIdentityState(ctx.getStub(), id) != null) {
+                status = StatusList.Status.ACTIVE.label();
+            } else {
+                status = IdentityStatus.UNKNOWN;
+            }
+            statuses.add(new IdentityStatus(id, index, status));
+        }
+        return genson.serialize(statuses);
+    }
+
+    /**
+     * Returns one status list chunk as stored, for verifiers that cache chunks and
+     * check identities by index locally. Entry i of the chunk is the identity with
+     * index chunk * {@value StatusList#CHUNK_SIZE} + i; see {@link StatusList} for the format.
+     *
+     * @param ctx the transaction context
+     * @param chunk the chunk number
+     * @return the compressed chunk, base64url encoded, or an empty string when every entry is active
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetStatusListChunk(final Context ctx, final int chunk) {
+        if (chunk < 0) {
+            String errorMessage = String.format("Invalid status list chunk %d", chunk);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+        byte[] stored = statusList(ctx).storedChunk(chunk);
+        return stored == null ? "" : Base64.getUrlEncoder().withoutPadding().encodeToString(stored);
+    }
+
+    /**
+     * Returns the number of identities, per status, and per requested controller,
+     * summed from the counter shards with one partial composite key scan per
+     * counter group or controller instead of a scan of the identities.
+     * Identities created before counters were introduced are not counted.
+     *
+     * @param ctx the transaction context
+     * @param controllerIds the controllers to count the identities of
+     * @return an {@link IdentityCounts} as JSON
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetCounts(final Context ctx, final String... controllerIds) {
+        ShardedCounters counters = counters(ctx);
+        Map<String, Long> byController = new LinkedHashMap<>();
+        for (String controllerId : controllerIds) {
+            byController.put(controllerId, counters.get(ShardedCounters.CONTROLLER, controllerId));
+        }
+        return genson.serialize(new IdentityCounts(
+                counters.get(ShardedCounters.TOTAL, ShardedCounters.ALL),
+                counters.getGroup(ShardedCounters.STATUS),
+                byController));
+    }
+
+    /**
+     * Folds the delta keys of one shard of a counter into a single key, keeping
+     * GetCounts scans short. Optional housekeeping: counts are right whether or
+     * not it runs. Only transactions writing to the same shard can make it fail
+     * validation, and they are never affected by it.
+     *
+     * @param ctx the transaction context
+     * @param group the counter group: total, status or controller
+     * @param name the counter name: all for total, a status, or a controller ID
+     * @param shard the shard to compact, from 0 to {@value ShardedCounters#SHARDS} - 1
+     * @return the number of delta keys folded
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public int CompactCounters(final Context ctx, final String group, final String name, final int shard) {
+        if (!Arrays.asList(ShardedCounters.TOTAL, ShardedCounters.STATUS, ShardedCounters.CONTROLLER).contains(group)
+                || name == null || name.isEmpty() || shard < 0 || shard >= ShardedCounters.SHARDS) {
+            String errorMessage = String.format("No counter shard %s/%s/%d", group, name, shard);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+        return counters(ctx).compact(group, name, shard);
+    }
+
+    private static ShardedCounters counters(final Context ctx) {
+        if (ctx instanceof IdentityContext) {
+            return ((IdentityContext) ctx).getCounters();
+        }
+        return new ShardedCounters(ctx.getStub());
+    }
+
+    /**
+     * @return the changes to emit with the transaction; a context other than
+     *         IdentityContext has no afterTransaction, so its changes are not emitted
+     */
+    private static IdentityEvents events(final Context ctx) {
+        if (ctx instanceof IdentityContext) {
+            return ((IdentityContext) ctx).getEvents();
+        }
+        return new IdentityEvents();
+    }
+
+    private static StatusList statusList(final Context ctx) {
+        if (ctx instanceof IdentityContext) {
+            return ((IdentityContext) ctx).getStatusList();
+        }
+        return new StatusList(ctx.getStub());
+    }
+
+    /**
+     * Tells why a controller read with readCore cannot approve anything. A
+     * controller must be active in the status list, within its validity even
+     * when ExpireIdentities has not swept it yet, and live rather than archived.
+     *
+     * @return revoked, suspended, expired, archived or another non-active status, or null when it is usable
+     */
+    private static String unusableReason(final Context ctx, final Identity controller) {
+        if (!STATUS_ACTIVE.equals(controller.getStatus())) {
+            return controller.getStatus() == null ? "not active" : controller.getStatus();
+        }
+        Instant validTo = Utils.parseLedgerDate(controller.getValidTo());
+        if (validTo != null && !validTo.isAfter(ctx.getStub().getTxTimestamp())) {
+            return STATUS_EXPIRED;
+        }
+        byte[] liveState = ctx.getStub().getState(controller.getIdentifier());
+        if (liveState == null || liveState.length == 0) {
+            return "archived";
+        }
+        return null;
+    }
+
+    private static void checkUsableController(final Context ctx, final Identity controller) {
+        String reason = unusableReason(ctx, controller);
+        if (reason != null) {
+            String errorMessage = String.format("Controller %s is %s", controller.getIdentifier(), reason);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+        }
+    }
+
+    private static ControllerSet canonicalControllerSet(final ControllerSet controllerSet) {
+        try {
+            return controllerSet.canonical();
+        } catch (IllegalArgumentException e) {
+            String errorMessage = "Invalid controller set: " + e.getMessage();
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+    }
+
+    /**
+     * Checks that at least k controllers of the set signed the approval. Only one
+     * signature per controller is considered, and signatures of identities outside
+     * the set, of controllers that are not usable (see unusableReason), or over any
+     * other payload are ignored.
+     *
+     * Every controller is read before any signature is checked, in sorted order and
+     * on this thread, so the read set is the same on every peer whichever checks
+     * happen to finish first.
+     */
+    private boolean isApproved(final Context ctx, final ControllerSet approvers, final Approval approval,
+                               final List<ControllerSignature> signatures) {
+        Map<String, String> signatureByController = new HashMap<>();
+        if (signatures != null) {
+            for (ControllerSignature signature : signatures) {
+                if (signature != null && signature.getSignature() != null
+                        && approval.isPayloadOf(signature.getSignature())) {
+                    signatureByController.putIfAbsent(signature.getController(), signature.getSignature());
+                }
+            }
+        }
+
+        List<Callable<Boolean>> checks = new ArrayList<>();
+        for (String controllerId : approvers.getControllers()) {
+            Identity controller = readCore(ctx, controllerId);
+            String serializedSignature = signatureByController.get(controllerId);
+            if (serializedSignature != null && unusableReason(ctx, controller) == null) {
+                checks.add(() -> validateSignature(controller, serializedSignature));
+            }
+        }
+        long start = System.nanoTime();
+        boolean approved = thresholdVerifier.verify(approvers.getThreshold(), checks);
+        if (ctx instanceof IdentityContext) {
+            ((IdentityContext) ctx).getStats().verify(System.nanoTime() - start);
+        }
+        return approved;
+    }
+
+    /**
+     * @return controlledBy followed by the other members of the controller set, without duplicates
+     */
+    private static List<String> controllerIds(final Identity identity) {
+        List<String> controllerIds = new ArrayList<>();
+        if (identity.getControlledBy() != null) {
+            controllerIds.add(identity.getControlledBy());
+        }
+        ControllerSet controllerSet = identity.getControllerSet();
+        if (controllerSet != null && controllerSet.getControllers() != null) {
+            for (String controllerId : controllerSet.getControllers()) {
+                if (!controllerIds.contains(controllerId)) {
+                    controllerIds.add(controllerId);
+                }
+            }
+        }
+        return controllerIds;
+    }
+
+    /**
+     * Writes a new identity created by a single-identity transaction. When the
+     * transient map carries subjectInfo, and the salt that must come with it, it
+     * goes to the private data collection and the identity records its hash.
+     *
+     * @return the identity as written
+     */
+    private Identity putNewIdentity(final Context ctx, final Identity identity) {
+        Identity written = identity;
+        byte[] privateSubjectInfo = privateSubjectInfo(ctx.getStub());
+        if (privateSubjectInfo != null) {
+            ctx.getStub().putPrivateData(PrivateSubjectInfo.configuredCollection(), identity.getIdentifier(),
+                    privateSubjectInfo);
+            written = identity.withSubjectInfoHash(PrivateSubjectInfo.hash(privateSubjectInfo));
+        }
+        return putNewIdentity(ctx, counters(ctx), written);
+    }
+
+    /**
+     * @return the value to store in the private data collection, or null when the
+     *         transient map carries no subjectInfo
+     * @throws ChaincodeException INVALID_REQUEST when the subjectInfo is malformed or
+     *         comes without a salt of at least {@value PrivateSubjectInfo#MIN_SALT_BYTES} bytes
+     */
+    private static byte[] privateSubjectInfo(final ChaincodeStub stub) {
+        Map<String, byte[]> transientMap = stub.getTransient();
+        byte[] subjectInfoJSON = transientMap == null ? null : transientMap.get(PrivateSubjectInfo.TRANSIENT_SUBJECT_INFO);
+        if (subjectInfoJSON == null) {
+            return null;
+        }
+        Map<String, String> subjectInfo;
+        try {
+            subjectInfo = PrivateSubjectInfo.parseTransient(subjectInfoJSON);
+        } catch (IllegalArgumentException e) {
+            String errorMessage = "Transient subjectInfo must be a JSON object of strings: " + e.getMessage();
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+        byte[] salt = transientMap.get(PrivateSubjectInfo.TRANSIENT_SALT);
+        if (salt == null || salt.length < PrivateSubjectInfo.MIN_SALT_BYTES) {
+            String errorMessage = String.format("Transient map must carry a random salt of at least %d bytes",
+                    PrivateSubjectInfo.MIN_SALT_BYTES);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+        return PrivateSubjectInfo.encode(salt, subjectInfo);
+    }
+
+    /**
+     * Writes a new identity: its counter deltas, its core record and index entries,
+     * its first key history entry, and one key per subjectInfo attribute. It gets
+     * no status list entry until it is first revoked or suspended.
+     *
+     * @return the identity as written, marked with whether it has attribute keys
+     */
+    private Identity putNewIdentity(final Context ctx, final ShardedCounters counters, final Identity identity) {
+        counters.add(ShardedCounters.TOTAL, ShardedCounters.ALL, 1);
+        if (identity.getStatus() != null) {
+            counters.add(ShardedCounters.STATUS, identity.getStatus(), 1);
+        }
+        for (String controllerId : controllerIds(identity)) {
+            counters.add(ShardedCounters.CONTROLLER, controllerId, 1);
+        }
+        boolean attributeKeys = false;
+        if (identity.getSubjectInfo() != null) {
+            for (Map.Entry<String, String> attribute : identity.getSubjectInfo().entrySet()) {
+                putSubjectAttribute(ctx, identity.getIdentifier(), attribute.getKey(), attribute.getValue());
+                attributeKeys |= attribute.getValue() != null && !attribute.getValue().isEmpty();
+            }
+        }
+        Identity written = identity.withAttributeKeys(attributeKeys);
+        putIdentity(ctx, written.withSubjectInfo(null));
+        putKeyHistory(ctx, written, 0);
+        return written;
+    }
+
+    /**
+     * Writes one subjectInfo attribute; a null or empty value deletes it.
+     */
+    private static void putSubjectAttribute(final Context ctx, final String id, final String name,
+                                            final String value) {
+        ChaincodeStub stub = ctx.getStub();
+        events(ctx).attribute(id, name);
+        String key = stub.createCompositeKey(SUBJECT_INFO, id, name).toString();
+        if (value == null || value.isEmpty()) {
+            stub.delState(key);
+        } else {
+            stub.putState(key, SubjectAttribute.encode(id, name, value));
+        }
+    }
+
+    /**
+     * Writes the core record of an identity and the index entries that point to it.
+     * Callers pass a record read with readCore, so subjectInfo still embedded in
+     * an older record is kept.
+     */
+    private void putIdentity(final Context ctx, final Identity identity) {
+        ChaincodeStub stub = ctx.getStub();
+        stub.putState(identity.getIdentifier(), encode(ctx, identity));
+        events(ctx).put(identity.getIdentifier());
+        for (String controllerId : controllerIds(identity)) {
+            CompositeKey controllerKey = stub.createCompositeKey(
+                    CONTROLLER_INDEX, controllerId, identity.getIdentifier());
+            stub.putState(controllerKey.toString(), INDEX_VALUE);
+        }
+        if (STATUS_ACTIVE.equals(identity.getStatus())) {
+            Instant validTo = Utils.parseLedgerDate(identity.getValidTo());
+            if (validTo != null) {
+                CompositeKey expiryKey = stub.createCompositeKey(EXPIRY_INDEX, Utils.expiryBucket(validTo),
+                        Utils.formatLedgerDate(validTo), identity.getIdentifier());
+                stub.putState(expiryKey.toString(), INDEX_VALUE);
+            }
+        }
+    }
+
+    /**
+     * Moves an identity under the archive prefix, so it no longer shows up in range
+     * scans or controller lookups but can still be read by ID.
+     */
+    private void archiveIdentity(final Context ctx, final Identity identity) {
+        ChaincodeStub stub = ctx.getStub();
+        stub.delState(identity.getIdentifier());
+        for (String controllerId : controllerIds(identity)) {
+            stub.delState(stub.createCompositeKey(
+                    CONTROLLER_INDEX, controllerId, identity.getIdentifier()).toString());
+        }
+        stub.putState(stub.createCompositeKey(ARCHIVE, identity.getIdentifier()).toString(),
+                encode(ctx, identity));
+        events(ctx).archive(identity.getIdentifier());
+    }
+
+    /**
+     * Reads the stored state of an identity, looking in the archive when it is not live.
+     *
+     * @return the state in any format {@link IdentityCodec} reads, or null when the identity does not exist
+     */
+    private byte[] getIdentityState(final ChaincodeStub stub, final String id) {
+        byte[] identityState = stub.getState(id);
+        if (identityState == null || identityState.length == 0) {
+            identityState = stub.getState(stub.createCompositeKey(ARCHIVE, id).toString());
+        }
+        return (identityState == null || identityState.length == 0) ? null : identityState;
+    }
+
+    /**
+     * Decodes a stored identity, reusing the one already decoded in this transaction when possible.
+     */
+    private byte[] encode(final Context ctx, final Identity identity) {
+        if (ctx instanceof IdentityContext) {
+            long start = System.nanoTime();
+            byte[] state = codec.encode(identity);
+            ((IdentityContext) ctx).getStats().codec(System.nanoTime() - start);
+            return state;
+        }
+        return codec.encode(identity);
+    }
+
+    private Identity decode(final Context ctx, final byte[] identityState) {
+        if (ctx instanceof IdentityContext) {
+            return ((IdentityContext) ctx).decode(identityState, codec);
+        }
+        return codec.decode(identityState);
+    }
+
+    /**
+     * Reads an identity like readCore, status list included, but at most once per
+     * batch and without failing when it does not exist.
+     *
+     * @return the identity, or null when it does not exist
+     */
+    private Identity readForBatch(final Context ctx, final String id, final Map<String, Identity> ledgerReads) {
+        if (ledgerReads.containsKey(id)) {
+            return ledgerReads.get(id);
+        }
+        byte[] identityState = getIdentityState(ctx.getStub(), id);
+        Identity identity = identityState == null ? null : withListedStatus(ctx, decode(ctx, identityState));
+        ledgerReads.put(id, identity);
+        return identity;
+    }
+
+    /**
+     * validateSignature, timed into the transaction's stats.
+     */
+    private boolean validateSignature(final Context ctx, final Identity controller, final String serializedSignature)
+            throws ParseException, JOSEException {
+        if (!(ctx instanceof IdentityContext)) {
+            return validateSignature(controller, serializedSignature);
+        }
+        long start = System.nanoTime();
+        try {
+            return validateSignature(controller, serializedSignature);
+        } finally {
+            ((IdentityContext) ctx).getStats().verify(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Verifies a compact JWS with the key of an identity. The verifier comes from the
+     * {@link SignatureVerifierProvider} for the key's kty and alg; a key that names
+     * its alg only accepts signatures with that alg in the header.
+     *
+     * @param controller the identity whose key made the signature
+     * @param serializedSignature the compact JWS
+     * @return whether the signature is valid
+     * @throws ParseException if the JWS is malformed
+     * @throws JOSEException if the key or algorithm is not supported
+     * @throws ChaincodeException with INVALID_KEY if the stored key of the identity is missing or invalid
+     */
+    public boolean validateSignature(Identity controller, String serializedSignature) throws ParseException, JOSEException {
+        PublicKeyWrapper publicKey;
+        try {
+            publicKey = controller.publicKey();
+        } catch (IllegalArgumentException e) {
+            String errorMessage = String.format("Stored key of %s is not usable: %s", controller.getIdentifier(),
+                    e.getMessage());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_KEY.toString());
+        }
+        JWSVerifier verifier = verifierCache.get(
+                controller.getIdentifier(),
+                controller.getPublicKeyJwk(),
+                publicKeyJwk -> publicKey.newVerifier());
+        JWSObject jwsObject = JWSObject.parse(serializedSignature);
+        String alg = publicKey.getAlg();
+        if (alg != null && !alg.equals(jwsObject.getHeader().getAlgorithm().getName())) {
+            return false;
+        }
+        return verifier.verify(jwsObject.getHeader(), jwsObject.getSigningInput(), jwsObject.getSignature());
+    }
+
+    public VerifierCache getVerifierCache() {
+        return verifierCache;
+    }
+
+
+
+    /**
+     * Creates a new identity on the ledger. This method expects only RSAKeys as key;
+     * arguments are context, identifier, controlledBy, kty, kid, e, alg, n, the JWS
+     * of the controller over the {@link #creationApproval} of CreateRSAIdentity, then
+     * any number of subjectInfo entries as "name:value".
+     *
+     * @param ctx the transaction context
+     * @return the created asset
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Identity CreateRSAIdentity(
+            final Context ctx,
+            final String... args
+    ) {
+
+        ChaincodeStub stub = ctx.getStub();
+
+        if (args.length < 9) {
+            String errorMessage = String.format("Expected at least 9 arguments, got %d", args.length);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        if (IdentityExists(ctx, args[1])) {
+            String errorMessage = String.format("Identity %s already exists", args[1]);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.IDENTITY_ALREADY_EXISTS.toString());
+        }
+
+        HashMap<String, String> subjectInfo = new HashMap<>();
+        String[] dates = Utils.getIssueAndExpiracyDate(stub.getTxTimestamp(), 1);
+
+        RSAWrapper publicKey;
+        try {
+            publicKey = new RSAWrapper(args[3], PublicKeyWrapper.USE_SIGNATURE, args[4], args[6], args[7], args[5]);
+        } catch (IllegalArgumentException e) {
+            String errorMessage = String.format("Invalid public key for %s: %s", args[1], e.getMessage());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_KEY.toString());
+        }
+
+        for (int i = 9; i < args.length; i++) {
+            String[] split = args[i].split(":");
+            subjectInfo.put(split[0], split[1]);
+        }
+
+        Identity identity = Identity.withPublicKey(args[0], args[1], args[2], publicKey, subjectInfo, STATUS_ACTIVE, dates[0], dates[1]);
+
+        checkControllerSignature(ctx, "CreateRSAIdentity", identity, publicKey, args[8]);
+
+        return putNewIdentity(ctx, identity);
+    }
+
+
+
+
+    /**
+     * Retrieves an asset with the specified ID from the ledger. An active identity
+     * that was revoked or suspended is returned with that status from the status list.
+     * Its subjectInfo attributes, stored under their own keys, are read back with
+     * one partial composite key scan, skipped when its core record has none.
+     *
+     * @param ctx the transaction context
+     * @param id the ID of the identity
+     * @return the asset found on the ledger if there was one
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Identity ReadIdentity(final Context ctx, final String id) {
+        Identity identity = readCore(ctx, id);
+        return withSubjectAttributes(identity, subjectAttributes(ctx.getStub(), identity));
+    }
+
+    /**
+     * @return the subjectInfo attributes of an identity stored under their own keys, read with one scan
+     *         unless its core record says it has none
+     */
+    private static Map<String, String> subjectAttributes(final ChaincodeStub stub, final Identity identity) {
+        if (!identity.mayHaveAttributeKeys()) {
+            return Collections.emptyMap();
+        }
+        return subjectAttributes(stub, identity.getIdentifier());
+    }
+
+    /**
+     * @return the subjectInfo attributes of an identity stored under their own keys, read with one scan
+     */
+    private static Map<String, String> subjectAttributes(final ChaincodeStub stub, final String id) {
+        Map<String, String> attributes = new HashMap<>();
+        QueryResultsIterator<KeyValue> attributeStates =
+                stub.getStateByPartialCompositeKey(stub.createCompositeKey(SUBJECT_INFO, id));
+        for (KeyValue attribute : attributeStates) {
+            String name = stub.splitCompositeKey(attribute.getKey()).getAttributes().get(1);
+            attributes.put(name, SubjectAttribute.decodeValue(attribute.getValue()));
+        }
+        return attributes;
+    }
+
+    /**
+     * @return the subjectInfo attributes stored under their own keys of every identity, by identity ID,
+     *         read with one scan
+     */
+    private static Map<String, Map<String, String>> allSubjectAttributes(final ChaincodeStub stub) {
+        Map<String, Map<String, String>> attributes = new HashMap<>();
+        try (QueryResultsIterator<KeyValue> attributeStates =
+                     stub.getStateByPartialCompositeKey(stub.createCompositeKey(SUBJECT_INFO))) {
+            for (KeyValue attribute : attributeStates) {
+                List<String> idAndName = stub.splitCompositeKey(attribute.getKey()).getAttributes();
+                attributes.computeIfAbsent(idAndName.get(0), id -> new HashMap<>())
+                        .put(idAndName.get(1), SubjectAttribute.decodeValue(attribute.getValue()));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not read the subjectInfo attributes", e);
+        }
+        return attributes;
+    }
+
+    /**
+     * @return the identity with its subjectInfo attributes merged over the ones still in its core record
+     */
+    private static Identity withSubjectAttributes(final Identity identity, final Map<String, String> attributes) {
+        // identities stored before attributes had their own keys keep them in the core record
+        Map<String, String> subjectInfo = identity.getSubjectInfo() == null
+                ? new HashMap<>() : new HashMap<>(identity.getSubjectInfo());
+        subjectInfo.putAll(attributes);
+        return identity.withSubjectInfo(subjectInfo);
+    }
+
+    /**
+     * Like ReadIdentity, with the subjectInfo attributes kept in the private data
+     * collection merged in. Only peers of organizations that are members of the
+     * collection hold them, so this has to be evaluated on such a peer. The
+     * private value is checked against the hash in the public record first.
+     *
+     * @param ctx the transaction context
+     * @param id the ID of the identity
+     * @return the identity with its public and private subjectInfo attributes
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Identity ReadIdentityWithPrivateInfo(final Context ctx, final String id) {
+        Identity identity = ReadIdentity(ctx, id);
+        if (identity.getSubjectInfoHash() == null) {
+            return identity;
+        }
+
+        byte[] privateSubjectInfo = ctx.getStub().getPrivateData(PrivateSubjectInfo.configuredCollection(), id);
+        if (privateSubjectInfo == null || privateSubjectInfo.length == 0) {
+            String errorMessage = String.format("Private subjectInfo of %s is not available on this peer", id);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+        if (!identity.getSubjectInfoHash().equals(PrivateSubjectInfo.hash(privateSubjectInfo))) {
+            String errorMessage = String.format("Private subjectInfo of %s does not match its hash", id);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        Map<String, String> subjectInfo = new HashMap<>(identity.getSubjectInfo());
+        subjectInfo.putAll(PrivateSubjectInfo.decode(privateSubjectInfo));
+        return identity.withSubjectInfo(subjectInfo);
+    }
+
+    /**
+     * Replaces the private subjectInfo of an identity with the one in the
+     * transient map, and records its new hash. Signed like UpdateSubjectInfo, by
+     * the identity itself or by its controllers, over the {@link Approval} of
+     * UpdatePrivateSubjectInfo with member subjectInfoHash: the
+     * {@link PrivateSubjectInfo#hash} of the value built from the transient salt
+     * and subjectInfo, which is also the hash the identity records. A signature
+     * therefore approves one private value, once, without revealing it. An empty
+     * transient subjectInfo object removes the private attributes.
+     *
+     * @param ctx the transaction context
+     * @param id the ID of the identity
+     * @param signaturesJSON JSON array of {@link ControllerSignature}s, by the identity itself or its controllers
+     * @return the core record with its new hash
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Identity UpdatePrivateSubjectInfo(final Context ctx, final String id, final String signaturesJSON) {
+        ChaincodeStub stub = ctx.getStub();
+
+        byte[] privateSubjectInfo = privateSubjectInfo(stub);
+        ControllerSignature[] signatures;
+        try {
+            signatures = genson.deserialize(signaturesJSON, ControllerSignature[].class);
+        } catch (RuntimeException e) {
+            signatures = null;
+        }
+        if (privateSubjectInfo == null || signatures == null) {
+            String errorMessage = "Transient map has no subjectInfo or payload is not a list of signatures";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        Identity identity = readCore(ctx, id);
+        if (!STATUS_ACTIVE.equals(identity.getStatus())) {
+            String errorMessage = String.format("Identity %s is %s", id, identity.getStatus());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        Approval approval = Approval.of(stub, "UpdatePrivateSubjectInfo", id)
+                .with("subjectInfoHash", PrivateSubjectInfo.hash(privateSubjectInfo));
+        if (!isApprovedBySelfOrControllers(ctx, identity, approval, Arrays.asList(signatures))) {
+            String errorMessage = String.format("Neither %s nor its controllers signed %s", id, approval.payload());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_SIGNATURE.toString());
+        }
+        approval.consume();
+
+        String collection = PrivateSubjectInfo.configuredCollection();
+        Identity updated;
+        if (PrivateSubjectInfo.decode(privateSubjectInfo).isEmpty()) {
+            stub.delPrivateData(collection, id);
+            updated = identity.withSubjectInfoHash(null);
+        } else {
+            stub.putPrivateData(collection, id, privateSubjectInfo);
+            updated = identity.withSubjectInfoHash(PrivateSubjectInfo.hash(privateSubjectInfo));
+        }
+        putIdentity(ctx, updated);
+        return updated;
+    }
+
+    /**
+     * Reads the core record of an identity: key material, controllers, dates and
+     * status, without the subjectInfo attributes stored under their own keys.
+     * Transactions that only need to check keys or controllers use this, so
+     * concurrent UpdateSubjectInfo calls do not invalidate them.
+     */
+    private Identity readCore(final Context ctx, final String id) {
+        ChaincodeStub stub = ctx.getStub();
+        byte[] identityState = getIdentityState(stub, id);
+
+        if (identityState == null) {
+            String errorMessage = String.format("Identity %s does not exist", id);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.IDENTITY_NOT_FOUND.toString());
+        }
+
+        return withListedStatus(ctx, decode(ctx, identityState));
+    }
+
+    /**
+     * @return the identity, or a copy revoked or suspended when it is active but its status list entry says so
+     */
+    private Identity withListedStatus(final Context ctx, final Identity identity) {
+        return withListedStatus(statusList(ctx), identity);
+    }
+
+    private static Identity withListedStatus(final StatusList statusList, final Identity identity) {
+        if (!STATUS_ACTIVE.equals(identity.getStatus())) {
+            return identity;
+        }
+        int index = statusList.indexOf(identity.getIdentifier());
+        StatusList.Status status = index < 0 ? StatusList.Status.ACTIVE : statusList.get(index);
+        return status == StatusList.Status.ACTIVE ? identity : identity.withStatus(status.label());
+    }
+
+    /**
+     * Checks the existence of the identity on the ledger
+     *
+     * @param ctx the transaction context
+     * @param id the ID of the identity
+     * @return boolean indicating the existence of the asset
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public boolean IdentityExists(final Context ctx, final String id) {
+        ChaincodeStub stub = ctx.getStub();
+        return getIdentityState(stub, id) != null;
+    }
+
+    /**
+     * Marks identities whose validTo has passed as expired, in expiry order. At most
+     * maxCount identities are expired per call, which keeps the read/write set small;
+     * a cron client calls again with the returned cursor while it is not empty.
+     *
+     * The expiry index is scanned one UTC day at a time, from the cursor day or, for
+     * an empty cursor, from the oldest day in the index, and the sweep stops at the
+     * first entry that is not due yet. Processed entries are removed from the index,
+     * so a call that failed validation is simply repeated with the same cursor. Index
+     * entries of identities that no longer exist, are no longer active or now have
+     * another validTo are removed without counting against maxCount.
+     *
+     * "Now" is the transaction timestamp, so every endorsing peer agrees on what is due.
+     *
+     * @param ctx the transaction context
+     * @param maxCount maximum number of identities to expire, at most {@value #MAX_PAGE_SIZE}
+     * @param archive whether expired identities are moved under the archive prefix
+     * @param cursor the cursor returned by the previous call, or an empty string to start from the oldest entry
+     * @return the expired identity IDs and the cursor, empty when no due identity is left
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String ExpireIdentities(final Context ctx, final int maxCount, final boolean archive,
+                                   final String cursor) {
+        ChaincodeStub stub = ctx.getStub();
+
+        if (maxCount < 1 || maxCount > MAX_PAGE_SIZE) {
+            String errorMessage = String.format("Count must be between 1 and %d", MAX_PAGE_SIZE);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+        LocalDate day;
+        try {
+            day = cursor == null || cursor.isEmpty() ? oldestExpiryDay(stub)
+                    : LocalDate.parse(cursor, DateTimeFormatter.BASIC_ISO_DATE);
+        } catch (DateTimeParseException e) {
+            String errorMessage = "Cursor is not a yyyyMMdd day returned by ExpireIdentities";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        Instant now = stub.getTxTimestamp();
+        String nowDate = Utils.formatLedgerDate(now);
+        LocalDate today = LocalDate.parse(Utils.expiryBucket(now), DateTimeFormatter.BASIC_ISO_DATE);
+        List<String> expired = new ArrayList<>();
+        ShardedCounters counters = counters(ctx);
+        String nextCursor = "";
+
+        sweep:
+        for (int days = 0; day != null && !day.isAfter(today); days++, day = day.plusDays(1)) {
+            String bucket = day.format(DateTimeFormatter.BASIC_ISO_DATE);
+            if (days == MAX_SWEEP_DAYS) {
+                nextCursor = bucket;
+                break;
+            }
+            try (QueryResultsIterator<KeyValue> indexEntries = stub.getStateByPartialCompositeKey(
+                    stub.createCompositeKey(EXPIRY_INDEX, bucket))) {
+                for (KeyValue indexEntry : indexEntries) {
+                    List<String> attributes = stub.splitCompositeKey(indexEntry.getKey()).getAttributes();
+                    String indexedValidTo = attributes.get(1);
+                    if (indexedValidTo.compareTo(nowDate) > 0) {
+                        // entries of a day are sorted by validTo: nothing after this one is due either
+                        break sweep;
+                    }
+                    if (expired.size() == maxCount) {
+                        nextCursor = bucket;
+                        break sweep;
+                    }
+
+                    stub.delState(indexEntry.getKey());
+                    byte[] identityState = stub.getState(attributes.get(2));
+                    if (identityState == null || identityState.length == 0) {
+                        continue;
+                    }
+                    Identity identity = decode(ctx, identityState);
+                    Instant validTo = Utils.parseLedgerDate(identity.getValidTo());
+                    if (!STATUS_ACTIVE.equals(identity.getStatus()) || validTo == null
+                            || !indexedValidTo.equals(Utils.formatLedgerDate(validTo))) {
+                        continue;
+                    }
+
+                    counters.add(ShardedCounters.STATUS, withListedStatus(ctx, identity).getStatus(), -1);
+                    counters.add(ShardedCounters.STATUS, STATUS_EXPIRED, 1);
+                    Identity expiredIdentity = identity.withStatus(STATUS_EXPIRED);
+                    if (archive) {
+                        archiveIdentity(ctx, expiredIdentity);
+                    } else {
+                        putIdentity(ctx, expiredIdentity);
+                    }
+                    expired.add(identity.getIdentifier());
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not read the expiry index of " + bucket, e);
+            }
+        }
+
+        return genson.serialize(new ExpirySweepResult(expired, nextCursor));
+    }
+
+    /**
+     * @return the day of the oldest expiry index entry, or null when the index is empty
+     */
+    private static LocalDate oldestExpiryDay(final ChaincodeStub stub) {
+        try (QueryResultsIterator<KeyValue> indexEntries = stub.getStateByPartialCompositeKey(
+                stub.createCompositeKey(EXPIRY_INDEX))) {
+            for (KeyValue indexEntry : indexEntries) {
+                String bucket = stub.splitCompositeKey(indexEntry.getKey()).getAttributes().get(0);
+                return LocalDate.parse(bucket, DateTimeFormatter.BASIC_ISO_DATE);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not read the expiry index", e);
+        }
+        return null;
+    }
+
+
+
+    /**
+     * Retrieves all assets from the ledger.
+     *
+     * Values stored as JSON are spliced into the response as they are instead of
+     * going through a deserialize/serialize round trip; binary ones are converted.
+     * Like every bulk query, it returns each identity as ReadIdentity does: the
+     * status comes from the status list and the subjectInfo attributes stored under
+     * their own keys are joined back in. That costs one status index read per
+     * identity, one read per status list chunk and one scan of all the attribute
+     * keys, which the response holds anyway.
+     *
+     * @param ctx the transaction context
+     * @return array of assets found on the ledger
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllIdentities(final Context ctx) {
+        ChaincodeStub stub = ctx.getStub();
+
+        RawJsonArray queryResults = new RawJsonArray();
+
+        // To retrieve all assets from the ledger use getStateByRange with empty startKey & endKey.
+        // Giving empty startKey & endKey is interpreted as all the keys from beginning to end.
+        // As another example, if you use startKey = 'asset0', endKey = 'asset9' ,
+        // then getStateByRange will retrieve asset with keys between asset0 (inclusive) and asset9 (exclusive) in lexical order.
+        QueryResultsIterator<KeyValue> results = stub.getStateByRange("", "");
+
+        StatusList statusList = statusList(ctx);
+        Map<String, Map<String, String>> attributes = allSubjectAttributes(stub);
+        for (KeyValue result: results) {
+            queryResults.add(bulkJson(ctx, statusList, result.getKey(), result.getValue(), attributes));
+        }
+
+        final String response = queryResults.toJson();
+
+        return response;
+    }
+
+    /**
+     * Retrieves one page of identities from the ledger. Unlike GetAllIdentities, the
+     * work and the response size are bounded by the page size, whatever the size of the ledger:
+     * the attribute keys are scanned per identity, and only for those whose core
+     * record says they have some.
+     *
+     * @param ctx the transaction context
+     * @param pageSize maximum number of identities to return, at most {@value #MAX_PAGE_SIZE}
+     * @param bookmark the bookmark returned with the previous page, or an empty string for the first page
+     * @return {@code {records, bookmark, fetchedCount}}; pass the bookmark back to get the next page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllIdentitiesWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        ChaincodeStub stub = ctx.getStub();
+
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            String errorMessage = String.format("Page size must be between 1 and %d", MAX_PAGE_SIZE);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        QueryResultsIteratorWithMetadata<KeyValue> results =
+                stub.getStateByRangeWithPagination("", "", pageSize, bookmark == null ? "" : bookmark);
+
+        RawJsonArray queryResults = new RawJsonArray(pageSize);
+        StatusList statusList = statusList(ctx);
+        for (KeyValue result: results) {
+            queryResults.add(bulkJson(ctx, statusList, result.getKey(), result.getValue(), null));
+        }
+
+        return queryResults.toPageJson(
+                results.getMetadata().getBookmark(),
+                results.getMetadata().getFetchedRecordsCount());
+    }
+
+    /**
+     * Retrieves all identities controlled by the given identity, using the
+     * controller~identity composite key index. The cost is proportional to the
+     * number of children and it works on both LevelDB and CouchDB.
+     *
+     * @param ctx the transaction context
+     * @param controllerId the ID of the controlling identity
+     * @return array of identities controlled by controllerId
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetIdentitiesByController(final Context ctx, final String controllerId) {
+        ChaincodeStub stub = ctx.getStub();
+
+        RawJsonArray queryResults = new RawJsonArray();
+
+        QueryResultsIterator<KeyValue> results =
+                stub.getStateByPartialCompositeKey(stub.createCompositeKey(CONTROLLER_INDEX, controllerId));
+        addIndexedIdentities(ctx, results, queryResults);
+
+        return queryResults.toJson();
+    }
+
+    /**
+     * Retrieves one page of the identities controlled by the given identity.
+     *
+     * @param ctx the transaction context
+     * @param controllerId the ID of the controlling identity
+     * @param pageSize maximum number of identities to return, at most {@value #MAX_PAGE_SIZE}
+     * @param bookmark the bookmark returned with the previous page, or an empty string for the first page
+     * @return {@code {records, bookmark, fetchedCount}}; pass the bookmark back to get the next page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetIdentitiesByControllerWithPagination(final Context ctx, final String controllerId,
+                                                          final int pageSize, final String bookmark) {
+        ChaincodeStub stub = ctx.getStub();
+
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            String errorMessage = String.format("Page size must be between 1 and %d", MAX_PAGE_SIZE);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        QueryResultsIteratorWithMetadata<KeyValue> results = stub.getStateByPartialCompositeKeyWithPagination(
+                stub.createCompositeKey(CONTROLLER_INDEX, controllerId), pageSize, bookmark == null ? "" : bookmark);
+
+        RawJsonArray queryResults = new RawJsonArray(pageSize);
+        addIndexedIdentities(ctx, results, queryResults);
+
+        return queryResults.toPageJson(
+                results.getMetadata().getBookmark(),
+                results.getMetadata().getFetchedRecordsCount());
+    }
+
+    /**
+     * Retrieves one page of the identities whose fields equal the given values,
+     * with a CouchDB rich query that runs on one of the indexes packaged under
+     * META-INF/statedb/couchdb/indexes. Fields are controlledBy, context and
+     * status of the core record, and {@code subjectInfo.<attribute>}, for example
+     * {@code {"subjectInfo.coordenador":"fssilva","context":"http://lsdi.ufma.br"}}.
+     * See {@link IdentityQuery} for how the query is built and which index it uses.
+     *
+     * Requires CouchDB as state database and identities stored as JSON; archived
+     * identities and attributes written before they were stored as documents are
+     * not found. A status of revoked or suspended lives in the status list, which
+     * CouchDB cannot see: use GetStatus for those. Matches are returned with their
+     * status from the status list, so a query on status active leaves revoked and
+     * suspended identities out. Like every bulk query, it returns
+     * identities as ReadIdentity does, and rich queries are not re-executed at
+     * validation, so use it from EVALUATE only.
+     *
+     * @param ctx the transaction context
+     * @param selectorFieldsJSON JSON object of field names to the string values they must equal
+     * @param pageSize maximum number of matches to fetch, at most {@value #MAX_PAGE_SIZE}
+     * @param bookmark the bookmark returned with the previous page, or an empty string for the first page
+     * @return {@code {records, bookmark, fetchedCount}}; pass the bookmark back to get the next page
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryIdentities(final Context ctx, final String selectorFieldsJSON, final int pageSize,
+                                  final String bookmark) {
+        ChaincodeStub stub = ctx.getStub();
+
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            String errorMessage = String.format("Page size must be between 1 and %d", MAX_PAGE_SIZE);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        IdentityQuery query;
+        try {
+            IdentityJsonCodec.Input in = new IdentityJsonCodec.Input(
+                    (selectorFieldsJSON == null ? "" : selectorFieldsJSON).getBytes(StandardCharsets.UTF_8));
+            Map<String, String> fields = in.readNullableMap();
+            in.expectEnd();
+            query = new IdentityQuery(fields == null ? Collections.emptyMap() : fields);
+        } catch (IllegalArgumentException e) {
+            String errorMessage = "Selector fields must be a JSON object of queryable fields to strings: "
+                    + e.getMessage();
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+        String status = query.getCoreFields().get("status");
+        if (StatusList.Status.REVOKED.label().equals(status) || StatusList.Status.SUSPENDED.label().equals(status)) {
+            String errorMessage = String.format("Identities that are %s are in the status list; use GetStatus",
+                    status);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, IdentityErrors.INVALID_REQUEST.toString());
+        }
+
+        QueryResultsIteratorWithMetadata<KeyValue> results = stub.getQueryResultWithPagination(
+                query.toMango(), pageSize, bookmark == null ? "" : bookmark);
+
+        RawJsonArray queryResults = new RawJsonArray(pageSize);
+        StatusList statusList = statusList(ctx);
+        for (KeyValue result : results) {
+            byte[] identityState;
+            if (query.isAttributeQuery()) {
+                String id = SubjectAttribute.decodeIdentifier(result.getValue());
+                identityState = id == null ? null : stub.getState(id);
+            } else {
+                // archived records live under composite keys
+                identityState = result.getKey().startsWith(CompositeKey.NAMESPACE) ? null : result.getValue();
+            }
+            if (identityState == null || identityState.length == 0) {
+                continue;
+            }
+            Identity identity = withListedStatus(statusList, decode(ctx, identityState));
+            if (matches(ctx, query, identity)) {
+                queryResults.add(IdentityJsonCodec.encode(withSubjectAttributes(identity,
+                        subjectAttributes(stub, identity))));
+            }
+        }
+
+        return queryResults.toPageJson(
+                results.getMetadata().getBookmark(),
+                results.getMetadata().getFetchedRecordsCount());
+    }
+
+    /**
+     * Checks what the Mango selector of a query could not: core fields of an
+     * attribute query, further attributes, and the status from the status list.
+     */
+    private boolean matches(final Context ctx, final IdentityQuery query, final Identity identity) {
+        ChaincodeStub stub = ctx.getStub();
+        for (Map.Entry<String, String> field : query.getCoreFields().entrySet()) {
+            String value;
+            switch (field.getKey()) {
+                case "controlledBy":
+                    value = identity.getControlledBy();
+                    break;
+                case "context":
+                    value = identity.getContext();
+                    break;
+                default:
+                    value = identity.getStatus();
+                    break;
+            }
+            if (!field.getValue().equals(value)) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, String> attribute : query.getCheckedAttributes().entrySet()) {
+            byte[] attributeState = stub.getState(
+                    stub.createCompositeKey(SUBJECT_INFO, identity.getIdentifier(), attribute.getKey()).toString());
+            if (attributeState == null || attributeState.length == 0
+                    || !attribute.getValue().equals(SubjectAttribute.decodeValue(attributeState))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves index entries whose last attribute is an identity ID and appends the identities.
+     */
+    private void addIndexedIdentities(final Context ctx, final Iterable<KeyValue> indexEntries,
+                                      final RawJsonArray queryResults) {
+        ChaincodeStub stub = ctx.getStub();
+        StatusList statusList = statusList(ctx);
+        for (KeyValue indexEntry: indexEntries) {
+            List<String> attributes = stub.splitCompositeKey(indexEntry.getKey()).getAttributes();
+            String id = attributes.get(attributes.size() - 1);
+            byte[] identityState = stub.getState(id);
+            if (identityState != null && identityState.length > 0) {
+                queryResults.add(bulkJson(ctx, statusList, id, identityState, null));
+            }
+        }
+    }
+
+    /**
+     * Returns a stored identity as JSON for the bulk readers, as ReadIdentity gives
+     * it: status from the status list and subjectInfo attributes joined back in.
+     * Attributes are only looked for when the core record says there may be some,
+     * which is read from the JSON without decoding it. An identity with no
+     * attributes under their own keys and no status change is spliced as stored.
+     *
+     * @param statusList the status list of the whole response, so each chunk is read once
+     * @param allAttributes the attributes of every identity, from {@link #allSubjectAttributes},
+     *        or null to scan the attribute keys of this identity
+     */
+    private byte[] bulkJson(final Context ctx, final StatusList statusList, final String id,
+                            final byte[] identityState, final Map<String, Map<String, String>> allAttributes) {
+        byte[] json = codec.toJson(identityState);
+        Map<String, String> attributes = Collections.emptyMap();
+        if (IdentityJsonCodec.mayHaveAttributeKeys(json)) {
+            attributes = allAttributes != null ? allAttributes.getOrDefault(id, attributes)
+                    : subjectAttributes(ctx.getStub(), id);
+        }
+        int index = statusList.indexOf(id);
+        if (attributes.isEmpty() && (index < 0 || statusList.get(index) == StatusList.Status.ACTIVE)) {
+            return json;
+        }
+        return IdentityJsonCodec.encode(withSubjectAttributes(
+                withListedStatus(statusList, decode(ctx, identityState)), attributes));
     }
 
 }
@@ -0,0 +1,55 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Map;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * Result of {@code GetCounts}: aggregate numbers of identities read from
+ * {@link ShardedCounters}, without scanning the identities themselves.
+ */
+@DataType()
+public final class IdentityCounts {
+
+    @Property()
+    private final long total;
+
+    @Property()
+    private final Map<String, Long> byStatus;
+
+    @Property()
+    private final Map<String, Long> byController;
+
+    public IdentityCounts(@JsonProperty("total") final long total,
+                          @JsonProperty("byStatus") final Map<String, Long> byStatus,
+                          @JsonProperty("byController") final Map<String, Long> byController) {
+        this.total = total;
+        this.byStatus = byStatus;
+        this.byController = byController;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the number of identities per status, such as active, suspended, revoked or expired
+     */
+    public Map<String, Long> getByStatus() {
+        return byStatus;
+    }
+
+    /**
+     * @return the number of identities controlled by each requested controller
+     */
+    public Map<String, Long> getByController() {
+        return byController;
+    }
+}
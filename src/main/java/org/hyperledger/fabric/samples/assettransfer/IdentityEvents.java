@@ -0,0 +1,107 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * The identity changes of one transaction, emitted as a single chaincode event
+ * named {@value #EVENT_NAME} when the transaction completes. Fabric keeps only
+ * the last setEvent of a transaction, so changes are collected and sent together.
+ * Read models such as the projector subproject apply them in order, and so stay
+ * in step with world state without polling the peers.
+ *
+ * An event says what changed, not the new values: blocks already hold the
+ * written state, and values such as subjectInfo attributes may be large.
+ * Consumers read the identities an event names once its block is committed.
+ *
+ * Payload: a version byte ({@value #VERSION}), then one record per change until
+ * the end. A record is its kind and the identity ID; an {@link #ATTRIBUTE}
+ * record adds the attribute name. Strings are an int length and UTF-8 bytes.
+ */
+final class IdentityEvents {
+
+    static final String EVENT_NAME = "IdentityChanges";
+
+    static final byte VERSION = 2;
+
+    /** The core record of an identity was written. */
+    static final byte PUT = 'P';
+
+    /** The core record of an identity was moved to the archive. */
+    static final byte ARCHIVE = 'R';
+
+    /** The status list entry of an identity changed. */
+    static final byte STATUS = 'S';
+
+    /** One subjectInfo attribute of an identity was written or removed. */
+    static final byte ATTRIBUTE = 'A';
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    private int changes;
+
+    IdentityEvents() {
+        bytes.write(VERSION);
+    }
+
+    void put(final String id) {
+        record(PUT, id);
+    }
+
+    void archive(final String id) {
+        record(ARCHIVE, id);
+    }
+
+    void status(final String id) {
+        record(STATUS, id);
+    }
+
+    void attribute(final String id, final String name) {
+        try {
+            record(ATTRIBUTE, id);
+            writeString(name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void record(final byte kind, final String id) {
+        try {
+            out.writeByte(kind);
+            writeString(id);
+            changes++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeString(final String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    int size() {
+        return changes;
+    }
+
+    /**
+     * Sets the chaincode event, unless the transaction changed nothing.
+     */
+    void emit(final ChaincodeStub stub) {
+        if (changes > 0) {
+            stub.setEvent(EVENT_NAME, bytes.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,621 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written JSON codec for {@link Identity} working directly on the UTF-8
+ * bytes of world state, with no reflection and no intermediate String.
+ *
+ * The output is byte-for-byte what {@code new Genson().serialize(identity)} followed
+ * by {@code getBytes(UTF_8)} produces: properties in alphabetical order, nulls
+ * written out, maps in iteration order and Genson's escaping rules. The one
+ * exception is a map key that needs escaping: Genson 1.5 garbles those, this
+ * codec writes them correctly. Decoding accepts any property order and
+ * whitespace, and skips unknown properties.
+ */
+public final class IdentityJsonCodec {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] NO_ATTRIBUTE_KEYS = "{\"attributeKeys\":false,".getBytes(StandardCharsets.US_ASCII);
+
+    /** U+2028 and U+2029 are valid in JSON but not in JavaScript strings, so Genson escapes them. */
+    private static final char LINE_SEPARATOR = 0x2028;
+
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+    private IdentityJsonCodec() {
+    }
+
+    /**
+     * @return the UTF-8 JSON of the identity
+     */
+    public static byte[] encode(final Identity identity) {
+        Output out = new Output(512);
+        out.write('{');
+        writeName(out, "attributeKeys", true);
+        writeBoolean(out, identity.getAttributeKeys());
+        writeName(out, "context", false);
+        writeString(out, identity.getContext());
+        writeName(out, "controlledBy", false);
+        writeString(out, identity.getControlledBy());
+        writeName(out, "controllerSet", false);
+        writeControllerSet(out, identity.getControllerSet());
+        writeName(out, "identifier", false);
+        writeString(out, identity.getIdentifier());
+        writeName(out, "issuedAt", false);
+        writeString(out, identity.getIssuedAt());
+        writeName(out, "publicKeyJwk", false);
+        writeMap(out, identity.getPublicKeyJwk());
+        writeName(out, "status", false);
+        writeString(out, identity.getStatus());
+        writeName(out, "subjectInfo", false);
+        writeMap(out, identity.getSubjectInfo());
+        writeName(out, "subjectInfoHash", false);
+        writeString(out, identity.getSubjectInfoHash());
+        writeName(out, "validTo", false);
+        writeString(out, identity.getValidTo());
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    /**
+     * Tells whether an identity may have subjectInfo attributes under their own keys
+     * without decoding it. This codec writes attributeKeys first, so the JSON it
+     * wrote for an identity without them starts with that property set to false;
+     * any other JSON, such as a record written by Genson, may have some.
+     *
+     * @param json UTF-8 JSON of an identity
+     * @return false only when the identity has no attribute keys
+     */
+    public static boolean mayHaveAttributeKeys(final byte[] json) {
+        if (json.length < NO_ATTRIBUTE_KEYS.length) {
+            return true;
+        }
+        for (int i = 0; i < NO_ATTRIBUTE_KEYS.length; i++) {
+            if (json[i] != NO_ATTRIBUTE_KEYS[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param json UTF-8 JSON of an identity
+     * @return the identity
+     */
+    public static Identity decode(final byte[] json) {
+        Input in = new Input(json);
+        String context = null;
+        String identifier = null;
+        String controlledBy = null;
+        Map<String, String> publicKeyJwk = null;
+        Map<String, String> subjectInfo = null;
+        String status = null;
+        String issuedAt = null;
+        String validTo = null;
+        ControllerSet controllerSet = null;
+        String subjectInfoHash = null;
+        Boolean attributeKeys = null;
+
+        in.expect('{');
+        if (!in.consumeIf('}')) {
+            do {
+                String name = in.readString();
+                in.expect(':');
+                switch (name) {
+                    case "context":
+                        context = in.readNullableString();
+                        break;
+                    case "identifier":
+                        identifier = in.readNullableString();
+                        break;
+                    case "controlledBy":
+                        controlledBy = in.readNullableString();
+                        break;
+                    case "publicKeyJwk":
+                        publicKeyJwk = in.readNullableMap();
+                        break;
+                    case "subjectInfo":
+                        subjectInfo = in.readNullableMap();
+                        break;
+                    case "status":
+                        status = in.readNullableString();
+                        break;
+                    case "issuedAt":
+                        issuedAt = in.readNullableString();
+                        break;
+                    case "validTo":
+                        validTo = in.readNullableString();
+                        break;
+                    case "controllerSet":
+                        controllerSet = in.readNullableControllerSet();
+                        break;
+                    case "subjectInfoHash":
+                        subjectInfoHash = in.readNullableString();
+                        break;
+                    case "attributeKeys":
+                        attributeKeys = in.readNullableBoolean();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            } while (in.consumeIf(','));
+            in.expect('}');
+        }
+        return new Identity(context, identifier, controlledBy, publicKeyJwk, subjectInfo, status, issuedAt, validTo,
+                controllerSet, subjectInfoHash, attributeKeys);
+    }
+
+    /**
+     * Appends a JSON string literal escaped the way Genson does.
+     */
+    static void appendQuoted(final StringBuilder out, final String value) {
+        Output bytes = new Output(value.length() + 16);
+        writeString(bytes, value);
+        out.append(new String(bytes.buffer, 0, bytes.size, StandardCharsets.UTF_8));
+    }
+
+    private static void writeName(final Output out, final String name, final boolean first) {
+        if (!first) {
+            out.write(',');
+        }
+        out.write('"');
+        for (int i = 0; i < name.length(); i++) {
+            out.write(name.charAt(i));
+        }
+        out.write('"');
+        out.write(':');
+    }
+
+    private static void writeBoolean(final Output out, final Boolean value) {
+        out.write(value == null ? NULL : value ? TRUE : FALSE);
+    }
+
+    private static void writeMap(final Output out, final Map<String, String> map) {
+        if (map == null) {
+            out.write(NULL);
+            return;
+        }
+        out.write('{');
+        boolean first = true;
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            writeString(out, entry.getKey());
+            out.write(':');
+            writeString(out, entry.getValue());
+        }
+        out.write('}');
+    }
+
+    private static void writeControllerSet(final Output out, final ControllerSet controllerSet) {
+        if (controllerSet == null) {
+            out.write(NULL);
+            return;
+        }
+        out.write('{');
+        writeName(out, "controllers", true);
+        List<String> controllers = controllerSet.getControllers();
+        if (controllers == null) {
+            out.write(NULL);
+        } else {
+            out.write('[');
+            for (int i = 0; i < controllers.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeString(out, controllers.get(i));
+            }
+            out.write(']');
+        }
+        writeName(out, "threshold", false);
+        String threshold = Integer.toString(controllerSet.getThreshold());
+        for (int i = 0; i < threshold.length(); i++) {
+            out.write(threshold.charAt(i));
+        }
+        out.write('}');
+    }
+
+    private static void writeString(final Output out, final String value) {
+        if (value == null) {
+            out.write(NULL);
+            return;
+        }
+        out.ensureCapacity(value.length() + 2);
+        out.write('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    out.write(c);
+                } else {
+                    writeEscaped(out, c);
+                }
+            } else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            } else if (c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR) {
+                writeUnicodeEscape(out, c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.write(0xF0 | (codePoint >> 18));
+                out.write(0x80 | ((codePoint >> 12) & 0x3F));
+                out.write(0x80 | ((codePoint >> 6) & 0x3F));
+                out.write(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced like String.getBytes(UTF_8) does
+                out.write('?');
+            } else {
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+        out.write('"');
+    }
+
+    private static void writeEscaped(final Output out, final char c) {
+        switch (c) {
+            case '"':
+                out.write('\\');
+                out.write('"');
+                break;
+            case '\\':
+                out.write('\\');
+                out.write('\\');
+                break;
+            case '\b':
+                out.write('\\');
+                out.write('b');
+                break;
+            case '\t':
+                out.write('\\');
+                out.write('t');
+                break;
+            case '\n':
+                out.write('\\');
+                out.write('n');
+                break;
+            case '\f':
+                out.write('\\');
+                out.write('f');
+                break;
+            case '\r':
+                out.write('\\');
+                out.write('r');
+                break;
+            default:
+                writeUnicodeEscape(out, c);
+        }
+    }
+
+    private static void writeUnicodeEscape(final Output out, final char c) {
+        out.write('\\');
+        out.write('u');
+        out.write(HEX[(c >> 12) & 0xF]);
+        out.write(HEX[(c >> 8) & 0xF]);
+        out.write(HEX[(c >> 4) & 0xF]);
+        out.write(HEX[c & 0xF]);
+    }
+
+    /** Growable byte buffer without the synchronization of ByteArrayOutputStream. */
+    private static final class Output {
+
+        private byte[] buffer;
+        private int size;
+
+        Output(final int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        void ensureCapacity(final int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        void write(final int b) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        void write(final byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    /**
+     * Streaming reader over UTF-8 JSON; also used for the JSON creation payload of {@link IdentityPayload}.
+     */
+    static final class Input {
+
+        private final byte[] data;
+        private int position;
+
+        Input(final byte[] data) {
+            this.data = data;
+        }
+
+        private void skipWhitespace() {
+            while (position < data.length) {
+                byte b = data[position];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    return;
+                }
+                position++;
+            }
+        }
+
+        private byte peek() {
+            skipWhitespace();
+            if (position >= data.length) {
+                throw error("Unexpected end of identity JSON");
+            }
+            return data[position];
+        }
+
+        void expect(final char c) {
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+            position++;
+        }
+
+        boolean consumeIf(final char c) {
+            if (peek() == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean consumeNull() {
+            if (peek() == 'n') {
+                expectLiteral(NULL);
+                return true;
+            }
+            return false;
+        }
+
+        private void expectLiteral(final byte[] literal) {
+            for (byte b : literal) {
+                if (position >= data.length || data[position++] != b) {
+                    throw error("Unexpected literal");
+                }
+            }
+        }
+
+        String readNullableString() {
+            return consumeNull() ? null : readString();
+        }
+
+        Boolean readNullableBoolean() {
+            if (consumeNull()) {
+                return null;
+            }
+            if (peek() == 't') {
+                expectLiteral(TRUE);
+                return Boolean.TRUE;
+            }
+            expectLiteral(FALSE);
+            return Boolean.FALSE;
+        }
+
+        Map<String, String> readNullableMap() {
+            if (consumeNull()) {
+                return null;
+            }
+            Map<String, String> map = new HashMap<>();
+            expect('{');
+            if (!consumeIf('}')) {
+                do {
+                    String key = readString();
+                    expect(':');
+                    map.put(key, readNullableString());
+                } while (consumeIf(','));
+                expect('}');
+            }
+            return map;
+        }
+
+        ControllerSet readNullableControllerSet() {
+            if (consumeNull()) {
+                return null;
+            }
+            List<String> controllers = null;
+            int threshold = 0;
+            expect('{');
+            if (!consumeIf('}')) {
+                do {
+                    String name = readString();
+                    expect(':');
+                    if ("controllers".equals(name)) {
+                        controllers = readNullableStringList();
+                    } else if ("threshold".equals(name)) {
+                        threshold = readInt();
+                    } else {
+                        skipValue();
+                    }
+                } while (consumeIf(','));
+                expect('}');
+            }
+            return new ControllerSet(controllers, threshold);
+        }
+
+        private List<String> readNullableStringList() {
+            if (consumeNull()) {
+                return null;
+            }
+            List<String> values = new ArrayList<>();
+            expect('[');
+            if (!consumeIf(']')) {
+                do {
+                    values.add(readNullableString());
+                } while (consumeIf(','));
+                expect(']');
+            }
+            return values;
+        }
+
+        int readInt() {
+            peek();
+            int start = position;
+            if (position < data.length && data[position] == '-') {
+                position++;
+            }
+            while (position < data.length && data[position] >= '0' && data[position] <= '9') {
+                position++;
+            }
+            try {
+                return Integer.parseInt(new String(data, start, position - start, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw error("Expected an integer");
+            }
+        }
+
+        String readString() {
+            expect('"');
+            int start = position;
+            while (position < data.length) {
+                byte b = data[position];
+                if (b == '"') {
+                    String value = new String(data, start, position - start, StandardCharsets.UTF_8);
+                    position++;
+                    return value;
+                }
+                if (b == '\\') {
+                    return readEscapedString(start);
+                }
+                position++;
+            }
+            throw error("Unterminated string");
+        }
+
+        private String readEscapedString(final int start) {
+            StringBuilder value = new StringBuilder(position - start + 16);
+            int segment = start;
+            while (position < data.length) {
+                byte b = data[position];
+                if (b == '"') {
+                    value.append(new String(data, segment, position - segment, StandardCharsets.UTF_8));
+                    position++;
+                    return value.toString();
+                }
+                if (b != '\\') {
+                    position++;
+                    continue;
+                }
+                value.append(new String(data, segment, position - segment, StandardCharsets.UTF_8));
+                position++;
+                if (position >= data.length) {
+                    break;
+                }
+                byte escaped = data[position++];
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append((char) escaped);
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > data.length) {
+                            throw error("Truncated unicode escape");
+                        }
+                        value.append((char) Integer.parseInt(
+                                new String(data, position, 4, StandardCharsets.US_ASCII), 16));
+                        position += 4;
+                        break;
+                    default:
+                        throw error("Invalid escape");
+                }
+                segment = position;
+            }
+            throw error("Unterminated string");
+        }
+
+        void skipValue() {
+            byte b = peek();
+            if (b == '"') {
+                readString();
+            } else if (b == '{' || b == '[') {
+                char close = b == '{' ? '}' : ']';
+                position++;
+                if (!consumeIf(close)) {
+                    do {
+                        if (close == '}') {
+                            readString();
+                            expect(':');
+                        }
+                        skipValue();
+                    } while (consumeIf(','));
+                    expect(close);
+                }
+            } else {
+                // number, true, false or null
+                while (position < data.length) {
+                    byte c = data[position];
+                    if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                        break;
+                    }
+                    position++;
+                }
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException if anything but whitespace follows
+         */
+        void expectEnd() {
+            skipWhitespace();
+            if (position < data.length) {
+                throw error("Unexpected content after JSON value");
+            }
+        }
+
+        private IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(message + " at offset " + position);
+        }
+    }
+}
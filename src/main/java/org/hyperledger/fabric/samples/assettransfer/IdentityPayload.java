@@ -0,0 +1,211 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+/**
+ * Creation request of {@code CreateIdentityFromPayload}, sent as one argument and
+ * read straight from its bytes, so no argument is turned into a String or split.
+ *
+ * Two encodings are accepted, told apart by the first byte:
+ * <ul>
+ *     <li>a JSON object ('{') with "version", "context", "identifier",
+ *     "controlledBy", "publicKeyJwk", "signature" and "subjectInfo"; unknown
+ *     properties are skipped;</li>
+ *     <li>binary: the schema version as one byte, then context, identifier,
+ *     controlledBy, publicKeyJwk, signature and subjectInfo in the field
+ *     encoding of {@link IdentityCodec}, JWK members tagged and base64url
+ *     members as raw bytes.</li>
+ * </ul>
+ * Payloads with a version newer than {@link #SCHEMA_VERSION} are refused rather
+ * than read partially, since the controller may have signed fields this
+ * chaincode does not know about. New fields come with a new version.
+ */
+public final class IdentityPayload {
+
+    public static final int SCHEMA_VERSION = 1;
+
+    private static final byte JSON_OBJECT_START = '{';
+
+    private final int version;
+    private final String context;
+    private final String identifier;
+    private final String controlledBy;
+    private final Map<String, String> publicKeyJwk;
+    private final String signature;
+    private final Map<String, String> subjectInfo;
+
+    public IdentityPayload(final int version, final String context, final String identifier,
+                           final String controlledBy, final Map<String, String> publicKeyJwk,
+                           final String signature, final Map<String, String> subjectInfo) {
+        this.version = version;
+        this.context = context;
+        this.identifier = identifier;
+        this.controlledBy = controlledBy;
+        this.publicKeyJwk = publicKeyJwk;
+        this.signature = signature;
+        this.subjectInfo = subjectInfo;
+    }
+
+    /**
+     * @param payload a JSON or binary payload
+     * @return the request
+     * @throws IllegalArgumentException if the payload is malformed, misses a required
+     *         field or has an unsupported version
+     */
+    public static IdentityPayload decode(final byte[] payload) {
+        if (payload == null || payload.length == 0) {
+            throw new IllegalArgumentException("Empty identity payload");
+        }
+        IdentityPayload decoded;
+        try {
+            decoded = payload[0] == JSON_OBJECT_START ? decodeJson(payload) : decodeBinary(payload);
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated identity payload", e);
+        }
+        decoded.checkRequired();
+        return decoded;
+    }
+
+    private static IdentityPayload decodeBinary(final byte[] payload) {
+        int version = payload[0] & 0xFF;
+        checkVersion(version);
+        IdentityCodec.Reader in = new IdentityCodec.Reader(payload, 1);
+        String context = in.readString();
+        String identifier = in.readString();
+        String controlledBy = in.readString();
+        Map<String, String> publicKeyJwk = in.readJwk();
+        String signature = in.readString();
+        Map<String, String> subjectInfo = in.readMap();
+        if (in.hasMore()) {
+            throw new IllegalArgumentException("Unexpected bytes after identity payload");
+        }
+        return new IdentityPayload(version, context, identifier, controlledBy, publicKeyJwk, signature, subjectInfo);
+    }
+
+    private static IdentityPayload decodeJson(final byte[] payload) {
+        IdentityJsonCodec.Input in = new IdentityJsonCodec.Input(payload);
+        int version = 0;
+        String context = null;
+        String identifier = null;
+        String controlledBy = null;
+        Map<String, String> publicKeyJwk = null;
+        String signature = null;
+        Map<String, String> subjectInfo = null;
+
+        in.expect('{');
+        if (!in.consumeIf('}')) {
+            do {
+                String name = in.readString();
+                in.expect(':');
+                switch (name) {
+                    case "version":
+                        version = in.readInt();
+                        break;
+                    case "context":
+                        context = in.readNullableString();
+                        break;
+                    case "identifier":
+                        identifier = in.readNullableString();
+                        break;
+                    case "controlledBy":
+                        controlledBy = in.readNullableString();
+                        break;
+                    case "publicKeyJwk":
+                        publicKeyJwk = in.readNullableMap();
+                        break;
+                    case "signature":
+                        signature = in.readNullableString();
+                        break;
+                    case "subjectInfo":
+                        subjectInfo = in.readNullableMap();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            } while (in.consumeIf(','));
+            in.expect('}');
+        }
+        in.expectEnd();
+        checkVersion(version);
+        return new IdentityPayload(version, context, identifier, controlledBy, publicKeyJwk, signature, subjectInfo);
+    }
+
+    private static void checkVersion(final int version) {
+        if (version < 1 || version > SCHEMA_VERSION) {
+            throw new IllegalArgumentException(String.format("Unsupported identity payload version %d, expected 1 to %d",
+                    version, SCHEMA_VERSION));
+        }
+    }
+
+    private void checkRequired() {
+        if (identifier == null || identifier.isEmpty()) {
+            throw new IllegalArgumentException("Identity payload has no identifier");
+        }
+        if (controlledBy == null || controlledBy.isEmpty()) {
+            throw new IllegalArgumentException("Identity payload has no controller");
+        }
+        if (signature == null) {
+            throw new IllegalArgumentException("Identity payload has no signature");
+        }
+    }
+
+    /**
+     * @return the payload in the binary encoding, with this payload's version byte
+     */
+    public byte[] encodeBinary() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        out.write(version);
+        IdentityCodec.writeString(out, context);
+        IdentityCodec.writeString(out, identifier);
+        IdentityCodec.writeString(out, controlledBy);
+        IdentityCodec.writeJwk(out, publicKeyJwk);
+        IdentityCodec.writeString(out, signature);
+        IdentityCodec.writeMap(out, subjectInfo);
+        return out.toByteArray();
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getContext() {
+        return context;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public String getControlledBy() {
+        return controlledBy;
+    }
+
+    public Map<String, String> getPublicKeyJwk() {
+        return publicKeyJwk;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public Map<String, String> getSubjectInfo() {
+        return subjectInfo;
+    }
+
+    @Override
+    public String toString() {
+        return "IdentityPayload{" +
+                "version=" + version +
+                ", context='" + context + '\'' +
+                ", identifier='" + identifier + '\'' +
+                ", controlledBy='" + controlledBy + '\'' +
+                ", publicKeyJwk=" + publicKeyJwk +
+                ", subjectInfo=" + subjectInfo +
+                '}';
+    }
+}
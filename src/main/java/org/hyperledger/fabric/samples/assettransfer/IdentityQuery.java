@@ -0,0 +1,132 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A QueryIdentities request turned into a CouchDB Mango query.
+ *
+ * Fields are matched by equality. A field is either a core record property,
+ * one of {@link #CORE_FIELDS}, or {@code subjectInfo.<attribute>}. Values are
+ * only ever written as escaped JSON strings inside {@code $eq}, and field names
+ * come from a fixed list or go into a string value, so a request cannot add
+ * operators or change the shape of the selector.
+ *
+ * Every query names the index it runs on, one of those shipped in
+ * META-INF/statedb/couchdb/indexes:
+ * <ul>
+ * <li>with a subjectInfo field, the first of them (by name) is looked up in
+ *     the attribute documents of {@link SubjectAttribute}, on indexSubjectAttribute.
+ *     The other fields are checked by the chaincode for each match, so a page can
+ *     hold fewer than pageSize identities;</li>
+ * <li>otherwise every field goes into one selector over the core records, on
+ *     the index of the first of controlledBy, context and status present.</li>
+ * </ul>
+ */
+final class IdentityQuery {
+
+    static final String SUBJECT_INFO_PREFIX = "subjectInfo.";
+
+    /** Core record properties that can be queried, in the order their indexes are preferred. */
+    static final List<String> CORE_FIELDS = Collections.unmodifiableList(
+            Arrays.asList("controlledBy", "context", "status"));
+
+    private final Map<String, String> coreFields = new TreeMap<>();
+
+    private final TreeMap<String, String> attributes = new TreeMap<>();
+
+    /**
+     * @param fields field names and the values they must equal
+     * @throws IllegalArgumentException if there are no fields, a field is not
+     *         queryable or a value is null
+     */
+    IdentityQuery(final Map<String, String> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("No fields to match");
+        }
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            String name = field.getKey();
+            if (field.getValue() == null) {
+                throw new IllegalArgumentException("Field " + name + " has no value");
+            }
+            if (name.startsWith(SUBJECT_INFO_PREFIX) && name.length() > SUBJECT_INFO_PREFIX.length()) {
+                attributes.put(name.substring(SUBJECT_INFO_PREFIX.length()), field.getValue());
+            } else if (CORE_FIELDS.contains(name)) {
+                coreFields.put(name, field.getValue());
+            } else {
+                throw new IllegalArgumentException("Field " + name + " cannot be queried; use one of "
+                        + CORE_FIELDS + " or subjectInfo.<attribute>");
+            }
+        }
+    }
+
+    /**
+     * @return true when the selector runs over attribute documents rather than core records
+     */
+    boolean isAttributeQuery() {
+        return !attributes.isEmpty();
+    }
+
+    /**
+     * @return the core record properties to match
+     */
+    Map<String, String> getCoreFields() {
+        return coreFields;
+    }
+
+    /**
+     * @return the attributes the chaincode checks itself: all but the one in the selector
+     */
+    Map<String, String> getCheckedAttributes() {
+        TreeMap<String, String> checked = new TreeMap<>(attributes);
+        checked.pollFirstEntry();
+        return checked;
+    }
+
+    /**
+     * @return the Mango query
+     */
+    String toMango() {
+        StringBuilder query = new StringBuilder(160).append("{\"selector\":{");
+        String index;
+        if (isAttributeQuery()) {
+            Map.Entry<String, String> attribute = attributes.firstEntry();
+            appendEquals(query, "attribute", attribute.getKey());
+            query.append(',');
+            appendEquals(query, "value", attribute.getValue());
+            index = "SubjectAttribute";
+        } else {
+            boolean first = true;
+            for (Map.Entry<String, String> field : coreFields.entrySet()) {
+                if (!first) {
+                    query.append(',');
+                }
+                first = false;
+                appendEquals(query, field.getKey(), field.getValue());
+            }
+            index = null;
+            for (String field : CORE_FIELDS) {
+                if (coreFields.containsKey(field)) {
+                    index = Character.toUpperCase(field.charAt(0)) + field.substring(1);
+                    break;
+                }
+            }
+        }
+        return query.append("},\"use_index\":[\"_design/index").append(index).append("Doc\",\"index")
+                .append(index).append("\"]}").toString();
+    }
+
+    private static void appendEquals(final StringBuilder query, final String field, final String value) {
+        IdentityJsonCodec.appendQuoted(query, field);
+        query.append(":{\"$eq\":");
+        IdentityJsonCodec.appendQuoted(query, value);
+        query.append('}');
+    }
+}
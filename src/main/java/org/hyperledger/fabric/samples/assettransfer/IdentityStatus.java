@@ -0,0 +1,55 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * Revocation status of one identity as recorded in the {@link StatusList}.
+ * The index lets verifiers look the identity up in a cached status list chunk.
+ */
+@DataType()
+public final class IdentityStatus {
+
+    public static final String UNKNOWN = "unknown";
+
+    @Property()
+    private final String identifier;
+
+    @Property()
+    private final int index;
+
+    @Property()
+    private final String status;
+
+    public IdentityStatus(@JsonProperty("identifier") final String identifier,
+                          @JsonProperty("index") final int index,
+                          @JsonProperty("status") final String status) {
+        this.identifier = identifier;
+        this.index = index;
+        this.status = status;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the status list index, -1 when the identity was never revoked or suspended, or does not exist
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return active, suspended, revoked, or unknown when the identity does not exist
+     */
+    public String getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.List;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * Request of {@code ImportIdentityChunk}: one chunk of a bulk import, with the
+ * Merkle root of the whole import and the controller's JWS approving it. Every
+ * chunk of an import carries the same root, recordCount and signature; the
+ * indexes of its records, which must be consecutive, identify the chunk.
+ */
+@DataType()
+public final class ImportChunkRequest {
+
+    @Property()
+    private final String controlledBy;
+
+    @Property()
+    private final String root;
+
+    @Property()
+    private final long recordCount;
+
+    @Property()
+    private final String signature;
+
+    @Property()
+    private final List<ImportRecord> records;
+
+    public ImportChunkRequest(@JsonProperty("controlledBy") final String controlledBy,
+                              @JsonProperty("root") final String root,
+                              @JsonProperty("recordCount") final long recordCount,
+                              @JsonProperty("signature") final String signature,
+                              @JsonProperty("records") final List<ImportRecord> records) {
+        this.controlledBy = controlledBy;
+        this.root = root;
+        this.recordCount = recordCount;
+        this.signature = signature;
+        this.records = records;
+    }
+
+    /**
+     * @return the controller of every imported identity, whose key signed the root
+     */
+    public String getControlledBy() {
+        return controlledBy;
+    }
+
+    /**
+     * @return base64url Merkle root over all the records of the import
+     */
+    public String getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the number of records in the whole import, i.e. the number of leaves
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return compact JWS by the controller whose payload is the import approval
+     *         over root and recordCount
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    public List<ImportRecord> getRecords() {
+        return records;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.List;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * Outcome of one {@code ImportIdentityChunk} call for the chunk of records
+ * firstIndex to lastIndex. A chunk that was already imported is not processed
+ * again: alreadyImported is true and results is empty.
+ */
+@DataType()
+public final class ImportChunkResult {
+
+    @Property()
+    private final long firstIndex;
+
+    @Property()
+    private final long lastIndex;
+
+    @Property()
+    private final boolean alreadyImported;
+
+    @Property()
+    private final List<BatchEntryResult> results;
+
+    public ImportChunkResult(@JsonProperty("firstIndex") final long firstIndex,
+                             @JsonProperty("lastIndex") final long lastIndex,
+                             @JsonProperty("alreadyImported") final boolean alreadyImported,
+                             @JsonProperty("results") final List<BatchEntryResult> results) {
+        this.firstIndex = firstIndex;
+        this.lastIndex = lastIndex;
+        this.alreadyImported = alreadyImported;
+        this.results = results;
+    }
+
+    public long getFirstIndex() {
+        return firstIndex;
+    }
+
+    public long getLastIndex() {
+        return lastIndex;
+    }
+
+    public boolean isAlreadyImported() {
+        return alreadyImported;
+    }
+
+    /**
+     * @return one result per record, in request order
+     */
+    public List<BatchEntryResult> getResults() {
+        return results;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.List;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * One record of a bulk import chunk: the identity, its position among all the
+ * records of the import, and its inclusion proof. See {@link MerkleImport}.
+ */
+@DataType()
+public final class ImportRecord {
+
+    @Property()
+    private final long index;
+
+    @Property()
+    private final ECIdentityRequest identity;
+
+    @Property()
+    private final List<String> proof;
+
+    public ImportRecord(@JsonProperty("index") final long index,
+                        @JsonProperty("identity") final ECIdentityRequest identity,
+                        @JsonProperty("proof") final List<String> proof) {
+        this.index = index;
+        this.identity = identity;
+        this.proof = proof;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the identity to create; its signature is not used
+     */
+    public ECIdentityRequest getIdentity() {
+        return identity;
+    }
+
+    /**
+     * @return base64url sibling hashes from the leaf up to the root
+     */
+    public List<String> getProof() {
+        return proof;
+    }
+}
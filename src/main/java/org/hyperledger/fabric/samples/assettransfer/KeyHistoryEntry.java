@@ -0,0 +1,55 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Map;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * One public key an identity has had, with the transaction that set it.
+ */
+@DataType()
+public final class KeyHistoryEntry {
+
+    @Property()
+    private final Map<String, String> publicKeyJwk;
+
+    @Property()
+    private final String txId;
+
+    @Property()
+    private final String since;
+
+    public KeyHistoryEntry(@JsonProperty("publicKeyJwk") final Map<String, String> publicKeyJwk,
+                           @JsonProperty("txId") final String txId,
+                           @JsonProperty("since") final String since) {
+        this.publicKeyJwk = publicKeyJwk;
+        this.txId = txId;
+        this.since = since;
+    }
+
+    public Map<String, String> getPublicKeyJwk() {
+        return publicKeyJwk;
+    }
+
+    /**
+     * @return the transaction that created the identity with this key or rotated to it, or null when
+     *         the key was set before key history was kept
+     */
+    public String getTxId() {
+        return txId;
+    }
+
+    /**
+     * @return the timestamp of that transaction, or the issue date of the identity when txId is null
+     */
+    public String getSince() {
+        return since;
+    }
+}
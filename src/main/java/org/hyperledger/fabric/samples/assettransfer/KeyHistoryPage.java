@@ -0,0 +1,40 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.List;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * One page of {@code GetKeyHistory}. A non-empty {@code cursor} is the key history
+ * entry the next page starts at; pass it back to get the older keys.
+ */
+@DataType()
+public final class KeyHistoryPage {
+
+    @Property()
+    private final List<KeyHistoryEntry> keys;
+
+    @Property()
+    private final String cursor;
+
+    public KeyHistoryPage(@JsonProperty("keys") final List<KeyHistoryEntry> keys,
+                          @JsonProperty("cursor") final String cursor) {
+        this.keys = keys;
+        this.cursor = cursor;
+    }
+
+    public List<KeyHistoryEntry> getKeys() {
+        return keys;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+}
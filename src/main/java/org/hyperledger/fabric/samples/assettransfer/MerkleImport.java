@@ -0,0 +1,190 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Merkle tree over the records of a bulk import, as in RFC 6962 / RFC 9162:
+ * SHA-256, leaf hashes prefixed with 0x00 and node hashes with 0x01, and a
+ * left-balanced tree, so any number of records has exactly one root. The
+ * controller signs the root once; each record then only needs its inclusion
+ * proof, the sibling hashes from the leaf up to the root.
+ *
+ * A leaf is the hash of the canonical JSON of an {@link ECIdentityRequest}
+ * without its signature: members alg, context, controlledBy, crv, identifier,
+ * kid, kty, subjectInfo, x and y in that (alphabetical) order, subjectInfo
+ * sorted by name, absent values as null and no whitespace.
+ *
+ * Hashes travel as base64url without padding.
+ */
+final class MerkleImport {
+
+    private static final byte LEAF_PREFIX = 0x00;
+
+    private static final byte NODE_PREFIX = 0x01;
+
+    private static final Base64.Encoder BASE64URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private MerkleImport() {
+    }
+
+    static String encode(final byte[] hash) {
+        return BASE64URL_ENCODER.encodeToString(hash);
+    }
+
+    /**
+     * @throws IllegalArgumentException if it is not base64url
+     */
+    static byte[] decode(final String hash) {
+        return Base64.getUrlDecoder().decode(hash);
+    }
+
+    static byte[] leafHash(final ECIdentityRequest record) {
+        StringBuilder json = new StringBuilder(512).append('{');
+        appendMember(json, "alg", record.getAlg(), true);
+        appendMember(json, "context", record.getContext(), false);
+        appendMember(json, "controlledBy", record.getControlledBy(), false);
+        appendMember(json, "crv", record.getCrv(), false);
+        appendMember(json, "identifier", record.getIdentifier(), false);
+        appendMember(json, "kid", record.getKid(), false);
+        appendMember(json, "kty", record.getKty(), false);
+        json.append(",\"subjectInfo\":");
+        if (record.getSubjectInfo() == null) {
+            json.append("null");
+        } else {
+            json.append('{');
+            boolean first = true;
+            for (Map.Entry<String, String> attribute : new TreeMap<>(record.getSubjectInfo()).entrySet()) {
+                appendMember(json, attribute.getKey(), attribute.getValue(), first);
+                first = false;
+            }
+            json.append('}');
+        }
+        appendMember(json, "x", record.getX(), false);
+        appendMember(json, "y", record.getY(), false);
+        json.append('}');
+
+        MessageDigest digest = sha256();
+        digest.update(LEAF_PREFIX);
+        return digest.digest(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendMember(final StringBuilder json, final String name, final String value,
+                                     final boolean first) {
+        if (!first) {
+            json.append(',');
+        }
+        IdentityJsonCodec.appendQuoted(json, name);
+        json.append(':');
+        if (value == null) {
+            json.append("null");
+        } else {
+            IdentityJsonCodec.appendQuoted(json, value);
+        }
+    }
+
+    static byte[] nodeHash(final byte[] left, final byte[] right) {
+        MessageDigest digest = sha256();
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        return digest.digest(right);
+    }
+
+    /**
+     * Checks an inclusion proof (RFC 9162, section 2.1.3.2).
+     *
+     * @param leaf the leaf hash
+     * @param index the position of the leaf
+     * @param size the number of leaves in the tree
+     * @param proof the sibling hashes, from the leaf up
+     * @param root the expected root
+     * @return whether the proof leads from the leaf to the root
+     */
+    static boolean verify(final byte[] leaf, final long index, final long size, final List<byte[]> proof,
+                          final byte[] root) {
+        if (index < 0 || index >= size) {
+            return false;
+        }
+        long fn = index;
+        long sn = size - 1;
+        byte[] r = leaf;
+        for (byte[] sibling : proof) {
+            if (sn == 0) {
+                return false;
+            }
+            if ((fn & 1) == 1 || fn == sn) {
+                r = nodeHash(sibling, r);
+                while ((fn & 1) == 0 && fn != 0) {
+                    fn >>= 1;
+                    sn >>= 1;
+                }
+            } else {
+                r = nodeHash(r, sibling);
+            }
+            fn >>= 1;
+            sn >>= 1;
+        }
+        return sn == 0 && MessageDigest.isEqual(r, root);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The whole tree, for the client preparing an import: its root and the
+     * proof of every leaf. Built level by level; a node without a sibling moves
+     * up unchanged, which gives the same tree as RFC 6962.
+     */
+    static final class Tree {
+
+        private final List<byte[][]> levels = new ArrayList<>();
+
+        Tree(final List<byte[]> leaves) {
+            if (leaves.isEmpty()) {
+                throw new IllegalArgumentException("An import needs at least one record");
+            }
+            byte[][] level = leaves.toArray(new byte[0][]);
+            levels.add(level);
+            while (level.length > 1) {
+                byte[][] parent = new byte[(level.length + 1) / 2][];
+                for (int i = 0; i < parent.length; i++) {
+                    parent[i] = 2 * i + 1 < level.length ? nodeHash(level[2 * i], level[2 * i + 1]) : level[2 * i];
+                }
+                levels.add(parent);
+                level = parent;
+            }
+        }
+
+        byte[] root() {
+            return levels.get(levels.size() - 1)[0];
+        }
+
+        List<byte[]> proof(final int index) {
+            List<byte[]> proof = new ArrayList<>();
+            int position = index;
+            for (byte[][] level : levels.subList(0, levels.size() - 1)) {
+                int sibling = position ^ 1;
+                if (sibling < level.length) {
+                    proof.add(level[sibling]);
+                }
+                position >>= 1;
+            }
+            return proof;
+        }
+    }
+}
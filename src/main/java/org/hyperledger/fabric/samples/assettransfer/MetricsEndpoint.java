@@ -0,0 +1,68 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves {@link ContractMetrics#toPrometheus()} on {@code GET /metrics}.
+ *
+ * Meant for chaincode-as-a-service, where the chaincode is a long-running
+ * service of its own and the port can be exposed to a scraper. It is only
+ * started when {@link #ADDRESS_PROPERTY} is set, e.g. to {@code 0.0.0.0:9443},
+ * and at most once per JVM.
+ */
+final class MetricsEndpoint {
+
+    /** Environment variable (or system property) holding the host:port to serve metrics on. */
+    static final String ADDRESS_PROPERTY = "IDENTITY_METRICS_ADDRESS";
+
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+    private MetricsEndpoint() {
+    }
+
+    /**
+     * Starts the endpoint if an address is configured and no endpoint runs yet.
+     *
+     * @param metrics the registry to serve
+     */
+    static void startIfConfigured(final ContractMetrics metrics) {
+        String address = System.getProperty(ADDRESS_PROPERTY, System.getenv(ADDRESS_PROPERTY));
+        if (address == null || address.isEmpty() || !STARTED.compareAndSet(false, true)) {
+            return;
+        }
+        int separator = address.lastIndexOf(':');
+        try {
+            String host = separator > 0 ? address.substring(0, separator) : "0.0.0.0";
+            int port = Integer.parseInt(address.substring(separator + 1).trim());
+            HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-endpoint");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+            System.out.println(String.format("Serving contract metrics on http://%s/metrics", address));
+        } catch (IOException | RuntimeException e) {
+            System.out.println(String.format("Ignoring invalid %s=%s: %s", ADDRESS_PROPERTY, address, e));
+        }
+    }
+}
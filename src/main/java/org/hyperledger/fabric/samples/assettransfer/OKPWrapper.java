@@ -0,0 +1,190 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.math.BigInteger;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.util.Base64URL;
+
+/**
+ * Ed25519 public key (JWK "kty" OKP, RFC 8037) of an identity.
+ *
+ * Building one checks that the curve is Ed25519, that "alg", when present, is
+ * EdDSA, and that x is the 32-byte encoding of a point on the curve. Ed25519
+ * signatures are several times cheaper to verify than P-256 ones, which suits
+ * constrained devices.
+ */
+public final class OKPWrapper extends PublicKeyWrapper {
+
+    public static final String KTY = "OKP";
+
+    public static final String CRV = "Ed25519";
+
+    public static final String ALG = "EdDSA";
+
+    private static final int KEY_LENGTH = 32;
+
+    /** 2^255 - 19 */
+    private static final BigInteger P = BigInteger.ONE.shiftLeft(255).subtract(BigInteger.valueOf(19));
+
+    /** -121665 / 121666 mod p */
+    private static final BigInteger D = BigInteger.valueOf(-121665)
+            .multiply(BigInteger.valueOf(121666).modInverse(P)).mod(P);
+
+    /** DER prefix of an X.509 SubjectPublicKeyInfo for Ed25519 (RFC 8410). */
+    private static final byte[] X509_PREFIX = {
+            0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00};
+
+    private final String x;
+    private final Ed25519PublicKey publicKey;
+    private final OctetKeyPair octetKeyPair;
+
+    /**
+     * @throws IllegalArgumentException if the key is not a valid Ed25519 public key
+     */
+    public OKPWrapper(final String kty, final String use, final String crv, final String kid, final String alg,
+                      final String x) {
+        super(kty, use, kid, alg);
+        checkKty(KTY, kty);
+        if (!CRV.equals(crv)) {
+            throw new IllegalArgumentException("Unsupported curve " + crv);
+        }
+        if (alg != null && !ALG.equals(alg)) {
+            throw new IllegalArgumentException("Algorithm " + alg + " does not match curve " + crv);
+        }
+
+        byte[] rawX = decodeBase64Url("x", x);
+        if (rawX.length != KEY_LENGTH) {
+            throw new IllegalArgumentException(String.format("Key member x must be %d bytes on %s, got %d",
+                    KEY_LENGTH, CRV, rawX.length));
+        }
+        checkOnCurve(rawX);
+
+        this.x = encodeBase64Url(rawX);
+        this.publicKey = new Ed25519PublicKey(rawX);
+        this.octetKeyPair = new OctetKeyPair.Builder(Curve.Ed25519, new Base64URL(this.x)).keyID(kid).build();
+    }
+
+    static OKPWrapper parse(final Map<String, String> publicKeyJwk) {
+        return new OKPWrapper(publicKeyJwk.get("kty"), publicKeyJwk.get("use"), publicKeyJwk.get("crv"),
+                publicKeyJwk.get("kid"), publicKeyJwk.get("alg"), publicKeyJwk.get("x"));
+    }
+
+    /**
+     * Decodes the point as in RFC 8032 section 5.1.3: y must be below p and
+     * (y^2 - 1) / (d y^2 + 1) must have a square root x, which must be
+     * non-zero when the sign bit is set.
+     */
+    private static void checkOnCurve(final byte[] rawX) {
+        byte[] bigEndian = new byte[KEY_LENGTH];
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            bigEndian[i] = rawX[KEY_LENGTH - 1 - i];
+        }
+        boolean sign = (bigEndian[0] & 0x80) != 0;
+        bigEndian[0] &= 0x7f;
+        BigInteger y = new BigInteger(1, bigEndian);
+        if (y.compareTo(P) >= 0) {
+            throw new IllegalArgumentException("Ed25519 point coordinate out of range");
+        }
+
+        BigInteger ySquared = y.multiply(y).mod(P);
+        BigInteger u = ySquared.subtract(BigInteger.ONE).mod(P);
+        BigInteger v = D.multiply(ySquared).add(BigInteger.ONE).mod(P);
+        BigInteger xSquared = u.multiply(v.modInverse(P)).mod(P);
+        if (xSquared.signum() == 0) {
+            if (sign) {
+                throw new IllegalArgumentException("Ed25519 point is not on the curve");
+            }
+            return;
+        }
+        // Euler's criterion: xSquared is a square mod p iff xSquared^((p-1)/2) = 1
+        if (!xSquared.modPow(P.shiftRight(1), P).equals(BigInteger.ONE)) {
+            throw new IllegalArgumentException("Ed25519 point is not on the curve");
+        }
+    }
+
+    public String getCrv() {
+        return CRV;
+    }
+
+    public String getX() {
+        return x;
+    }
+
+    /**
+     * @return the key in the JWK form the JOSE library verifies with
+     */
+    public OctetKeyPair getOctetKeyPair() {
+        return octetKeyPair;
+    }
+
+    @Override
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    @Override
+    protected void putKeyMembers(final Map<String, String> publicKeyJwk) {
+        publicKeyJwk.put("crv", CRV);
+        publicKeyJwk.put("x", x);
+    }
+
+    @Override
+    public String toString() {
+        return "OKPWrapper{" +
+                "kty='" + getKty() + '\'' +
+                ", use='" + getUse() + '\'' +
+                ", crv='" + CRV + '\'' +
+                ", kid='" + getKid() + '\'' +
+                ", alg='" + getAlg() + '\'' +
+                ", x='" + x + '\'' +
+                '}';
+    }
+
+    /**
+     * The key as an X.509-encoded {@link PublicKey}; the JCA only has a typed
+     * Ed25519 key from Java 15 on.
+     */
+    private static final class Ed25519PublicKey implements PublicKey {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] encoded;
+
+        Ed25519PublicKey(final byte[] rawX) {
+            this.encoded = Arrays.copyOf(X509_PREFIX, X509_PREFIX.length + rawX.length);
+            System.arraycopy(rawX, 0, encoded, X509_PREFIX.length, rawX.length);
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return CRV;
+        }
+
+        @Override
+        public String getFormat() {
+            return "X.509";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return encoded.clone();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Ed25519PublicKey && Arrays.equals(encoded, ((Ed25519PublicKey) o).encoded);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(encoded);
+        }
+    }
+}
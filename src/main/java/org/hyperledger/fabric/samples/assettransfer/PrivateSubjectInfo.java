@@ -0,0 +1,125 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * subjectInfo kept in a private data collection instead of world state.
+ *
+ * The attributes arrive in the transient map, so they are in neither the
+ * proposal nor the block. Member peers store them under the identity ID in the
+ * collection named by {@link #COLLECTION_PROPERTY}. The public record keeps
+ * {@link #hash} of the stored value. Anyone who is shown the value can check it
+ * against that hash; anyone else learns nothing from it, because the value
+ * includes a random salt of at least {@value #MIN_SALT_BYTES} bytes. Endorsers
+ * must agree on the value, so the client generates the salt (with a
+ * SecureRandom) and every write without one is rejected.
+ *
+ * Stored value: {@code {"salt":"<base64url salt>","subjectInfo":{...}}}. Members
+ * are sorted and there is no whitespace, so the same attributes and salt
+ * always give the same bytes and the same hash on every endorser.
+ */
+final class PrivateSubjectInfo {
+
+    /** Environment variable (or system property) naming the private data collection. */
+    static final String COLLECTION_PROPERTY = "IDENTITY_SUBJECT_INFO_COLLECTION";
+
+    static final String DEFAULT_COLLECTION = "subjectInfoCollection";
+
+    /** Transient map entry holding the private attributes as a JSON object of strings. */
+    static final String TRANSIENT_SUBJECT_INFO = "subjectInfo";
+
+    /** Transient map entry holding the random salt; required, since attribute values are easy to guess. */
+    static final String TRANSIENT_SALT = "salt";
+
+    /** Minimum salt length: 128 bits. */
+    static final int MIN_SALT_BYTES = 16;
+
+    private static final Base64.Encoder BASE64URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private PrivateSubjectInfo() {
+    }
+
+    /**
+     * @return the configured collection name, {@value #DEFAULT_COLLECTION} when unset
+     */
+    static String configuredCollection() {
+        String value = System.getProperty(COLLECTION_PROPERTY, System.getenv(COLLECTION_PROPERTY));
+        return value == null || value.trim().isEmpty() ? DEFAULT_COLLECTION : value.trim();
+    }
+
+    /**
+     * @param json the transient map entry
+     * @return the attributes
+     * @throws IllegalArgumentException if it is not a JSON object of strings
+     */
+    static Map<String, String> parseTransient(final byte[] json) {
+        IdentityJsonCodec.Input in = new IdentityJsonCodec.Input(json);
+        Map<String, String> subjectInfo = in.readNullableMap();
+        in.expectEnd();
+        if (subjectInfo == null) {
+            throw new IllegalArgumentException("subjectInfo is null");
+        }
+        return subjectInfo;
+    }
+
+    static byte[] encode(final byte[] salt, final Map<String, String> subjectInfo) {
+        StringBuilder json = new StringBuilder(256).append("{\"salt\":");
+        IdentityJsonCodec.appendQuoted(json, BASE64URL_ENCODER.encodeToString(salt));
+        json.append(",\"subjectInfo\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> attribute : new TreeMap<>(subjectInfo).entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            IdentityJsonCodec.appendQuoted(json, attribute.getKey());
+            json.append(':');
+            IdentityJsonCodec.appendQuoted(json, attribute.getValue());
+        }
+        return json.append("}}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param value a stored value
+     * @return its attributes
+     */
+    static Map<String, String> decode(final byte[] value) {
+        IdentityJsonCodec.Input in = new IdentityJsonCodec.Input(value);
+        Map<String, String> subjectInfo = null;
+        in.expect('{');
+        if (!in.consumeIf('}')) {
+            do {
+                String name = in.readString();
+                in.expect(':');
+                if ("subjectInfo".equals(name)) {
+                    subjectInfo = in.readNullableMap();
+                } else {
+                    in.skipValue();
+                }
+            } while (in.consumeIf(','));
+            in.expect('}');
+        }
+        in.expectEnd();
+        return subjectInfo;
+    }
+
+    /**
+     * @return base64url SHA-256 of a stored value
+     */
+    static String hash(final byte[] value) {
+        try {
+            return BASE64URL_ENCODER.encodeToString(MessageDigest.getInstance("SHA-256").digest(value));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
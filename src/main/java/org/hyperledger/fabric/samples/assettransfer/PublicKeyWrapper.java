@@ -0,0 +1,205 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+
+/**
+ * Public key of an identity, decoded and validated once when it is built.
+ *
+ * Subclasses hold the key as a ready {@link PublicKey}, so verifiers are built
+ * from decoded material without parsing any string. The stored form is still
+ * the JWK map of {@link Identity#getPublicKeyJwk()}; {@link #toJwk()} gives the
+ * canonical version of it and {@link #fromJwk(Map)} reads it back.
+ *
+ * Key types are looked up by their JWK "kty"; supporting another one means
+ * adding a subclass and registering its parser in {@link #KEY_TYPES}. Verifiers
+ * come from the {@link SignatureVerifierProvider} that {@link SignatureVerifiers}
+ * has for the key's kty and alg.
+ */
+public abstract class PublicKeyWrapper {
+
+    /** The only JWK "use" accepted: identity keys exist to verify signatures. */
+    public static final String USE_SIGNATURE = "sig";
+
+    private static final Map<String, Function<Map<String, String>, PublicKeyWrapper>> KEY_TYPES = new HashMap<>();
+
+    static {
+        KEY_TYPES.put(ECWrapper.KTY, ECWrapper::parse);
+        KEY_TYPES.put(RSAWrapper.KTY, RSAWrapper::parse);
+        KEY_TYPES.put(OKPWrapper.KTY, OKPWrapper::parse);
+    }
+
+    private static final Base64.Encoder BASE64URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder BASE64URL_DECODER = Base64.getUrlDecoder();
+
+    private final String kty;
+    private final String use;
+    private final String kid;
+    private final String alg;
+
+    protected PublicKeyWrapper(final String kty, final String use, final String kid, final String alg) {
+        if (use != null && !USE_SIGNATURE.equals(use)) {
+            throw new IllegalArgumentException("Unsupported key use " + use);
+        }
+        this.kty = kty;
+        this.use = use;
+        this.kid = kid;
+        this.alg = alg;
+    }
+
+    /**
+     * Reads and validates a stored JWK.
+     *
+     * @param publicKeyJwk the JWK members
+     * @return the typed key
+     * @throws IllegalArgumentException if the key type is unknown or the key is invalid
+     */
+    public static PublicKeyWrapper fromJwk(final Map<String, String> publicKeyJwk) {
+        if (publicKeyJwk == null) {
+            throw new IllegalArgumentException("Missing public key");
+        }
+        Function<Map<String, String>, PublicKeyWrapper> parser = KEY_TYPES.get(publicKeyJwk.get("kty"));
+        if (parser == null) {
+            throw new IllegalArgumentException("Unsupported key type " + publicKeyJwk.get("kty"));
+        }
+        return parser.apply(publicKeyJwk);
+    }
+
+    public String getKty() {
+        return kty;
+    }
+
+    public String getUse() {
+        return use;
+    }
+
+    public String getKid() {
+        return kid;
+    }
+
+    public String getAlg() {
+        return alg;
+    }
+
+    /**
+     * @return the decoded key
+     */
+    public abstract PublicKey getPublicKey();
+
+    /**
+     * Builds a signature verifier from the decoded key.
+     *
+     * @return a verifier for this key
+     * @throws JOSEException if no provider or the JOSE library does not support the key
+     */
+    public JWSVerifier newVerifier() throws JOSEException {
+        return SignatureVerifiers.newVerifier(this);
+    }
+
+    /**
+     * @return the JWK members of the key, in canonical encoding
+     */
+    public Map<String, String> toJwk() {
+        Map<String, String> publicKeyJwk = new HashMap<>();
+        publicKeyJwk.put("kty", kty);
+        publicKeyJwk.put("kid", kid);
+        publicKeyJwk.put("alg", alg);
+        putKeyMembers(publicKeyJwk);
+        publicKeyJwk.put("use", use);
+        return publicKeyJwk;
+    }
+
+    /**
+     * The JWK thumbprint of RFC 7638: the SHA-256 of the key's required members,
+     * kty and the type-specific ones, as JSON sorted by name without whitespace.
+     * Unlike the JWK itself it does not change with kid, alg or use.
+     *
+     * @return the base64url thumbprint
+     */
+    public String thumbprint() {
+        Map<String, String> requiredMembers = new TreeMap<>();
+        requiredMembers.put("kty", kty);
+        putKeyMembers(requiredMembers);
+
+        StringBuilder json = new StringBuilder(256).append('{');
+        for (Map.Entry<String, String> member : requiredMembers.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            IdentityJsonCodec.appendQuoted(json, member.getKey());
+            json.append(':');
+            IdentityJsonCodec.appendQuoted(json, member.getValue());
+        }
+        json.append('}');
+        try {
+            return encodeBase64Url(MessageDigest.getInstance("SHA-256")
+                    .digest(json.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds the type-specific JWK members, e.g. crv, x and y for EC keys.
+     */
+    protected abstract void putKeyMembers(Map<String, String> publicKeyJwk);
+
+    /**
+     * Decodes a base64url JWK member, with or without padding.
+     *
+     * @throws IllegalArgumentException if the member is missing or not base64url
+     */
+    protected static byte[] decodeBase64Url(final String member, final String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing key member " + member);
+        }
+        try {
+            return BASE64URL_DECODER.decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Key member " + member + " is not base64url", e);
+        }
+    }
+
+    protected static String encodeBase64Url(final byte[] value) {
+        return BASE64URL_ENCODER.encodeToString(value);
+    }
+
+    protected static void checkKty(final String expected, final String kty) {
+        if (!expected.equals(kty)) {
+            throw new IllegalArgumentException("Expected key type " + expected + " but got " + kty);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PublicKeyWrapper other = (PublicKeyWrapper) o;
+        return toJwk().equals(other.toJwk());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kty, kid, getPublicKey());
+    }
+}
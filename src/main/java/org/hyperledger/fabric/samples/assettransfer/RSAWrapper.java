@@ -0,0 +1,110 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RSA public key (JWK "kty" RSA) of an identity.
+ *
+ * Building one checks that the modulus is at least {@value #MIN_MODULUS_BITS}
+ * bits, that the exponent is odd and greater than one, that neither has a
+ * leading zero byte, and that "alg", when present, is an RSA signature algorithm.
+ */
+public final class RSAWrapper extends PublicKeyWrapper {
+
+    public static final String KTY = "RSA";
+
+    public static final int MIN_MODULUS_BITS = 2048;
+
+    private static final List<String> ALGORITHMS = Arrays.asList("RS256", "RS384", "RS512", "PS256", "PS384", "PS512");
+
+    private final String n;
+    private final String e;
+    private final RSAPublicKey publicKey;
+
+    /**
+     * @throws IllegalArgumentException if the key is not a valid RSA signature key
+     */
+    public RSAWrapper(final String kty, final String use, final String kid, final String alg,
+                      final String n, final String e) {
+        super(kty, use, kid, alg);
+        checkKty(KTY, kty);
+        if (alg != null && !ALGORITHMS.contains(alg)) {
+            throw new IllegalArgumentException("Algorithm " + alg + " is not an RSA signature algorithm");
+        }
+
+        byte[] rawN = unsignedInteger("n", n);
+        byte[] rawE = unsignedInteger("e", e);
+        BigInteger modulus = new BigInteger(1, rawN);
+        BigInteger exponent = new BigInteger(1, rawE);
+        if (modulus.bitLength() < MIN_MODULUS_BITS) {
+            throw new IllegalArgumentException(String.format("RSA modulus must be at least %d bits, got %d",
+                    MIN_MODULUS_BITS, modulus.bitLength()));
+        }
+        if (!exponent.testBit(0) || exponent.compareTo(BigInteger.ONE) <= 0) {
+            throw new IllegalArgumentException("RSA exponent must be odd and greater than 1");
+        }
+
+        this.n = encodeBase64Url(rawN);
+        this.e = encodeBase64Url(rawE);
+        try {
+            this.publicKey = (RSAPublicKey) KeyFactory.getInstance("RSA")
+                    .generatePublic(new RSAPublicKeySpec(modulus, exponent));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalArgumentException("Invalid RSA public key", ex);
+        }
+    }
+
+    static RSAWrapper parse(final Map<String, String> publicKeyJwk) {
+        return new RSAWrapper(publicKeyJwk.get("kty"), publicKeyJwk.get("use"), publicKeyJwk.get("kid"),
+                publicKeyJwk.get("alg"), publicKeyJwk.get("n"), publicKeyJwk.get("e"));
+    }
+
+    private static byte[] unsignedInteger(final String member, final String value) {
+        byte[] raw = decodeBase64Url(member, value);
+        if (raw.length == 0 || raw[0] == 0) {
+            throw new IllegalArgumentException("Key member " + member + " must not have leading zero bytes");
+        }
+        return raw;
+    }
+
+    public String getN() {
+        return n;
+    }
+
+    public String getE() {
+        return e;
+    }
+
+    @Override
+    public RSAPublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    @Override
+    protected void putKeyMembers(final Map<String, String> publicKeyJwk) {
+        publicKeyJwk.put("n", n);
+        publicKeyJwk.put("e", e);
+    }
+
+    @Override
+    public String toString() {
+        return "RSAWrapper{" +
+                "kty='" + getKty() + '\'' +
+                ", use='" + getUse() + '\'' +
+                ", kid='" + getKid() + '\'' +
+                ", alg='" + getAlg() + '\'' +
+                ", bits=" + publicKey.getModulus().bitLength() +
+                '}';
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds a JSON array by splicing already-serialized JSON values into one
+ * buffer. Bulk readers pass stored JSON records through {@link IdentityCodec#toJson}
+ * unchanged, so they never deserialize them into {@link Identity} objects and
+ * serialize them again.
+ */
+final class RawJsonArray {
+
+    private static final int ESTIMATED_RECORD_SIZE = 512;
+
+    private final ByteArrayOutputStream buffer;
+
+    private int size;
+
+    RawJsonArray() {
+        this(16);
+    }
+
+    RawJsonArray(final int expectedRecords) {
+        this.buffer = new ByteArrayOutputStream(Math.max(expectedRecords, 1) * ESTIMATED_RECORD_SIZE);
+        this.buffer.write('[');
+    }
+
+    /**
+     * Appends one stored JSON value as the next array element.
+     *
+     * @param json the UTF-8 JSON bytes exactly as read from the ledger
+     */
+    void add(final byte[] json) {
+        if (size > 0) {
+            buffer.write(',');
+        }
+        buffer.write(json, 0, json.length);
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the JSON array of all values added so far
+     */
+    String toJson() {
+        buffer.write(']');
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Wraps the array in a page object, laid out like Genson would serialize it:
+     * {@code {"bookmark":"...","fetchedCount":n,"records":[...]}}.
+     *
+     * @param bookmark the bookmark of the next page
+     * @param fetchedCount number of records fetched for this page
+     * @return the page as JSON
+     */
+    String toPageJson(final String bookmark, final int fetchedCount) {
+        String records = toJson();
+        StringBuilder page = new StringBuilder(records.length() + 64);
+        page.append("{\"bookmark\":");
+        IdentityJsonCodec.appendQuoted(page, bookmark == null ? "" : bookmark);
+        page.append(",\"fetchedCount\":").append(fetchedCount);
+        page.append(",\"records\":").append(records).append('}');
+        return page.toString();
+    }
+}
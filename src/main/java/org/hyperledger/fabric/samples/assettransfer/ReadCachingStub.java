@@ -0,0 +1,90 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Stub wrapper that remembers every world state value read during one
+ * transaction, so each key costs at most one round trip to the peer.
+ *
+ * This does not change the read set: the peer records a key's version on the
+ * first read, and within a transaction getState keeps returning the committed
+ * value, even after the transaction wrote the key. Writes therefore leave the
+ * cache untouched. Callers must not modify the returned arrays.
+ *
+ * It is a dynamic proxy rather than a hand-written delegate because the
+ * ChaincodeStub interface differs between 2.x shim releases; every call other
+ * than a state read is passed through unchanged. Peer reads, queries and
+ * writes are counted into the transaction's {@link TransactionStats} on the way.
+ */
+final class ReadCachingStub implements InvocationHandler {
+
+    private final ChaincodeStub stub;
+
+    private final TransactionStats stats;
+
+    private final Map<String, byte[]> reads = new HashMap<>();
+
+    private ReadCachingStub(final ChaincodeStub stub, final TransactionStats stats) {
+        this.stub = stub;
+        this.stats = stats;
+    }
+
+    static ChaincodeStub wrap(final ChaincodeStub stub, final TransactionStats stats) {
+        return (ChaincodeStub) Proxy.newProxyInstance(ChaincodeStub.class.getClassLoader(),
+                new Class<?>[] {ChaincodeStub.class}, new ReadCachingStub(stub, stats));
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        if (args != null && args.length == 1 && args[0] instanceof String) {
+            switch (method.getName()) {
+                case "getState":
+                    return getState((String) args[0]);
+                case "getStringState":
+                    return new String(getState((String) args[0]), StandardCharsets.UTF_8);
+                case "delState":
+                    stats.write(0);
+                    break;
+                default:
+                    break;
+            }
+        } else if (args != null && args.length == 2 && args[0] instanceof String) {
+            if (args[1] instanceof byte[] && "putState".equals(method.getName())) {
+                stats.write(((byte[]) args[1]).length);
+            } else if (args[1] instanceof String && "putStringState".equals(method.getName())) {
+                stats.write(((String) args[1]).getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+        String name = method.getName();
+        if (name.startsWith("getStateBy") || name.startsWith("getQueryResult") || name.equals("getHistoryForKey")) {
+            stats.query();
+        }
+        try {
+            return method.invoke(stub, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private byte[] getState(final String key) {
+        if (reads.containsKey(key)) {
+            return reads.get(key);
+        }
+        byte[] value = stub.getState(key);
+        stats.read(value);
+        reads.put(key, value);
+        return value;
+    }
+}
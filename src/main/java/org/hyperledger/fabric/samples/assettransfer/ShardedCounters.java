@@ -0,0 +1,140 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+
+/**
+ * Aggregate counters kept as delta keys, so that concurrent transactions never
+ * conflict on a shared counter key.
+ *
+ * A transaction adds to a counter by writing its own key, with the attributes
+ * group, name, shard and transaction ID. Nothing is read first, so no two
+ * transactions share a read or write. The shard is a hash of the transaction
+ * ID. The value of a counter is the sum of its delta keys, read with one
+ * partial composite key scan. Compaction folds the deltas of one shard into a
+ * single key, so each compaction only races with transactions in that shard.
+ *
+ * One instance serves one transaction and adds up its changes per counter,
+ * because every change to a counter in one transaction goes to the same key.
+ */
+final class ShardedCounters {
+
+    /** Composite key object type of counter deltas; attributes are group, name, shard and transaction ID. */
+    static final String DELTA_KEY = "count~delta";
+
+    static final int SHARDS = 16;
+
+    /** Counter group of the number of identities; its only name is {@link #ALL}. */
+    static final String TOTAL = "total";
+
+    static final String ALL = "all";
+
+    /** Counter group of the number of identities per controller ID. */
+    static final String CONTROLLER = "controller";
+
+    /** Counter group of the number of identities per status. */
+    static final String STATUS = "status";
+
+    private final ChaincodeStub stub;
+
+    private final String shard;
+
+    private final Map<String, Long> deltas = new HashMap<>();
+
+    ShardedCounters(final ChaincodeStub stub) {
+        this.stub = stub;
+        this.shard = shardName(Math.floorMod(stub.getTxId().hashCode(), SHARDS));
+    }
+
+    static String shardName(final int shard) {
+        return String.format("%02x", shard);
+    }
+
+    void add(final String group, final String name, final long delta) {
+        String key = stub.createCompositeKey(DELTA_KEY, group, name, shard, stub.getTxId()).toString();
+        long sum = deltas.getOrDefault(key, 0L) + delta;
+        deltas.put(key, sum);
+        if (sum == 0) {
+            stub.delState(key);
+        } else {
+            stub.putState(key, encodeLong(sum));
+        }
+    }
+
+    /**
+     * @return the value of one counter
+     */
+    long get(final String group, final String name) {
+        long sum = 0;
+        for (KeyValue delta : stub.getStateByPartialCompositeKey(stub.createCompositeKey(DELTA_KEY, group, name))) {
+            sum += decodeLong(delta.getValue());
+        }
+        return sum;
+    }
+
+    /**
+     * @return the value of every counter of a group that is not zero, by name
+     */
+    Map<String, Long> getGroup(final String group) {
+        Map<String, Long> sums = new TreeMap<>();
+        for (KeyValue delta : stub.getStateByPartialCompositeKey(stub.createCompositeKey(DELTA_KEY, group))) {
+            String name = stub.splitCompositeKey(delta.getKey()).getAttributes().get(1);
+            sums.merge(name, decodeLong(delta.getValue()), Long::sum);
+        }
+        sums.values().removeIf(sum -> sum == 0);
+        return sums;
+    }
+
+    /**
+     * Replaces the deltas of one shard of a counter with a single key holding their sum.
+     *
+     * @return the number of delta keys folded, 0 when there was nothing to fold
+     */
+    int compact(final String group, final String name, final int shardToCompact) {
+        String shardAttribute = shardName(shardToCompact);
+        long sum = 0;
+        List<String> keys = new ArrayList<>();
+        for (KeyValue delta : stub.getStateByPartialCompositeKey(
+                stub.createCompositeKey(DELTA_KEY, group, name, shardAttribute))) {
+            sum += decodeLong(delta.getValue());
+            keys.add(delta.getKey());
+        }
+        if (keys.size() < 2) {
+            return 0;
+        }
+        for (String key : keys) {
+            stub.delState(key);
+        }
+        if (sum != 0) {
+            stub.putState(stub.createCompositeKey(DELTA_KEY, group, name, shardAttribute, stub.getTxId()).toString(),
+                    encodeLong(sum));
+        }
+        return keys.size();
+    }
+
+    private static byte[] encodeLong(final long value) {
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) (value >>> (8 * (7 - i)));
+        }
+        return bytes;
+    }
+
+    private static long decodeLong(final byte[] bytes) {
+        long value = 0;
+        for (byte b : bytes) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+}
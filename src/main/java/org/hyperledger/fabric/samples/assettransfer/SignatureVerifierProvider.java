@@ -0,0 +1,40 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.Collection;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+
+/**
+ * Builds JWS verifiers for one key type and a set of JWS algorithms.
+ *
+ * The built-in providers cover EC, RSA and OKP (Ed25519) keys. Others are found
+ * with {@link java.util.ServiceLoader}: list the implementation in
+ * {@code META-INF/services/org.hyperledger.fabric.samples.assettransfer.SignatureVerifierProvider}.
+ * A provider found that way replaces the built-in one for the algorithms it names.
+ */
+public interface SignatureVerifierProvider {
+
+    /**
+     * @return the JWK "kty" of the keys this provider accepts
+     */
+    String getKeyType();
+
+    /**
+     * @return the JWS "alg" names this provider verifies
+     */
+    Collection<String> getAlgorithms();
+
+    /**
+     * Builds a verifier for a decoded key of {@link #getKeyType()}.
+     *
+     * @param publicKey the key
+     * @return a verifier for the key
+     * @throws JOSEException if the JOSE library does not support the key
+     */
+    JWSVerifier newVerifier(PublicKeyWrapper publicKey) throws JOSEException;
+}
@@ -0,0 +1,117 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+
+/**
+ * Chooses the {@link SignatureVerifierProvider} for a key by its "kty" and "alg".
+ *
+ * The providers are resolved once per JVM into a map keyed by kty and alg, so
+ * building a verifier is a single lookup. A key without "alg" gets the first
+ * provider registered for its kty; the built-in ones accept every algorithm of
+ * their key type, leaving the JOSE library to refuse a header that does not fit
+ * the key.
+ */
+public final class SignatureVerifiers {
+
+    private static final Map<String, SignatureVerifierProvider> BY_ALGORITHM = new HashMap<>();
+
+    private static final Map<String, SignatureVerifierProvider> BY_KEY_TYPE = new HashMap<>();
+
+    static {
+        register(new BuiltIn(ECWrapper.KTY, Arrays.asList("ES256", "ES384", "ES512"),
+                publicKey -> new ECDSAVerifier((ECPublicKey) publicKey.getPublicKey())));
+        register(new BuiltIn(RSAWrapper.KTY, Arrays.asList("RS256", "RS384", "RS512", "PS256", "PS384", "PS512"),
+                publicKey -> new RSASSAVerifier((RSAPublicKey) publicKey.getPublicKey())));
+        register(new BuiltIn(OKPWrapper.KTY, Collections.singletonList(OKPWrapper.ALG),
+                publicKey -> new Ed25519Verifier(((OKPWrapper) publicKey).getOctetKeyPair())));
+        for (SignatureVerifierProvider provider : ServiceLoader.load(SignatureVerifierProvider.class)) {
+            register(provider);
+        }
+    }
+
+    private SignatureVerifiers() {
+    }
+
+    private static void register(final SignatureVerifierProvider provider) {
+        BY_KEY_TYPE.putIfAbsent(provider.getKeyType(), provider);
+        for (String alg : provider.getAlgorithms()) {
+            BY_ALGORITHM.put(provider.getKeyType() + '/' + alg, provider);
+        }
+    }
+
+    /**
+     * Builds a verifier for a key with the provider registered for its kty and alg.
+     *
+     * @param publicKey the key
+     * @return a verifier for the key
+     * @throws JOSEException if no provider supports the key, or the provider refuses it
+     */
+    public static JWSVerifier newVerifier(final PublicKeyWrapper publicKey) throws JOSEException {
+        SignatureVerifierProvider provider = publicKey.getAlg() == null
+                ? BY_KEY_TYPE.get(publicKey.getKty())
+                : BY_ALGORITHM.get(publicKey.getKty() + '/' + publicKey.getAlg());
+        if (provider == null) {
+            throw new JOSEException(String.format("No verifier for key type %s and algorithm %s",
+                    publicKey.getKty(), publicKey.getAlg()));
+        }
+        return provider.newVerifier(publicKey);
+    }
+
+    /**
+     * @param kty a JWK key type
+     * @param alg a JWS algorithm
+     * @return whether a provider verifies alg signatures with kty keys
+     */
+    public static boolean supports(final String kty, final String alg) {
+        return BY_ALGORITHM.containsKey(kty + '/' + alg);
+    }
+
+    @FunctionalInterface
+    private interface VerifierFactory {
+        JWSVerifier create(PublicKeyWrapper publicKey) throws JOSEException;
+    }
+
+    private static final class BuiltIn implements SignatureVerifierProvider {
+        private final String keyType;
+        private final Collection<String> algorithms;
+        private final VerifierFactory factory;
+
+        BuiltIn(final String keyType, final Collection<String> algorithms, final VerifierFactory factory) {
+            this.keyType = keyType;
+            this.algorithms = Collections.unmodifiableCollection(algorithms);
+            this.factory = factory;
+        }
+
+        @Override
+        public String getKeyType() {
+            return keyType;
+        }
+
+        @Override
+        public Collection<String> getAlgorithms() {
+            return algorithms;
+        }
+
+        @Override
+        public JWSVerifier newVerifier(final PublicKeyWrapper publicKey) throws JOSEException {
+            return factory.create(publicKey);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Revocation status list: two bits per identity in fixed-size bitmap chunks,
+ * so the status of many identities costs a few small reads instead of one
+ * document read and decode each.
+ *
+ * An identity without an index is active. It gets one the first time it is
+ * revoked or suspended, so creating an identity writes nothing here and the
+ * lane counters are only contended by status changes, which are rare. Indices
+ * are handed out by {@value #LANES} independent counters, picked by a hash of
+ * the identity ID. Lane g owns chunks g, g + {@value #LANES}, g + 2 * {@value #LANES}
+ * and so on. Only Revoke, Suspend and Reinstate write a chunk.
+ *
+ * Chunks are stored compressed as runs: a version byte, then pairs of (varint
+ * count of zero bytes, varint-length-prefixed literal bytes). The encoding is
+ * fully determined by the bitmap, so every endorser writes the same bytes;
+ * a mostly-active chunk of {@value #CHUNK_SIZE} entries takes a few bytes.
+ *
+ * One instance serves one transaction and remembers the counters and chunks it
+ * read or wrote, because Fabric does not return a transaction's own writes.
+ */
+final class StatusList {
+
+    /** Entries per chunk; 2 bits each, so 4 KiB of bitmap. */
+    static final int CHUNK_SIZE = 16384;
+
+    static final int LANES = 16;
+
+    /** Composite key object type of the per-lane allocation counters. */
+    static final String LANE_KEY = "status~lane";
+
+    /** Composite key object type mapping an identity ID to its index. */
+    static final String INDEX_KEY = "status~index";
+
+    /** Composite key object type of the bitmap chunks; the attribute is the chunk number in hex. */
+    static final String CHUNK_KEY = "status~chunk";
+
+    private static final int BITS_PER_ENTRY = 2;
+
+    private static final int CHUNK_BYTES = CHUNK_SIZE * BITS_PER_ENTRY / 8;
+
+    private static final byte CHUNK_FORMAT_V1 = 0x01;
+
+    /** Status of an entry, stored as its ordinal. */
+    enum Status {
+        ACTIVE,
+        SUSPENDED,
+        REVOKED;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final ChaincodeStub stub;
+
+    private final Map<Integer, Integer> lanes = new HashMap<>();
+
+    private final Map<Integer, byte[]> chunks = new HashMap<>();
+
+    StatusList(final ChaincodeStub stub) {
+        this.stub = stub;
+    }
+
+    /**
+     * Gives an identity its index, on its first status change.
+     *
+     * @param identifier the identity ID
+     * @return the index
+     */
+    int allocate(final String identifier) {
+        int lane = Math.floorMod(identifier.hashCode(), LANES);
+        Integer next = lanes.get(lane);
+        if (next == null) {
+            next = readInt(stub.getState(key(LANE_KEY, Integer.toString(lane))), 0);
+        }
+        lanes.put(lane, next + 1);
+        stub.putState(key(LANE_KEY, Integer.toString(lane)), encodeInt(next + 1));
+
+        int chunk = (next / CHUNK_SIZE) * LANES + lane;
+        int index = chunk * CHUNK_SIZE + next % CHUNK_SIZE;
+        stub.putState(key(INDEX_KEY, identifier), encodeInt(index));
+        return index;
+    }
+
+    /**
+     * @param identifier the identity ID
+     * @return the index of the identity, or -1 if it has none
+     */
+    int indexOf(final String identifier) {
+        return readInt(stub.getState(key(INDEX_KEY, identifier)), -1);
+    }
+
+    Status get(final int index) {
+        byte[] bitmap = chunk(index / CHUNK_SIZE);
+        int slot = index % CHUNK_SIZE;
+        int bits = (bitmap[slot / 4] >> ((slot % 4) * BITS_PER_ENTRY)) & 0x3;
+        return bits < Status.values().length ? Status.values()[bits] : Status.REVOKED;
+    }
+
+    void set(final int index, final Status status) {
+        int chunkNumber = index / CHUNK_SIZE;
+        byte[] bitmap = chunk(chunkNumber);
+        int slot = index % CHUNK_SIZE;
+        int shift = (slot % 4) * BITS_PER_ENTRY;
+        bitmap[slot / 4] = (byte) ((bitmap[slot / 4] & ~(0x3 << shift)) | (status.ordinal() << shift));
+        stub.putState(chunkKey(chunkNumber), compress(bitmap));
+    }
+
+    /**
+     * @return the stored, compressed form of a chunk, or null when it was never written
+     */
+    byte[] storedChunk(final int chunkNumber) {
+        byte[] stored = stub.getState(chunkKey(chunkNumber));
+        return stored == null || stored.length == 0 ? null : stored;
+    }
+
+    private byte[] chunk(final int chunkNumber) {
+        byte[] bitmap = chunks.get(chunkNumber);
+        if (bitmap == null) {
+            byte[] stored = storedChunk(chunkNumber);
+            bitmap = stored == null ? new byte[CHUNK_BYTES] : decompress(stored);
+            chunks.put(chunkNumber, bitmap);
+        }
+        return bitmap;
+    }
+
+    private String chunkKey(final int chunkNumber) {
+        return key(CHUNK_KEY, String.format("%08x", chunkNumber));
+    }
+
+    private String key(final String objectType, final String attribute) {
+        return stub.createCompositeKey(objectType, attribute).toString();
+    }
+
+    static byte[] compress(final byte[] bitmap) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(CHUNK_FORMAT_V1);
+        int position = 0;
+        while (position < bitmap.length) {
+            int zeros = position;
+            while (zeros < bitmap.length && bitmap[zeros] == 0) {
+                zeros++;
+            }
+            int literal = zeros;
+            while (literal < bitmap.length && bitmap[literal] != 0) {
+                literal++;
+            }
+            IdentityCodec.writeVarint(out, zeros - position);
+            IdentityCodec.writeVarint(out, literal - zeros);
+            out.write(bitmap, zeros, literal - zeros);
+            position = literal;
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] decompress(final byte[] stored) {
+        if (stored[0] != CHUNK_FORMAT_V1) {
+            throw new IllegalArgumentException("Unknown status list chunk format " + stored[0]);
+        }
+        byte[] bitmap = new byte[CHUNK_BYTES];
+        IdentityCodec.Reader in = new IdentityCodec.Reader(stored, 1);
+        int position = 0;
+        while (in.hasMore()) {
+            position += in.readVarint();
+            byte[] literal = in.readBytes();
+            System.arraycopy(literal, 0, bitmap, position, literal.length);
+            position += literal.length;
+        }
+        return bitmap;
+    }
+
+    private static byte[] encodeInt(final int value) {
+        return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    private static int readInt(final byte[] value, final int missing) {
+        if (value == null || value.length == 0) {
+            return missing;
+        }
+        return ((value[0] & 0xFF) << 24) | ((value[1] & 0xFF) << 16) | ((value[2] & 0xFF) << 8) | (value[3] & 0xFF);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Value of a subjectInfo attribute key: a small JSON document,
+ * {@code {"attribute":"<name>","identifier":"<id>","value":"<value>"}}, so that
+ * CouchDB can index attributes by name and value for {@link IdentityQuery}.
+ *
+ * Attributes written before this format hold the plain UTF-8 value. They still
+ * read correctly but cannot be queried until they are written again.
+ */
+final class SubjectAttribute {
+
+    private static final String PREFIX = "{\"attribute\":";
+
+    private SubjectAttribute() {
+    }
+
+    static byte[] encode(final String id, final String name, final String value) {
+        StringBuilder json = new StringBuilder(64 + name.length() + value.length()).append(PREFIX);
+        IdentityJsonCodec.appendQuoted(json, name);
+        json.append(",\"identifier\":");
+        IdentityJsonCodec.appendQuoted(json, id);
+        json.append(",\"value\":");
+        IdentityJsonCodec.appendQuoted(json, value);
+        return json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the attribute value, from a document or a plain UTF-8 value
+     */
+    static String decodeValue(final byte[] state) {
+        return readMember(state, "value");
+    }
+
+    /**
+     * @return the identity ID of an attribute document, or null for a plain value
+     */
+    static String decodeIdentifier(final byte[] state) {
+        return isDocument(state) ? readMember(state, "identifier") : null;
+    }
+
+    private static boolean isDocument(final byte[] state) {
+        byte[] prefix = PREFIX.getBytes(StandardCharsets.UTF_8);
+        if (state.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (state[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readMember(final byte[] state, final String member) {
+        if (!isDocument(state)) {
+            return new String(state, StandardCharsets.UTF_8);
+        }
+        IdentityJsonCodec.Input in = new IdentityJsonCodec.Input(state);
+        String value = null;
+        in.expect('{');
+        do {
+            String name = in.readString();
+            in.expect(':');
+            if (member.equals(name)) {
+                value = in.readNullableString();
+            } else {
+                in.skipValue();
+            }
+        } while (in.consumeIf(','));
+        in.expect('}');
+        return value;
+    }
+}
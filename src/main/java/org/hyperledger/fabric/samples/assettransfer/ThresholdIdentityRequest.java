@@ -0,0 +1,77 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.List;
+import java.util.Map;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+/**
+ * Payload of {@code CreateThresholdIdentity}: the new identity, its k-of-n
+ * controllers and the signatures of at least k of them.
+ */
+@DataType()
+public final class ThresholdIdentityRequest {
+
+    @Property()
+    private final String context;
+
+    @Property()
+    private final String identifier;
+
+    @Property()
+    private final Map<String, String> publicKeyJwk;
+
+    @Property()
+    private final Map<String, String> subjectInfo;
+
+    @Property()
+    private final ControllerSet controllerSet;
+
+    @Property()
+    private final List<ControllerSignature> signatures;
+
+    public ThresholdIdentityRequest(@JsonProperty("context") final String context,
+                                    @JsonProperty("identifier") final String identifier,
+                                    @JsonProperty("publicKeyJwk") final Map<String, String> publicKeyJwk,
+                                    @JsonProperty("subjectInfo") final Map<String, String> subjectInfo,
+                                    @JsonProperty("controllerSet") final ControllerSet controllerSet,
+                                    @JsonProperty("signatures") final List<ControllerSignature> signatures) {
+        this.context = context;
+        this.identifier = identifier;
+        this.publicKeyJwk = publicKeyJwk;
+        this.subjectInfo = subjectInfo;
+        this.controllerSet = controllerSet;
+        this.signatures = signatures;
+    }
+
+    public String getContext() {
+        return context;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public Map<String, String> getPublicKeyJwk() {
+        return publicKeyJwk;
+    }
+
+    public Map<String, String> getSubjectInfo() {
+        return subjectInfo;
+    }
+
+    public ControllerSet getControllerSet() {
+        return controllerSet;
+    }
+
+    public List<ControllerSignature> getSignatures() {
+        return signatures;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks k-of-n signatures in parallel on a bounded pool shared by every
+ * transaction of this chaincode JVM, returning as soon as k are valid or k can
+ * no longer be reached.
+ *
+ * Only the yes/no answer is deterministic across peers; which checks happened
+ * to finish first is not, so callers must not let it reach the write set.
+ * Checks must be pure: any ledger reads they need are done beforehand, on the
+ * transaction's thread.
+ */
+public final class ThresholdVerifier {
+
+    /** Environment variable (or system property) holding the number of verification threads. */
+    public static final String THREADS_PROPERTY = "IDENTITY_VERIFIER_THREADS";
+
+    private static final int DEFAULT_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    /** Checks waiting for a thread; when full, the calling thread runs the check itself. */
+    private static final int QUEUE_SIZE = 64;
+
+    private final ThreadPoolExecutor executor;
+
+    public ThresholdVerifier(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Verifier thread count must be positive: " + threads);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "signature-verifier-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Reads the thread count from the environment or system properties, falling back to the default.
+     *
+     * @return the configured number of verification threads
+     */
+    public static int configuredThreads() {
+        String value = System.getProperty(THREADS_PROPERTY, System.getenv(THREADS_PROPERTY));
+        if (value == null || value.isEmpty()) {
+            return DEFAULT_THREADS;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println(String.format("Ignoring invalid %s=%s", THREADS_PROPERTY, value));
+            return DEFAULT_THREADS;
+        }
+    }
+
+    /**
+     * Runs the checks until threshold of them returned true.
+     *
+     * @param threshold number of valid signatures needed
+     * @param checks one check per distinct signer; a check that throws counts as invalid
+     * @return whether at least threshold checks returned true
+     */
+    public boolean verify(final int threshold, final List<Callable<Boolean>> checks) {
+        if (checks.size() < threshold) {
+            return false;
+        }
+        if (checks.size() == 1) {
+            return isValid(checks.get(0));
+        }
+
+        CompletionService<Boolean> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Boolean>> futures = new ArrayList<>(checks.size());
+        try {
+            for (Callable<Boolean> check : checks) {
+                futures.add(completion.submit(check));
+            }
+            int valid = 0;
+            int pending = checks.size();
+            while (pending > 0) {
+                boolean result;
+                try {
+                    result = Boolean.TRUE.equals(completion.take().get());
+                } catch (ExecutionException e) {
+                    result = false;
+                }
+                pending--;
+                if (result) {
+                    valid++;
+                }
+                if (valid >= threshold) {
+                    return true;
+                }
+                if (valid + pending < threshold) {
+                    return false;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying signatures", e);
+        } finally {
+            for (Future<Boolean> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static boolean isValid(final Callable<Boolean> check) {
+        try {
+            return Boolean.TRUE.equals(check.call());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ThresholdVerifier{" +
+                "threads=" + executor.getMaximumPoolSize() +
+                ", active=" + executor.getActiveCount() +
+                ", completed=" + executor.getCompletedTaskCount() +
+                '}';
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+/**
+ * What one transaction did, collected by its {@link IdentityContext} and handed
+ * to {@link ContractMetrics} when the transaction completes. Only touched by the
+ * thread running the transaction.
+ */
+final class TransactionStats {
+
+    private String transaction;
+    private long startNanos;
+    private int reads;
+    private int queries;
+    private int writes;
+    private long bytesRead;
+    private long bytesWritten;
+    private long verifyNanos;
+    private long codecNanos;
+
+    void start(final String transactionName) {
+        this.transaction = transactionName;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the transaction name given to {@link #start(String)}, null when not tracked
+     */
+    String getTransaction() {
+        return transaction;
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /** A getState answered by the peer. */
+    void read(final byte[] value) {
+        reads++;
+        if (value != null) {
+            bytesRead += value.length;
+        }
+    }
+
+    /** A range, partial composite key or rich query. */
+    void query() {
+        queries++;
+    }
+
+    /** A putState or delState; deletes write no bytes. */
+    void write(final int length) {
+        writes++;
+        bytesWritten += length;
+    }
+
+    void verify(final long nanos) {
+        verifyNanos += nanos;
+    }
+
+    void codec(final long nanos) {
+        codecNanos += nanos;
+    }
+
+    int getReads() {
+        return reads;
+    }
+
+    int getQueries() {
+        return queries;
+    }
+
+    int getWrites() {
+        return writes;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    long getVerifyNanos() {
+        return verifyNanos;
+    }
+
+    long getCodecNanos() {
+        return codecNanos;
+    }
+}
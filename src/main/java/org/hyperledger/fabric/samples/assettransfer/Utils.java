@@ -1,21 +1,79 @@
 package org.hyperledger.fabric.samples.assettransfer;
 
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.Locale;
 
 public class Utils {
 
+    /**
+     * Layout of the dates stored on the ledger: ISO-8601 in UTC with exactly three
+     * fraction digits, so that string order is time order.
+     */
+    private static final DateTimeFormatter LEDGER_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US).withZone(ZoneOffset.UTC);
 
+    /** Layout of {@link Date#toString()}, used by the dates of identities created before ISO-8601 dates. */
+    private static final DateTimeFormatter LEGACY_LEDGER_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
 
+    /** Day bucket of the expiry index, in UTC so every peer computes the same key. */
+    private static final DateTimeFormatter EXPIRY_BUCKET_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd", Locale.US).withZone(ZoneOffset.UTC);
 
-    static String[] getIssueAndExpiracyDate(int amount){
-        Calendar cal = Calendar.getInstance();
-        Date today = cal.getTime();
-        cal.add(Calendar.YEAR, amount); // to get previous year add 1
-        Date expiryDate = cal.getTime();
 
-        return new String[] {today.toString(), expiryDate.toString()};
+    /**
+     * Computes issuedAt and validTo from the transaction timestamp, which is the same
+     * on every endorsing peer, unlike their clocks and time zones.
+     *
+     * @param issuedAt the transaction timestamp, see {@code ChaincodeStub#getTxTimestamp()}
+     * @param amount validity in years
+     * @return the issue and expiry dates as ledger dates
+     */
+    static String[] getIssueAndExpiracyDate(Instant issuedAt, int amount) {
+        Instant issued = issuedAt.truncatedTo(ChronoUnit.MILLIS);
+        Instant expiry = issued.atOffset(ZoneOffset.UTC).plusYears(amount).toInstant();
 
+        return new String[] {formatLedgerDate(issued), formatLedgerDate(expiry)};
+    }
+
+    /**
+     * @return the instant as a ledger date, e.g. 2021-06-01T12:00:00.000Z
+     */
+    static String formatLedgerDate(Instant instant) {
+        return LEDGER_DATE_FORMAT.format(instant);
+    }
+
+    /**
+     * Parses a date as stored in {@link Identity#getValidTo()}, in the ISO-8601 form
+     * or the {@link Date#toString()} form of older identities.
+     *
+     * @return the instant, or null when the value is missing or not a ledger date
+     */
+    static Instant parseLedgerDate(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            if (Character.isDigit(value.charAt(0))) {
+                return Instant.from(LEDGER_DATE_FORMAT.parse(value));
+            }
+            return ZonedDateTime.parse(value, LEGACY_LEDGER_DATE_FORMAT).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the yyyyMMdd expiry index bucket of an instant
+     */
+    static String expiryBucket(Instant instant) {
+        return EXPIRY_BUCKET_FORMAT.format(instant);
     }
 
 }
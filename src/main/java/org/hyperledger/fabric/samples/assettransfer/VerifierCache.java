@@ -0,0 +1,180 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+
+/**
+ * Bounded LRU cache of ready-to-use signature verifiers, shared by every
+ * transaction executed in this chaincode JVM.
+ *
+ * Entries are keyed by identity id and carry a SHA-256 fingerprint of the key
+ * material they were built from. A lookup whose fingerprint does not match the
+ * cached one is a miss and replaces the entry, so a rotated key can never be
+ * verified with the verifier of its predecessor.
+ */
+public final class VerifierCache {
+
+    /** Environment variable (or system property) holding the maximum number of cached verifiers. */
+    public static final String SIZE_PROPERTY = "IDENTITY_VERIFIER_CACHE_SIZE";
+
+    private static final int DEFAULT_SIZE = 256;
+
+    /** Builds a verifier for a key; only called on a cache miss. */
+    @FunctionalInterface
+    public interface VerifierFactory {
+        JWSVerifier create(Map<String, String> publicKeyJwk) throws JOSEException;
+    }
+
+    private static final class Entry {
+        private final byte[] fingerprint;
+        private final JWSVerifier verifier;
+
+        Entry(final byte[] fingerprint, final JWSVerifier verifier) {
+            this.fingerprint = fingerprint;
+            this.verifier = verifier;
+        }
+    }
+
+    private final int maxSize;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public VerifierCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Verifier cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > VerifierCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Reads the cache size from the environment or system properties, falling back to the default.
+     *
+     * @return the configured maximum number of entries
+     */
+    public static int configuredSize() {
+        String value = System.getProperty(SIZE_PROPERTY, System.getenv(SIZE_PROPERTY));
+        if (value == null || value.isEmpty()) {
+            return DEFAULT_SIZE;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println(String.format("Ignoring invalid %s=%s", SIZE_PROPERTY, value));
+            return DEFAULT_SIZE;
+        }
+    }
+
+    /**
+     * Returns the cached verifier for the identity, building and caching a new one
+     * when the identity is unknown or its key material has changed.
+     *
+     * @param identityId the identity owning the key
+     * @param publicKeyJwk the key material currently stored for the identity
+     * @param factory builds the verifier on a miss
+     * @return a verifier for exactly this key material
+     * @throws JOSEException if the key cannot be turned into a verifier
+     */
+    public JWSVerifier get(final String identityId, final Map<String, String> publicKeyJwk,
+                           final VerifierFactory factory) throws JOSEException {
+        byte[] fingerprint = fingerprint(publicKeyJwk);
+
+        synchronized (entries) {
+            Entry entry = entries.get(identityId);
+            if (entry != null && MessageDigest.isEqual(entry.fingerprint, fingerprint)) {
+                hits.incrementAndGet();
+                return entry.verifier;
+            }
+        }
+
+        misses.incrementAndGet();
+        JWSVerifier verifier = factory.create(publicKeyJwk);
+        synchronized (entries) {
+            entries.put(identityId, new Entry(fingerprint, verifier));
+        }
+        return verifier;
+    }
+
+    /**
+     * Drops the verifier cached for an identity, e.g. after its key was replaced.
+     *
+     * @param identityId the identity whose verifier must no longer be used
+     */
+    public void invalidate(final String identityId) {
+        synchronized (entries) {
+            entries.remove(identityId);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static byte[] fingerprint(final Map<String, String> publicKeyJwk) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        // Fixed member order so equal keys always produce equal fingerprints,
+        // whatever map implementation they were deserialized into.
+        for (String member : new String[] {"kty", "crv", "alg", "kid", "x", "y", "n", "e"}) {
+            String value = publicKeyJwk.get(member);
+            digest.update(member.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            if (value != null) {
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+        }
+        return digest.digest();
+    }
+
+    @Override
+    public String toString() {
+        return "VerifierCache{" +
+                "size=" + size() +
+                ", maxSize=" + maxSize +
+                ", hits=" + hits.get() +
+                ", misses=" + misses.get() +
+                '}';
+    }
+}
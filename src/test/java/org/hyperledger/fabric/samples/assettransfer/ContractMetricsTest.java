@@ -0,0 +1,105 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class ContractMetricsTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(ORG, new TestKeys("org"));
+    }
+
+    /** Evaluates a call in a transaction whose proposal names the function, as the peer would. */
+    private <T> T evaluate(final String function, final ContractRunner.Call<T> call) {
+        SimulatedTransaction tx = runner.newTransaction(Collections.emptyList());
+        tx.setArgs(Collections.singletonList(function.getBytes(StandardCharsets.UTF_8)));
+        return runner.run(tx, call);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> metrics() {
+        String metrics = runner.evaluate(ctx -> runner.getContract().GetContractMetrics(ctx));
+        return genson.deserialize(metrics, Map.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> transaction(final String name) {
+        return (Map<String, Object>) ((Map<String, Object>) metrics().get("transactions")).get(name);
+    }
+
+    private static long value(final Map<String, Object> values, final String name) {
+        return ((Number) values.get(name)).longValue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void countsCompletedTransactions() {
+        evaluate("ReadIdentity", ctx -> runner.getContract().ReadIdentity(ctx, ORG));
+        evaluate("identity:ReadIdentity", ctx -> runner.getContract().ReadIdentity(ctx, ORG));
+
+        Map<String, Object> readIdentity = transaction("ReadIdentity");
+
+        assertThat(value(readIdentity, "started")).isEqualTo(2);
+        assertThat(value(readIdentity, "completed")).isEqualTo(2);
+        assertThat(value(readIdentity, "ledgerReads")).isPositive();
+        assertThat(value(readIdentity, "bytesRead")).isPositive();
+        assertThat((Map<String, Object>) readIdentity.get("latencyBuckets")).containsEntry("+Inf", 2L);
+    }
+
+    @Test
+    public void countsFailedTransactionsAsStartedOnly() {
+        catchThrowable(() -> evaluate("ReadIdentity", ctx -> runner.getContract().ReadIdentity(ctx,
+                "lsdi:org/unknown")));
+
+        Map<String, Object> readIdentity = transaction("ReadIdentity");
+
+        assertThat(value(readIdentity, "started")).isEqualTo(1);
+        assertThat(value(readIdentity, "completed")).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void publishesTheVerifierCacheCounters() {
+        assertThat((Map<String, Object>) metrics().get("components")).containsKeys("verifier_cache_hits_total",
+                "verifier_cache_misses_total", "verifier_cache_size");
+    }
+
+    @Test
+    public void whenTransactionIsUnknown() {
+        Throwable thrown = catchThrowable(() -> evaluate("DeleteEverything", ctx -> {
+            runner.getContract().unknownTransaction(ctx);
+            return null;
+        }));
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessage("Undefined contract method called: DeleteEverything");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        assertThat(value(metrics(), "unknownTransactions")).isEqualTo(1);
+        assertThat(transaction("DeleteEverything")).isNull();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.hyperledger.fabric.contract.Context;
+
+/**
+ * Runs {@link IdentityContract} transactions one after the other on a
+ * {@link SimulatedLedger}, through the context and lifecycle hooks the contract
+ * router would use. A submitted transaction is committed when it returns and
+ * must validate; an evaluated one is not committed. A transaction that throws
+ * is not committed either.
+ */
+final class ContractRunner {
+
+    static final String CONTEXT = "http://lsdi.ufma.br";
+
+    /** Timestamp of the first transaction; each transaction is one second after the previous one. */
+    static final Instant START = Instant.parse("2021-06-01T12:00:00Z");
+
+    /** A contract transaction, called with the context of one simulated transaction. */
+    @FunctionalInterface
+    interface Call<T> {
+        T call(Context ctx) throws Exception;
+    }
+
+    private final SimulatedLedger ledger = new SimulatedLedger();
+
+    private final IdentityContract contract = new IdentityContract();
+
+    private Instant now = START;
+
+    private int transactions;
+
+    private int nonces;
+
+    private SimulatedTransaction last;
+
+    SimulatedLedger getLedger() {
+        return ledger;
+    }
+
+    IdentityContract getContract() {
+        return contract;
+    }
+
+    /**
+     * @return the last transaction run, committed or not
+     */
+    SimulatedTransaction getLast() {
+        return last;
+    }
+
+    /**
+     * @return the timestamp the next transaction gets
+     */
+    Instant getNow() {
+        return now;
+    }
+
+    void setNow(final Instant now) {
+        this.now = now;
+    }
+
+    /**
+     * @return a nonce for an {@link Approval}, different on every call
+     */
+    String nonce() {
+        nonces++;
+        return "nonce-" + nonces;
+    }
+
+    <T> T submit(final Call<T> call) {
+        return submit(Collections.emptyList(), call);
+    }
+
+    <T> T submit(final List<String> parameters, final Call<T> call) {
+        return submit(parameters, Collections.emptyMap(), call);
+    }
+
+    /**
+     * Submits a transaction whose proposal carries a transient map.
+     */
+    <T> T submit(final List<String> parameters, final Map<String, byte[]> transientMap, final Call<T> call) {
+        SimulatedTransaction tx = newTransaction(parameters);
+        tx.setTransient(transientMap);
+        return commit(tx, call);
+    }
+
+    /**
+     * Submits a transaction that reads its raw arguments, function name first.
+     */
+    <T> T submitArgs(final List<byte[]> args, final Call<T> call) {
+        SimulatedTransaction tx = newTransaction(Collections.emptyList());
+        tx.setArgs(args);
+        return commit(tx, call);
+    }
+
+    private <T> T commit(final SimulatedTransaction tx, final Call<T> call) {
+        T result = run(tx, call);
+        SimulatedLedger.ValidationCode code = ledger.commit(last);
+        if (code != SimulatedLedger.ValidationCode.VALID) {
+            throw new IllegalStateException(last + " failed validation: " + code);
+        }
+        return result;
+    }
+
+    <T> T evaluate(final Call<T> call) {
+        return run(newTransaction(Collections.emptyList()), call);
+    }
+
+    SimulatedTransaction newTransaction(final List<String> parameters) {
+        transactions++;
+        SimulatedTransaction tx = ledger.newTransaction("tx" + transactions, now, parameters);
+        now = now.plusSeconds(1);
+        return tx;
+    }
+
+    /**
+     * Runs a call in a transaction created with {@link #newTransaction}, without committing it.
+     */
+    <T> T run(final SimulatedTransaction tx, final Call<T> call) {
+        last = tx;
+        Context ctx = contract.createContext(tx.getStub());
+        contract.beforeTransaction(ctx);
+        T result;
+        try {
+            result = call.call(ctx);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        contract.afterTransaction(ctx, result);
+        return result;
+    }
+
+    /**
+     * @param operation the creating transaction
+     * @return the {@link Approval} payload a controller signs to create an identity with this key
+     */
+    String creationPayload(final String operation, final String id, final String controller,
+                           final PublicKeyWrapper publicKey) {
+        return Approval.of(operation, id).with("controlledBy", controller)
+                .with("keyThumbprint", publicKey.thumbprint()).nonce(nonce()).payload();
+    }
+
+    /**
+     * Creates an EC identity with CreateECIdentity.
+     *
+     * @param controllerKeys the key of the controller, or of the identity itself when it controls itself
+     */
+    Identity createECIdentity(final String id, final String controller, final TestKeys keys,
+                              final TestKeys controllerKeys, final String... subjectInfo) {
+        List<String> parameters = new ArrayList<>(Arrays.asList(CONTEXT, id, controller, "EC", keys.getKid(),
+                "ES256", "P-256", keys.getX(), keys.getY(),
+                controllerKeys.sign(creationPayload("CreateECIdentity", id, controller, keys.publicKey()))));
+        parameters.addAll(Arrays.asList(subjectInfo));
+        return submit(parameters, ctx -> contract.CreateECIdentity(ctx));
+    }
+
+    /**
+     * Creates an identity that controls itself.
+     */
+    Identity createSelfSigned(final String id, final TestKeys keys, final String... subjectInfo) {
+        return createECIdentity(id, id, keys, keys, subjectInfo);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public final class ControllerSetTest {
+
+    private static Throwable canonical(final int threshold, final String... controllers) {
+        return catchThrowable(() -> new ControllerSet(Arrays.asList(controllers), threshold).canonical());
+    }
+
+    @Nested
+    class Canonical {
+
+        @Test
+        public void sortsControllers() {
+            ControllerSet controllerSet = new ControllerSet(Arrays.asList("lsdi:org/c", "lsdi:org/a",
+                    "lsdi:org/b"), 2).canonical();
+
+            assertThat(controllerSet.getControllers()).containsExactly("lsdi:org/a", "lsdi:org/b", "lsdi:org/c");
+            assertThat(controllerSet.getThreshold()).isEqualTo(2);
+            assertThat(controllerSet).isEqualTo(new ControllerSet(Arrays.asList("lsdi:org/b", "lsdi:org/c",
+                    "lsdi:org/a"), 2).canonical());
+        }
+
+        @Test
+        public void acceptsThresholdBounds() {
+            assertThat(new ControllerSet(Arrays.asList("lsdi:org/a", "lsdi:org/b"), 1).canonical().getThreshold())
+                    .isEqualTo(1);
+            assertThat(new ControllerSet(Arrays.asList("lsdi:org/a", "lsdi:org/b"), 2).canonical().getThreshold())
+                    .isEqualTo(2);
+        }
+    }
+
+    @Nested
+    class Invalid {
+
+        @Test
+        public void whenEmpty() {
+            assertThat(catchThrowable(() -> new ControllerSet(Collections.emptyList(), 1).canonical()))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("A controller set needs at least one controller");
+            assertThat(catchThrowable(() -> new ControllerSet(null, 1).canonical()))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+
+        @Test
+        public void whenControllerIsDuplicated() {
+            assertThat(canonical(2, "lsdi:org/a", "lsdi:org/b", "lsdi:org/a"))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("Duplicate controller lsdi:org/a");
+        }
+
+        @Test
+        public void whenControllerIsEmpty() {
+            assertThat(canonical(1, "lsdi:org/a", ""))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("Controller IDs must not be empty");
+        }
+
+        @Test
+        public void whenThresholdIsOutOfRange() {
+            assertThat(canonical(0, "lsdi:org/a", "lsdi:org/b"))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Threshold must be between 1 and 2, got 0");
+            assertThat(canonical(3, "lsdi:org/a", "lsdi:org/b"))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Threshold must be between 1 and 2, got 3");
+        }
+
+        @Test
+        public void whenTooLarge() {
+            String[] controllers = new String[ControllerSet.MAX_CONTROLLERS + 1];
+            for (int i = 0; i < controllers.length; i++) {
+                controllers[i] = "lsdi:org/" + i;
+            }
+
+            assertThat(canonical(1, controllers)).isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("At most 16 controllers are allowed, got 17");
+        }
+    }
+}
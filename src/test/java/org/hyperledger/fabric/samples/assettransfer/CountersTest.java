@@ -0,0 +1,141 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class CountersTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private static final String OTHER_ORG = "lsdi:org/b";
+
+    /** More identities than shards, so at least one shard of the total holds several deltas. */
+    private static final int DEVICES = ShardedCounters.SHARDS + 1;
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private final TestKeys orgKeys = new TestKeys("org");
+
+    private final TestKeys deviceKeys = new TestKeys("device");
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    private static String device(final int i) {
+        return "lsdi:ufma:br/device/" + i;
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(ORG, orgKeys);
+        for (int i = 0; i < DEVICES; i++) {
+            runner.createECIdentity(device(i), ORG, deviceKeys, orgKeys);
+        }
+        runner.createSelfSigned(OTHER_ORG, new TestKeys("org"));
+    }
+
+    private IdentityCounts counts(final String... controllerIds) {
+        String counts = runner.evaluate(ctx -> runner.getContract().GetCounts(ctx, controllerIds));
+        return genson.deserialize(counts, IdentityCounts.class);
+    }
+
+    private int compact(final String group, final String name, final int shard) {
+        return runner.submit(ctx -> runner.getContract().CompactCounters(ctx, group, name, shard));
+    }
+
+    private int deltaKeys(final String group, final String name) {
+        return runner.evaluate(ctx -> {
+            int keys = 0;
+            for (KeyValue ignored : ctx.getStub().getStateByPartialCompositeKey(ShardedCounters.DELTA_KEY, group,
+                    name)) {
+                keys++;
+            }
+            return keys;
+        });
+    }
+
+    @Nested
+    class GetCounts {
+
+        @Test
+        public void countsByStatusAndController() {
+            IdentityCounts counts = counts(ORG, OTHER_ORG);
+
+            assertThat(counts.getTotal()).isEqualTo(DEVICES + 2);
+            assertThat(counts.getByStatus()).containsOnlyKeys("active").containsEntry("active", DEVICES + 2L);
+            assertThat(counts.getByController()).containsEntry(ORG, DEVICES + 1L).containsEntry(OTHER_ORG, 1L);
+        }
+
+        @Test
+        public void whenControllerIsUnknown() {
+            assertThat(counts("lsdi:org/unknown").getByController()).containsEntry("lsdi:org/unknown", 0L);
+        }
+    }
+
+    @Nested
+    class CompactCounters {
+
+        @Test
+        public void foldsTheDeltasOfEachShard() {
+            IdentityCounts before = counts(ORG);
+            int deltas = deltaKeys(ShardedCounters.TOTAL, ShardedCounters.ALL);
+
+            int folded = 0;
+            for (int shard = 0; shard < ShardedCounters.SHARDS; shard++) {
+                folded += compact(ShardedCounters.TOTAL, ShardedCounters.ALL, shard);
+            }
+
+            assertThat(folded).isPositive();
+            assertThat(deltaKeys(ShardedCounters.TOTAL, ShardedCounters.ALL)).isLessThan(deltas)
+                    .isLessThanOrEqualTo(ShardedCounters.SHARDS);
+            IdentityCounts after = counts(ORG);
+            assertThat(after.getTotal()).isEqualTo(before.getTotal());
+            assertThat(after.getByController()).isEqualTo(before.getByController());
+        }
+
+        @Test
+        public void whenShardHasNothingToFold() {
+            for (int shard = 0; shard < ShardedCounters.SHARDS; shard++) {
+                compact(ShardedCounters.CONTROLLER, ORG, shard);
+            }
+
+            for (int shard = 0; shard < ShardedCounters.SHARDS; shard++) {
+                assertThat(compact(ShardedCounters.CONTROLLER, ORG, shard)).isZero();
+            }
+            assertThat(counts(ORG).getByController()).containsEntry(ORG, DEVICES + 1L);
+        }
+
+        @Test
+        public void whenGroupIsUnknown() {
+            Throwable thrown = catchThrowable(() -> compact("colour", "red", 0));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasMessage("No counter shard colour/red/0");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+
+        @Test
+        public void whenShardIsOutOfRange() {
+            Throwable thrown = catchThrowable(() -> compact(ShardedCounters.TOTAL, ShardedCounters.ALL,
+                    ShardedCounters.SHARDS));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+    }
+}
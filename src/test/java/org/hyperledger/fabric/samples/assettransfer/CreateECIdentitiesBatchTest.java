@@ -0,0 +1,170 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.GenericType;
+import com.owlike.genson.Genson;
+
+public final class CreateECIdentitiesBatchTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private static final String DEVICE_1 = "lsdi:ufma:br/device/1";
+
+    private static final String DEVICE_2 = "lsdi:ufma:br/device/2";
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private final TestKeys orgKeys = new TestKeys("org");
+
+    private final TestKeys deviceKeys = new TestKeys("device");
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(ORG, orgKeys);
+    }
+
+    private ECIdentityRequest request(final String id, final String controller, final String signature) {
+        return new ECIdentityRequest(ContractRunner.CONTEXT, id, controller, "EC", deviceKeys.getKid(), "ES256",
+                "P-256", deviceKeys.getX(), deviceKeys.getY(), signature, Collections.singletonMap("nome", id));
+    }
+
+    private String approve(final String id, final String controller, final TestKeys keys,
+                           final TestKeys controllerKeys) {
+        return controllerKeys.sign(runner.creationPayload("CreateECIdentitiesBatch", id, controller,
+                keys.publicKey()));
+    }
+
+    private String approve(final String id, final TestKeys controllerKeys) {
+        return approve(id, ORG, deviceKeys, controllerKeys);
+    }
+
+    private List<BatchEntryResult> createBatch(final ECIdentityRequest... requests) {
+        String requestsJSON = genson.serialize(Arrays.asList(requests));
+        String results = runner.submit(ctx -> runner.getContract().CreateECIdentitiesBatch(ctx, requestsJSON));
+        return genson.deserialize(results, new GenericType<List<BatchEntryResult>>() { });
+    }
+
+    private boolean exists(final String id) {
+        return runner.evaluate(ctx -> runner.getContract().IdentityExists(ctx, id));
+    }
+
+    @Test
+    public void whenEveryEntryIsValid() {
+        List<BatchEntryResult> results = createBatch(request(DEVICE_1, ORG, approve(DEVICE_1, orgKeys)),
+                request(DEVICE_2, ORG, approve(DEVICE_2, orgKeys)));
+
+        assertThat(results).extracting(BatchEntryResult::getStatus)
+                .containsExactly(BatchEntryResult.CREATED, BatchEntryResult.CREATED);
+        Identity created = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, DEVICE_2));
+        assertThat(created.getControlledBy()).isEqualTo(ORG);
+        assertThat(created.getSubjectInfo()).containsEntry("nome", DEVICE_2);
+    }
+
+    @Test
+    public void whenControllerIsCreatedEarlierInTheBatch() {
+        TestKeys controllerKeys = new TestKeys("device");
+        ECIdentityRequest controller = new ECIdentityRequest(ContractRunner.CONTEXT, DEVICE_1, DEVICE_1, "EC",
+                controllerKeys.getKid(), "ES256", "P-256", controllerKeys.getX(), controllerKeys.getY(),
+                approve(DEVICE_1, DEVICE_1, controllerKeys, controllerKeys), Collections.emptyMap());
+
+        List<BatchEntryResult> results = createBatch(controller,
+                request(DEVICE_2, DEVICE_1, approve(DEVICE_2, DEVICE_1, deviceKeys, controllerKeys)));
+
+        assertThat(results).extracting(BatchEntryResult::getStatus)
+                .containsExactly(BatchEntryResult.CREATED, BatchEntryResult.CREATED);
+    }
+
+    @Test
+    public void rejectsInvalidEntriesAndCreatesTheOthers() {
+        runner.createECIdentity(DEVICE_1, ORG, deviceKeys, orgKeys);
+
+        List<BatchEntryResult> results = createBatch(request(DEVICE_1, ORG, approve(DEVICE_1, orgKeys)),
+                request(DEVICE_2, ORG, approve(DEVICE_2, new TestKeys("org"))),
+                request("lsdi:ufma:br/device/3", "lsdi:org/unknown", approve("lsdi:ufma:br/device/3",
+                        "lsdi:org/unknown", deviceKeys, orgKeys)),
+                request("lsdi:ufma:br/device/4", ORG, approve("lsdi:ufma:br/device/4", orgKeys)));
+
+        assertThat(results).extracting(BatchEntryResult::getError).containsExactly("IDENTITY_ALREADY_EXISTS",
+                "INVALID_SIGNATURE", "IDENTITY_NOT_FOUND", null);
+        assertThat(exists(DEVICE_2)).isFalse();
+        assertThat(exists("lsdi:ufma:br/device/4")).isTrue();
+    }
+
+    @Test
+    public void rejectsAnIdentityTwiceInTheBatch() {
+        List<BatchEntryResult> results = createBatch(request(DEVICE_1, ORG, approve(DEVICE_1, orgKeys)),
+                request(DEVICE_1, ORG, approve(DEVICE_1, orgKeys)));
+
+        assertThat(results).extracting(BatchEntryResult::getStatus)
+                .containsExactly(BatchEntryResult.CREATED, BatchEntryResult.REJECTED);
+        assertThat(results.get(1).getError()).isEqualTo("IDENTITY_ALREADY_EXISTS");
+    }
+
+    @Test
+    public void rejectsAnEntryReusingTheSignatureOfAnother() {
+        String signature = approve(DEVICE_1, orgKeys);
+
+        List<BatchEntryResult> results = createBatch(request(DEVICE_1, ORG, signature),
+                request(DEVICE_2, ORG, signature));
+
+        assertThat(results).extracting(BatchEntryResult::getError).containsExactly(null, "INVALID_SIGNATURE");
+        assertThat(exists(DEVICE_2)).isFalse();
+    }
+
+    @Test
+    public void rejectsASignatureForAnotherKey() {
+        String signature = approve(DEVICE_1, ORG, new TestKeys("device"), orgKeys);
+
+        List<BatchEntryResult> results = createBatch(request(DEVICE_1, ORG, signature));
+
+        assertThat(results).extracting(BatchEntryResult::getError).containsExactly("INVALID_SIGNATURE");
+        assertThat(exists(DEVICE_1)).isFalse();
+    }
+
+    @Test
+    public void rejectsASignatureOverTheIdOnly() {
+        List<BatchEntryResult> results = createBatch(request(DEVICE_1, ORG, orgKeys.sign(DEVICE_1)));
+
+        assertThat(results).extracting(BatchEntryResult::getError).containsExactly("INVALID_SIGNATURE");
+    }
+
+    @Test
+    public void whenPayloadIsNotAnArrayOfRequests() {
+        Throwable thrown = catchThrowable(() -> runner.submit(ctx -> runner.getContract()
+                .CreateECIdentitiesBatch(ctx, "{\"identifier\":\"" + DEVICE_1 + "\"")));
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessage("Batch payload is not a JSON array of identity requests");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+
+    @Test
+    public void whenPayloadIsEmpty() {
+        Throwable thrown = catchThrowable(() -> runner.submit(ctx -> runner.getContract()
+                .CreateECIdentitiesBatch(ctx, "[]")));
+
+        assertThat(thrown).hasMessage("Batch payload is empty");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+}
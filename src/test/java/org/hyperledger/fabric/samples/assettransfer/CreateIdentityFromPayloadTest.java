@@ -0,0 +1,209 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class CreateIdentityFromPayloadTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private static final String DEVICE = "lsdi:ufma:br/device/1";
+
+    private static final byte[] FUNCTION = "CreateIdentityFromPayload".getBytes(StandardCharsets.UTF_8);
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private final TestKeys orgKeys = new TestKeys("org");
+
+    private final TestKeys deviceKeys = new TestKeys("device");
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(ORG, orgKeys);
+    }
+
+    private IdentityPayload payload(final int version, final String id, final TestKeys keys,
+                                    final String signature) {
+        Map<String, String> publicKeyJwk = new HashMap<>();
+        publicKeyJwk.put("kty", "EC");
+        publicKeyJwk.put("kid", keys.getKid());
+        publicKeyJwk.put("alg", "ES256");
+        publicKeyJwk.put("crv", "P-256");
+        publicKeyJwk.put("x", keys.getX());
+        publicKeyJwk.put("y", keys.getY());
+        return new IdentityPayload(version, ContractRunner.CONTEXT, id, ORG, publicKeyJwk, signature,
+                Collections.singletonMap("sala", "101"));
+    }
+
+    private IdentityPayload payload(final int version, final String signature) {
+        return payload(version, DEVICE, deviceKeys, signature);
+    }
+
+    private String approval(final String id, final TestKeys keys) {
+        return runner.creationPayload("CreateIdentityFromPayload", id, ORG, keys.publicKey());
+    }
+
+    private IdentityPayload payload() {
+        return payload(IdentityPayload.SCHEMA_VERSION, orgKeys.sign(approval(DEVICE, deviceKeys)));
+    }
+
+    private byte[] json(final IdentityPayload payload) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("version", payload.getVersion());
+        json.put("context", payload.getContext());
+        json.put("identifier", payload.getIdentifier());
+        json.put("controlledBy", payload.getControlledBy());
+        json.put("publicKeyJwk", payload.getPublicKeyJwk());
+        json.put("signature", payload.getSignature());
+        json.put("subjectInfo", payload.getSubjectInfo());
+        return genson.serialize(json).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Identity create(final byte[] payload) {
+        return runner.submitArgs(Arrays.asList(FUNCTION, payload),
+                ctx -> runner.getContract().CreateIdentityFromPayload(ctx));
+    }
+
+    @Test
+    public void whenPayloadIsJson() {
+        Identity created = create(json(payload()));
+
+        assertThat(created.getControlledBy()).isEqualTo(ORG);
+        Identity read = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, DEVICE));
+        assertThat(read.getPublicKeyJwk()).containsEntry("x", deviceKeys.getX());
+        assertThat(read.getSubjectInfo()).containsEntry("sala", "101");
+    }
+
+    @Test
+    public void whenPayloadIsBinary() {
+        create(payload().encodeBinary());
+
+        Identity read = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, DEVICE));
+        assertThat(read.getControlledBy()).isEqualTo(ORG);
+        assertThat(read.getStatus()).isEqualTo("active");
+    }
+
+    @Test
+    public void whenSignedWithAnotherKey() {
+        byte[] payload = payload(IdentityPayload.SCHEMA_VERSION,
+                new TestKeys("org").sign(approval(DEVICE, deviceKeys))).encodeBinary();
+
+        Throwable thrown = catchThrowable(() -> create(payload));
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessage("Signature from " + ORG + " not valid!");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        boolean exists = runner.evaluate(ctx -> runner.getContract().IdentityExists(ctx, DEVICE));
+        assertThat(exists).isFalse();
+    }
+
+    @Test
+    public void whenSignatureIsReplayedForAnotherIdentity() {
+        String signature = orgKeys.sign(approval(DEVICE, deviceKeys));
+        create(payload(IdentityPayload.SCHEMA_VERSION, signature).encodeBinary());
+
+        Throwable thrown = catchThrowable(() -> create(payload(IdentityPayload.SCHEMA_VERSION,
+                "lsdi:ufma:br/device/2", deviceKeys, signature).encodeBinary()));
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessageStartingWith("Signature from " + ORG + " does not approve ");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        boolean exists = runner.evaluate(ctx -> runner.getContract().IdentityExists(ctx, "lsdi:ufma:br/device/2"));
+        assertThat(exists).isFalse();
+    }
+
+    @Test
+    public void whenSignatureIsUsedUp() {
+        String approval = approval(DEVICE, deviceKeys);
+
+        create(payload(IdentityPayload.SCHEMA_VERSION, orgKeys.sign(approval)).encodeBinary());
+
+        boolean used = runner.evaluate(ctx -> runner.getContract().IsApprovalUsed(ctx, approval));
+        assertThat(used).isTrue();
+    }
+
+    @Test
+    public void whenSignatureIsForAnotherKey() {
+        String signature = orgKeys.sign(approval(DEVICE, new TestKeys("device")));
+
+        Throwable thrown = catchThrowable(() -> create(payload(IdentityPayload.SCHEMA_VERSION, signature)
+                .encodeBinary()));
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessageStartingWith("Signature from " + ORG + " does not approve ");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        boolean exists = runner.evaluate(ctx -> runner.getContract().IdentityExists(ctx, DEVICE));
+        assertThat(exists).isFalse();
+    }
+
+    @Test
+    public void whenSignatureIsOverTheIdOnly() {
+        Throwable thrown = catchThrowable(() -> create(payload(IdentityPayload.SCHEMA_VERSION,
+                orgKeys.sign(DEVICE)).encodeBinary()));
+
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+    }
+
+    @Test
+    public void whenIdentityAlreadyExists() {
+        create(payload().encodeBinary());
+
+        Throwable thrown = catchThrowable(() -> create(json(payload())));
+
+        assertThat(errorCode(thrown)).isEqualTo("IDENTITY_ALREADY_EXISTS");
+    }
+
+    @Test
+    public void whenPayloadIsTruncated() {
+        byte[] binary = payload().encodeBinary();
+
+        Throwable thrown = catchThrowable(() -> create(Arrays.copyOf(binary, binary.length / 2)));
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessageStartingWith("Invalid identity payload: ");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+
+    @Test
+    public void whenVersionIsNewer() {
+        byte[] payload = json(payload(IdentityPayload.SCHEMA_VERSION + 1, orgKeys.sign(approval(DEVICE,
+                deviceKeys))));
+
+        Throwable thrown = catchThrowable(() -> create(payload));
+
+        assertThat(thrown).hasMessageContaining("Unsupported identity payload version");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+
+    @Test
+    public void whenPayloadIsMissing() {
+        Throwable thrown = catchThrowable(() -> runner.submitArgs(Collections.singletonList(FUNCTION),
+                ctx -> runner.getContract().CreateIdentityFromPayload(ctx)));
+
+        assertThat(thrown).hasMessage("Expected one payload argument, got 0");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+}
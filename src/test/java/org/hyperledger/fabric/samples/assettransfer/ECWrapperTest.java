@@ -0,0 +1,176 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.nimbusds.jose.jwk.JWK;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public final class ECWrapperTest {
+
+    private static final String ZERO = TestKeys.unsigned(BigInteger.ZERO, 32);
+
+    /** Generator of secp256k1: a valid point, but of another 256-bit curve than P-256. */
+    private static final String SECP256K1_GX = TestKeys.unsigned(new BigInteger(
+            "79BE667EF9DCBBAC55A06295CE870B07029BFCDB2DCE28D959F2815B16F81798", 16), 32);
+
+    private static final String SECP256K1_GY = TestKeys.unsigned(new BigInteger(
+            "483ADA7726A3C4655DA4FBFC0E1108A8FD17B448A68554199C47D08FFB10D4B8", 16), 32);
+
+    private final TestKeys keys = new TestKeys("device-1");
+
+    private static Throwable newKey(final String crv, final String alg, final String x, final String y) {
+        return catchThrowable(() -> new ECWrapper(ECWrapper.KTY, PublicKeyWrapper.USE_SIGNATURE, crv, "kid", alg,
+                x, y));
+    }
+
+    @Nested
+    class ValidKey {
+
+        @Test
+        public void roundTripsThroughItsJwk() {
+            ECWrapper publicKey = keys.publicKey();
+
+            PublicKeyWrapper decoded = PublicKeyWrapper.fromJwk(publicKey.toJwk());
+
+            assertThat(decoded).isInstanceOf(ECWrapper.class).isEqualTo(publicKey);
+            assertThat(decoded.toJwk()).containsEntry("crv", "P-256").containsEntry("alg", "ES256")
+                    .containsEntry("use", "sig").containsEntry("x", keys.getX()).containsEntry("y", keys.getY());
+        }
+
+        @Test
+        public void acceptsPaddedCoordinates() {
+            ECWrapper publicKey = new ECWrapper(ECWrapper.KTY, PublicKeyWrapper.USE_SIGNATURE, "P-256", "kid",
+                    null, keys.getX() + "=", keys.getY());
+
+            assertThat(publicKey.getX()).isEqualTo(keys.getX());
+        }
+    }
+
+    @Nested
+    class InvalidPoint {
+
+        @Test
+        public void whenOffCurve() {
+            String y = TestKeys.unsigned(
+                    keys.publicKey().getPublicKey().getW().getAffineY().add(BigInteger.ONE), 32);
+
+            assertThat(newKey("P-256", "ES256", keys.getX(), y))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("EC point is not on the curve");
+        }
+
+        @Test
+        public void whenPointAtInfinity() {
+            // JWK has no encoding for the point at infinity; (0, 0) is what a careless encoder emits
+            assertThat(newKey("P-256", "ES256", ZERO, ZERO))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("EC point is not on the curve");
+        }
+
+        @Test
+        public void whenCoordinateIsNotBelowTheFieldPrime() {
+            String p = TestKeys.unsigned(new BigInteger(
+                    "ffffffff00000001000000000000000000000000ffffffffffffffffffffffff", 16), 32);
+
+            assertThat(newKey("P-256", "ES256", p, keys.getY()))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("EC point coordinates out of range");
+        }
+    }
+
+    @Nested
+    class WrongCurve {
+
+        @Test
+        public void whenPointIsOnAnotherCurveOfTheSameSize() {
+            assertThat(newKey("P-256", "ES256", SECP256K1_GX, SECP256K1_GY))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("EC point is not on the curve");
+        }
+
+        @Test
+        public void whenCoordinatesAreSizedForAnotherCurve() {
+            assertThat(newKey("P-384", "ES384", keys.getX(), keys.getY()))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Coordinate x must be 48 bytes on P-384, got 32");
+        }
+
+        @Test
+        public void whenAlgorithmBelongsToAnotherCurve() {
+            assertThat(newKey("P-256", "ES384", keys.getX(), keys.getY()))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Algorithm ES384 does not match curve P-256");
+        }
+
+        @Test
+        public void whenCurveIsNotSupported() {
+            assertThat(newKey("secp256k1", "ES256K", SECP256K1_GX, SECP256K1_GY))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("Unsupported curve secp256k1");
+        }
+    }
+
+    @Nested
+    class Thumbprint {
+
+        @Test
+        public void isTheRfc7638Thumbprint() throws Exception {
+            Map<String, Object> publicKeyJwk = new HashMap<>(keys.publicKey().toJwk());
+
+            assertThat(keys.publicKey().thumbprint())
+                    .isEqualTo(JWK.parse(publicKeyJwk).computeThumbprint().toString());
+        }
+
+        @Test
+        public void ignoresKidAndAlg() {
+            ECWrapper renamed = new ECWrapper(ECWrapper.KTY, null, "P-256", "other", null, keys.getX(),
+                    keys.getY());
+
+            assertThat(renamed.thumbprint()).isEqualTo(keys.publicKey().thumbprint());
+            assertThat(new TestKeys("device-1").publicKey().thumbprint())
+                    .isNotEqualTo(keys.publicKey().thumbprint());
+        }
+    }
+
+    @Nested
+    class FromJwk {
+
+        @Test
+        public void whenJwkIsMissing() {
+            assertThat(catchThrowable(() -> PublicKeyWrapper.fromJwk(null)))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("Missing public key");
+        }
+
+        @Test
+        public void whenKeyTypeIsUnknown() {
+            Map<String, String> publicKeyJwk = new HashMap<>(keys.publicKey().toJwk());
+            publicKeyJwk.put("kty", "oct");
+
+            assertThat(catchThrowable(() -> PublicKeyWrapper.fromJwk(publicKeyJwk)))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("Unsupported key type oct");
+        }
+
+        @Test
+        public void whenCoordinateIsMissing() {
+            Map<String, String> publicKeyJwk = new HashMap<>(keys.publicKey().toJwk());
+            publicKeyJwk.remove("y");
+
+            assertThat(catchThrowable(() -> PublicKeyWrapper.fromJwk(publicKeyJwk)))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("Missing key member y");
+        }
+
+        @Test
+        public void whenUseIsNotSignature() {
+            Map<String, String> publicKeyJwk = new HashMap<>(keys.publicKey().toJwk());
+            publicKeyJwk.put("use", "enc");
+
+            assertThat(catchThrowable(() -> PublicKeyWrapper.fromJwk(publicKeyJwk)))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessage("Unsupported key use enc");
+        }
+    }
+}
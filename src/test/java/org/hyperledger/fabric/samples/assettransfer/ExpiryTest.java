@@ -0,0 +1,193 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class ExpiryTest {
+
+    private static final String DEVICE_1 = "lsdi:ufma:br/device/1";
+
+    private static final String DEVICE_2 = "lsdi:ufma:br/device/2";
+
+    private static final String DEVICE_3 = "lsdi:ufma:br/device/3";
+
+    /** When identities created at {@link ContractRunner#START} expire. */
+    private static final Instant FIRST_EXPIRY = Instant.parse("2022-06-01T12:00:00Z");
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    private void createAt(final Instant now, final String id) {
+        runner.setNow(now);
+        runner.createSelfSigned(id, new TestKeys("device"));
+    }
+
+    private ExpirySweepResult expire(final Instant now, final int maxCount, final boolean archive,
+                                     final String cursor) {
+        runner.setNow(now);
+        String result = runner.submit(ctx -> runner.getContract().ExpireIdentities(ctx, maxCount, archive, cursor));
+        return genson.deserialize(result, ExpirySweepResult.class);
+    }
+
+    private String status(final String id) {
+        Identity identity = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, id));
+        return identity.getStatus();
+    }
+
+    private IdentityCounts counts() {
+        String counts = runner.evaluate(ctx -> runner.getContract().GetCounts(ctx));
+        return genson.deserialize(counts, IdentityCounts.class);
+    }
+
+    @Test
+    public void whenIdentitiesAreDue() {
+        createAt(ContractRunner.START, DEVICE_1);
+        createAt(ContractRunner.START.plusSeconds(10), DEVICE_2);
+        createAt(ContractRunner.START.plus(Duration.ofDays(1)), DEVICE_3);
+
+        ExpirySweepResult result = expire(FIRST_EXPIRY.plusSeconds(20), 10, false, "");
+
+        assertThat(result.getExpired()).containsExactly(DEVICE_1, DEVICE_2);
+        assertThat(result.getCursor()).isEmpty();
+        assertThat(status(DEVICE_1)).isEqualTo("expired");
+        assertThat(status(DEVICE_3)).isEqualTo("active");
+        assertThat(counts().getByStatus()).containsEntry("expired", 2L).containsEntry("active", 1L);
+    }
+
+    @Test
+    public void whenNothingIsDue() {
+        createAt(ContractRunner.START, DEVICE_1);
+
+        ExpirySweepResult result = expire(FIRST_EXPIRY.minusSeconds(1), 10, false, "");
+
+        assertThat(result.getExpired()).isEmpty();
+        assertThat(result.getCursor()).isEmpty();
+        assertThat(status(DEVICE_1)).isEqualTo("active");
+    }
+
+    @Test
+    public void whenIndexIsEmpty() {
+        ExpirySweepResult result = expire(FIRST_EXPIRY, 10, false, "");
+
+        assertThat(result.getExpired()).isEmpty();
+        assertThat(result.getCursor()).isEmpty();
+    }
+
+    @Test
+    public void stopsAtTheFirstEntryNotDueYet() {
+        createAt(ContractRunner.START, DEVICE_1);
+        createAt(ContractRunner.START.plus(Duration.ofHours(1)), DEVICE_2);
+
+        ExpirySweepResult result = expire(FIRST_EXPIRY.plus(Duration.ofMinutes(30)), 10, false, "");
+
+        assertThat(result.getExpired()).containsExactly(DEVICE_1);
+        assertThat(result.getCursor()).isEmpty();
+        assertThat(status(DEVICE_2)).isEqualTo("active");
+        List<String> later = expire(FIRST_EXPIRY.plus(Duration.ofHours(2)), 10, false, "").getExpired();
+        assertThat(later).containsExactly(DEVICE_2);
+    }
+
+    @Test
+    public void closesEveryIndexScan() {
+        createAt(ContractRunner.START, DEVICE_1);
+        createAt(ContractRunner.START.plus(Duration.ofHours(1)), DEVICE_2);
+
+        expire(FIRST_EXPIRY.plus(Duration.ofMinutes(30)), 10, false, "");
+
+        assertThat(runner.getLast().getRangeReads()).isNotEmpty()
+                .allMatch(SimulatedTransaction.RangeRead::isClosed);
+    }
+
+    @Test
+    public void maxCountOnlyCountsExpiredIdentities() {
+        createAt(ContractRunner.START, DEVICE_1);
+        createAt(ContractRunner.START.plusSeconds(10), DEVICE_2);
+        createAt(ContractRunner.START.plusSeconds(20), DEVICE_3);
+        runner.submit(ctx -> {
+            ctx.getStub().delState(DEVICE_1);
+            return null;
+        });
+
+        ExpirySweepResult first = expire(FIRST_EXPIRY.plusSeconds(30), 1, false, "");
+        ExpirySweepResult second = expire(FIRST_EXPIRY.plusSeconds(40), 1, false, first.getCursor());
+
+        assertThat(first.getExpired()).containsExactly(DEVICE_2);
+        assertThat(first.getCursor()).isEqualTo("20220601");
+        assertThat(second.getExpired()).containsExactly(DEVICE_3);
+        assertThat(second.getCursor()).isEmpty();
+    }
+
+    @Test
+    public void resumesFromTheCursorOnALaterDay() {
+        createAt(ContractRunner.START, DEVICE_1);
+        createAt(ContractRunner.START.plus(Duration.ofDays(1)), DEVICE_2);
+        createAt(ContractRunner.START.plus(Duration.ofDays(2)), DEVICE_3);
+        Instant now = FIRST_EXPIRY.plus(Duration.ofDays(3));
+
+        ExpirySweepResult first = expire(now, 2, false, "");
+        ExpirySweepResult second = expire(now.plusSeconds(1), 2, false, first.getCursor());
+
+        assertThat(first.getExpired()).containsExactly(DEVICE_1, DEVICE_2);
+        assertThat(first.getCursor()).isEqualTo("20220603");
+        assertThat(second.getExpired()).containsExactly(DEVICE_3);
+        assertThat(second.getCursor()).isEmpty();
+    }
+
+    @Test
+    public void scansAtMostMaxSweepDaysPerCall() {
+        createAt(ContractRunner.START, DEVICE_1);
+
+        ExpirySweepResult result = expire(FIRST_EXPIRY, 10, false, "20000101");
+
+        assertThat(result.getExpired()).isEmpty();
+        assertThat(result.getCursor()).isEqualTo("20010101");
+    }
+
+    @Test
+    public void whenArchiving() {
+        createAt(ContractRunner.START, DEVICE_1);
+        createAt(ContractRunner.START.plus(Duration.ofDays(1)), DEVICE_2);
+
+        ExpirySweepResult result = expire(FIRST_EXPIRY.plusSeconds(1), 10, true, "");
+
+        assertThat(result.getExpired()).containsExactly(DEVICE_1);
+        assertThat(status(DEVICE_1)).isEqualTo("expired");
+        String all = runner.evaluate(ctx -> runner.getContract().GetAllIdentities(ctx));
+        assertThat(all).doesNotContain(DEVICE_1).contains(DEVICE_2);
+    }
+
+    @Test
+    public void whenCursorIsNotADay() {
+        Throwable thrown = catchThrowable(() -> expire(FIRST_EXPIRY, 10, false, "2022-06-01"));
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessage("Cursor is not a yyyyMMdd day returned by ExpireIdentities");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+
+    @Test
+    public void whenMaxCountIsOutOfRange() {
+        Throwable thrown = catchThrowable(() -> expire(FIRST_EXPIRY, 0, false, ""));
+
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hyperledger.fabric.contract.annotation.Transaction;
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public final class IdentityContractTest {
+
+    private static final String CONTEXT = "http://lsdi.ufma.br";
+
+    private static final String DEVICE = "lsdi:ufma:br/device/1";
+
+    private final IdentityContract contract = new IdentityContract();
+
+    private final TestKeys keys = new TestKeys("device-1");
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @Nested
+    class ValidateSignature {
+
+        private Identity withJwk(final Map<String, String> publicKeyJwk) {
+            return new Identity(CONTEXT, DEVICE, DEVICE, publicKeyJwk, Collections.emptyMap(), "active",
+                    "2021-06-01T12:00:00.000Z", "2022-06-01T12:00:00.000Z");
+        }
+
+        @Test
+        public void whenSignedWithTheIdentityKey() throws Exception {
+            Identity identity = withJwk(keys.publicKey().toJwk());
+
+            assertThat(contract.validateSignature(identity, keys.sign(DEVICE))).isTrue();
+        }
+
+        @Test
+        public void whenSignedWithAnotherKey() throws Exception {
+            Identity identity = withJwk(keys.publicKey().toJwk());
+
+            assertThat(contract.validateSignature(identity, new TestKeys("device-1").sign(DEVICE))).isFalse();
+        }
+
+        @Test
+        public void whenStoredKeyIsMissing() {
+            Throwable thrown = catchThrowable(() -> contract.validateSignature(withJwk(null), keys.sign(DEVICE)));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Stored key of " + DEVICE + " is not usable: Missing public key");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_KEY");
+        }
+
+        @Test
+        public void whenStoredKeyIsMalformed() {
+            Map<String, String> publicKeyJwk = new HashMap<>(keys.publicKey().toJwk());
+            publicKeyJwk.put("x", "not base64url!");
+
+            Throwable thrown = catchThrowable(() -> contract.validateSignature(withJwk(publicKeyJwk),
+                    keys.sign(DEVICE)));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_KEY");
+        }
+    }
+
+    @Nested
+    class InitLedger {
+
+        private static final String FIRST = "lsdi:identity:first";
+
+        private final ContractRunner runner = new ContractRunner();
+
+        private Void initLedger() {
+            return runner.submit(ctx -> {
+                runner.getContract().InitLedger(ctx);
+                return null;
+            });
+        }
+
+        @Test
+        public void createsTheFirstIdentityWithoutAKey() {
+            initLedger();
+
+            Identity first = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, FIRST));
+            assertThat(first.getControlledBy()).isEqualTo(FIRST);
+            assertThat(first.getPublicKeyJwk()).isNull();
+        }
+
+        @Test
+        public void whenCalledAgain() {
+            initLedger();
+
+            Throwable thrown = catchThrowable(this::initLedger);
+
+            assertThat(thrown).hasMessage("Identity " + FIRST + " already exists");
+            assertThat(errorCode(thrown)).isEqualTo("IDENTITY_ALREADY_EXISTS");
+        }
+    }
+
+    @Test
+    public void noTransactionStoresAClientSuppliedIdentity() {
+        // a client-built Identity would bypass the key checks and the controllers' approval
+        for (Method method : IdentityContract.class.getMethods()) {
+            if (method.isAnnotationPresent(Transaction.class)) {
+                assertThat(Arrays.asList(method.getParameterTypes())).as(method.getName())
+                        .doesNotContain(Identity.class);
+            }
+        }
+    }
+}
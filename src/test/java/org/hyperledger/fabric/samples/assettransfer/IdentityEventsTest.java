@@ -0,0 +1,90 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class IdentityEventsTest {
+
+    private static final String DEVICE = "lsdi:ufma:br/device/1";
+
+    private final ChaincodeStub stub = mock(ChaincodeStub.class);
+
+    private byte[] emitted(final IdentityEvents events) {
+        events.emit(stub);
+        ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+        verify(stub).setEvent(eq(IdentityEvents.EVENT_NAME), payload.capture());
+        return payload.getValue();
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return each record as its kind followed by its strings
+     */
+    private static List<String> records(final byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        assertThat(in.readUnsignedByte()).isEqualTo(IdentityEvents.VERSION);
+        List<String> records = new ArrayList<>();
+        while (in.available() > 0) {
+            char kind = (char) in.readByte();
+            String id = readString(in);
+            records.add(kind == IdentityEvents.ATTRIBUTE ? kind + " " + id + " " + readString(in) : kind + " " + id);
+        }
+        return records;
+    }
+
+    @Test
+    public void emitsTheKindAndKeysOfEachChange() throws IOException {
+        IdentityEvents events = new IdentityEvents();
+        events.put(DEVICE);
+        events.attribute(DEVICE, "sala");
+        events.status(DEVICE);
+        events.archive(DEVICE);
+
+        assertThat(records(emitted(events)))
+                .containsExactly("P " + DEVICE, "A " + DEVICE + " sala", "S " + DEVICE, "R " + DEVICE);
+    }
+
+    @Test
+    public void whenAKeyIsLongerThanAModifiedUtf8String() throws IOException {
+        char[] chars = new char[70_000];
+        Arrays.fill(chars, '\u00e9');
+        String name = new String(chars);
+        IdentityEvents events = new IdentityEvents();
+        events.attribute(DEVICE, name);
+
+        assertThat(records(emitted(events))).containsExactly("A " + DEVICE + " " + name);
+    }
+
+    @Test
+    public void whenNothingChanged() {
+        new IdentityEvents().emit(stub);
+
+        verify(stub, never()).setEvent(anyString(), any());
+    }
+}
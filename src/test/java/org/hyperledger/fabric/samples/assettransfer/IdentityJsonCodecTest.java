@@ -0,0 +1,185 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+/**
+ * Golden tests: IdentityJsonCodec must write exactly the bytes Genson writes for
+ * the same identity, and read back what Genson reads.
+ */
+public final class IdentityJsonCodecTest {
+
+    private final Genson genson = new Genson();
+
+    private final TestKeys keys = new TestKeys("device-1");
+
+    private Identity identity(final Map<String, String> subjectInfo) {
+        return identity(subjectInfo, null);
+    }
+
+    private Identity identity(final Map<String, String> subjectInfo, final ControllerSet controllerSet) {
+        Map<String, String> publicKeyJwk = new LinkedHashMap<>();
+        publicKeyJwk.put("kty", "EC");
+        publicKeyJwk.put("kid", keys.getKid());
+        publicKeyJwk.put("alg", "ES256");
+        publicKeyJwk.put("crv", "P-256");
+        publicKeyJwk.put("x", keys.getX());
+        publicKeyJwk.put("y", keys.getY());
+        return new Identity("http://lsdi.ufma.br", "lsdi:ufma:br/device/1", "lsdi:ufma:br/entity-manager/1",
+                publicKeyJwk, subjectInfo, "active", "2021-06-01T12:00:00.000Z", "2022-06-01T12:00:00.000Z",
+                controllerSet);
+    }
+
+    private void assertSameAsGenson(final Identity identity) {
+        byte[] expected = genson.serialize(identity).getBytes(StandardCharsets.UTF_8);
+
+        byte[] encoded = IdentityJsonCodec.encode(identity);
+
+        assertThat(new String(encoded, StandardCharsets.UTF_8))
+                .isEqualTo(new String(expected, StandardCharsets.UTF_8));
+        assertThat(encoded).isEqualTo(expected);
+        Identity decoded = IdentityJsonCodec.decode(expected);
+        Identity decodedByGenson = genson.deserialize(expected, Identity.class);
+        assertThat(decoded).isEqualToComparingFieldByFieldRecursively(decodedByGenson);
+        // decoded maps are hash maps on both sides, so compare the round trip against Genson's own
+        assertThat(IdentityJsonCodec.encode(decoded))
+                .isEqualTo(genson.serialize(decodedByGenson).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Nested
+    class MatchesGenson {
+
+        @Test
+        public void withEveryFieldSet() {
+            Map<String, String> subjectInfo = new LinkedHashMap<>();
+            subjectInfo.put("nome", "LSDi- Entity Manager 1");
+            subjectInfo.put("coordenador", "fssilva");
+
+            assertSameAsGenson(identity(subjectInfo).withSubjectInfoHash("q1NvB1hTeGd0b2tlbg"));
+        }
+
+        @Test
+        public void withAttributeKeys() {
+            assertSameAsGenson(identity(null).withAttributeKeys(false));
+            assertSameAsGenson(identity(new LinkedHashMap<>()).withAttributeKeys(true));
+        }
+
+        @Test
+        public void withNullFields() {
+            assertSameAsGenson(new Identity(null, "lsdi:ufma:br/device/1", null, null, null, null, null, null));
+        }
+
+        @Test
+        public void withEmptyMaps() {
+            assertSameAsGenson(identity(new LinkedHashMap<>()));
+        }
+
+        @Test
+        public void withNullMapValue() {
+            Map<String, String> subjectInfo = new LinkedHashMap<>();
+            subjectInfo.put("removed", null);
+
+            assertSameAsGenson(identity(subjectInfo));
+        }
+
+        @Test
+        public void withNestedControllerSet() {
+            ControllerSet controllerSet = new ControllerSet(Arrays.asList("lsdi:org/a", "lsdi:org/b",
+                    "lsdi:org/c"), 2);
+
+            assertSameAsGenson(identity(new LinkedHashMap<>(), controllerSet));
+        }
+
+        @Test
+        public void withControllerSetWithoutControllers() {
+            assertSameAsGenson(identity(null, new ControllerSet(null, 0)));
+        }
+
+        @Test
+        public void withUnicodeValues() {
+            Map<String, String> subjectInfo = new LinkedHashMap<>();
+            subjectInfo.put("nome", "São Luís – Maranhão");
+            subjectInfo.put("cjk", "身份管理");
+            subjectInfo.put("emoji", "chave 🔑");
+            subjectInfo.put("separators", "a\u2028b\u2029c");
+            subjectInfo.put("controls", "tab\tnl\ncr\rbs\bff\f\u0001\u001f\u007f");
+            subjectInfo.put("quotes", "\"quoted\" \\ back/slash </script>");
+
+            assertSameAsGenson(identity(subjectInfo));
+        }
+    }
+
+    @Nested
+    class MayHaveAttributeKeys {
+
+        @Test
+        public void notWhenItsOwnOutputSaysSo() {
+            assertThat(IdentityJsonCodec.mayHaveAttributeKeys(
+                    IdentityJsonCodec.encode(identity(null).withAttributeKeys(false)))).isFalse();
+        }
+
+        @Test
+        public void whenItsOwnOutputSaysSoOrDoesNotTell() {
+            assertThat(IdentityJsonCodec.mayHaveAttributeKeys(
+                    IdentityJsonCodec.encode(identity(null).withAttributeKeys(true)))).isTrue();
+            assertThat(IdentityJsonCodec.mayHaveAttributeKeys(IdentityJsonCodec.encode(identity(null)))).isTrue();
+        }
+
+        @Test
+        public void whenWrittenInAnotherPropertyOrder() {
+            String json = "{\"context\":null,\"attributeKeys\":false}";
+
+            assertThat(IdentityJsonCodec.mayHaveAttributeKeys(json.getBytes(StandardCharsets.UTF_8))).isTrue();
+        }
+    }
+
+    @Nested
+    class Decode {
+
+        @Test
+        public void acceptsAnyOrderWhitespaceAndUnknownProperties() {
+            String json = "{ \"validTo\" : null, \"extra\": {\"a\": [1, true, null]},\n"
+                    + "  \"identifier\": \"lsdi:ufma:br/device/1\", \"subjectInfo\": {\"nome\": \"Jo\\u00e3o\"} }";
+
+            Identity identity = IdentityJsonCodec.decode(json.getBytes(StandardCharsets.UTF_8));
+
+            assertThat(identity.getIdentifier()).isEqualTo("lsdi:ufma:br/device/1");
+            assertThat(identity.getSubjectInfo()).containsEntry("nome", "João");
+            assertThat(identity.getValidTo()).isNull();
+        }
+
+        @Test
+        public void roundTripsMapKeysThatNeedEscaping() {
+            // Genson 1.5 garbles these keys, so this is the one place the codec differs from it
+            Map<String, String> subjectInfo = new LinkedHashMap<>();
+            subjectInfo.put("say \"hi\"\n", "olá");
+
+            Identity decoded = IdentityJsonCodec.decode(IdentityJsonCodec.encode(identity(subjectInfo)));
+
+            assertThat(decoded.getSubjectInfo()).isEqualTo(subjectInfo);
+        }
+
+        @Test
+        public void whenTruncated() {
+            byte[] json = IdentityJsonCodec.encode(identity(null));
+
+            Throwable thrown = catchThrowable(() -> IdentityJsonCodec.decode(Arrays.copyOf(json, json.length / 2)));
+
+            assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class ImportIdentityChunkTest {
+
+    private static final String IMPORTER = "lsdi:ufma:br/importer/1";
+
+    private static final int IMPORT_SIZE = 5;
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private final TestKeys importerKeys = new TestKeys("importer");
+
+    private final TestKeys deviceKeys = new TestKeys("device");
+
+    private final List<ECIdentityRequest> records = new ArrayList<>();
+
+    private MerkleImport.Tree tree;
+
+    private String root;
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(IMPORTER, importerKeys);
+
+        List<byte[]> leaves = new ArrayList<>();
+        for (int i = 0; i < IMPORT_SIZE; i++) {
+            records.add(new ECIdentityRequest(ContractRunner.CONTEXT, "lsdi:ufma:br/device/" + i, IMPORTER, "EC",
+                    deviceKeys.getKid(), "ES256", "P-256", deviceKeys.getX(), deviceKeys.getY(), null,
+                    Collections.singletonMap("nome", "Device " + i)));
+            leaves.add(MerkleImport.leafHash(records.get(i)));
+        }
+        tree = new MerkleImport.Tree(leaves);
+        root = MerkleImport.encode(tree.root());
+    }
+
+    private ImportRecord record(final int index) {
+        List<String> proof = new ArrayList<>();
+        for (byte[] sibling : tree.proof(index)) {
+            proof.add(MerkleImport.encode(sibling));
+        }
+        return new ImportRecord(index, records.get(index), proof);
+    }
+
+    private String approve(final TestKeys keys, final String importRoot, final long recordCount) {
+        return keys.sign(Approval.of("ImportIdentityChunk", IMPORTER).with("root", importRoot)
+                .with("recordCount", recordCount).nonce(runner.nonce()).payload());
+    }
+
+    private String approve() {
+        return approve(importerKeys, root, IMPORT_SIZE);
+    }
+
+    private String chunk(final String signature, final ImportRecord... records) {
+        List<ImportRecord> chunkRecords = new ArrayList<>();
+        Collections.addAll(chunkRecords, records);
+        return genson.serialize(new ImportChunkRequest(IMPORTER, root, IMPORT_SIZE, signature, chunkRecords));
+    }
+
+    private ImportChunkResult importChunk(final String requestJSON) {
+        String result = runner.submit(ctx -> runner.getContract().ImportIdentityChunk(ctx, requestJSON));
+        return genson.deserialize(result, ImportChunkResult.class);
+    }
+
+    private String importProgress() {
+        return runner.evaluate(ctx -> runner.getContract().GetImportProgress(ctx, root));
+    }
+
+    private Throwable importChunkFails(final String requestJSON) {
+        return catchThrowable(() -> runner.submit(ctx -> runner.getContract().ImportIdentityChunk(ctx,
+                requestJSON)));
+    }
+
+    @Nested
+    class SignedRoot {
+
+        @Test
+        public void whenEveryRecordIsIncluded() {
+            ImportChunkResult result = importChunk(chunk(approve(), record(2), record(3), record(4)));
+
+            assertThat(result.isAlreadyImported()).isFalse();
+            assertThat(result.getResults()).extracting(BatchEntryResult::getStatus)
+                    .containsExactly(BatchEntryResult.CREATED, BatchEntryResult.CREATED, BatchEntryResult.CREATED);
+            Identity imported = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx,
+                    "lsdi:ufma:br/device/4"));
+            assertThat(imported.getControlledBy()).isEqualTo(IMPORTER);
+            assertThat(imported.getSubjectInfo()).containsEntry("nome", "Device 4");
+            assertThat(importProgress()).isEqualTo("[[2,4]]");
+        }
+
+        @Test
+        public void whenChunksAreSignedOnce() {
+            String signature = approve();
+
+            importChunk(chunk(signature, record(0), record(1)));
+            ImportChunkResult result = importChunk(chunk(signature, record(2)));
+
+            assertThat(result.getFirstIndex()).isEqualTo(2);
+            assertThat(result.getResults()).extracting(BatchEntryResult::getStatus)
+                    .containsExactly(BatchEntryResult.CREATED);
+            assertThat(importProgress()).isEqualTo("[[0,1],[2,2]]");
+        }
+
+        @Test
+        public void whenChunkIsSentAgain() {
+            String request = chunk(approve(), record(0));
+            importChunk(request);
+
+            ImportChunkResult result = importChunk(request);
+
+            assertThat(result.isAlreadyImported()).isTrue();
+            assertThat(result.getResults()).isEmpty();
+        }
+
+        @Test
+        public void whenRecordProofDoesNotMatchTheRoot() {
+            ImportRecord misplaced = new ImportRecord(2, records.get(3), record(2).getProof());
+
+            ImportChunkResult result = importChunk(chunk(approve(), record(1), misplaced));
+
+            assertThat(result.getResults()).extracting(BatchEntryResult::getStatus)
+                    .containsExactly(BatchEntryResult.CREATED, BatchEntryResult.REJECTED);
+            assertThat(result.getResults().get(1).getError()).isEqualTo("INVALID_SIGNATURE");
+            assertThat(importProgress()).isEqualTo("[]");
+        }
+
+        @Test
+        public void whenChunkIsRetriedAfterARejectedRecord() {
+            String signature = approve();
+            ImportRecord misplaced = new ImportRecord(2, records.get(3), record(2).getProof());
+            importChunk(chunk(signature, record(1), misplaced));
+
+            ImportChunkResult result = importChunk(chunk(signature, record(1), record(2)));
+
+            assertThat(result.isAlreadyImported()).isFalse();
+            assertThat(result.getResults()).extracting(BatchEntryResult::getError)
+                    .containsExactly("IDENTITY_ALREADY_EXISTS", null);
+            assertThat(importProgress()).isEqualTo("[[1,2]]");
+        }
+
+        @Test
+        public void whenIndexesAreNotConsecutive() {
+            Throwable thrown = importChunkFails(chunk(approve(), record(0), record(2)));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Records of an import chunk must have consecutive indexes within the import");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+    }
+
+    @Nested
+    class BadRootSignature {
+
+        @Test
+        public void whenSignedByAnotherKey() {
+            Throwable thrown = importChunkFails(chunk(approve(new TestKeys("importer"), root, IMPORT_SIZE),
+                    record(0)));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Import root is not signed by " + IMPORTER);
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+            assertThat(importProgress()).isEqualTo("[]");
+        }
+
+        @Test
+        public void whenSignatureCoversAnotherRoot() {
+            String otherRoot = MerkleImport.encode(new MerkleImport.Tree(
+                    Collections.singletonList(MerkleImport.leafHash(records.get(0)))).root());
+
+            Throwable thrown = importChunkFails(chunk(approve(importerKeys, otherRoot, IMPORT_SIZE), record(0)));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+            boolean exists = runner.evaluate(ctx -> runner.getContract().IdentityExists(ctx,
+                    "lsdi:ufma:br/device/0"));
+            assertThat(exists).isFalse();
+        }
+
+        @Test
+        public void whenSignatureCoversAnotherRecordCount() {
+            Throwable thrown = importChunkFails(chunk(approve(importerKeys, root, IMPORT_SIZE + 1), record(0)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSignatureIsOverTheRootOnly() {
+            Throwable thrown = importChunkFails(chunk(importerKeys.sign(root), record(0)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void beforeTheChunkIsReportedAsImported() {
+            importChunk(chunk(approve(), record(0)));
+
+            Throwable thrown = importChunkFails(chunk(approve(new TestKeys("importer"), root, IMPORT_SIZE),
+                    record(0)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenControllerIsRevoked() {
+            String payload = runner.evaluate(ctx -> Approval.of(ctx.getStub(), "RevokeIdentity", IMPORTER)
+                    .with("status", "revoked").nonce(runner.nonce()).payload());
+            String signaturesJSON = genson.serialize(Collections.singletonList(
+                    new ControllerSignature(IMPORTER, importerKeys.sign(payload))));
+            runner.submit(ctx -> runner.getContract().RevokeIdentity(ctx, IMPORTER, signaturesJSON));
+
+            Throwable thrown = importChunkFails(chunk(approve(), record(0)));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Controller " + IMPORTER + " is revoked");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+    }
+}
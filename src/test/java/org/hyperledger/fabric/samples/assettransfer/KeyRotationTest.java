@@ -0,0 +1,235 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class KeyRotationTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private static final String DEVICE = "lsdi:ufma:br/device/1";
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private final TestKeys orgKeys = new TestKeys("org");
+
+    private final TestKeys deviceKeys = new TestKeys("device-1");
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(ORG, orgKeys);
+        runner.createECIdentity(DEVICE, ORG, deviceKeys, orgKeys);
+    }
+
+    private String rotationPayload(final String id, final TestKeys newKeys) {
+        return runner.evaluate(ctx -> Approval.of(ctx.getStub(), "RotateKey", id)
+                .with("keyThumbprint", newKeys.publicKey().thumbprint()).nonce(runner.nonce()).payload());
+    }
+
+    private Identity rotateKey(final String id, final TestKeys newKeys, final ControllerSignature signature) {
+        String publicKeyJwkJSON = genson.serialize(newKeys.publicKey().toJwk());
+        String signaturesJSON = genson.serialize(Collections.singletonList(signature));
+        return runner.submit(ctx -> runner.getContract().RotateKey(ctx, id, publicKeyJwkJSON, signaturesJSON));
+    }
+
+    private Identity rotateKeyAsController(final TestKeys newKeys) {
+        return rotateKey(DEVICE, newKeys, new ControllerSignature(ORG, orgKeys.sign(rotationPayload(DEVICE,
+                newKeys))));
+    }
+
+    private KeyHistoryPage keyHistory(final String id, final int pageSize, final String cursor) {
+        String page = runner.evaluate(ctx -> runner.getContract().GetKeyHistory(ctx, id, pageSize, cursor));
+        return genson.deserialize(page, KeyHistoryPage.class);
+    }
+
+    /** The JWKs of key history entries, in order, as a typed list to compare against {@link #jwksOf}. */
+    private static List<Map<String, String>> jwks(final List<KeyHistoryEntry> entries) {
+        List<Map<String, String>> jwks = new ArrayList<>();
+        for (KeyHistoryEntry entry : entries) {
+            jwks.add(entry.getPublicKeyJwk());
+        }
+        return jwks;
+    }
+
+    private static List<Map<String, String>> jwksOf(final TestKeys... keys) {
+        List<Map<String, String>> jwks = new ArrayList<>();
+        for (TestKeys key : keys) {
+            jwks.add(key.publicKey().toJwk());
+        }
+        return jwks;
+    }
+
+    @Nested
+    class RotateKey {
+
+        @Test
+        public void whenSignedWithTheCurrentKey() {
+            TestKeys newKeys = new TestKeys("device-1");
+
+            Identity rotated = rotateKey(DEVICE, newKeys, new ControllerSignature(DEVICE,
+                    deviceKeys.sign(rotationPayload(DEVICE, newKeys))));
+
+            assertThat(rotated.getPublicKeyJwk()).isEqualTo(newKeys.publicKey().toJwk());
+            Identity read = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, DEVICE));
+            assertThat(read.getPublicKeyJwk()).isEqualTo(newKeys.publicKey().toJwk());
+        }
+
+        @Test
+        public void whenSignedByTheController() {
+            TestKeys newKeys = new TestKeys("device-1");
+
+            Identity rotated = rotateKeyAsController(newKeys);
+
+            assertThat(rotated.getPublicKeyJwk()).isEqualTo(newKeys.publicKey().toJwk());
+        }
+
+        @Test
+        public void whenSignatureIsForAnotherKey() {
+            TestKeys newKeys = new TestKeys("device-1");
+            String payload = rotationPayload(DEVICE, new TestKeys("device-1"));
+
+            Throwable thrown = catchThrowable(() -> rotateKey(DEVICE, newKeys,
+                    new ControllerSignature(ORG, orgKeys.sign(payload))));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSignatureIsOverTheIdOnly() {
+            Throwable thrown = catchThrowable(() -> rotateKey(DEVICE, new TestKeys("device-1"),
+                    new ControllerSignature(DEVICE, deviceKeys.sign(DEVICE))));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSignatureIsReplayed() {
+            TestKeys compromised = new TestKeys("device-1");
+            ControllerSignature signature = new ControllerSignature(ORG,
+                    orgKeys.sign(rotationPayload(DEVICE, compromised)));
+            rotateKey(DEVICE, compromised, signature);
+            rotateKeyAsController(new TestKeys("device-1"));
+
+            Throwable thrown = catchThrowable(() -> rotateKey(DEVICE, compromised, signature));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenKeyIsTheCurrentOne() {
+            Throwable thrown = catchThrowable(() -> rotateKeyAsController(deviceKeys));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_KEY");
+        }
+    }
+
+    @Nested
+    class GetKeyHistory {
+
+        @Test
+        public void whenNeverRotated() {
+            KeyHistoryPage page = keyHistory(DEVICE, 10, "");
+
+            assertThat(page.getKeys()).hasSize(1);
+            assertThat(page.getKeys().get(0).getPublicKeyJwk()).isEqualTo(deviceKeys.publicKey().toJwk());
+            assertThat(page.getKeys().get(0).getTxId()).isEqualTo("tx2");
+            assertThat(page.getCursor()).isEmpty();
+        }
+
+        @Test
+        public void pagesNewestFirst() {
+            List<TestKeys> keys = new ArrayList<>();
+            keys.add(deviceKeys);
+            for (int i = 0; i < 4; i++) {
+                keys.add(new TestKeys("device-1"));
+                rotateKeyAsController(keys.get(keys.size() - 1));
+            }
+
+            List<KeyHistoryEntry> listed = new ArrayList<>();
+            KeyHistoryPage page = keyHistory(DEVICE, 2, "");
+            int pages = 1;
+            listed.addAll(page.getKeys());
+            while (!page.getCursor().isEmpty()) {
+                page = keyHistory(DEVICE, 2, page.getCursor());
+                pages++;
+                listed.addAll(page.getKeys());
+            }
+
+            assertThat(pages).isEqualTo(3);
+            assertThat(jwks(listed))
+                    .isEqualTo(jwksOf(keys.get(4), keys.get(3), keys.get(2), keys.get(1), keys.get(0)));
+            assertThat(listed).extracting(KeyHistoryEntry::getTxId).doesNotContainNull().doesNotHaveDuplicates();
+        }
+
+        @Test
+        public void whenCursorIsUnknown() {
+            Throwable thrown = catchThrowable(() -> keyHistory(DEVICE, 2, "tx2"));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Cursor does not belong to the key history of " + DEVICE);
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+
+        @Test
+        public void whenCursorBelongsToAnotherIdentity() {
+            rotateKeyAsController(new TestKeys("device-1"));
+            String cursor = keyHistory(DEVICE, 1, "").getCursor();
+
+            Throwable thrown = catchThrowable(() -> keyHistory(ORG, 1, cursor));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+
+        @Test
+        public void whenIdentityDoesNotExist() {
+            Throwable thrown = catchThrowable(() -> keyHistory("lsdi:ufma:br/device/2", 10, ""));
+
+            assertThat(errorCode(thrown)).isEqualTo("IDENTITY_NOT_FOUND");
+        }
+
+        @Test
+        public void whenCreatedBeforeKeyHistory() {
+            runner.submit(ctx -> {
+                ctx.getStub().delState(ctx.getStub().createCompositeKey(IdentityContract.KEY_HISTORY, DEVICE,
+                        String.format("%016x", Long.MAX_VALUE)).toString());
+                return null;
+            });
+            Identity identity = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, DEVICE));
+
+            KeyHistoryPage before = keyHistory(DEVICE, 10, "");
+            TestKeys newKeys = new TestKeys("device-1");
+            rotateKeyAsController(newKeys);
+            KeyHistoryPage after = keyHistory(DEVICE, 10, "");
+
+            assertThat(before.getKeys()).hasSize(1);
+            assertThat(before.getKeys().get(0).getTxId()).isNull();
+            assertThat(before.getKeys().get(0).getSince()).isEqualTo(identity.getIssuedAt());
+            assertThat(jwks(after.getKeys())).isEqualTo(jwksOf(newKeys, deviceKeys));
+            assertThat(after.getKeys().get(1).getTxId()).isNull();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.List;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.Ed25519Signer;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public final class KeyTypesTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private static final String DEVICE = "lsdi:ufma:br/device/1";
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    private static String sign(final JWSSigner signer, final JWSAlgorithm alg, final String kid,
+                               final String payload) {
+        try {
+            JWSObject jwsObject = new JWSObject(new JWSHeader.Builder(alg).keyID(kid).build(), new Payload(payload));
+            jwsObject.sign(signer);
+            return jwsObject.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static OctetKeyPair okpKeys(final String kid) {
+        try {
+            return new OctetKeyPairGenerator(Curve.Ed25519).keyID(kid).generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String okpSign(final OctetKeyPair keys, final String payload) {
+        try {
+            return sign(new Ed25519Signer(keys), JWSAlgorithm.EdDSA, keys.getKeyID(), payload);
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static KeyPair rsaKeys(final int bits) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(bits);
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String rsaSign(final KeyPair keys, final String payload) {
+        return sign(new RSASSASigner(keys.getPrivate()), JWSAlgorithm.RS256, "rsa", payload);
+    }
+
+    @Nested
+    class CreateOKPIdentity {
+
+        private String approval(final String id, final OctetKeyPair keys) {
+            return runner.creationPayload("CreateOKPIdentity", id, id, new OKPWrapper(OKPWrapper.KTY,
+                    PublicKeyWrapper.USE_SIGNATURE, OKPWrapper.CRV, keys.getKeyID(), OKPWrapper.ALG,
+                    keys.getX().toString()));
+        }
+
+        private Identity create(final String id, final String controller, final OctetKeyPair keys,
+                                final String x, final String signature) {
+            List<String> parameters = Arrays.asList(ContractRunner.CONTEXT, id, controller, OKPWrapper.KTY,
+                    keys.getKeyID(), OKPWrapper.ALG, OKPWrapper.CRV, x, signature, "nome:Org A");
+            return runner.submit(parameters, ctx -> runner.getContract().CreateOKPIdentity(ctx));
+        }
+
+        @Test
+        public void whenSelfSigned() {
+            OctetKeyPair keys = okpKeys("org");
+
+            Identity created = create(ORG, ORG, keys, keys.getX().toString(), okpSign(keys, approval(ORG, keys)));
+
+            assertThat(created.getPublicKeyJwk()).containsEntry("kty", "OKP").containsEntry("crv", "Ed25519")
+                    .containsEntry("x", keys.getX().toString());
+            Identity read = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, ORG));
+            assertThat(read.getSubjectInfo()).containsEntry("nome", "Org A");
+        }
+
+        @Test
+        public void whenItControlsAnEcIdentity() {
+            OctetKeyPair keys = okpKeys("org");
+            create(ORG, ORG, keys, keys.getX().toString(), okpSign(keys, approval(ORG, keys)));
+            TestKeys deviceKeys = new TestKeys("device");
+            String approval = runner.creationPayload("CreateECIdentity", DEVICE, ORG, deviceKeys.publicKey());
+            List<String> parameters = Arrays.asList(ContractRunner.CONTEXT, DEVICE, ORG, "EC", deviceKeys.getKid(),
+                    "ES256", "P-256", deviceKeys.getX(), deviceKeys.getY(), okpSign(keys, approval));
+
+            Identity created = runner.submit(parameters, ctx -> runner.getContract().CreateECIdentity(ctx));
+
+            assertThat(created.getControlledBy()).isEqualTo(ORG);
+        }
+
+        @Test
+        public void whenSignedWithAnotherKey() {
+            OctetKeyPair keys = okpKeys("org");
+
+            Throwable thrown = catchThrowable(() -> create(ORG, ORG, keys, keys.getX().toString(),
+                    okpSign(okpKeys("org"), approval(ORG, keys))));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Signature from " + ORG + " not valid!");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenKeyIsNotEd25519() {
+            OctetKeyPair keys = okpKeys("org");
+            String tooShort = keys.getX().toString().substring(0, 20);
+
+            Throwable thrown = catchThrowable(() -> create(ORG, ORG, keys, tooShort, okpSign(keys, ORG)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_KEY");
+        }
+    }
+
+    @Nested
+    class CreateRSAIdentity {
+
+        private String approval(final String id, final KeyPair keys) {
+            RSAPublicKey publicKey = (RSAPublicKey) keys.getPublic();
+            return runner.creationPayload("CreateRSAIdentity", id, id, new RSAWrapper(RSAWrapper.KTY,
+                    PublicKeyWrapper.USE_SIGNATURE, "rsa", "RS256", TestKeys.unsigned(publicKey.getModulus(), 0),
+                    TestKeys.unsigned(publicKey.getPublicExponent(), 0)));
+        }
+
+        private Identity create(final String id, final KeyPair keys, final String signature) {
+            RSAPublicKey publicKey = (RSAPublicKey) keys.getPublic();
+            String[] args = {ContractRunner.CONTEXT, id, id, RSAWrapper.KTY, "rsa",
+                TestKeys.unsigned(publicKey.getPublicExponent(), 0), "RS256",
+                TestKeys.unsigned(publicKey.getModulus(), 0), signature, "nome:Org A"};
+            return runner.submit(ctx -> runner.getContract().CreateRSAIdentity(ctx, args));
+        }
+
+        @Test
+        public void whenSelfSigned() {
+            KeyPair keys = rsaKeys(RSAWrapper.MIN_MODULUS_BITS);
+
+            Identity created = create(ORG, keys, rsaSign(keys, approval(ORG, keys)));
+
+            assertThat(created.getPublicKeyJwk()).containsEntry("kty", "RSA").containsEntry("alg", "RS256");
+            boolean exists = runner.evaluate(ctx -> runner.getContract().IdentityExists(ctx, ORG));
+            assertThat(exists).isTrue();
+        }
+
+        @Test
+        public void whenSignedWithAnotherKey() {
+            KeyPair keys = rsaKeys(RSAWrapper.MIN_MODULUS_BITS);
+            String signature = rsaSign(rsaKeys(RSAWrapper.MIN_MODULUS_BITS), approval(ORG, keys));
+
+            Throwable thrown = catchThrowable(() -> create(ORG, keys, signature));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Signature from " + ORG + " not valid!");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenModulusIsTooShort() {
+            // signers refuse keys this short, so the signature comes from a valid key
+            String signature = rsaSign(rsaKeys(RSAWrapper.MIN_MODULUS_BITS), ORG);
+
+            Throwable thrown = catchThrowable(() -> create(ORG, rsaKeys(1024), signature));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_KEY");
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.nimbusds.jose.JOSEException;
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeException;
+
+/**
+ * Concurrent endorsement load against {@link IdentityContract} on a
+ * {@link SimulatedLedger}.
+ *
+ * Each client thread loops over a mix of CreateECIdentity submissions and
+ * ReadIdentity evaluations for random ids drawn from a fixed key space.
+ * Submissions are simulated, handed to an orderer thread that cuts blocks by
+ * size or timeout, and validated in block order, so two creates of the same id
+ * endorsed concurrently end with one MVCC read conflict. Reports throughput,
+ * latency percentiles per operation and the conflict rate.
+ *
+ * Settings are system properties, e.g.
+ * {@code ./gradlew loadSimulation -Psim.threads=16 -Psim.createPercent=50 -Psim.keySpace=500}:
+ * <ul>
+ *     <li>sim.threads (8): concurrent clients</li>
+ *     <li>sim.seconds (10): duration of the measured run</li>
+ *     <li>sim.createPercent (20): share of operations that are creates</li>
+ *     <li>sim.keySpace (100000): number of distinct identity ids; smaller means more contention</li>
+ *     <li>sim.preload (1000): identities created before the run</li>
+ *     <li>sim.blockSize (10) and sim.batchTimeoutMillis (2): block cutting</li>
+ * </ul>
+ */
+public final class LoadSimulator {
+
+    private static final String CONTEXT = "http://lsdi.ufma.br";
+
+    private static final String ENTITY_MANAGER = "lsdi:ufma:br/entity-manager/1";
+
+    private static final String DEVICE_PREFIX = "lsdi:ufma:br/device/";
+
+    private final int threads = Integer.getInteger("sim.threads", 8);
+    private final int seconds = Integer.getInteger("sim.seconds", 10);
+    private final int createPercent = Integer.getInteger("sim.createPercent", 20);
+    private final int keySpace = Integer.getInteger("sim.keySpace", 100000);
+    private final int preload = Integer.getInteger("sim.preload", 1000);
+    private final int blockSize = Integer.getInteger("sim.blockSize", 10);
+    private final int batchTimeoutMillis = Integer.getInteger("sim.batchTimeoutMillis", 2);
+
+    private final SimulatedLedger ledger = new SimulatedLedger();
+    private final IdentityContract contract = new IdentityContract();
+    private final AtomicLong txCounter = new AtomicLong();
+
+    /** Key of the entity manager, shared by every device it creates. */
+    private final TestKeys keys = new TestKeys("entity-manager-1");
+
+    public static void main(final String[] args) throws Exception {
+        new LoadSimulator().run();
+    }
+
+    private void run() throws Exception {
+        seed();
+
+        Orderer orderer = new Orderer();
+        Thread ordererThread = new Thread(orderer, "orderer");
+        ordererThread.start();
+
+        ExecutorService clients = Executors.newFixedThreadPool(threads);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<Stats>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(clients.submit(new Client(orderer, new Random(i), deadline)));
+        }
+        Stats total = new Stats();
+        for (Future<Stats> result : results) {
+            total.merge(result.get());
+        }
+        clients.shutdown();
+        orderer.stop();
+        ordererThread.join();
+
+        report(total, orderer.blocks);
+    }
+
+    /** Creates the entity manager, which controls every created device, and the preloaded devices. */
+    private void seed() throws ParseException, JOSEException {
+        Context ctx = mock(Context.class);
+        List<String> ids = new ArrayList<>();
+        ids.add(ENTITY_MANAGER);
+        Random random = new Random(-1);
+        for (int i = 0; i < preload; i++) {
+            ids.add(DEVICE_PREFIX + random.nextInt(keySpace));
+        }
+        for (String id : ids) {
+            SimulatedTransaction tx = ledger.newTransaction(nextTxId(), createArgs(id));
+            when(ctx.getStub()).thenReturn(tx.getStub());
+            try {
+                contract.CreateECIdentity(ctx);
+                ledger.commit(tx);
+            } catch (ChaincodeException e) {
+                // duplicate preload id
+            }
+        }
+    }
+
+    private String nextTxId() {
+        return "sim-" + txCounter.incrementAndGet();
+    }
+
+    /**
+     * @return CreateECIdentity parameters, signed by the entity manager with a fresh nonce
+     */
+    private List<String> createArgs(final String id) {
+        String approval = Approval.of("CreateECIdentity", id).with("controlledBy", ENTITY_MANAGER)
+                .with("keyThumbprint", keys.publicKey().thumbprint()).nonce(nextTxId()).payload();
+        return Arrays.asList(CONTEXT, id, ENTITY_MANAGER, "EC", keys.getKid(), "ES256", "P-256", keys.getX(),
+                keys.getY(), keys.sign(approval), "nome:" + id, "mantenedor:load-simulator");
+    }
+
+    private final class Client implements Callable<Stats> {
+
+        private final Orderer orderer;
+        private final Random random;
+        private final long deadline;
+        private final Context ctx = mock(Context.class);
+        private SimulatedTransaction current;
+
+        Client(final Orderer orderer, final Random random, final long deadline) {
+            this.orderer = orderer;
+            this.random = random;
+            this.deadline = deadline;
+            when(ctx.getStub()).thenAnswer(invocation -> current.getStub());
+        }
+
+        @Override
+        public Stats call() throws Exception {
+            Stats stats = new Stats();
+            while (System.nanoTime() < deadline) {
+                String id = DEVICE_PREFIX + random.nextInt(keySpace);
+                boolean create = random.nextInt(100) < createPercent;
+                // signing is the client's work, not the peer's, so it is left out of the latency
+                List<String> args = create ? createArgs(id) : null;
+                long start = System.nanoTime();
+                if (create) {
+                    current = ledger.newTransaction(nextTxId(), args);
+                    try {
+                        contract.CreateECIdentity(ctx);
+                        stats.recordSubmit(orderer.submit(current).get(), System.nanoTime() - start);
+                    } catch (ChaincodeException e) {
+                        // already committed: endorsement fails, nothing is submitted
+                        stats.rejected++;
+                        stats.creates.add(System.nanoTime() - start);
+                    }
+                } else {
+                    current = ledger.newTransaction(nextTxId(), Collections.emptyList());
+                    try {
+                        contract.ReadIdentity(ctx, id);
+                    } catch (ChaincodeException e) {
+                        stats.readMisses++;
+                    }
+                    stats.reads.add(System.nanoTime() - start);
+                }
+            }
+            return stats;
+        }
+    }
+
+    private static final class Submission {
+        private final SimulatedTransaction tx;
+        private final CompletableFuture<SimulatedLedger.ValidationCode> result = new CompletableFuture<>();
+
+        Submission(final SimulatedTransaction tx) {
+            this.tx = tx;
+        }
+    }
+
+    /** Cuts blocks of up to blockSize transactions, or fewer once the batch timeout expires, and commits them in order. */
+    private final class Orderer implements Runnable {
+
+        private final BlockingQueue<Submission> queue = new LinkedBlockingQueue<>();
+        private volatile boolean running = true;
+        private long blocks;
+
+        CompletableFuture<SimulatedLedger.ValidationCode> submit(final SimulatedTransaction tx) {
+            Submission submission = new Submission(tx);
+            queue.add(submission);
+            return submission.result;
+        }
+
+        void stop() {
+            running = false;
+        }
+
+        @Override
+        public void run() {
+            List<Submission> block = new ArrayList<>(blockSize);
+            try {
+                while (running || !queue.isEmpty()) {
+                    Submission first = queue.poll(50, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    block.add(first);
+                    long cut = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeoutMillis);
+                    while (block.size() < blockSize) {
+                        Submission next = queue.poll(cut - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        block.add(next);
+                    }
+                    for (Submission submission : block) {
+                        submission.result.complete(ledger.commit(submission.tx));
+                    }
+                    blocks++;
+                    block.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Stats {
+        private final Latencies creates = new Latencies();
+        private final Latencies reads = new Latencies();
+        private long committed;
+        private long mvccConflicts;
+        private long phantomConflicts;
+        private long rejected;
+        private long readMisses;
+
+        void recordSubmit(final SimulatedLedger.ValidationCode code, final long nanos) {
+            switch (code) {
+                case VALID:
+                    committed++;
+                    break;
+                case MVCC_READ_CONFLICT:
+                    mvccConflicts++;
+                    break;
+                default:
+                    phantomConflicts++;
+            }
+            creates.add(nanos);
+        }
+
+        void merge(final Stats other) {
+            creates.merge(other.creates);
+            reads.merge(other.reads);
+            committed += other.committed;
+            mvccConflicts += other.mvccConflicts;
+            phantomConflicts += other.phantomConflicts;
+            rejected += other.rejected;
+            readMisses += other.readMisses;
+        }
+    }
+
+    private static final class Latencies {
+        private long[] nanos = new long[1024];
+        private int count;
+
+        void add(final long value) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = value;
+        }
+
+        void merge(final Latencies other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.nanos[i]);
+            }
+        }
+
+        String summary() {
+            if (count == 0) {
+                return "n=0";
+            }
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            return String.format("n=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms", count,
+                    millis(sorted, 50), millis(sorted, 90), millis(sorted, 99), sorted[count - 1] / 1e6);
+        }
+
+        private static double millis(final long[] sorted, final int percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1e6;
+        }
+    }
+
+    private void report(final Stats stats, final long blocks) {
+        long submitted = stats.committed + stats.mvccConflicts + stats.phantomConflicts;
+        long operations = stats.creates.count + stats.reads.count;
+        System.out.println(String.format("Load simulation: %d clients, %d s, %d%% creates, key space %d, "
+                        + "blocks of %d / %d ms, verifier %s",
+                threads, seconds, createPercent, keySpace, blockSize, batchTimeoutMillis, contract.getVerifierCache()));
+        System.out.println(String.format("  throughput     %.1f tx/s (%d operations, %d blocks, %d keys in state)",
+                operations / (double) seconds, operations, blocks, ledger.size()));
+        System.out.println(String.format("  committed      %.1f tx/s", stats.committed / (double) seconds));
+        System.out.println("  create         " + stats.creates.summary());
+        System.out.println("  read           " + stats.reads.summary());
+        System.out.println(String.format("  submitted      %d: %d valid, %d MVCC read conflicts, %d phantom read conflicts",
+                submitted, stats.committed, stats.mvccConflicts, stats.phantomConflicts));
+        System.out.println(String.format("  conflict rate  %.2f%% of submitted", submitted == 0 ? 0.0
+                : 100.0 * (stats.mvccConflicts + stats.phantomConflicts) / submitted));
+        System.out.println(String.format("  rejected       %d creates of existing ids, %d reads of missing ids",
+                stats.rejected, stats.readMisses));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * MerkleImport against the RFC 6962 / RFC 9162 test vectors of the Certificate
+ * Transparency reference implementation: eight leaves of raw data, the root of
+ * every prefix of them, and some inclusion proofs.
+ */
+public final class MerkleImportTest {
+
+    private static final String[] LEAF_DATA = {
+        "", "00", "10", "2021", "3031", "40414243", "5051525354555657", "606162636465666768696a6b6c6d6e6f",
+    };
+
+    /** Root of the tree over the first i + 1 leaves. */
+    private static final String[] ROOTS = {
+        "6e340b9cffb37a989ca544e6bb780a2c78901d3fb33738768511a30617afa01d",
+        "fac54203e7cc696cf0dfcb42c92a1d9dbaf70ad9e621f4bd8d98662f00e3c125",
+        "aeb6bcfe274b70a14fb067a5e5578264db0fa9b51af5e0ba159158f329e06e77",
+        "d37ee418976dd95753c1c73862b9398fa2a2cf9b4ff0fdfe8b30cd95209614b7",
+        "4e3bbb1f7b478dcfe71fb631631519a3bca12c9aefca1612bfce4c13a86264d4",
+        "76e67dadbcdf1e10e1b74ddc608abd2f98dfb16fbce75277b5232a127f2087ef",
+        "ddb89be403809e325750d3d263cd78929c2942b7942a34b77e122c9594a74c8c",
+        "5dc9da79a70659a9ad559cb701ded9a2ab9d823aad2f4960cfe370eff4604328",
+    };
+
+    private static byte[] hex(final String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static byte[] leaf(final int index) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((byte) 0x00);
+            return digest.digest(hex(LEAF_DATA[index]));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<byte[]> leaves(final int size) {
+        List<byte[]> leaves = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            leaves.add(leaf(i));
+        }
+        return leaves;
+    }
+
+    private static List<byte[]> proof(final String... hashes) {
+        List<byte[]> proof = new ArrayList<>();
+        for (String hash : hashes) {
+            proof.add(hex(hash));
+        }
+        return proof;
+    }
+
+    private static boolean verify(final int index, final int size, final List<byte[]> proof) {
+        return MerkleImport.verify(leaf(index), index, size, proof, hex(ROOTS[size - 1]));
+    }
+
+    @Nested
+    class Tree {
+
+        @Test
+        public void hasTheReferenceRootForEverySize() {
+            for (int size = 1; size <= LEAF_DATA.length; size++) {
+                assertThat(new MerkleImport.Tree(leaves(size)).root()).as("root of %d leaves", size)
+                        .isEqualTo(hex(ROOTS[size - 1]));
+            }
+        }
+
+        @Test
+        public void givesTheReferenceProofs() {
+            assertThat(new MerkleImport.Tree(leaves(8)).proof(0)).containsExactlyElementsOf(proof(
+                    "96a296d224f285c67bee93c30f8a309157f0daa35dc5b87e410b78630a09cfc7",
+                    "5f083f0a1a33ca076a95279832580db3e0ef4584bdff1f54c8a360f50de3031e",
+                    "6b47aaf29ee3c2af9af889bc1fb9254dabd31177f16232dd6aab035ca39bf6e4"));
+            assertThat(new MerkleImport.Tree(leaves(8)).proof(5)).containsExactlyElementsOf(proof(
+                    "bc1a0643b12e4d2d7c77918f44e0f4f79a838b6cf9ec5b5c283e1f4d88599e6b",
+                    "ca854ea128ed050b41b35ffc1b87b8eb2bde461e9e3b5596ece6b9d5975a0ae0",
+                    "d37ee418976dd95753c1c73862b9398fa2a2cf9b4ff0fdfe8b30cd95209614b7"));
+            assertThat(new MerkleImport.Tree(leaves(3)).proof(2)).containsExactlyElementsOf(proof(
+                    "fac54203e7cc696cf0dfcb42c92a1d9dbaf70ad9e621f4bd8d98662f00e3c125"));
+            assertThat(new MerkleImport.Tree(leaves(5)).proof(1)).containsExactlyElementsOf(proof(
+                    "6e340b9cffb37a989ca544e6bb780a2c78901d3fb33738768511a30617afa01d",
+                    "5f083f0a1a33ca076a95279832580db3e0ef4584bdff1f54c8a360f50de3031e",
+                    "bc1a0643b12e4d2d7c77918f44e0f4f79a838b6cf9ec5b5c283e1f4d88599e6b"));
+        }
+    }
+
+    @Nested
+    class Verify {
+
+        @Test
+        public void acceptsTheReferenceProofs() {
+            assertThat(verify(0, 8, proof(
+                    "96a296d224f285c67bee93c30f8a309157f0daa35dc5b87e410b78630a09cfc7",
+                    "5f083f0a1a33ca076a95279832580db3e0ef4584bdff1f54c8a360f50de3031e",
+                    "6b47aaf29ee3c2af9af889bc1fb9254dabd31177f16232dd6aab035ca39bf6e4"))).isTrue();
+            assertThat(verify(5, 8, proof(
+                    "bc1a0643b12e4d2d7c77918f44e0f4f79a838b6cf9ec5b5c283e1f4d88599e6b",
+                    "ca854ea128ed050b41b35ffc1b87b8eb2bde461e9e3b5596ece6b9d5975a0ae0",
+                    "d37ee418976dd95753c1c73862b9398fa2a2cf9b4ff0fdfe8b30cd95209614b7"))).isTrue();
+            assertThat(verify(0, 1, proof())).isTrue();
+        }
+
+        @Test
+        public void acceptsEveryLeafOfOddSizedTrees() {
+            for (int size = 1; size <= LEAF_DATA.length; size += 2) {
+                MerkleImport.Tree tree = new MerkleImport.Tree(leaves(size));
+                for (int index = 0; index < size; index++) {
+                    assertThat(verify(index, size, tree.proof(index))).as("leaf %d of %d", index, size).isTrue();
+                }
+            }
+        }
+
+        @Test
+        public void acceptsTheLastLeaf() {
+            // the last leaf of an odd-sized tree has no sibling at the bottom level
+            assertThat(verify(2, 3, proof("fac54203e7cc696cf0dfcb42c92a1d9dbaf70ad9e621f4bd8d98662f00e3c125")))
+                    .isTrue();
+            assertThat(verify(6, 7, new MerkleImport.Tree(leaves(7)).proof(6))).isTrue();
+            assertThat(verify(4, 5, new MerkleImport.Tree(leaves(5)).proof(4))).isTrue();
+        }
+
+        @Test
+        public void rejectsAWrongIndex() {
+            List<byte[]> proof = new MerkleImport.Tree(leaves(8)).proof(5);
+
+            assertThat(MerkleImport.verify(leaf(5), 4, 8, proof, hex(ROOTS[7]))).isFalse();
+            assertThat(MerkleImport.verify(leaf(5), 8, 8, proof, hex(ROOTS[7]))).isFalse();
+            assertThat(MerkleImport.verify(leaf(5), -1, 8, proof, hex(ROOTS[7]))).isFalse();
+        }
+
+        @Test
+        public void rejectsAWrongTreeSize() {
+            // in a tree of 7 the last leaf is promoted without a sibling; in a tree of 8 it has one
+            List<byte[]> proof = new MerkleImport.Tree(leaves(7)).proof(6);
+
+            assertThat(MerkleImport.verify(leaf(6), 6, 8, proof, hex(ROOTS[6]))).isFalse();
+            assertThat(MerkleImport.verify(leaf(6), 6, 6, proof, hex(ROOTS[6]))).isFalse();
+        }
+
+        @Test
+        public void rejectsATruncatedProof() {
+            List<byte[]> proof = new MerkleImport.Tree(leaves(8)).proof(5);
+
+            assertThat(verify(5, 8, proof.subList(0, 2))).isFalse();
+            assertThat(verify(5, 8, new ArrayList<>())).isFalse();
+        }
+
+        @Test
+        public void rejectsAnExtendedProof() {
+            List<byte[]> proof = new ArrayList<>(new MerkleImport.Tree(leaves(8)).proof(5));
+            proof.add(hex(ROOTS[0]));
+
+            assertThat(verify(5, 8, proof)).isFalse();
+        }
+
+        @Test
+        public void rejectsAForgedSibling() {
+            List<byte[]> proof = new ArrayList<>(new MerkleImport.Tree(leaves(8)).proof(5));
+            byte[] forged = Arrays.copyOf(proof.get(1), 32);
+            forged[31] ^= 1;
+            proof.set(1, forged);
+
+            assertThat(verify(5, 8, proof)).isFalse();
+        }
+
+        @Test
+        public void rejectsAnotherLeaf() {
+            assertThat(MerkleImport.verify(leaf(4), 5, 8, new MerkleImport.Tree(leaves(8)).proof(5),
+                    hex(ROOTS[7]))).isFalse();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class PaginationTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private static final String OTHER_ORG = "lsdi:org/b";
+
+    private static final int DEVICES = 5;
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private final TestKeys orgKeys = new TestKeys("org");
+
+    private final TestKeys deviceKeys = new TestKeys("device");
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    private static String device(final int i) {
+        return "lsdi:ufma:br/device/" + i;
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(ORG, orgKeys);
+        for (int i = 0; i < DEVICES; i++) {
+            runner.createECIdentity(device(i), ORG, deviceKeys, orgKeys);
+        }
+        runner.createSelfSigned(OTHER_ORG, new TestKeys("org"));
+    }
+
+    /** Gets one page as JSON for a page size and bookmark. */
+    @FunctionalInterface
+    private interface PageQuery {
+        String page(int pageSize, String bookmark);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> page(final String pageJSON) {
+        return genson.deserialize(pageJSON, Map.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> identifiers(final Map<String, Object> page) {
+        List<String> identifiers = new ArrayList<>();
+        for (Map<String, Object> record : (List<Map<String, Object>>) page.get("records")) {
+            identifiers.add((String) record.get("identifier"));
+        }
+        return identifiers;
+    }
+
+    /**
+     * Follows the bookmarks from the first page to the last.
+     *
+     * @return the identifiers of every page, one list per page
+     */
+    private List<List<String>> allPages(final PageQuery query, final int pageSize) {
+        List<List<String>> pages = new ArrayList<>();
+        String bookmark = "";
+        do {
+            Map<String, Object> page = page(query.page(pageSize, bookmark));
+            pages.add(identifiers(page));
+            bookmark = (String) page.get("bookmark");
+        } while (!bookmark.isEmpty());
+        return pages;
+    }
+
+    @Nested
+    class GetAllIdentitiesWithPagination {
+
+        private String page(final int pageSize, final String bookmark) {
+            return runner.evaluate(ctx -> runner.getContract().GetAllIdentitiesWithPagination(ctx, pageSize,
+                    bookmark));
+        }
+
+        @Test
+        public void pagesThroughEveryIdentity() {
+            List<List<String>> pages = allPages(this::page, 3);
+
+            assertThat(pages).hasSize(3);
+            assertThat(pages.get(0)).containsExactly(ORG, OTHER_ORG, device(0));
+            assertThat(pages.get(1)).containsExactly(device(1), device(2), device(3));
+            assertThat(pages.get(2)).containsExactly(device(4));
+        }
+
+        @Test
+        public void reportsTheFetchedCount() {
+            Map<String, Object> first = PaginationTest.this.page(page(2, ""));
+
+            assertThat(((Number) first.get("fetchedCount")).intValue()).isEqualTo(2);
+            assertThat((String) first.get("bookmark")).isNotEmpty();
+        }
+
+        @Test
+        public void whenPageSizeIsZero() {
+            Throwable thrown = catchThrowable(() -> page(0, ""));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Page size must be between 1 and 1000");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+
+        @Test
+        public void whenPageSizeIsOverTheLimit() {
+            Throwable thrown = catchThrowable(() -> page(IdentityContract.MAX_PAGE_SIZE + 1, ""));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+    }
+
+    @Nested
+    class GetIdentitiesByControllerWithPagination {
+
+        private String page(final String controllerId, final int pageSize, final String bookmark) {
+            return runner.evaluate(ctx -> runner.getContract().GetIdentitiesByControllerWithPagination(ctx,
+                    controllerId, pageSize, bookmark));
+        }
+
+        @Test
+        public void pagesThroughTheIdentitiesOfTheController() {
+            List<List<String>> pages = allPages((pageSize, bookmark) -> page(ORG, pageSize, bookmark), 4);
+
+            assertThat(pages).hasSize(2);
+            assertThat(pages.get(0)).containsExactly(ORG, device(0), device(1), device(2));
+            assertThat(pages.get(1)).containsExactly(device(3), device(4));
+        }
+
+        @Test
+        public void whenControllerControlsOnlyItself() {
+            assertThat(allPages((pageSize, bookmark) -> page(OTHER_ORG, pageSize, bookmark), 10))
+                    .containsExactly(Collections.singletonList(OTHER_ORG));
+        }
+
+        @Test
+        public void whenControllerIsUnknown() {
+            Map<String, Object> page = PaginationTest.this.page(page("lsdi:org/unknown", 10, ""));
+
+            assertThat(identifiers(page)).isEmpty();
+            assertThat((String) page.get("bookmark")).isEmpty();
+        }
+
+        @Test
+        public void whenPageSizeIsZero() {
+            Throwable thrown = catchThrowable(() -> page(ORG, 0, ""));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Page size must be between 1 and 1000");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class PrivateSubjectInfoTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private static final String DEVICE = "lsdi:ufma:br/device/1";
+
+    private static final String PRIVATE_INFO = "{\"cpf\":\"123.456.789-00\"}";
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final TestKeys orgKeys = new TestKeys("org");
+
+    private final TestKeys deviceKeys = new TestKeys("device");
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(ORG, orgKeys);
+    }
+
+    private byte[] salt() {
+        byte[] salt = new byte[PrivateSubjectInfo.MIN_SALT_BYTES];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    private static Map<String, byte[]> transientMap(final String subjectInfoJSON, final byte[] salt) {
+        Map<String, byte[]> transientMap = new HashMap<>();
+        transientMap.put(PrivateSubjectInfo.TRANSIENT_SUBJECT_INFO, subjectInfoJSON.getBytes(StandardCharsets.UTF_8));
+        if (salt != null) {
+            transientMap.put(PrivateSubjectInfo.TRANSIENT_SALT, salt);
+        }
+        return transientMap;
+    }
+
+    private Identity create(final Map<String, byte[]> transientMap) {
+        List<String> parameters = Arrays.asList(ContractRunner.CONTEXT, DEVICE, ORG, "EC", deviceKeys.getKid(),
+                "ES256", "P-256", deviceKeys.getX(), deviceKeys.getY(),
+                orgKeys.sign(runner.creationPayload("CreateECIdentity", DEVICE, ORG, deviceKeys.publicKey())),
+                "nome:Device 1");
+        return runner.submit(parameters, transientMap, ctx -> runner.getContract().CreateECIdentity(ctx));
+    }
+
+    private static String privateHash(final String subjectInfoJSON, final byte[] salt) {
+        return PrivateSubjectInfo.hash(PrivateSubjectInfo.encode(salt,
+                PrivateSubjectInfo.parseTransient(subjectInfoJSON.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private String updatePayload(final String subjectInfoHash) {
+        return runner.evaluate(ctx -> Approval.of(ctx.getStub(), "UpdatePrivateSubjectInfo", DEVICE)
+                .with("subjectInfoHash", subjectInfoHash).nonce(runner.nonce()).payload());
+    }
+
+    private Identity update(final Map<String, byte[]> transientMap, final ControllerSignature signature) {
+        String signaturesJSON = genson.serialize(Collections.singletonList(signature));
+        return runner.submit(Collections.emptyList(), transientMap,
+                ctx -> runner.getContract().UpdatePrivateSubjectInfo(ctx, DEVICE, signaturesJSON));
+    }
+
+    private Identity updateAsController(final String subjectInfoJSON, final byte[] salt) {
+        return update(transientMap(subjectInfoJSON, salt), new ControllerSignature(ORG,
+                orgKeys.sign(updatePayload(privateHash(subjectInfoJSON, salt)))));
+    }
+
+    private Identity readWithPrivateInfo() {
+        return runner.evaluate(ctx -> runner.getContract().ReadIdentityWithPrivateInfo(ctx, DEVICE));
+    }
+
+    @Nested
+    class Create {
+
+        @Test
+        public void whenSalted() {
+            byte[] salt = salt();
+
+            Identity created = create(transientMap(PRIVATE_INFO, salt));
+
+            assertThat(created.getSubjectInfoHash()).isEqualTo(privateHash(PRIVATE_INFO, salt));
+            Identity read = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, DEVICE));
+            assertThat(read.getSubjectInfo()).doesNotContainKey("cpf");
+            assertThat(readWithPrivateInfo().getSubjectInfo()).containsEntry("cpf", "123.456.789-00")
+                    .containsEntry("nome", "Device 1");
+        }
+
+        @Test
+        public void whenSaltIsMissing() {
+            Throwable thrown = catchThrowable(() -> create(transientMap(PRIVATE_INFO, null)));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Transient map must carry a random salt of at least 16 bytes");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+
+        @Test
+        public void whenSaltIsTooShort() {
+            Throwable thrown = catchThrowable(() -> create(transientMap(PRIVATE_INFO, new byte[15])));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+    }
+
+    @Nested
+    class ReadIdentityWithPrivateInfo {
+
+        private void replacePrivateValue(final byte[] value) {
+            runner.submit(ctx -> {
+                if (value == null) {
+                    ctx.getStub().delPrivateData(PrivateSubjectInfo.configuredCollection(), DEVICE);
+                } else {
+                    ctx.getStub().putPrivateData(PrivateSubjectInfo.configuredCollection(), DEVICE, value);
+                }
+                return null;
+            });
+        }
+
+        @Test
+        public void whenIdentityHasNoPrivateInfo() {
+            runner.createECIdentity(DEVICE, ORG, deviceKeys, orgKeys, "nome:Device 1");
+
+            Identity read = readWithPrivateInfo();
+
+            assertThat(read.getSubjectInfoHash()).isNull();
+            assertThat(read.getSubjectInfo()).containsOnlyKeys("nome");
+        }
+
+        @Test
+        public void whenPrivateValueDoesNotMatchTheHash() {
+            create(transientMap(PRIVATE_INFO, salt()));
+            replacePrivateValue(PrivateSubjectInfo.encode(salt(), PrivateSubjectInfo.parseTransient(
+                    "{\"cpf\":\"000.000.000-00\"}".getBytes(StandardCharsets.UTF_8))));
+
+            Throwable thrown = catchThrowable(PrivateSubjectInfoTest.this::readWithPrivateInfo);
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                    .hasMessage("Private subjectInfo of " + DEVICE + " does not match its hash");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+
+        @Test
+        public void whenPrivateValueIsNotOnThisPeer() {
+            create(transientMap(PRIVATE_INFO, salt()));
+            replacePrivateValue(null);
+
+            Throwable thrown = catchThrowable(PrivateSubjectInfoTest.this::readWithPrivateInfo);
+
+            assertThat(thrown).hasMessage("Private subjectInfo of " + DEVICE + " is not available on this peer");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+
+        @Test
+        public void whenIdentityDoesNotExist() {
+            Throwable thrown = catchThrowable(PrivateSubjectInfoTest.this::readWithPrivateInfo);
+
+            assertThat(errorCode(thrown)).isEqualTo("IDENTITY_NOT_FOUND");
+        }
+    }
+
+    @Nested
+    class UpdatePrivateSubjectInfo {
+
+        private static final String NEW_INFO = "{\"cpf\":\"987.654.321-00\"}";
+
+        @BeforeEach
+        public void setUp() {
+            create(transientMap(PRIVATE_INFO, salt()));
+        }
+
+        @Test
+        public void whenSignedByTheController() {
+            byte[] salt = salt();
+
+            Identity updated = updateAsController(NEW_INFO, salt);
+
+            assertThat(updated.getSubjectInfoHash()).isEqualTo(privateHash(NEW_INFO, salt));
+            assertThat(readWithPrivateInfo().getSubjectInfo()).containsEntry("cpf", "987.654.321-00");
+        }
+
+        @Test
+        public void whenEmptyItRemovesThePrivateAttributes() {
+            Identity updated = updateAsController("{}", salt());
+
+            assertThat(updated.getSubjectInfoHash()).isNull();
+            assertThat(readWithPrivateInfo().getSubjectInfo()).doesNotContainKey("cpf");
+        }
+
+        @Test
+        public void whenSignatureIsForAnotherValue() {
+            byte[] salt = salt();
+            String payload = updatePayload(privateHash(NEW_INFO, salt));
+
+            Throwable thrown = catchThrowable(() -> update(transientMap("{\"cpf\":\"000.000.000-00\"}", salt),
+                    new ControllerSignature(ORG, orgKeys.sign(payload))));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+            assertThat(readWithPrivateInfo().getSubjectInfo()).containsEntry("cpf", "123.456.789-00");
+        }
+
+        @Test
+        public void whenSignatureIsForAnotherSalt() {
+            String payload = updatePayload(privateHash(NEW_INFO, salt()));
+
+            Throwable thrown = catchThrowable(() -> update(transientMap(NEW_INFO, salt()),
+                    new ControllerSignature(ORG, orgKeys.sign(payload))));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSignatureIsOverTheIdOnly() {
+            Throwable thrown = catchThrowable(() -> update(transientMap(NEW_INFO, salt()),
+                    new ControllerSignature(ORG, orgKeys.sign(DEVICE))));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSignatureIsReplayed() {
+            byte[] salt = salt();
+            Map<String, byte[]> transientMap = transientMap(NEW_INFO, salt);
+            ControllerSignature signature = new ControllerSignature(ORG,
+                    orgKeys.sign(updatePayload(privateHash(NEW_INFO, salt))));
+            update(transientMap, signature);
+            updateAsController(PRIVATE_INFO, salt());
+
+            Throwable thrown = catchThrowable(() -> update(transientMap, signature));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+            assertThat(readWithPrivateInfo().getSubjectInfo()).containsEntry("cpf", "123.456.789-00");
+        }
+
+        @Test
+        public void whenSaltIsMissing() {
+            Throwable thrown = catchThrowable(() -> update(transientMap(NEW_INFO, null),
+                    new ControllerSignature(ORG, orgKeys.sign(DEVICE))));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class QueryIdentitiesTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private static final String OTHER_ORG = "lsdi:org/b";
+
+    private static final String DEVICE_1 = "lsdi:ufma:br/device/1";
+
+    private static final String DEVICE_2 = "lsdi:ufma:br/device/2";
+
+    private static final String DEVICE_3 = "lsdi:ufma:br/device/3";
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private final TestKeys orgKeys = new TestKeys("org");
+
+    private final TestKeys otherOrgKeys = new TestKeys("org");
+
+    private final TestKeys deviceKeys = new TestKeys("device");
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(ORG, orgKeys, "coordenador:fssilva");
+        runner.createECIdentity(DEVICE_1, ORG, deviceKeys, orgKeys, "coordenador:fssilva", "sala:101");
+        runner.createECIdentity(DEVICE_2, ORG, deviceKeys, orgKeys, "coordenador:andrecardoso");
+        runner.createSelfSigned(OTHER_ORG, otherOrgKeys);
+        runner.createECIdentity(DEVICE_3, OTHER_ORG, deviceKeys, otherOrgKeys, "coordenador:fssilva", "sala:102");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> query(final String selectorFieldsJSON, final int pageSize, final String bookmark) {
+        String page = runner.evaluate(ctx -> runner.getContract().QueryIdentities(ctx, selectorFieldsJSON, pageSize,
+                bookmark));
+        return genson.deserialize(page, Map.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> identifiers(final Map<String, Object> page) {
+        List<String> identifiers = new ArrayList<>();
+        for (Map<String, Object> record : (List<Map<String, Object>>) page.get("records")) {
+            identifiers.add((String) record.get("identifier"));
+        }
+        return identifiers;
+    }
+
+    private List<String> queryAll(final String selectorFieldsJSON) {
+        return identifiers(query(selectorFieldsJSON, 10, ""));
+    }
+
+    @Test
+    public void whenMatchingACoreField() {
+        assertThat(queryAll("{\"controlledBy\":\"" + ORG + "\"}")).containsExactly(ORG, DEVICE_1, DEVICE_2);
+    }
+
+    @Test
+    public void whenMatchingSeveralCoreFields() {
+        assertThat(queryAll("{\"context\":\"" + ContractRunner.CONTEXT + "\",\"controlledBy\":\"" + OTHER_ORG
+                + "\"}")).containsExactly(OTHER_ORG, DEVICE_3);
+    }
+
+    @Test
+    public void whenMatchingASubjectInfoAttribute() {
+        assertThat(queryAll("{\"subjectInfo.coordenador\":\"fssilva\"}"))
+                .containsExactlyInAnyOrder(ORG, DEVICE_1, DEVICE_3);
+    }
+
+    @Test
+    public void whenMatchingAnAttributeAndCoreFields() {
+        assertThat(queryAll("{\"subjectInfo.coordenador\":\"fssilva\",\"controlledBy\":\"" + OTHER_ORG + "\"}"))
+                .containsExactly(DEVICE_3);
+        assertThat(queryAll("{\"subjectInfo.coordenador\":\"fssilva\",\"subjectInfo.sala\":\"101\"}"))
+                .containsExactly(DEVICE_1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void returnsTheSubjectInfoOfEachMatch() {
+        List<Map<String, Object>> records = (List<Map<String, Object>>) query("{\"subjectInfo.sala\":\"102\"}", 10,
+                "").get("records");
+
+        assertThat(records).hasSize(1);
+        assertThat((Map<String, Object>) records.get(0).get("subjectInfo")).containsEntry("coordenador", "fssilva");
+    }
+
+    @Test
+    public void pagesThroughTheMatches() {
+        Map<String, Object> first = query("{\"status\":\"active\"}", 3, "");
+        Map<String, Object> second = query("{\"status\":\"active\"}", 3, (String) first.get("bookmark"));
+
+        assertThat(identifiers(first)).containsExactly(ORG, OTHER_ORG, DEVICE_1);
+        assertThat(identifiers(second)).containsExactly(DEVICE_2, DEVICE_3);
+        assertThat((String) second.get("bookmark")).isEmpty();
+    }
+
+    @Test
+    public void whenNothingMatches() {
+        assertThat(queryAll("{\"controlledBy\":\"lsdi:org/unknown\"}")).isEmpty();
+    }
+
+    @Test
+    public void whenPageSizeIsZero() {
+        Throwable thrown = catchThrowable(() -> query("{\"controlledBy\":\"" + ORG + "\"}", 0, ""));
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessage("Page size must be between 1 and 1000");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+
+    @Test
+    public void whenFieldCannotBeQueried() {
+        Throwable thrown = catchThrowable(() -> query("{\"publicKeyJwk.x\":\"abc\"}", 10, ""));
+
+        assertThat(thrown).isInstanceOf(ChaincodeException.class)
+                .hasMessageStartingWith("Selector fields must be a JSON object of queryable fields to strings: ");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+
+    @Test
+    public void whenSelectorIsNotAnObjectOfStrings() {
+        Throwable thrown = catchThrowable(() -> query("{\"controlledBy\":{\"$ne\":\"\"}}", 10, ""));
+
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+
+    @Test
+    public void whenSelectorIsEmpty() {
+        Throwable thrown = catchThrowable(() -> query("{}", 10, ""));
+
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+
+    @Test
+    public void whenStatusIsInTheStatusList() {
+        Throwable thrown = catchThrowable(() -> query("{\"status\":\"revoked\"}", 10, ""));
+
+        assertThat(thrown).hasMessage("Identities that are revoked are in the status list; use GetStatus");
+        assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory world state with Fabric's execute-order-validate semantics.
+ *
+ * Transactions are simulated against the committed state by a
+ * {@link SimulatedTransaction}, which records the version of every key it read
+ * and every range it scanned. {@link #commit} then validates those reads the
+ * way a committing peer does: a key whose version changed is an MVCC read
+ * conflict, a range whose contents changed is a phantom read conflict. Only
+ * valid transactions have their writes applied.
+ *
+ * Private data is kept apart, per collection, as on a member peer. It is
+ * written with the transaction but its reads are not validated.
+ */
+final class SimulatedLedger {
+
+    enum ValidationCode {
+        VALID,
+        MVCC_READ_CONFLICT,
+        PHANTOM_READ_CONFLICT
+    }
+
+    static final class VersionedValue {
+
+        final byte[] value;
+
+        final long version;
+
+        VersionedValue(final byte[] value, final long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    /** Version recorded in read sets for keys that did not exist. */
+    static final long ABSENT = 0;
+
+    private final TreeMap<String, VersionedValue> state = new TreeMap<>();
+
+    private final Map<String, Map<String, byte[]>> privateState = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long committedTransactions;
+
+    SimulatedTransaction newTransaction(final String txId, final List<String> parameters) {
+        return newTransaction(txId, Instant.now(), parameters);
+    }
+
+    SimulatedTransaction newTransaction(final String txId, final Instant timestamp, final List<String> parameters) {
+        return new SimulatedTransaction(this, txId, timestamp, parameters);
+    }
+
+    /**
+     * Writes a value directly, outside any transaction, e.g. to seed the ledger.
+     */
+    void put(final String key, final byte[] value) {
+        lock.writeLock().lock();
+        try {
+            state.put(key, new VersionedValue(value, ++committedTransactions));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the committed private data value, or null when there is none
+     */
+    byte[] getPrivate(final String collection, final String key) {
+        lock.readLock().lock();
+        try {
+            Map<String, byte[]> values = privateState.get(collection);
+            return values == null ? null : values.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    VersionedValue get(final String key) {
+        lock.readLock().lock();
+        try {
+            return state.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the committed entries of [startKey, endKey).
+     *
+     * @param startKey inclusive start
+     * @param endKey exclusive end, or null for no upper bound
+     * @param limit maximum number of entries, or 0 for no limit
+     */
+    List<Map.Entry<String, VersionedValue>> range(final String startKey, final String endKey, final int limit) {
+        lock.readLock().lock();
+        try {
+            return copy(view(startKey, endKey), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Validates the read set of a simulated transaction against the committed
+     * state and applies its writes if it is still valid.
+     */
+    ValidationCode commit(final SimulatedTransaction tx) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Long> read : tx.getReadSet().entrySet()) {
+                if (versionOf(read.getKey()) != read.getValue()) {
+                    return ValidationCode.MVCC_READ_CONFLICT;
+                }
+            }
+            for (SimulatedTransaction.RangeRead rangeRead : tx.getRangeReads()) {
+                if (!rangeUnchanged(rangeRead)) {
+                    return ValidationCode.PHANTOM_READ_CONFLICT;
+                }
+            }
+
+            long version = ++committedTransactions;
+            for (Map.Entry<String, byte[]> write : tx.getWriteSet().entrySet()) {
+                if (write.getValue() == null) {
+                    state.remove(write.getKey());
+                } else {
+                    state.put(write.getKey(), new VersionedValue(write.getValue(), version));
+                }
+            }
+            for (Map.Entry<String, Map<String, byte[]>> collection : tx.getPrivateWriteSet().entrySet()) {
+                Map<String, byte[]> values = privateState.computeIfAbsent(collection.getKey(), name -> new HashMap<>());
+                for (Map.Entry<String, byte[]> write : collection.getValue().entrySet()) {
+                    if (write.getValue() == null) {
+                        values.remove(write.getKey());
+                    } else {
+                        values.put(write.getKey(), write.getValue());
+                    }
+                }
+            }
+            return ValidationCode.VALID;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return state.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long versionOf(final String key) {
+        VersionedValue value = state.get(key);
+        return value == null ? ABSENT : value.version;
+    }
+
+    /**
+     * Re-executes a range read up to where the transaction stopped reading and
+     * checks that it sees exactly the same keys at the same versions.
+     */
+    private boolean rangeUnchanged(final SimulatedTransaction.RangeRead rangeRead) {
+        NavigableMap<String, VersionedValue> current;
+        if (rangeRead.isExhausted()) {
+            current = view(rangeRead.getStartKey(), rangeRead.getEndKey());
+        } else if (rangeRead.getKeys().isEmpty()) {
+            // nothing was consumed from the iterator, so there is nothing to compare
+            return true;
+        } else {
+            String lastKey = rangeRead.getKeys().get(rangeRead.getKeys().size() - 1);
+            current = state.subMap(rangeRead.getStartKey(), true, lastKey, true);
+        }
+
+        int i = 0;
+        for (Map.Entry<String, VersionedValue> entry : current.entrySet()) {
+            if (i >= rangeRead.getKeys().size()
+                    || !rangeRead.getKeys().get(i).equals(entry.getKey())
+                    || rangeRead.getVersions().get(i) != entry.getValue().version) {
+                return false;
+            }
+            i++;
+        }
+        return i == rangeRead.getKeys().size();
+    }
+
+    private NavigableMap<String, VersionedValue> view(final String startKey, final String endKey) {
+        return endKey == null ? state.tailMap(startKey, true) : state.subMap(startKey, true, endKey, false);
+    }
+
+    private static List<Map.Entry<String, VersionedValue>> copy(final NavigableMap<String, VersionedValue> view,
+                                                                final int limit) {
+        List<Map.Entry<String, VersionedValue>> entries = new ArrayList<>();
+        for (Map.Entry<String, VersionedValue> entry : view.entrySet()) {
+            if (limit > 0 && entries.size() == limit) {
+                break;
+            }
+            entries.add(new java.util.AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.protobuf.ByteString;
+import com.owlike.genson.Genson;
+import org.hyperledger.fabric.protos.msp.SerializedIdentity;
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * One transaction simulated against a {@link SimulatedLedger}, exposed to the
+ * contract as a mocked {@link ChaincodeStub}.
+ *
+ * As on an endorsing peer, reads always see the committed state (a transaction
+ * does not read its own writes), the version of each key read and the keys seen
+ * by each range query are recorded, and writes are only buffered until the
+ * transaction is committed. A transaction that ran a paginated query may not
+ * write, matching the peer's rule for SUBMIT transactions.
+ */
+final class SimulatedTransaction implements Answer<Object> {
+
+    /** Range queries over simple keys start here, keeping composite keys out of them. */
+    private static final String SIMPLE_KEY_START = "\u0001";
+
+    private static final String MAX_UNICODE_RUNE = new String(Character.toChars(Character.MAX_CODE_POINT));
+
+    private static final Genson GENSON = new Genson();
+
+    /** Every transaction is submitted by the same client, whose certificate is a test resource. */
+    private static final byte[] CREATOR = creator();
+
+    /** The keys a range query returned, in order, up to where the contract stopped iterating. */
+    static final class RangeRead {
+
+        private final String startKey;
+        private final String endKey;
+        private final List<String> keys = new ArrayList<>();
+        private final List<Long> versions = new ArrayList<>();
+        private boolean exhausted;
+        private boolean closed;
+
+        RangeRead(final String startKey, final String endKey) {
+            this.startKey = startKey;
+            this.endKey = endKey;
+        }
+
+        String getStartKey() {
+            return startKey;
+        }
+
+        String getEndKey() {
+            return endKey;
+        }
+
+        List<String> getKeys() {
+            return keys;
+        }
+
+        List<Long> getVersions() {
+            return versions;
+        }
+
+        boolean isExhausted() {
+            return exhausted;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+    }
+
+    private final SimulatedLedger ledger;
+    private final String txId;
+    private final Instant timestamp;
+    private final List<String> parameters;
+
+    private final Map<String, Long> readSet = new LinkedHashMap<>();
+    private final List<RangeRead> rangeReads = new ArrayList<>();
+    private final Map<String, byte[]> writeSet = new LinkedHashMap<>();
+    private final Map<String, Map<String, byte[]>> privateWriteSet = new LinkedHashMap<>();
+    private Map<String, byte[]> transientMap = Collections.emptyMap();
+    private List<byte[]> proposalArgs = Collections.emptyList();
+    private boolean paginatedQuery;
+
+    private final ChaincodeStub stub = mock(ChaincodeStub.class, this);
+
+    SimulatedTransaction(final SimulatedLedger ledger, final String txId, final Instant timestamp,
+                         final List<String> parameters) {
+        this.ledger = ledger;
+        this.txId = txId;
+        this.timestamp = timestamp;
+        this.parameters = parameters;
+    }
+
+    private static byte[] creator() {
+        try (InputStream pem = SimulatedTransaction.class.getResourceAsStream("/creator.pem")) {
+            return SerializedIdentity.newBuilder().setMspid("Org1MSP").setIdBytes(ByteString.readFrom(pem))
+                    .build().toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    ChaincodeStub getStub() {
+        return stub;
+    }
+
+    String getTxId() {
+        return txId;
+    }
+
+    Map<String, Long> getReadSet() {
+        return readSet;
+    }
+
+    List<RangeRead> getRangeReads() {
+        return rangeReads;
+    }
+
+    /** Buffered writes in order; a null value is a delete. */
+    Map<String, byte[]> getWriteSet() {
+        return writeSet;
+    }
+
+    /** Buffered private data writes per collection; a null value is a delete. */
+    Map<String, Map<String, byte[]>> getPrivateWriteSet() {
+        return privateWriteSet;
+    }
+
+    void setTransient(final Map<String, byte[]> transientMap) {
+        this.transientMap = transientMap;
+    }
+
+    /**
+     * @param args the raw proposal arguments, function name first
+     */
+    void setArgs(final List<byte[]> args) {
+        this.proposalArgs = args;
+    }
+
+    @Override
+    public Object answer(final InvocationOnMock invocation) throws Throwable {
+        Object[] args = invocation.getArguments();
+        switch (invocation.getMethod().getName()) {
+            case "getParameters":
+                return parameters;
+            case "getArgs":
+                return proposalArgs;
+            case "getFunction":
+                return proposalArgs.isEmpty() ? null : new String(proposalArgs.get(0), StandardCharsets.UTF_8);
+            case "getTxId":
+                return txId;
+            case "getTxTimestamp":
+                return timestamp;
+            case "getCreator":
+                return CREATOR;
+            case "getTransient":
+                return transientMap;
+            case "getPrivateData":
+                byte[] privateValue = ledger.getPrivate((String) args[0], (String) args[1]);
+                return privateValue == null ? new byte[0] : privateValue;
+            case "putPrivateData":
+                privateWrite((String) args[0], (String) args[1], (byte[]) args[2]);
+                return null;
+            case "delPrivateData":
+                privateWrite((String) args[0], (String) args[1], null);
+                return null;
+            case "getState":
+                return read((String) args[0]);
+            case "putState":
+                write((String) args[0], (byte[]) args[1]);
+                return null;
+            case "delState":
+                write((String) args[0], null);
+                return null;
+            case "getStringState":
+            case "putStringState":
+                return invocation.callRealMethod();
+            case "createCompositeKey":
+                // Mockito expands varargs, so the attributes follow the object type
+                return new CompositeKey((String) args[0], Arrays.copyOfRange(args, 1, args.length, String[].class));
+            case "splitCompositeKey":
+                return CompositeKey.parseCompositeKey((String) args[0]);
+            case "getStateByRange":
+                return range(simpleStart((String) args[0]), simpleEnd((String) args[1]));
+            case "getStateByRangeWithPagination":
+                return page(simpleStart((String) args[0]), simpleEnd((String) args[1]),
+                        (Integer) args[2], (String) args[3]);
+            case "getStateByPartialCompositeKey":
+                String prefix = partialKey(invocation.getMethod(), args);
+                return range(prefix, prefix + MAX_UNICODE_RUNE);
+            case "getStateByPartialCompositeKeyWithPagination":
+                String pagePrefix = args[0].toString();
+                return page(pagePrefix, pagePrefix + MAX_UNICODE_RUNE, (Integer) args[1], (String) args[2]);
+            case "getQueryResultWithPagination":
+                return queryPage((String) args[0], (Integer) args[1], (String) args[2]);
+            default:
+                return RETURNS_DEFAULTS.answer(invocation);
+        }
+    }
+
+    private byte[] read(final String key) {
+        SimulatedLedger.VersionedValue value = ledger.get(key);
+        readSet.putIfAbsent(key, value == null ? SimulatedLedger.ABSENT : value.version);
+        return value == null ? new byte[0] : value.value;
+    }
+
+    private void write(final String key, final byte[] value) {
+        if (paginatedQuery) {
+            throw new ChaincodeException(String.format(
+                    "txid [%s]: Transaction has already performed a paginated query. Writes are not allowed", txId));
+        }
+        // as on a peer, putting an empty value deletes the key
+        writeSet.put(key, value == null || value.length == 0 ? null : value);
+    }
+
+    private void privateWrite(final String collection, final String key, final byte[] value) {
+        if (paginatedQuery) {
+            throw new ChaincodeException(String.format(
+                    "txid [%s]: Transaction has already performed a paginated query. Writes are not allowed", txId));
+        }
+        privateWriteSet.computeIfAbsent(collection, name -> new LinkedHashMap<>())
+                .put(key, value == null || value.length == 0 ? null : value);
+    }
+
+    private QueryResultsIterator<KeyValue> range(final String startKey, final String endKey) {
+        RangeRead rangeRead = new RangeRead(startKey, endKey);
+        rangeReads.add(rangeRead);
+        return new RecordingIterator(ledger.range(startKey, endKey, 0), rangeRead);
+    }
+
+    /**
+     * Paginated queries return at most pageSize entries and the key to resume
+     * from as bookmark, empty once the range is exhausted.
+     */
+    private QueryResultsIteratorWithMetadata<KeyValue> page(final String startKey, final String endKey,
+                                                            final int pageSize, final String bookmark) {
+        paginatedQuery = true;
+        String from = bookmark == null || bookmark.isEmpty() ? startKey : bookmark;
+        List<Map.Entry<String, SimulatedLedger.VersionedValue>> entries = ledger.range(from, endKey, pageSize + 1);
+        String nextBookmark = "";
+        if (entries.size() > pageSize) {
+            nextBookmark = entries.remove(pageSize).getKey();
+        }
+
+        return withMetadata(new RecordingIterator(entries, new RangeRead(from, endKey)), nextBookmark,
+                entries.size());
+    }
+
+    /**
+     * Rich queries match the {@code $eq} conditions of a Mango selector against
+     * the top-level members of the committed JSON values, simple and composite
+     * keys alike, in key order. The bookmark is the key of the next match. That
+     * is all QueryIdentities sends; use_index is ignored.
+     */
+    @SuppressWarnings("unchecked")
+    private QueryResultsIteratorWithMetadata<KeyValue> queryPage(final String query, final int pageSize,
+                                                                 final String bookmark) {
+        paginatedQuery = true;
+        Map<String, Object> selector = (Map<String, Object>) GENSON.deserialize(query, Map.class).get("selector");
+        String from = bookmark == null ? "" : bookmark;
+        List<Map.Entry<String, SimulatedLedger.VersionedValue>> matches = new ArrayList<>();
+        String nextBookmark = "";
+        for (Map.Entry<String, SimulatedLedger.VersionedValue> entry : ledger.range(from, null, 0)) {
+            if (!matches(selector, entry.getValue().value)) {
+                continue;
+            }
+            if (matches.size() == pageSize) {
+                nextBookmark = entry.getKey();
+                break;
+            }
+            matches.add(entry);
+        }
+        return withMetadata(new RecordingIterator(matches, new RangeRead(from, null)), nextBookmark, matches.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean matches(final Map<String, Object> selector, final byte[] value) {
+        if (value.length == 0 || value[0] != '{') {
+            return false;
+        }
+        Map<String, Object> document;
+        try {
+            document = GENSON.deserialize(new String(value, StandardCharsets.UTF_8), Map.class);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        for (Map.Entry<String, Object> condition : selector.entrySet()) {
+            Object expected = ((Map<String, Object>) condition.getValue()).get("$eq");
+            if (!expected.equals(document.get(condition.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static QueryResultsIteratorWithMetadata<KeyValue> withMetadata(
+            final QueryResultsIterator<KeyValue> results, final String bookmark, final int fetchedCount) {
+        return mock(QueryResultsIteratorWithMetadata.class, invocation -> {
+            switch (invocation.getMethod().getName()) {
+                case "iterator":
+                    return results.iterator();
+                case "getMetadata":
+                    return metadata(invocation.getMethod().getReturnType(), bookmark, fetchedCount);
+                default:
+                    return RETURNS_DEFAULTS.answer(invocation);
+            }
+        });
+    }
+
+    /**
+     * Builds the QueryResponseMetadata protobuf reflectively, since its package
+     * differs between shim releases.
+     */
+    private static Object metadata(final Class<?> type, final String bookmark, final int fetchedCount)
+            throws ReflectiveOperationException {
+        Object builder = type.getMethod("newBuilder").invoke(null);
+        builder.getClass().getMethod("setBookmark", String.class).invoke(builder, bookmark);
+        builder.getClass().getMethod("setFetchedRecordsCount", int.class).invoke(builder, fetchedCount);
+        return builder.getClass().getMethod("build").invoke(builder);
+    }
+
+    private static String partialKey(final Method method, final Object[] args) {
+        if (method.getParameterTypes().length == 2) {
+            // getStateByPartialCompositeKey(String objectType, String... attributes), varargs expanded
+            return new CompositeKey((String) args[0], Arrays.copyOfRange(args, 1, args.length, String[].class))
+                    .toString();
+        }
+        return args[0].toString();
+    }
+
+    private static String simpleStart(final String startKey) {
+        return startKey == null || startKey.isEmpty() ? SIMPLE_KEY_START : startKey;
+    }
+
+    private static String simpleEnd(final String endKey) {
+        return endKey == null || endKey.isEmpty() ? null : endKey;
+    }
+
+    /** Iterates a copy of the committed range, recording each key as the contract consumes it. */
+    private static final class RecordingIterator implements QueryResultsIterator<KeyValue> {
+
+        private final List<Map.Entry<String, SimulatedLedger.VersionedValue>> entries;
+        private final RangeRead rangeRead;
+
+        RecordingIterator(final List<Map.Entry<String, SimulatedLedger.VersionedValue>> entries,
+                          final RangeRead rangeRead) {
+            this.entries = entries;
+            this.rangeRead = rangeRead;
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return new Iterator<KeyValue>() {
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    if (position < entries.size()) {
+                        return true;
+                    }
+                    rangeRead.exhausted = true;
+                    return false;
+                }
+
+                @Override
+                public KeyValue next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Map.Entry<String, SimulatedLedger.VersionedValue> entry = entries.get(position++);
+                    rangeRead.keys.add(entry.getKey());
+                    rangeRead.versions.add(entry.getValue().version);
+                    return new StoredKeyValue(entry.getKey(), entry.getValue().value);
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            rangeRead.closed = true;
+        }
+    }
+
+    private static final class StoredKeyValue implements KeyValue {
+
+        private final String key;
+        private final byte[] value;
+
+        StoredKeyValue(final String key, final byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SimulatedTransaction{" +
+                "txId='" + txId + '\'' +
+                ", reads=" + readSet.size() +
+                ", rangeReads=" + rangeReads.size() +
+                ", writes=" + writeSet.size() +
+                '}';
+    }
+}
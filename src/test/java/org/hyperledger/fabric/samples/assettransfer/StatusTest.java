@@ -0,0 +1,354 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class StatusTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private static final String DEVICE = "lsdi:ufma:br/device/1";
+
+    private static final String NEW_DEVICE = "lsdi:ufma:br/device/2";
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private final TestKeys orgKeys = new TestKeys("org");
+
+    private final TestKeys deviceKeys = new TestKeys("device");
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(ORG, orgKeys);
+        runner.createECIdentity(DEVICE, ORG, deviceKeys, orgKeys);
+    }
+
+    private String statusPayload(final String operation, final String id, final String status) {
+        return runner.evaluate(ctx -> Approval.of(ctx.getStub(), operation, id).with("status", status)
+                .nonce(runner.nonce()).payload());
+    }
+
+    private Identity changeStatus(final String operation, final String id, final ControllerSignature signature) {
+        String signaturesJSON = genson.serialize(Collections.singletonList(signature));
+        return runner.submit(ctx -> {
+            switch (operation) {
+                case "RevokeIdentity":
+                    return runner.getContract().RevokeIdentity(ctx, id, signaturesJSON);
+                case "SuspendIdentity":
+                    return runner.getContract().SuspendIdentity(ctx, id, signaturesJSON);
+                default:
+                    return runner.getContract().ReinstateIdentity(ctx, id, signaturesJSON);
+            }
+        });
+    }
+
+    private Identity changeStatusAsController(final String operation, final String id, final String controller,
+                                              final TestKeys controllerKeys, final String status) {
+        return changeStatus(operation, id, new ControllerSignature(controller,
+                controllerKeys.sign(statusPayload(operation, id, status))));
+    }
+
+    private Identity revoke(final String id, final String controller, final TestKeys controllerKeys) {
+        return changeStatusAsController("RevokeIdentity", id, controller, controllerKeys, "revoked");
+    }
+
+    private Identity suspend(final String id, final String controller, final TestKeys controllerKeys) {
+        return changeStatusAsController("SuspendIdentity", id, controller, controllerKeys, "suspended");
+    }
+
+    private IdentityStatus status(final String id) {
+        String statuses = runner.evaluate(ctx -> runner.getContract().GetStatus(ctx, id));
+        return genson.deserialize(statuses, IdentityStatus[].class)[0];
+    }
+
+    private static boolean isStatusListKey(final String key) {
+        return key.startsWith(new CompositeKey(StatusList.LANE_KEY).toString())
+                || key.startsWith(new CompositeKey(StatusList.INDEX_KEY).toString())
+                || key.startsWith(new CompositeKey(StatusList.CHUNK_KEY).toString());
+    }
+
+    private String batchEntry(final String id, final String controller, final TestKeys controllerKeys) {
+        return genson.serialize(Collections.singletonList(new ECIdentityRequest(ContractRunner.CONTEXT, id,
+                controller, "EC", deviceKeys.getKid(), "ES256", "P-256", deviceKeys.getX(), deviceKeys.getY(),
+                controllerKeys.sign(runner.creationPayload("CreateECIdentitiesBatch", id, controller,
+                        deviceKeys.publicKey())), null)));
+    }
+
+    private List<BatchEntryResult> createBatch(final String requestsJSON) {
+        String results = runner.submit(ctx -> runner.getContract().CreateECIdentitiesBatch(ctx, requestsJSON));
+        return Arrays.asList(genson.deserialize(results, BatchEntryResult[].class));
+    }
+
+    @Nested
+    class ChangeStatus {
+
+        @Test
+        public void whenRevokedByTheController() {
+            Identity revoked = revoke(DEVICE, ORG, orgKeys);
+
+            assertThat(revoked.getStatus()).isEqualTo("revoked");
+            Identity read = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, DEVICE));
+            assertThat(read.getStatus()).isEqualTo("revoked");
+            assertThat(status(DEVICE).getStatus()).isEqualTo("revoked");
+        }
+
+        @Test
+        public void whenSuspendedAndReinstated() {
+            suspend(DEVICE, ORG, orgKeys);
+            assertThat(status(DEVICE).getStatus()).isEqualTo("suspended");
+
+            Identity reinstated = changeStatusAsController("ReinstateIdentity", DEVICE, ORG, orgKeys, "active");
+
+            assertThat(reinstated.getStatus()).isEqualTo("active");
+            assertThat(status(DEVICE).getStatus()).isEqualTo("active");
+        }
+
+        @Test
+        public void whenSignatureIsForAnotherStatus() {
+            String payload = statusPayload("RevokeIdentity", DEVICE, "suspended");
+
+            Throwable thrown = catchThrowable(() -> changeStatus("RevokeIdentity", DEVICE,
+                    new ControllerSignature(ORG, orgKeys.sign(payload))));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+            assertThat(status(DEVICE).getStatus()).isEqualTo("active");
+        }
+
+        @Test
+        public void whenSignatureIsOverTheIdOnly() {
+            Throwable thrown = catchThrowable(() -> changeStatus("RevokeIdentity", DEVICE,
+                    new ControllerSignature(ORG, orgKeys.sign(DEVICE))));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSignatureIsReplayed() {
+            ControllerSignature signature = new ControllerSignature(ORG,
+                    orgKeys.sign(statusPayload("SuspendIdentity", DEVICE, "suspended")));
+            changeStatus("SuspendIdentity", DEVICE, signature);
+            changeStatusAsController("ReinstateIdentity", DEVICE, ORG, orgKeys, "active");
+
+            Throwable thrown = catchThrowable(() -> changeStatus("SuspendIdentity", DEVICE, signature));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+            assertThat(status(DEVICE).getStatus()).isEqualTo("active");
+        }
+
+        @Test
+        public void whenRevokedIdentityIsReinstated() {
+            revoke(DEVICE, ORG, orgKeys);
+
+            Throwable thrown = catchThrowable(() -> changeStatusAsController("ReinstateIdentity", DEVICE, ORG,
+                    orgKeys, "active"));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+    }
+
+    @Nested
+    class LazyAllocation {
+
+        @Test
+        public void createWritesNoStatusListEntry() {
+            runner.createECIdentity(NEW_DEVICE, ORG, deviceKeys, orgKeys);
+            assertThat(runner.getLast().getWriteSet().keySet()).noneMatch(StatusTest::isStatusListKey);
+
+            createBatch(batchEntry("lsdi:ufma:br/device/3", ORG, orgKeys));
+            assertThat(runner.getLast().getWriteSet().keySet()).noneMatch(StatusTest::isStatusListKey);
+        }
+
+        @Test
+        public void firstStatusChangeAllocatesTheIndex() {
+            assertThat(status(DEVICE).getIndex()).isEqualTo(-1);
+
+            suspend(DEVICE, ORG, orgKeys);
+
+            assertThat(runner.getLast().getWriteSet().keySet())
+                    .anyMatch(key -> key.startsWith(new CompositeKey(StatusList.INDEX_KEY).toString()));
+            assertThat(status(DEVICE).getIndex()).isGreaterThanOrEqualTo(0);
+        }
+
+        @Test
+        public void whenNeverRevokedStatusIsActive() {
+            IdentityStatus status = status(DEVICE);
+
+            assertThat(status.getStatus()).isEqualTo("active");
+            assertThat(status.getIndex()).isEqualTo(-1);
+        }
+
+        @Test
+        public void whenIdentityDoesNotExistStatusIsUnknown() {
+            IdentityStatus status = status(NEW_DEVICE);
+
+            assertThat(status.getStatus()).isEqualTo(IdentityStatus.UNKNOWN);
+            assertThat(status.getIndex()).isEqualTo(-1);
+        }
+    }
+
+    @Nested
+    class UnusableController {
+
+        @Test
+        public void whenRevokedItCannotCreate() {
+            revoke(ORG, ORG, orgKeys);
+
+            Throwable thrown = catchThrowable(() -> runner.createECIdentity(NEW_DEVICE, ORG, deviceKeys, orgKeys));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasMessage("Controller " + ORG + " is revoked");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSuspendedItCannotCreateInABatch() {
+            suspend(ORG, ORG, orgKeys);
+
+            List<BatchEntryResult> results = createBatch(batchEntry(NEW_DEVICE, ORG, orgKeys));
+
+            assertThat(results).extracting(BatchEntryResult::getStatus).containsExactly(BatchEntryResult.REJECTED);
+            assertThat(results.get(0).getError()).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenActiveItCreatesInABatch() {
+            List<BatchEntryResult> results = createBatch(batchEntry(NEW_DEVICE, ORG, orgKeys));
+
+            assertThat(results).extracting(BatchEntryResult::getStatus).containsExactly(BatchEntryResult.CREATED);
+        }
+
+        @Test
+        public void whenPastValidToBeforeTheSweep() {
+            runner.setNow(runner.getNow().plus(Duration.ofDays(366)));
+
+            Throwable thrown = catchThrowable(() -> runner.createECIdentity(NEW_DEVICE, ORG, deviceKeys, orgKeys));
+
+            assertThat(thrown).hasMessage("Controller " + ORG + " is expired");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenRevokedItCannotApprove() {
+            revoke(ORG, ORG, orgKeys);
+
+            Throwable thrown = catchThrowable(() -> suspend(DEVICE, ORG, orgKeys));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+    }
+
+    @Nested
+    class GetStatusListChunk {
+
+        private String chunk(final int chunk) {
+            return runner.evaluate(ctx -> runner.getContract().GetStatusListChunk(ctx, chunk));
+        }
+
+        /** Reads an entry the way a verifier caching chunks would. */
+        private StatusList.Status entry(final String chunk, final int index) {
+            byte[] bitmap = StatusList.decompress(Base64.getUrlDecoder().decode(chunk));
+            int slot = index % StatusList.CHUNK_SIZE;
+            return StatusList.Status.values()[(bitmap[slot / 4] >> ((slot % 4) * 2)) & 0x3];
+        }
+
+        @Test
+        public void whenEveryEntryIsActive() {
+            assertThat(chunk(0)).isEmpty();
+        }
+
+        @Test
+        public void holdsTheStatusOfEachIndexedIdentity() {
+            suspend(DEVICE, ORG, orgKeys);
+            runner.createECIdentity(NEW_DEVICE, ORG, deviceKeys, orgKeys);
+            revoke(NEW_DEVICE, ORG, orgKeys);
+            int suspended = status(DEVICE).getIndex();
+            int revoked = status(NEW_DEVICE).getIndex();
+
+            assertThat(entry(chunk(suspended / StatusList.CHUNK_SIZE), suspended))
+                    .isEqualTo(StatusList.Status.SUSPENDED);
+            assertThat(entry(chunk(revoked / StatusList.CHUNK_SIZE), revoked)).isEqualTo(StatusList.Status.REVOKED);
+        }
+
+        @Test
+        public void whenChunkIsNegative() {
+            Throwable thrown = catchThrowable(() -> chunk(-1));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasMessage("Invalid status list chunk -1");
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+    }
+
+    @Nested
+    class BulkReaders {
+
+        @BeforeEach
+        public void setUp() {
+            revoke(DEVICE, ORG, orgKeys);
+        }
+
+        private String statusIn(final List<Map<String, Object>> identities, final String id) {
+            for (Map<String, Object> identity : identities) {
+                if (id.equals(identity.get("identifier"))) {
+                    return (String) identity.get("status");
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Map<String, Object>> records(final String page) {
+            return (List<Map<String, Object>>) genson.deserialize(page, Map.class).get("records");
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Map<String, Object>> array(final String json) {
+            return genson.deserialize(json, List.class);
+        }
+
+        @Test
+        public void getAllIdentitiesShowsTheListedStatus() {
+            String all = runner.evaluate(ctx -> runner.getContract().GetAllIdentities(ctx));
+            String page = runner.evaluate(ctx -> runner.getContract().GetAllIdentitiesWithPagination(ctx, 10, ""));
+
+            assertThat(statusIn(array(all), DEVICE)).isEqualTo("revoked");
+            assertThat(statusIn(array(all), ORG)).isEqualTo("active");
+            assertThat(statusIn(records(page), DEVICE)).isEqualTo("revoked");
+        }
+
+        @Test
+        public void getIdentitiesByControllerShowsTheListedStatus() {
+            String all = runner.evaluate(ctx -> runner.getContract().GetIdentitiesByController(ctx, ORG));
+            String page = runner.evaluate(ctx -> runner.getContract().GetIdentitiesByControllerWithPagination(ctx,
+                    ORG, 10, ""));
+
+            assertThat(statusIn(array(all), DEVICE)).isEqualTo("revoked");
+            assertThat(statusIn(records(page), DEVICE)).isEqualTo("revoked");
+        }
+    }
+}
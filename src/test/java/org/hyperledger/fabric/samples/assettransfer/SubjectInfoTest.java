@@ -0,0 +1,308 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class SubjectInfoTest {
+
+    private static final String ORG = "lsdi:org/a";
+
+    private static final String DEVICE = "lsdi:ufma:br/device/1";
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private final TestKeys orgKeys = new TestKeys("org");
+
+    private final TestKeys deviceKeys = new TestKeys("device");
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(ORG, orgKeys, "nome:Org A");
+        runner.createECIdentity(DEVICE, ORG, deviceKeys, orgKeys, "nome:Device 1", "sala:101");
+    }
+
+    private static Map<String, String> changes(final String... nameValues) {
+        Map<String, String> changes = new HashMap<>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            changes.put(nameValues[i], nameValues[i + 1]);
+        }
+        return changes;
+    }
+
+    private String updatePayload(final String id, final Map<String, String> changes) {
+        return runner.evaluate(ctx -> Approval.of(ctx.getStub(), "UpdateSubjectInfo", id)
+                .with("changesHash", Approval.hash(changes)).nonce(runner.nonce()).payload());
+    }
+
+    private void updateSubjectInfo(final String id, final String changesJSON, final ControllerSignature signature) {
+        String signaturesJSON = genson.serialize(Collections.singletonList(signature));
+        runner.submit(ctx -> {
+            runner.getContract().UpdateSubjectInfo(ctx, id, changesJSON, signaturesJSON);
+            return null;
+        });
+    }
+
+    /**
+     * Simulates an update as the controller in a new transaction, without committing it.
+     */
+    private SimulatedTransaction simulateUpdate(final String id, final Map<String, String> changes) {
+        String changesJSON = genson.serialize(changes);
+        String signaturesJSON = genson.serialize(Collections.singletonList(new ControllerSignature(ORG,
+                orgKeys.sign(updatePayload(id, changes)))));
+        SimulatedTransaction tx = runner.newTransaction(Collections.emptyList());
+        runner.run(tx, ctx -> {
+            runner.getContract().UpdateSubjectInfo(ctx, id, changesJSON, signaturesJSON);
+            return null;
+        });
+        return tx;
+    }
+
+    private SimulatedTransaction simulateUpdate(final Map<String, String> changes) {
+        return simulateUpdate(DEVICE, changes);
+    }
+
+    private void updateAsController(final Map<String, String> changes) {
+        updateSubjectInfo(DEVICE, genson.serialize(changes), new ControllerSignature(ORG,
+                orgKeys.sign(updatePayload(DEVICE, changes))));
+    }
+
+    private Identity read(final String id) {
+        return runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, id));
+    }
+
+    @Nested
+    class Hash {
+
+        @Test
+        public void isTheSha256OfTheCanonicalJson() throws Exception {
+            String canonical = "{\"a\":null,\"b\":\"2\",\"\u00e7\":\"\\\"\"}";
+            String expected = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8)));
+
+            assertThat(Approval.hash(changes("b", "2", "\u00e7", "\"", "a", null))).isEqualTo(expected);
+        }
+    }
+
+    @Nested
+    class UpdateSubjectInfo {
+
+        @Test
+        public void whenSignedByTheController() {
+            updateAsController(changes("sala", "102", "andar", "1"));
+
+            assertThat(read(DEVICE).getSubjectInfo()).isEqualTo(changes("nome", "Device 1",
+                    "sala", "102", "andar", "1"));
+        }
+
+        @Test
+        public void whenSignedWithItsOwnKey() {
+            Map<String, String> changes = changes("sala", "103");
+
+            updateSubjectInfo(DEVICE, genson.serialize(changes), new ControllerSignature(DEVICE,
+                    deviceKeys.sign(updatePayload(DEVICE, changes))));
+
+            assertThat(read(DEVICE).getSubjectInfo()).containsEntry("sala", "103");
+        }
+
+        @Test
+        public void whenAnAttributeIsRemoved() {
+            Map<String, String> changes = changes("sala", null);
+
+            updateSubjectInfo(DEVICE, "{\"sala\":null}", new ControllerSignature(ORG,
+                    orgKeys.sign(updatePayload(DEVICE, changes))));
+
+            assertThat(read(DEVICE).getSubjectInfo()).isEqualTo(changes("nome", "Device 1"));
+        }
+
+        @Test
+        public void whenSignatureIsForOtherChanges() {
+            String payload = updatePayload(DEVICE, changes("sala", "102"));
+
+            Throwable thrown = catchThrowable(() -> updateSubjectInfo(DEVICE, "{\"sala\":\"666\"}",
+                    new ControllerSignature(ORG, orgKeys.sign(payload))));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+            assertThat(read(DEVICE).getSubjectInfo()).containsEntry("sala", "101");
+        }
+
+        @Test
+        public void whenSignatureIsOverTheIdOnly() {
+            Throwable thrown = catchThrowable(() -> updateSubjectInfo(DEVICE, "{\"sala\":\"102\"}",
+                    new ControllerSignature(ORG, orgKeys.sign(DEVICE))));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSignatureIsReplayed() {
+            Map<String, String> changes = changes("sala", "102");
+            ControllerSignature signature = new ControllerSignature(ORG,
+                    orgKeys.sign(updatePayload(DEVICE, changes)));
+            updateSubjectInfo(DEVICE, genson.serialize(changes), signature);
+            updateAsController(changes("sala", "103"));
+
+            Throwable thrown = catchThrowable(() -> updateSubjectInfo(DEVICE, genson.serialize(changes),
+                    signature));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+            assertThat(read(DEVICE).getSubjectInfo()).containsEntry("sala", "103");
+        }
+
+        @Test
+        public void whenOtherAttributesAreUpdatedConcurrently() {
+            updateAsController(changes("sala", "102"));
+            SimulatedTransaction first = simulateUpdate(changes("sala", "103"));
+            SimulatedTransaction second = simulateUpdate(changes("andar", "2"));
+
+            assertThat(runner.getLedger().commit(first)).isEqualTo(SimulatedLedger.ValidationCode.VALID);
+            assertThat(runner.getLedger().commit(second)).isEqualTo(SimulatedLedger.ValidationCode.VALID);
+            assertThat(read(DEVICE).getSubjectInfo()).containsEntry("sala", "103").containsEntry("andar", "2");
+        }
+
+        @Test
+        public void whenTheFirstAttributesAreAddedConcurrently() {
+            runner.createECIdentity("lsdi:ufma:br/device/2", ORG, new TestKeys("device"), orgKeys);
+            SimulatedTransaction first = simulateUpdate("lsdi:ufma:br/device/2", changes("sala", "201"));
+            SimulatedTransaction second = simulateUpdate("lsdi:ufma:br/device/2", changes("andar", "2"));
+
+            // both mark the core record as having attribute keys
+            assertThat(runner.getLedger().commit(first)).isEqualTo(SimulatedLedger.ValidationCode.VALID);
+            assertThat(runner.getLedger().commit(second))
+                    .isEqualTo(SimulatedLedger.ValidationCode.MVCC_READ_CONFLICT);
+            assertThat(read("lsdi:ufma:br/device/2").getSubjectInfo()).isEqualTo(changes("sala", "201"));
+        }
+
+        @Test
+        public void whenTheKeyIsRotatedConcurrently() {
+            updateAsController(changes("sala", "102"));
+            SimulatedTransaction update = simulateUpdate(changes("sala", "103"));
+            TestKeys newKeys = new TestKeys("device");
+            String rotationPayload = runner.evaluate(ctx -> Approval.of(ctx.getStub(), "RotateKey", DEVICE)
+                    .with("keyThumbprint", newKeys.publicKey().thumbprint()).nonce(runner.nonce()).payload());
+            String publicKeyJwkJSON = genson.serialize(newKeys.publicKey().toJwk());
+            String signaturesJSON = genson.serialize(Collections.singletonList(new ControllerSignature(ORG,
+                    orgKeys.sign(rotationPayload))));
+            runner.submit(ctx -> runner.getContract().RotateKey(ctx, DEVICE, publicKeyJwkJSON, signaturesJSON));
+
+            // the update read the core record that the rotation rewrote
+            assertThat(runner.getLedger().commit(update))
+                    .isEqualTo(SimulatedLedger.ValidationCode.MVCC_READ_CONFLICT);
+            assertThat(read(DEVICE).getSubjectInfo()).containsEntry("sala", "102");
+        }
+
+        @Test
+        public void whenChangesAreEmpty() {
+            Throwable thrown = catchThrowable(() -> updateSubjectInfo(DEVICE, "{}",
+                    new ControllerSignature(ORG, orgKeys.sign(updatePayload(DEVICE, changes())))));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_REQUEST");
+        }
+    }
+
+    /**
+     * Pins the bulk readers to the view of ReadIdentity, subjectInfo included.
+     */
+    @Nested
+    class BulkReaders {
+
+        @BeforeEach
+        public void setUp() {
+            updateAsController(changes("sala", "102"));
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<String, Object> asRead(final String id) {
+            return genson.deserialize(new String(IdentityJsonCodec.encode(read(id)), StandardCharsets.UTF_8),
+                    Map.class);
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Map<String, Object>> array(final String json) {
+            return genson.deserialize(json, List.class);
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Map<String, Object>> records(final String page) {
+            return (List<Map<String, Object>>) genson.deserialize(page, Map.class).get("records");
+        }
+
+        @Test
+        public void getAllIdentitiesReturnsWhatReadIdentityReturns() {
+            String all = runner.evaluate(ctx -> runner.getContract().GetAllIdentities(ctx));
+            String page = runner.evaluate(ctx -> runner.getContract().GetAllIdentitiesWithPagination(ctx, 10, ""));
+
+            assertThat(array(all)).containsExactlyInAnyOrder(asRead(ORG), asRead(DEVICE));
+            assertThat(records(page)).containsExactlyInAnyOrder(asRead(ORG), asRead(DEVICE));
+        }
+
+        @Test
+        public void whenTheFirstAttributesAreAddedAfterCreation() {
+            TestKeys keys = new TestKeys("device");
+            runner.createECIdentity("lsdi:ufma:br/device/2", ORG, keys, orgKeys);
+            Map<String, String> changes = changes("sala", "201");
+            updateSubjectInfo("lsdi:ufma:br/device/2", genson.serialize(changes), new ControllerSignature(ORG,
+                    orgKeys.sign(updatePayload("lsdi:ufma:br/device/2", changes))));
+
+            String all = runner.evaluate(ctx -> runner.getContract().GetAllIdentities(ctx));
+
+            assertThat(array(all)).contains(asRead("lsdi:ufma:br/device/2"));
+            assertThat(asRead("lsdi:ufma:br/device/2").get("subjectInfo")).isEqualTo(changes);
+        }
+
+        @Test
+        public void whenTheRecordPredatesTheAttributeKeysFlag() {
+            byte[] stored = runner.getLedger().get(DEVICE).value;
+            runner.getLedger().put(DEVICE, IdentityJsonCodec.encode(IdentityJsonCodec.decode(stored)
+                    .withAttributeKeys(null)));
+
+            String all = runner.evaluate(ctx -> runner.getContract().GetAllIdentities(ctx));
+
+            assertThat(array(all)).contains(asRead(DEVICE));
+            assertThat(asRead(DEVICE).get("subjectInfo")).isEqualTo(changes("nome", "Device 1", "sala", "102"));
+        }
+
+        @Test
+        public void getIdentitiesByControllerReturnsWhatReadIdentityReturns() {
+            String all = runner.evaluate(ctx -> runner.getContract().GetIdentitiesByController(ctx, ORG));
+            String page = runner.evaluate(ctx -> runner.getContract().GetIdentitiesByControllerWithPagination(ctx,
+                    ORG, 10, ""));
+
+            assertThat(array(all)).containsExactlyInAnyOrder(asRead(ORG), asRead(DEVICE));
+            assertThat(records(page)).containsExactlyInAnyOrder(asRead(ORG), asRead(DEVICE));
+        }
+
+        @Test
+        public void getIdentitiesByControllerOfAnUnknownController() {
+            String all = runner.evaluate(ctx -> runner.getContract().GetIdentitiesByController(ctx,
+                    "lsdi:org/unknown"));
+
+            assertThat(array(all)).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Base64;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.ECDSASigner;
+
+/**
+ * A fresh P-256 key for tests, with its JWK form and compact ES256 signatures.
+ */
+final class TestKeys {
+
+    private final String kid;
+
+    private final KeyPair keyPair;
+
+    TestKeys(final String kid) {
+        this.kid = kid;
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            this.keyPair = generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    String getKid() {
+        return kid;
+    }
+
+    String getX() {
+        return unsigned(((ECPublicKey) keyPair.getPublic()).getW().getAffineX(), 32);
+    }
+
+    String getY() {
+        return unsigned(((ECPublicKey) keyPair.getPublic()).getW().getAffineY(), 32);
+    }
+
+    ECWrapper publicKey() {
+        return new ECWrapper(ECWrapper.KTY, PublicKeyWrapper.USE_SIGNATURE, "P-256", kid, "ES256", getX(), getY());
+    }
+
+    /**
+     * @return the compact ES256 JWS of the payload
+     */
+    String sign(final String payload) {
+        try {
+            JWSObject jwsObject = new JWSObject(new JWSHeader.Builder(JWSAlgorithm.ES256).keyID(kid).build(),
+                    new Payload(payload));
+            jwsObject.sign(new ECDSASigner((ECPrivateKey) keyPair.getPrivate()));
+            return jwsObject.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * base64url of the unsigned big-endian value, left-padded to length bytes.
+     */
+    static String unsigned(final BigInteger value, final int length) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (bytes.length < length) {
+            byte[] padded = new byte[length];
+            System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+            bytes = padded;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
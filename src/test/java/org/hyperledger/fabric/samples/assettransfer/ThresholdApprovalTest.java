@@ -0,0 +1,301 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.owlike.genson.Genson;
+
+public final class ThresholdApprovalTest {
+
+    private static final String ORG_A = "lsdi:org/a";
+
+    private static final String ORG_B = "lsdi:org/b";
+
+    private static final String ORG_C = "lsdi:org/c";
+
+    private static final String ORG_D = "lsdi:org/d";
+
+    private static final String DEVICE = "lsdi:ufma:br/device/1";
+
+    private final Genson genson = new Genson();
+
+    private final ContractRunner runner = new ContractRunner();
+
+    private final TestKeys keysA = new TestKeys("a");
+
+    private final TestKeys keysB = new TestKeys("b");
+
+    private final TestKeys keysC = new TestKeys("c");
+
+    private final TestKeys keysD = new TestKeys("d");
+
+    private final TestKeys deviceKeys = new TestKeys("device");
+
+    private static String errorCode(final Throwable thrown) {
+        return new String(((ChaincodeException) thrown).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        runner.createSelfSigned(ORG_A, keysA);
+        runner.createSelfSigned(ORG_B, keysB);
+        runner.createSelfSigned(ORG_C, keysC);
+        runner.createSelfSigned(ORG_D, keysD);
+    }
+
+    private static ControllerSet controllerSet(final int threshold, final String... controllers) {
+        return new ControllerSet(Arrays.asList(controllers), threshold);
+    }
+
+    private Approval approval(final String operation, final String id) {
+        return runner.evaluate(ctx -> Approval.of(ctx.getStub(), operation, id).nonce(runner.nonce()));
+    }
+
+    private String controllerSetPayload(final String operation, final String id, final ControllerSet controllerSet) {
+        ControllerSet canonical = controllerSet.canonical();
+        return approval(operation, id).with("controllers", canonical.getControllers())
+                .with("threshold", canonical.getThreshold()).payload();
+    }
+
+    private String creationPayload(final String id, final ControllerSet controllerSet, final TestKeys keys) {
+        ControllerSet canonical = controllerSet.canonical();
+        return approval("CreateThresholdIdentity", id).with("controllers", canonical.getControllers())
+                .with("threshold", canonical.getThreshold())
+                .with("keyThumbprint", keys.publicKey().thumbprint()).payload();
+    }
+
+    private static ControllerSignature signature(final String controller, final TestKeys keys, final String payload) {
+        return new ControllerSignature(controller, keys.sign(payload));
+    }
+
+    private Identity createThreshold(final ControllerSet controllerSet, final ControllerSignature... signatures) {
+        String request = genson.serialize(new ThresholdIdentityRequest(ContractRunner.CONTEXT, DEVICE,
+                deviceKeys.publicKey().toJwk(), Collections.singletonMap("nome", "Device 1"), controllerSet,
+                Arrays.asList(signatures)));
+        return runner.submit(ctx -> runner.getContract().CreateThresholdIdentity(ctx, request));
+    }
+
+    private Identity updateControllerSet(final String id, final ControllerSet controllerSet,
+                                         final ControllerSignature... signatures) {
+        String controllerSetJSON = genson.serialize(controllerSet);
+        String signaturesJSON = genson.serialize(Arrays.asList(signatures));
+        return runner.submit(ctx -> runner.getContract().UpdateControllerSet(ctx, id, controllerSetJSON,
+                signaturesJSON));
+    }
+
+    private boolean isUsed(final String payload) {
+        return runner.evaluate(ctx -> runner.getContract().IsApprovalUsed(ctx, payload));
+    }
+
+    @Nested
+    class Payload {
+
+        @Test
+        public void isCanonicalJson() {
+            ControllerSet canonical = controllerSet(2, ORG_C, ORG_A, ORG_B).canonical();
+            String payload = approval("UpdateControllerSet", DEVICE).with("controllers", canonical.getControllers())
+                    .with("threshold", canonical.getThreshold()).nonce("7f3a").payload();
+
+            assertThat(payload).isEqualTo("{\"controllers\":[\"lsdi:org/a\",\"lsdi:org/b\",\"lsdi:org/c\"],"
+                    + "\"id\":\"lsdi:ufma:br/device/1\",\"nonce\":\"7f3a\",\"operation\":\"UpdateControllerSet\","
+                    + "\"threshold\":2}");
+        }
+
+        @Test
+        public void matchesOnlyTheSamePayload() {
+            Approval approval = approval("RevokeIdentity", DEVICE);
+
+            assertThat(approval.isPayloadOf(keysA.sign(approval.payload()))).isTrue();
+            assertThat(approval.isPayloadOf(keysA.sign(approval.payload() + " "))).isFalse();
+            assertThat(approval.isPayloadOf(keysA.sign(DEVICE))).isFalse();
+            assertThat(approval.isPayloadOf("not a JWS")).isFalse();
+        }
+
+        @Test
+        public void takesTheNonceOfTheSignature() {
+            Approval approval = approval("RevokeIdentity", DEVICE);
+            String otherNonce = approval("RevokeIdentity", DEVICE).payload();
+
+            assertThat(approval.isPayloadOf(keysA.sign(otherNonce))).isTrue();
+            assertThat(approval.isPayloadOf(keysA.sign(approval("RevokeIdentity", DEVICE).nonce("").payload())))
+                    .isFalse();
+            assertThat(approval.isPayloadOf(keysA.sign(approval("SuspendIdentity", DEVICE).payload()))).isFalse();
+        }
+    }
+
+    @Nested
+    class CreateThresholdIdentity {
+
+        private final ControllerSet twoOfThree = controllerSet(2, ORG_A, ORG_B, ORG_C);
+
+        @Test
+        public void whenKControllersSigned() {
+            String payload = creationPayload(DEVICE, twoOfThree, deviceKeys);
+
+            Identity identity = createThreshold(twoOfThree, signature(ORG_C, keysC, payload),
+                    signature(ORG_A, keysA, payload));
+
+            assertThat(identity.getControlledBy()).isEqualTo(ORG_A);
+            assertThat(identity.getControllerSet()).isEqualTo(twoOfThree.canonical());
+            assertThat(isUsed(payload)).isTrue();
+        }
+
+        @Test
+        public void whenOneShortOfK() {
+            String payload = creationPayload(DEVICE, twoOfThree, deviceKeys);
+
+            Throwable thrown = catchThrowable(() -> createThreshold(twoOfThree, signature(ORG_B, keysB, payload)));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenTheSameControllerSignsTwice() {
+            String payload = creationPayload(DEVICE, twoOfThree, deviceKeys);
+
+            Throwable thrown = catchThrowable(() -> createThreshold(twoOfThree, signature(ORG_A, keysA, payload),
+                    signature(ORG_A, keysA, payload)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenASignerIsNotInTheSet() {
+            String payload = creationPayload(DEVICE, twoOfThree, deviceKeys);
+
+            Throwable thrown = catchThrowable(() -> createThreshold(twoOfThree, signature(ORG_A, keysA, payload),
+                    signature(ORG_D, keysD, payload)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSignaturesAreForAnotherKey() {
+            String payload = creationPayload(DEVICE, twoOfThree, new TestKeys("device"));
+
+            Throwable thrown = catchThrowable(() -> createThreshold(twoOfThree, signature(ORG_A, keysA, payload),
+                    signature(ORG_B, keysB, payload)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSignaturesAreForAnotherThreshold() {
+            String payload = creationPayload(DEVICE, controllerSet(1, ORG_A, ORG_B, ORG_C), deviceKeys);
+
+            Throwable thrown = catchThrowable(() -> createThreshold(twoOfThree, signature(ORG_A, keysA, payload),
+                    signature(ORG_B, keysB, payload)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSignaturesAreOverTheIdOnly() {
+            Throwable thrown = catchThrowable(() -> createThreshold(twoOfThree, signature(ORG_A, keysA, DEVICE),
+                    signature(ORG_B, keysB, DEVICE)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+    }
+
+    @Nested
+    class UpdateControllerSet {
+
+        private final ControllerSet twoOfThree = controllerSet(2, ORG_A, ORG_B, ORG_C);
+
+        private final ControllerSet oneOfThree = controllerSet(1, ORG_A, ORG_B, ORG_C);
+
+        @BeforeEach
+        public void setUp() {
+            runner.createECIdentity(DEVICE, ORG_A, deviceKeys, keysA);
+            String payload = controllerSetPayload("UpdateControllerSet", DEVICE, twoOfThree);
+            updateControllerSet(DEVICE, twoOfThree, signature(ORG_A, keysA, payload));
+        }
+
+        @Test
+        public void whenKControllersSigned() {
+            String payload = controllerSetPayload("UpdateControllerSet", DEVICE, oneOfThree);
+
+            Identity updated = updateControllerSet(DEVICE, oneOfThree, signature(ORG_B, keysB, payload),
+                    signature(ORG_C, keysC, payload));
+
+            assertThat(updated.getControllerSet()).isEqualTo(oneOfThree.canonical());
+            assertThat(isUsed(payload)).isTrue();
+        }
+
+        @Test
+        public void whenOneShortOfK() {
+            String payload = controllerSetPayload("UpdateControllerSet", DEVICE, oneOfThree);
+
+            Throwable thrown = catchThrowable(() -> updateControllerSet(DEVICE, oneOfThree,
+                    signature(ORG_B, keysB, payload)));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+            assertThat(isUsed(payload)).isFalse();
+        }
+
+        @Test
+        public void whenSignaturesAreReplayed() {
+            String lower = controllerSetPayload("UpdateControllerSet", DEVICE, oneOfThree);
+            List<ControllerSignature> lowerSignatures = Arrays.asList(signature(ORG_A, keysA, lower),
+                    signature(ORG_B, keysB, lower));
+            updateControllerSet(DEVICE, oneOfThree, lowerSignatures.get(0), lowerSignatures.get(1));
+            String raise = controllerSetPayload("UpdateControllerSet", DEVICE, twoOfThree);
+            updateControllerSet(DEVICE, twoOfThree, signature(ORG_C, keysC, raise));
+
+            Throwable thrown = catchThrowable(() -> updateControllerSet(DEVICE, oneOfThree,
+                    lowerSignatures.get(0), lowerSignatures.get(1)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+            Identity identity = runner.evaluate(ctx -> runner.getContract().ReadIdentity(ctx, DEVICE));
+            assertThat(identity.getControllerSet()).isEqualTo(twoOfThree.canonical());
+        }
+
+        @Test
+        public void whenSignedForAnotherIdentity() {
+            String payload = controllerSetPayload("UpdateControllerSet", ORG_D, oneOfThree);
+
+            Throwable thrown = catchThrowable(() -> updateControllerSet(DEVICE, oneOfThree,
+                    signature(ORG_A, keysA, payload), signature(ORG_B, keysB, payload)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenSignedForAnotherOperation() {
+            String payload = controllerSetPayload("CreateThresholdIdentity", DEVICE, oneOfThree);
+
+            Throwable thrown = catchThrowable(() -> updateControllerSet(DEVICE, oneOfThree,
+                    signature(ORG_A, keysA, payload), signature(ORG_B, keysB, payload)));
+
+            assertThat(errorCode(thrown)).isEqualTo("INVALID_SIGNATURE");
+        }
+
+        @Test
+        public void whenANewControllerDoesNotExist() {
+            ControllerSet withUnknown = controllerSet(1, ORG_A, "lsdi:org/unknown");
+            String payload = controllerSetPayload("UpdateControllerSet", DEVICE, withUnknown);
+
+            Throwable thrown = catchThrowable(() -> updateControllerSet(DEVICE, withUnknown,
+                    signature(ORG_A, keysA, payload), signature(ORG_B, keysB, payload)));
+
+            assertThat(errorCode(thrown)).isEqualTo("IDENTITY_NOT_FOUND");
+        }
+    }
+}
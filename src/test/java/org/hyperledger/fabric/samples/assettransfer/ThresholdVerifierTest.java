@@ -0,0 +1,97 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.assettransfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public final class ThresholdVerifierTest {
+
+    private final ThresholdVerifier verifier = new ThresholdVerifier(2);
+
+    private static List<Callable<Boolean>> checks(final int valid, final int invalid) {
+        List<Callable<Boolean>> checks = new ArrayList<>();
+        for (int i = 0; i < valid; i++) {
+            checks.add(() -> true);
+        }
+        for (int i = 0; i < invalid; i++) {
+            checks.add(() -> false);
+        }
+        Collections.shuffle(checks);
+        return checks;
+    }
+
+    @Nested
+    class Threshold {
+
+        @Test
+        public void whenExactlyKAreValid() {
+            assertThat(verifier.verify(2, checks(2, 1))).isTrue();
+            assertThat(verifier.verify(3, checks(3, 0))).isTrue();
+        }
+
+        @Test
+        public void whenOneShortOfK() {
+            assertThat(verifier.verify(2, checks(1, 2))).isFalse();
+            assertThat(verifier.verify(3, checks(2, 5))).isFalse();
+        }
+
+        @Test
+        public void whenFewerChecksThanK() {
+            assertThat(verifier.verify(3, checks(2, 0))).isFalse();
+        }
+
+        @Test
+        public void whenSingleCheck() {
+            assertThat(verifier.verify(1, checks(1, 0))).isTrue();
+            assertThat(verifier.verify(1, checks(0, 1))).isFalse();
+        }
+
+        @Test
+        public void whenManyMoreChecksThanThreads() {
+            assertThat(verifier.verify(16, checks(16, 64))).isTrue();
+            assertThat(verifier.verify(16, checks(15, 65))).isFalse();
+        }
+    }
+
+    @Nested
+    class FailingCheck {
+
+        @Test
+        public void countsAsInvalid() {
+            List<Callable<Boolean>> checks = checks(1, 0);
+            checks.add(() -> {
+                throw new IllegalStateException("bad signature");
+            });
+
+            assertThat(verifier.verify(2, checks)).isFalse();
+            assertThat(verifier.verify(1, checks)).isTrue();
+        }
+
+        @Test
+        public void whenOnlyCheckThrows() {
+            List<Callable<Boolean>> checks = new ArrayList<>();
+            checks.add(() -> {
+                throw new IllegalStateException("bad signature");
+            });
+
+            assertThat(verifier.verify(1, checks)).isFalse();
+        }
+    }
+
+    @Test
+    public void rejectsNoThreads() {
+        assertThat(catchThrowable(() -> new ThresholdVerifier(0))).isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Verifier thread count must be positive: 0");
+    }
+}